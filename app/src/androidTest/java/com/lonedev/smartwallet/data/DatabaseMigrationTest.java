@@ -0,0 +1,267 @@
+package com.lonedev.smartwallet.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
+import com.lonedev.smartwallet.support.EpochDays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test dell'aggiornamento del database dalla versione 1 (quella della prima release dell'app) alla versione attuale.
+ * Il database di partenza, con la struttura della versione 1 e ROWS movimenti sintetici, viene creato direttamente con SQLite
+ * in un file distinto da quello dell'app, e poi aperto attraverso DatabaseHandler, che ne esegue l'aggiornamento. Oltre alla
+ * conservazione dei dati, il test verifica con EXPLAIN QUERY PLAN che le query eseguite sulla tabella MOVEMENTS (filtri della
+ * schermata Movimenti, eliminazioni e archiviazione) usino gli indici creati dall'aggiornamento.
+ *
+ * @author Marco Michelini
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationTest {
+
+    /**
+     * Il nome del database aggiornato dal test.
+     */
+    private static final String UPGRADED_NAME = "migration-test";
+
+    /**
+     * Il nome del database creato direttamente alla versione attuale, con cui viene confrontato quello aggiornato.
+     */
+    private static final String CREATED_NAME = "migration-test-created";
+
+    /**
+     * Il numero di movimenti del database di partenza.
+     */
+    private static final int ROWS = 100000;
+
+    /**
+     * Il numero di anni, fino a quello corrente, su cui sono distribuiti i movimenti.
+     */
+    private static final int YEARS = 3;
+
+    /**
+     * Il nome dell'obiettivo a cui sono associati alcuni dei movimenti.
+     */
+    private static final String TARGET_NAME = "Vacanza";
+
+    /**
+     * Il contesto dell'app.
+     */
+    private Context context;
+
+    /**
+     * I DatabaseHandler dei due database del test, oppure null se non ancora creati.
+     */
+    private DatabaseHandler upgraded, created;
+
+    /**
+     * Il saldo del database di partenza, in centesimi.
+     */
+    private long balance;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(UPGRADED_NAME);
+        context.deleteDatabase(CREATED_NAME);
+        balance = createVersion1Database();
+        upgraded = new DatabaseHandler(context, UPGRADED_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        upgraded.close();
+
+        if (created != null)
+            created.close();
+
+        context.deleteDatabase(UPGRADED_NAME);
+        context.deleteDatabase(CREATED_NAME);
+    }
+
+    @Test
+    public void upgradePreservesMovementsAndBalance() {
+        long start = System.nanoTime();
+        SQLiteDatabase database = upgraded.getWritableDatabase();
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Aggiornamento di " + ROWS + " movimenti: " + elapsed / 1000000 + " ms");
+
+        assertEquals(ROWS, count(database, "SELECT COUNT(*) FROM MOVEMENTS"));
+        assertEquals(ROWS, count(database, "SELECT COUNT(DISTINCT _id) FROM MOVEMENTS"));
+        assertEquals(0, count(database, "SELECT COUNT(*) FROM MOVEMENTS WHERE CATEGORY_ID IS NULL AND DESCRIPTION IS NULL"));
+        assertEquals(balance, upgraded.getBalance());
+        assertEquals(balance, count(database, "SELECT SUM(VALUE) FROM MOVEMENTS"));
+        assertFalse(upgraded.verifyLedger());
+    }
+
+    @Test
+    public void upgradedSchemaMatchesCreatedSchema() {
+        created = new DatabaseHandler(context, CREATED_NAME);
+        SQLiteDatabase upgradedDatabase = upgraded.getWritableDatabase(), createdDatabase = created.getWritableDatabase();
+
+        assertEquals(createdDatabase.getVersion(), upgradedDatabase.getVersion());
+        assertEquals(schemaObjects(createdDatabase, "table"), schemaObjects(upgradedDatabase, "table"));
+        assertEquals(schemaObjects(createdDatabase, "index"), schemaObjects(upgradedDatabase, "index"));
+    }
+
+    @Test
+    public void movementsQueriesUseIndexes() {
+        SQLiteDatabase database = upgraded.getWritableDatabase();
+        int today = EpochDays.today();
+        String from = String.valueOf(EpochDays.startOfMonth(today, 2)), to = String.valueOf(today + 1);
+        String columns = "SELECT CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY, ID, _id FROM MOVEMENTS WHERE ";
+        String order = " ORDER BY EPOCH_DAY DESC, _id DESC LIMIT 50";
+
+        assertUsesIndex(database, "MOVEMENTS_DATE_INDEX",
+                columns + "EPOCH_DAY >= ? AND EPOCH_DAY < ?" + order, from, to);
+        assertUsesIndex(database, "MOVEMENTS_DATE_INDEX",
+                columns + "VALUE < ? AND EPOCH_DAY >= ? AND EPOCH_DAY < ?" + order, "0", from, to);
+        assertUsesIndex(database, "MOVEMENTS_CATEGORY_INDEX",
+                columns + "CATEGORY_ID = ? AND EPOCH_DAY >= ? AND EPOCH_DAY < ?" + order,
+                String.valueOf(EntryCategoryAccess.FOOD), from, to);
+        assertUsesIndex(database, "MOVEMENTS_DATE_INDEX",
+                columns + "EPOCH_DAY >= ? AND EPOCH_DAY < ? AND EPOCH_DAY <= ? AND (EPOCH_DAY < ? OR _id < ?)" + order,
+                from, to, to, to, String.valueOf(ROWS));
+        assertUsesIndex(database, "MOVEMENTS_ID_INDEX",
+                "DELETE FROM MOVEMENTS WHERE ID = ? OR DESCRIPTION = ?", "id-1", "id-1");
+        assertUsesIndex(database, "MOVEMENTS_DESCRIPTION_INDEX",
+                "DELETE FROM MOVEMENTS WHERE ID = ? OR DESCRIPTION = ?", TARGET_NAME, TARGET_NAME);
+        assertUsesIndex(database, "MOVEMENTS_DATE_INDEX",
+                "SELECT MIN(EPOCH_DAY) FROM MOVEMENTS WHERE EPOCH_DAY < ?", String.valueOf(EpochDays.startOfYear(today)));
+    }
+
+    /**
+     * Crea il database di partenza, con la struttura della versione 1 e ROWS movimenti sintetici distribuiti sugli ultimi
+     * YEARS anni, e ne ritorna il saldo. Come nella versione 1, i movimenti sono memorizzati con la descrizione della
+     * categoria nella lingua del dispositivo (oppure con il nome dell'obiettivo), il valore reale e la data in tre colonne.
+     */
+    private long createVersion1Database() {
+        EntryCategoryAccess categories = StaticDataRegistry.getEntryCategoryAccess(context);
+        SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(UPGRADED_NAME), null);
+        Random random = new Random(42);
+        int today = EpochDays.today(), firstDay = EpochDays.of(1, 1, EpochDays.getYear(today) - YEARS + 1);
+        long total = 0;
+
+        database.beginTransaction();
+
+        try {
+            database.execSQL("CREATE TABLE BALANCE (_id INTEGER PRIMARY KEY AUTOINCREMENT, VALUE REAL);");
+            database.execSQL("CREATE TABLE MOVEMENTS (_id INTEGER PRIMARY KEY AUTOINCREMENT, DESCRIPTION TEXT, VALUE REAL, "
+                    + "DAY INTEGER, MONTH INTEGER, YEAR INTEGER, ID TEXT);");
+            database.execSQL("CREATE TABLE LIMITS (_id INTEGER PRIMARY KEY AUTOINCREMENT, DESCRIPTION TEXT, VALUE REAL, "
+                    + "MAX REAL, PERCENT INTEGER, MONTH INTEGER);");
+            database.execSQL("CREATE TABLE TARGETS (_id INTEGER PRIMARY KEY AUTOINCREMENT, DESCRIPTION TEXT, VALUE REAL, "
+                    + "MAX REAL, PERCENT INTEGER);");
+            database.execSQL("INSERT INTO TARGETS (DESCRIPTION, VALUE, MAX, PERCENT) VALUES (?, 0, 1000, 0)",
+                    new Object[] {TARGET_NAME});
+
+            SQLiteStatement insert = database.compileStatement("INSERT INTO MOVEMENTS (DESCRIPTION, VALUE, DAY, MONTH, YEAR, ID) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)");
+
+            for (int i = 0; i < ROWS; i++) {
+                int epochDay = firstDay + random.nextInt(today - firstDay + 1);
+                long cents = 1 + random.nextInt(100000);
+                int category = EntryCategoryAccess.FILTER_ALL[1 + random.nextInt(EntryCategoryAccess.FILTER_ALL.length - 1)];
+                boolean in = category == EntryCategoryAccess.SALARY || category == EntryCategoryAccess.SALES
+                        || category == EntryCategoryAccess.GIFTS;
+                long value = in ? cents : -cents;
+
+                insert.bindString(1, i % 50 == 0 ? TARGET_NAME : categories.get(category));
+                insert.bindDouble(2, value / 100.0);
+                insert.bindLong(3, EpochDays.getDay(epochDay));
+                insert.bindLong(4, EpochDays.getMonth(epochDay));
+                insert.bindLong(5, EpochDays.getYear(epochDay));
+                insert.bindString(6, "id-" + i);
+                insert.executeInsert();
+                total += value;
+            }
+
+            insert.close();
+            database.execSQL("INSERT INTO BALANCE (VALUE) VALUES (?)", new Object[] {total / 100.0});
+            database.setVersion(1);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            database.close();
+        }
+
+        return total;
+    }
+
+    /**
+     * Verifica che il piano della query fornita, ottenuto con EXPLAIN QUERY PLAN, usi l'indice fornito e non scorra per intero
+     * la tabella MOVEMENTS né ordini i risultati in una tabella temporanea.
+     *
+     * @param database Il database.
+     * @param index Il nome dell'indice.
+     * @param sql La query.
+     * @param args Gli argomenti della query.
+     */
+    private static void assertUsesIndex(SQLiteDatabase database, String index, String sql, String... args) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+
+        while (cursor.moveToNext())
+            plan.append(cursor.getString(3)).append('\n');
+
+        cursor.close();
+
+        String details = plan.toString();
+        assertTrue(sql + "\n" + details, details.contains("INDEX " + index));
+        assertFalse(sql + "\n" + details, details.matches("(?s).*SCAN (TABLE )?MOVEMENTS\\s*\n.*"));
+        assertFalse(sql + "\n" + details, details.contains("TEMP B-TREE"));
+    }
+
+    /**
+     * Ritorna il risultato della query fornita, che deve ritornare un unico numero.
+     *
+     * @param database Il database.
+     * @param sql La query.
+     */
+    private static long count(SQLiteDatabase database, String sql) {
+        SQLiteStatement statement = database.compileStatement(sql);
+
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Ritorna i nomi degli oggetti del tipo fornito (tabelle o indici) presenti nel database, esclusi quelli interni di SQLite
+     * e di Android.
+     *
+     * @param database Il database.
+     * @param type Il tipo degli oggetti ("table" oppure "index").
+     */
+    private static Set<String> schemaObjects(SQLiteDatabase database, String type) {
+        Set<String> names = new HashSet<>();
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = ? AND name NOT LIKE 'sqlite_%' "
+                + "AND name != 'android_metadata'", new String[] {type});
+
+        while (cursor.moveToNext())
+            names.add(cursor.getString(0));
+
+        cursor.close();
+        return names;
+    }
+
+}
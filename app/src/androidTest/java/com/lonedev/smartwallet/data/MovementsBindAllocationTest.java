@@ -0,0 +1,155 @@
+package com.lonedev.smartwallet.data;
+
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseLongArray;
+import android.widget.FrameLayout;
+
+import com.lonedev.smartwallet.UI_components.MovementsAdapter;
+import com.lonedev.smartwallet.activities.MainActivity;
+import com.lonedev.smartwallet.support.EpochDays;
+import com.lonedev.smartwallet.support.MovementsFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test dell'associazione delle viste della schermata Movimenti (si veda MovementsAdapter.onBindViewHolder(ViewHolder, int)),
+ * che non deve allocare alcun oggetto una volta creati i ViewHolder.
+ * La finestra di movimenti viene costruita direttamente, senza accedere al database, per cui il test si trova nello stesso
+ * package di MovementsWindow e MovementsPage. Dopo una prima associazione di tutti gli elementi (durante la quale TextView
+ * crea i propri oggetti interni), gli elementi vengono associati ROUNDS volte agli stessi ViewHolder, contando le allocazioni
+ * del thread principale con Debug.startAllocCounting().
+ *
+ * @author Marco Michelini
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovementsBindAllocationTest {
+
+    /**
+     * Il numero di giorni della finestra.
+     */
+    private static final int DAYS = 5;
+
+    /**
+     * Il numero di movimenti di ciascun giorno.
+     */
+    private static final int MOVEMENTS_PER_DAY = 20;
+
+    /**
+     * Il numero di volte in cui tutti gli elementi della finestra vengono associati durante il conteggio.
+     */
+    private static final int ROUNDS = 50;
+
+    /**
+     * Attributo che permette di avviare l'activity e di eseguire il test sul thread principale.
+     */
+    private Instrumentation instrumentation;
+
+    /**
+     * L'activity a cui appartiene l'adapter.
+     */
+    private AppCompatActivity activity;
+
+    /**
+     * Il numero di oggetti allocati durante il conteggio.
+     */
+    private int allocations;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(instrumentation.getTargetContext(), MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        activity = (AppCompatActivity) instrumentation.startActivitySync(intent);
+    }
+
+    @After
+    public void tearDown() {
+        activity.finish();
+    }
+
+    @Test
+    public void bindDoesNotAllocate() {
+        final MovementsWindow window = createWindow();
+        final MovementsPagingSource source = new MovementsPagingSource(DatabaseExecutor.getInstance(activity)) {
+
+            @Override
+            public MovementsWindow getWindow() {
+                return window;
+            }
+
+            @Override
+            public void onItemShown(int position) {}
+        };
+
+        instrumentation.runOnMainSync(new Runnable() {
+
+            @Override
+            public void run() {
+                MovementsAdapter adapter = new MovementsAdapter(DatabaseExecutor.getInstance(activity), source, activity);
+                FrameLayout parent = new FrameLayout(activity);
+                RecyclerView.ViewHolder header = adapter.onCreateViewHolder(parent, adapter.getItemViewType(0));
+                RecyclerView.ViewHolder movement = adapter.onCreateViewHolder(parent, adapter.getItemViewType(1));
+                int itemCount = adapter.getItemCount();
+
+                for (int position = 0; position < itemCount; position++)
+                    adapter.onBindViewHolder(window.isHeader(position) ? header : movement, position);
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (int position = 0; position < itemCount; position++)
+                        adapter.onBindViewHolder(window.isHeader(position) ? header : movement, position);
+                }
+
+                Debug.stopAllocCounting();
+                allocations = Debug.getThreadAllocCount();
+            }
+        });
+
+        assertEquals(0, allocations);
+    }
+
+    /**
+     * Crea una finestra di una sola pagina, con MOVEMENTS_PER_DAY movimenti per ciascuno degli ultimi DAYS giorni (compreso
+     * quello corrente, i cui movimenti mostrano il pulsante di eliminazione), sia in entrata che in uscita.
+     */
+    private MovementsWindow createWindow() {
+        List<Movement> movements = new ArrayList<>();
+        long[] rowIds = new long[DAYS * MOVEMENTS_PER_DAY];
+        SparseLongArray dayTotals = new SparseLongArray();
+        int today = EpochDays.today();
+
+        for (int day = 0; day < DAYS; day++) {
+            long total = 0;
+
+            for (int i = 0; i < MOVEMENTS_PER_DAY; i++) {
+                long value = (i % 2 == 0 ? -1 : 1) * (1250L * (i + 1) + day);
+                rowIds[movements.size()] = DAYS * MOVEMENTS_PER_DAY - movements.size();
+                movements.add(new Movement("Movimento " + i, value, today - day, String.valueOf(rowIds[movements.size()])));
+                total += value;
+            }
+
+            dayTotals.put(today - day, total);
+        }
+
+        return new MovementsWindow(MovementsFilter.snapshot(),
+                Collections.singletonList(new MovementsPage(movements, rowIds, dayTotals)), false, false);
+    }
+
+}
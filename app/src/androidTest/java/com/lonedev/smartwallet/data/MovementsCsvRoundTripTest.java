@@ -0,0 +1,245 @@
+package com.lonedev.smartwallet.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+import com.lonedev.smartwallet.support.EpochDays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test dell'esportazione dei movimenti in un file CSV (si veda la classe MovementsExporter) e della loro successiva
+ * importazione (si veda la classe MovementsParser) in un altro database. Il database di partenza contiene ROWS movimenti
+ * sintetici, inseriti direttamente nella tabella MOVEMENTS e poi archiviati (tranne quelli dell'anno corrente); dopo
+ * l'importazione, i due database devono contenere gli stessi movimenti (data, categoria o obiettivo, valore), anche se con
+ * identificativi diversi, e il registro del saldo del secondo deve essere coerente.
+ * Il test misura anche il tempo di esportazione e di importazione, e la massima memoria occupata durante l'esportazione,
+ * che non deve dipendere dal numero di movimenti.
+ *
+ * @author Marco Michelini
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovementsCsvRoundTripTest {
+
+    /**
+     * Il nome del database da cui vengono esportati i movimenti.
+     */
+    private static final String SOURCE_NAME = "round-trip-source";
+
+    /**
+     * Il nome del database in cui vengono importati i movimenti.
+     */
+    private static final String DESTINATION_NAME = "round-trip-destination";
+
+    /**
+     * Il numero di movimenti del database di partenza.
+     */
+    private static final int ROWS = 100000;
+
+    /**
+     * Il numero di anni, fino a quello corrente, su cui sono distribuiti i movimenti.
+     */
+    private static final int YEARS = 3;
+
+    /**
+     * Il nome dell'obiettivo a cui sono associati alcuni dei movimenti.
+     */
+    private static final String TARGET_NAME = "Vacanza";
+
+    /**
+     * Il contesto dell'app.
+     */
+    private Context context;
+
+    /**
+     * I DatabaseHandler dei due database del test.
+     */
+    private DatabaseHandler source, destination;
+
+    /**
+     * Il file CSV in cui vengono esportati i movimenti.
+     */
+    private File file;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(SOURCE_NAME);
+        context.deleteDatabase(DESTINATION_NAME);
+        source = new DatabaseHandler(context, SOURCE_NAME);
+        destination = new DatabaseHandler(context, DESTINATION_NAME);
+        file = new File(context.getCacheDir(), "round-trip.csv");
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+        destination.close();
+        context.deleteDatabase(SOURCE_NAME);
+        context.deleteDatabase(DESTINATION_NAME);
+        file.delete();
+    }
+
+    @Test
+    public void exportedMovementsImportBack() throws IOException {
+        long total = populateSource();
+        source.clearOld();
+        destination.insert(new Target(TARGET_NAME, 100000));
+        final Runtime runtime = Runtime.getRuntime();
+        final long[] peakHeap = new long[1];
+        System.gc();
+        long initialHeap = runtime.totalMemory() - runtime.freeMemory();
+
+        long start = System.nanoTime();
+        int exported = source.exportMovements(file, null, new DatabaseExecutor.Task(), new DatabaseExecutor.ProgressCounter() {
+
+            @Override
+            public void onProgress(long done, long total) {
+                peakHeap[0] = Math.max(peakHeap[0], runtime.totalMemory() - runtime.freeMemory());
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Esportazione di " + ROWS + " movimenti: " + elapsed / 1000000 + " ms, memoria massima oltre "
+                + "quella iniziale: " + Math.max(peakHeap[0] - initialHeap, 0) / 1024 + " KB");
+
+        assertEquals(ROWS, exported);
+
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        ImportResult result;
+        start = System.nanoTime();
+
+        try {
+            result = destination.importMovements(reader, file.length(), DatabaseHandler.IMPORT_BATCH_SIZE,
+                    new DatabaseExecutor.Task(), new DatabaseExecutor.ProgressCounter() {
+
+                        @Override
+                        public void onProgress(long done, long total) {}
+                    });
+        } finally {
+            reader.close();
+        }
+
+        elapsed = System.nanoTime() - start;
+        System.out.println("Importazione di " + ROWS + " movimenti: " + elapsed / 1000000 + " ms");
+
+        assertEquals(ROWS, result.getImported());
+        assertEquals(0, result.getSkipped());
+        assertTrue(result.isCompleted());
+        assertEquals(total, destination.getBalance());
+        assertFalse(destination.verifyLedger());
+        assertSameMovements(source.getWritableDatabase(), destination.getWritableDatabase());
+    }
+
+    /**
+     * Inserisce nella tabella MOVEMENTS del database di partenza ROWS movimenti sintetici, distribuiti sugli ultimi YEARS
+     * anni fino al giorno corrente (i movimenti futuri non vengono importati), e ne ritorna la somma. Uno ogni 50 movimenti
+     * è associato all'obiettivo TARGET_NAME, gli altri a una categoria casuale.
+     */
+    private long populateSource() {
+        source.insert(new Target(TARGET_NAME, 100000));
+        SQLiteDatabase database = source.getWritableDatabase();
+        Random random = new Random(24);
+        int today = EpochDays.today(), firstDay = EpochDays.of(1, 1, EpochDays.getYear(today) - YEARS + 1);
+        long total = 0;
+        SQLiteStatement insert = database.compileStatement("INSERT INTO MOVEMENTS (CATEGORY_ID, DESCRIPTION, VALUE, "
+                + "EPOCH_DAY, ID) VALUES (?, ?, ?, ?, ?)");
+        database.beginTransaction();
+
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                int category = EntryCategoryAccess.FILTER_ALL[1 + random.nextInt(EntryCategoryAccess.FILTER_ALL.length - 1)];
+                long cents = 1 + random.nextInt(1000000);
+                boolean in = category == EntryCategoryAccess.SALARY || category == EntryCategoryAccess.SALES
+                        || category == EntryCategoryAccess.GIFTS;
+                long value = in ? cents : -cents;
+
+                if (i % 50 == 0) {
+                    insert.bindNull(1);
+                    insert.bindString(2, TARGET_NAME);
+                } else {
+                    insert.bindLong(1, category);
+                    insert.bindNull(2);
+                }
+
+                insert.bindLong(3, value);
+                insert.bindLong(4, firstDay + random.nextInt(today - firstDay + 1));
+                insert.bindString(5, "id-" + i);
+                insert.executeInsert();
+                total += value;
+            }
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            insert.close();
+        }
+
+        return total;
+    }
+
+    /**
+     * Verifica che i due database forniti contengano gli stessi movimenti, confrontandone data, categoria, descrizione e
+     * valore (ma non gli identificativi) nella tabella MOVEMENTS e nelle tabelle dell'archivio.
+     *
+     * @param expected Il database di partenza.
+     * @param actual Il database in cui sono stati importati i movimenti.
+     */
+    private static void assertSameMovements(SQLiteDatabase expected, SQLiteDatabase actual) {
+        Cursor expectedCursor = queryMovements(expected), actualCursor = queryMovements(actual);
+
+        try {
+            assertEquals(ROWS, expectedCursor.getCount());
+            assertEquals(expectedCursor.getCount(), actualCursor.getCount());
+
+            while (expectedCursor.moveToNext()) {
+                assertTrue(actualCursor.moveToNext());
+
+                for (int column = 0; column < expectedCursor.getColumnCount(); column++)
+                    assertEquals("Movimento " + expectedCursor.getPosition(), expectedCursor.getString(column),
+                            actualCursor.getString(column));
+
+            }
+        } finally {
+            expectedCursor.close();
+            actualCursor.close();
+        }
+    }
+
+    /**
+     * Ritorna un cursore con data, categoria, descrizione e valore di tutti i movimenti del database fornito, compresi quelli
+     * archiviati, in un ordine che non dipende dagli identificativi.
+     *
+     * @param database Il database.
+     */
+    private static Cursor queryMovements(SQLiteDatabase database) {
+        StringBuilder movements = new StringBuilder("SELECT EPOCH_DAY, CATEGORY_ID, DESCRIPTION, VALUE FROM MOVEMENTS");
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name LIKE 'MOVEMENTS\\_%' "
+                + "ESCAPE '\\'", null);
+
+        while (cursor.moveToNext())
+            movements.append(" UNION ALL SELECT EPOCH_DAY, CATEGORY_ID, DESCRIPTION, VALUE FROM ").append(cursor.getString(0));
+
+        cursor.close();
+        return database.rawQuery(movements.append(" ORDER BY 1, 2, 3, 4").toString(), null);
+    }
+
+}
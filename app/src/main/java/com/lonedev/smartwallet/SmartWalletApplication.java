@@ -0,0 +1,75 @@
+package com.lonedev.smartwallet;
+
+import android.app.Application;
+import android.content.res.Configuration;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.lonedev.smartwallet.data.DatabaseExecutor;
+import com.lonedev.smartwallet.data.DatabaseHandler;
+import com.lonedev.smartwallet.services.MaintenanceScheduler;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
+import com.lonedev.smartwallet.support.StartupTrace;
+
+/**
+ * Classe che rappresenta l'applicazione nel suo complesso, creata prima di qualsiasi Activity.
+ * Gestisce il ciclo di vita delle risorse condivise da tutte le schermate, in particolare della connessione al database.
+ *
+ * @author Marco Michelini
+ */
+public class SmartWalletApplication extends Application {
+
+    /**
+     * Metodo chiamato alla creazione dell'applicazione.
+     * Apre la connessione al database, che sarà poi condivisa da tutte le Activity e i Fragment. L'apertura (che può comportare
+     * la creazione o l'aggiornamento del database) avviene al di fuori del thread principale.
+     * Pianifica inoltre la manutenzione periodica del database, che non viene quindi eseguita all'avvio, e avvia la misura
+     * del tempo di avvio (si veda la classe StartupTrace).
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTrace.begin();
+        DatabaseExecutor.getInstance(this).write(new DatabaseExecutor.Operation<Void>() {
+
+            @Override
+            public Void run(DatabaseHandler databaseHandler) {
+                databaseHandler.open();
+                return null;
+            }
+        }, null);
+        MaintenanceScheduler.schedule(this);
+    }
+
+    /**
+     * Metodo chiamato quando cambia la configurazione del dispositivo (ad esempio la lingua).
+     * Elimina le stringhe statiche conservate da StaticDataRegistry, che verranno ricaricate al successivo utilizzo.
+     *
+     * @param newConfig La nuova configurazione del dispositivo.
+     */
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        StaticDataRegistry.invalidate();
+    }
+
+    /**
+     * Metodo chiamato quando il sistema ha poca memoria a disposizione.
+     * Libera la memoria non indispensabile utilizzata da SQLite, senza chiudere la connessione al database.
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        SQLiteDatabase.releaseMemory();
+    }
+
+    /**
+     * Metodo chiamato alla terminazione dell'applicazione (solo in ambienti emulati).
+     * Chiude la connessione al database.
+     */
+    @Override
+    public void onTerminate() {
+        super.onTerminate();
+        DatabaseHandler.getInstance(this).close();
+    }
+
+}
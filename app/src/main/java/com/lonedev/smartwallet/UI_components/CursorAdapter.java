@@ -2,9 +2,9 @@ package com.lonedev.smartwallet.UI_components;
 
 import android.content.Intent;
 import android.content.res.ColorStateList;
-import android.database.Cursor;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -16,51 +16,56 @@ import android.widget.TextView;
 import com.lonedev.smartwallet.R;
 import com.lonedev.smartwallet.activities.NewEntryActivity;
 import com.lonedev.smartwallet.data.AvailableLimitCategories;
-import com.lonedev.smartwallet.data.Entry;
-import com.lonedev.smartwallet.data.Limit;
-import com.lonedev.smartwallet.data.Movement;
-import com.lonedev.smartwallet.data.Progress;
+import com.lonedev.smartwallet.data.DatabaseExecutor;
+import com.lonedev.smartwallet.data.ProgressesSnapshot;
 import com.lonedev.smartwallet.static_data.CursorType;
 import com.lonedev.smartwallet.static_data.IntentInfo;
-import com.lonedev.smartwallet.fragments.MovementsFragment;
-import com.lonedev.smartwallet.fragments.ProgressesFragment;
 import com.lonedev.smartwallet.support.DataFormat;
 import com.lonedev.smartwallet.data.DatabaseHandler;
 
-import java.util.Calendar;
-
 /**
- * Adapter facente da collegamento tra i record inseriti dall'utente (memorizzati all'interno del database dell'app) e i relativi
- * RecyclerView nelle schermate Home, Movimenti e Progressi.
+ * Adapter facente da collegamento tra i progressi inseriti dall'utente (memorizzati all'interno del database dell'app) e i relativi
+ * RecyclerView nelle schermate Home e Progressi. I movimenti della schermata Movimenti sono invece gestiti da MovementsAdapter.
+ * I progressi sono letti da un'istantanea per colonne (si veda la classe ProgressesSnapshot), creata al di fuori del thread
+ * principale: nessun cursore resta aperto per tutta la durata della schermata. Ogni tipo di vista ha un proprio ViewHolder,
+ * che conserva le viste figlie e i buffer in cui formattare i valori, per cui l'associazione di una vista non alloca alcun oggetto.
+ * Quando i progressi vengono modificati, l'istantanea viene riletta e confrontata con la precedente al di fuori del thread
+ * principale (si veda reload()), oppure sostituita con una nuova istantanea (si veda swap(ProgressesSnapshot)), e al
+ * RecyclerView vengono notificate soltanto le differenze. Ogni progresso è identificato stabilmente dal proprio indice di riga
+ * (colonna _id).
  *
  * @author Marco Michelini
  */
 public class CursorAdapter extends RecyclerView.Adapter<CursorAdapter.ViewHolder> {
 
     /**
-     * Il massimo numero di limiti da visualizzare nella schermata Home.
+     * Il tipo di vista di un progresso non rilevante (schermata Progressi).
      */
-    private final int MAX_RELEVANT_LIMITS = 5;
+    private static final int PROGRESS_VIEW = 0;
 
     /**
-     * Il massimo numero di obiettivi da visualizzare nella schermata Home.
+     * Il tipo di vista di un progresso rilevante (schermata Home).
      */
-    private final int MAX_RELEVANT_TARGETS = 3;
+    private static final int RELEVANT_PROGRESS_VIEW = 1;
 
     /**
-     * Attributo che permette di accedere al database dell'app (sia in scrittura che in lettura).
+     * Attributo che permette di eseguire le operazioni sul database al di fuori del thread principale.
      */
-    private DatabaseHandler databaseHandler;
+    private DatabaseExecutor databaseExecutor;
 
     /**
-     * Cursore contenente una lista di record salvati nel database.
-     * Può essere di qualsiasi tipo, purché previsto dall'applicazione.
+     * La rilettura in corso dell'istantanea, oppure null.
      */
-    private Cursor cursor;
+    private DatabaseExecutor.Task reloadTask;
 
     /**
-     * Il tipo del cursore passato all'interno del costruttore, influenza il comportamento di CursorAdapter (diversi tipi di record
-     * hanno una diversa struttura, e sono memorizzati in modo diverso nel database dell'app).
+     * L'istantanea dei progressi visualizzati (limiti di spesa oppure obiettivi).
+     */
+    private ProgressesSnapshot snapshot;
+
+    /**
+     * Il tipo dei progressi dell'istantanea passata all'interno del costruttore, influenza il comportamento di CursorAdapter
+     * (limiti di spesa e obiettivi sono colorati ed eliminati in modo diverso).
      */
     private String cursorType;
 
@@ -70,326 +75,449 @@ public class CursorAdapter extends RecyclerView.Adapter<CursorAdapter.ViewHolder
     private AppCompatActivity parentActivity;
 
     /**
-     * Se il cursore passato corrisponde ad un progresso, ne determina il layout.
+     * Determina il layout dei progressi.
      * Progressi rilevanti e non rilevanti sono visualizzati diversamente e in schermate differenti (Home nel primo
      * caso, Progressi nel secondo).
      */
     private boolean showOnlyRelevant;
 
     /**
-     * Se il cursore passato corrisponde ad un movimento, contiene la data del movimento precedentemente visualizzato.
-     * Se tale stringa corrisponde alla data del movimento corrente, viene adottato un layout differente, tale da aggregare i due.
+     * Il colore dei progressi la cui percentuale di completamento è inferiore a 100.
+     */
+    private int belowMaxColor;
+
+    /**
+     * Il colore dei progressi la cui percentuale di completamento è pari o superiore a 100.
+     */
+    private int overMaxColor;
+
+    /**
+     * Le tinte delle barre di completamento dei progressi rilevanti, corrispondenti a belowMaxColor e overMaxColor.
      */
-    private String movementPreviousDate;
+    private ColorStateList belowMaxTint, overMaxTint;
 
     /**
      * Inizializza un nuovo CursorAdapter con i parametri passati.
-     * Se il cursore contiene dei progressi, questi sono implicitamente considerati come non rilevanti.
+     * I progressi contenuti nell'istantanea sono implicitamente considerati come non rilevanti.
      *
-     * @param databaseHandler Oggetto che fornisce accesso in scrittura e in lettura al database.
-     * @param cursor Il cursore contenente i record da visualizzare.
+     * @param snapshot L'istantanea contenente i progressi da visualizzare.
      * @param parentActivity Riferimento all'activity oontenente CursorAdapter.
      */
-    public CursorAdapter(DatabaseHandler databaseHandler, Cursor cursor, AppCompatActivity parentActivity) {
-        this.databaseHandler = databaseHandler;
-        this.cursor = cursor;
-        cursorType = databaseHandler.getCursorType(cursor);
-        this.parentActivity = parentActivity;
-        showOnlyRelevant = false;
-        movementPreviousDate = " ";
+    public CursorAdapter(ProgressesSnapshot snapshot, AppCompatActivity parentActivity) {
+        this(snapshot, parentActivity, false);
     }
 
     /**
      * Inizializza un nuovo CursorAdapter con i parametri passati.
-     * Non essendoci distinzione fra movimenti rilevanti e non, assume che il cursore passato contenga dei progressi.
+     * Risolve inoltre, una volta per tutte, i colori dei progressi; se l'istantanea contiene dei limiti di spesa, le relative
+     * categorie vengono rimosse da quelle ancora monitorabili (si veda la classe AvailableLimitCategories).
      *
-     * @param databaseHandler Oggetto che fornisce accesso in scrittura e in lettura al database.
-     * @param cursor Il cursore contenente i record da visualizzare.
+     * @param snapshot L'istantanea contenente i progressi da visualizzare.
      * @param parentActivity Riferimento all'activity oontenente CursorAdapter.
      * @param showOnlyRelevant Parametro che specifica se i progressi da visualizzare sono rilevanti o no.
      */
-    public CursorAdapter(DatabaseHandler databaseHandler, Cursor cursor, AppCompatActivity parentActivity, boolean showOnlyRelevant) {
-        this.databaseHandler = databaseHandler;
-        this.cursor = cursor;
-        cursorType = databaseHandler.getCursorType(cursor);
+    public CursorAdapter(ProgressesSnapshot snapshot, AppCompatActivity parentActivity, boolean showOnlyRelevant) {
+        int primaryColor = parentActivity.getResources().getColor(R.color.colorPrimary, null);
+        int deleteColor = parentActivity.getResources().getColor(R.color.deleteButtonColor, null);
+
+        databaseExecutor = DatabaseExecutor.getInstance(parentActivity);
+        this.snapshot = snapshot;
+        cursorType = snapshot.getCursorType();
         this.parentActivity = parentActivity;
-        movementPreviousDate = " ";
+        this.showOnlyRelevant = showOnlyRelevant;
+
+        if (cursorType.equals(CursorType.TARGETS)) {
+            belowMaxColor = deleteColor;
+            overMaxColor = primaryColor;
+        } else {
+            belowMaxColor = primaryColor;
+            overMaxColor = deleteColor;
+
+            for (int i = 0; i < snapshot.size(); i++)
+                AvailableLimitCategories.remove(snapshot.getDescription(i));
 
-        if (cursorType.equals(CursorType.MOVEMENTS))
-            this.showOnlyRelevant = false;
-        else
-            this.showOnlyRelevant = showOnlyRelevant;
+        }
+
+        belowMaxTint = ColorStateList.valueOf(belowMaxColor);
+        overMaxTint = ColorStateList.valueOf(overMaxColor);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Ritorna l'indice di riga del progresso individuato dalla posizione fornita, che lo identifica stabilmente.
+     *
+     * @param position La posizione del progresso all'interno del RecyclerView associato a CursorAdapter.
+     */
+    @Override
+    public long getItemId(int position) {
+        return snapshot.getRowId(position);
+    }
+
+    /**
+     * Ritorna il tipo di vista del progresso individuato dalla posizione fornita, che dipende soltanto dalla sua rilevanza.
+     *
+     * @param position La posizione del progresso all'interno del RecyclerView associato a CursorAdapter.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return showOnlyRelevant ? RELEVANT_PROGRESS_VIEW : PROGRESS_VIEW;
     }
 
     /**
      * Metodo chiamato quando il RecyclerView associato a CursorAdapter richiede un nuovo ViewHolder, in cui visualizzare il
-     * successivo record del cursore.
-     * Il layout di tale ViewHolder varia a seconda del tipo di record (movimento o progresso) e, nel caso in cui il record in
-     * questione sia un progresso, della sua rilevanza.
+     * successivo progresso dell'istantanea.
+     * Il tipo (e quindi il layout) di tale ViewHolder varia a seconda della rilevanza dei progressi.
      *
      * @param viewGroup La vista in cui verrà inserito il nuovo ViewHolder dopo la sua creazione.
      * @param viewType Il tipo della nuova vista.
-     * @return Il ViewHolder in cui inserire il record successivo.
+     * @return Il ViewHolder in cui inserire il progresso successivo.
      */
     @NonNull
     @Override
     public CursorAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
         LayoutInflater inflater = LayoutInflater.from(viewGroup.getContext());
-        int holderLayout;
 
-        if (cursorType.equals(CursorType.MOVEMENTS)) {
-            holderLayout = R.layout.movement;
-        } else {
+        if (viewType == RELEVANT_PROGRESS_VIEW)
+            return new RelevantProgressViewHolder(inflater.inflate(R.layout.relevant_progress, viewGroup, false));
 
-            if (showOnlyRelevant) holderLayout = R.layout.relevant_progress;
-            else holderLayout = R.layout.progress;
-
-        }
-
-        return new CursorAdapter.ViewHolder(inflater.inflate(holderLayout, viewGroup, false));
+        return new ProgressViewHolder(inflater.inflate(R.layout.progress, viewGroup, false));
     }
 
     /**
-     * Inserisce all'interno del ViewHolder fornito le informazioni relative al record individuato dalla posizione fornita.
+     * Inserisce all'interno del ViewHolder fornito le informazioni relative al progresso individuato dalla posizione fornita.
      *
      * @param viewHolder Il ViewHolder ritornato da onCreateViewHolder(ViewGroup, int).
-     * @param position La posizione del nuovo record all'interno del RecyclerView associato a CursorAdapter e del cursore.
+     * @param position La posizione del nuovo progresso all'interno del RecyclerView associato a CursorAdapter e dell'istantanea.
      */
     @Override
     public void onBindViewHolder(@NonNull CursorAdapter.ViewHolder viewHolder, int position) {
-        View holder = viewHolder.holder;
-        final Entry entry = databaseHandler.get(cursor, position);
-
-        if (showOnlyRelevant) bindRelevantProgressData((Progress) entry, holder);
-        else bindData(entry, holder);
-
+        viewHolder.bind(position);
     }
 
     /**
-     * Inserisce le informazioni del progresso fornito all'interno della vista fornita.
-     * In questo caso, il progresso è trattato come rilevante.
-     *
-     * @param progress Il progresso di cui si vogliono visualizzare le informazioni.
-     * @param holder Il ViewHolder ritornato da onCreateViewHolder(ViewGroup, int), in cui inserire le informazioni del progresso.
+     * Ritorna il numero di progressi contenuti nell'istantanea attuale.
      */
-    private void bindRelevantProgressData(final Progress progress, View holder) {
-        TextView textView;
-        ProgressBar progressBar;
-        float max = progress.getMax(), value = progress.getValue();
-        int percent = progress.getPercent(), progressColor = selectProgressColor(percent);
-        String valueText = DataFormat.format(value), maxText = "/ " + DataFormat.format(max), description = progress.getDescription();
-
-        if (percent > 100) percent = 100;
-
-        textView = holder.findViewById(R.id.description_relevant_progress);
-        textView.setText(description);
-        textView = holder.findViewById(R.id.value_relevant_progress);
-        textView.setTextColor(progressColor);
-        textView.setText(valueText);
-        textView = holder.findViewById(R.id.max_relevant_progress);
-        textView.setText(maxText);
-        progressBar = holder.findViewById(R.id.bar_relevant_progress);
-        progressBar.setProgressTintList(ColorStateList.valueOf(progressColor));
-        progressBar.setProgress(percent);
+    @Override
+    public int getItemCount() {
+        return snapshot.size();
     }
 
     /**
-     * Ritorna il colore utilizzato per il valore del progresso, e se questo è rilevante anche per la sua barra di completamento.
-     * Il colore scelto varia a seconda che il progresso sia un limite di spesa o un obiettivo, e della percentuale di completamento
-     * fornita.
-     *
-     * @param percent La percentuale di completamento del progresso.
+     * Rilegge l'istantanea dal database e la sostituisce a quella attuale, notificando al RecyclerView soltanto le differenze
+     * fra le due. La rilettura e il confronto avvengono al di fuori del thread principale.
      */
-    private int selectProgressColor(int percent) {
-        int progressColor;
+    public void reload() {
+        final ProgressesSnapshot oldSnapshot = snapshot;
 
-        if (percent < 100) {
-            progressColor = parentActivity.getResources().getColor(R.color.colorPrimary, null);
+        if (reloadTask != null)
+            reloadTask.cancel();
 
-            if (cursorType.equals(CursorType.TARGETS))
-                progressColor = parentActivity.getResources().getColor(R.color.deleteButtonColor, null);
+        reloadTask = databaseExecutor.read(new DatabaseExecutor.Operation<Reload>() {
 
-        } else {
-            progressColor = parentActivity.getResources().getColor(R.color.deleteButtonColor, null);
+            @Override
+            public Reload run(DatabaseHandler databaseHandler) {
+                ProgressesSnapshot newSnapshot = databaseHandler.getProgressesSnapshot(cursorType);
 
-            if (cursorType.equals(CursorType.TARGETS))
-                progressColor = parentActivity.getResources().getColor(R.color.colorPrimary, null);
+                if (newSnapshot == null)
+                    return null;
 
-        }
+                return new Reload(newSnapshot, DiffUtil.calculateDiff(new SnapshotDiff(oldSnapshot, newSnapshot)));
+            }
+        }, new DatabaseExecutor.Callback<Reload>() {
+
+            @Override
+            public void onResult(Reload result) {
+                reloadTask = null;
 
-        return progressColor;
+                if (result != null) {
+                    snapshot = result.snapshot;
+                    result.diffResult.dispatchUpdatesTo(CursorAdapter.this);
+                }
+            }
+        });
     }
 
     /**
-     * Inserisce all'interno del ViewHolder fornito le informazioni relative al record fornito.
-     * In particolare, questo viene fatto chiamando il metodo più idoneo al tipo di record.
-     * Se il record è un progresso, questo viene trattato come non rilevante.
+     * Sostituisce l'istantanea attuale con quella fornita, notificando al RecyclerView soltanto le differenze fra le due.
+     * Il confronto avviene sul thread principale, per cui deve essere usato soltanto per istantanee di pochi progressi (come
+     * quelle dei progressi rilevanti); altrimenti, si veda reload().
      *
-     * @param entry Il record di cui si vogliono visualizzare le informazioni.
-     * @param holder Il ViewHolder ritornato da onCreateViewHolder(ViewGroup, int), in cui inserire le informazioni del record.
+     * @param newSnapshot La nuova istantanea, dello stesso tipo di quella attuale.
      */
-    private void bindData(final Entry entry, View holder) {
-        if (entry instanceof Movement) {
-            bindMovementData((Movement) entry, holder);
-        } else if (entry instanceof Progress){
-            bindProgressData((Progress) entry, holder);
-        }
+    public void swap(ProgressesSnapshot newSnapshot) {
+        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new SnapshotDiff(snapshot, newSnapshot));
+        snapshot = newSnapshot;
+        diffResult.dispatchUpdatesTo(this);
     }
 
     /**
-     * Inserisce all'interno del ViewHolder fornito le informazioni relative al movimento fornito.
-     * Inizializza inoltre il pulsante di eliminazione di un movimento, che consente di rimuovere dal database ogni movimento
-     * la cui data di creazione sia quella corrente (ciò consente all'utente di correggere eventuali errori o distrazioni).
+     * Annulla l'eventuale rilettura in corso. Deve essere chiamato quando i progressi non vengono più visualizzati.
+     */
+    public void close() {
+        if (reloadTask != null)
+            reloadTask.cancel();
+
+    }
+
+    /**
+     * Rimuove dal database il progresso fornito e, se si tratta di un obiettivo non ancora raggiunto, all'interno della
+     * stessa transazione il movimento ad esso associato (si veda DatabaseHandler.removeProgress(String, boolean)). La lista dei progressi viene poi ricaricata dal Fragment che la visualizza, che osserva le modifiche alle
+     * tabelle LIMITS e TARGETS (si veda la classe InvalidationTracker).
      *
-     * @param movement Il movimento di cui si vogliono visualizzare le informazioni.
-     * @param holder Il ViewHolder ritornato da onCreateViewHolder(ViewGroup, int), in cui inserire le informazioni del movimento.
+     * @param description La descrizione del progresso da rimuovere.
+     * @param percent La percentuale di completamento del progresso da rimuovere.
      */
-    private void bindMovementData(final Movement movement, View holder) {
-        TextView textView;
-        Calendar currentDate = Calendar.getInstance();
-        String valueText, description = movement.getDescription(), date = movement.getDate(),
-                currentDateString = DataFormat.format(currentDate.get(Calendar.DAY_OF_MONTH),
-                        currentDate.get(Calendar.MONTH) + 1, currentDate.get(Calendar.YEAR));
-        ImageButton deleteButton = holder.findViewById(R.id.button_delete_movement);
-        float value = movement.getValue();
-
-        if (value < 0)
-            valueText = "- " + DataFormat.format(Math.abs(value)) + " " + parentActivity.getResources().getString(R.string.currency);
-        else
-            valueText = "+ " + DataFormat.format(Math.abs(value)) + " " + parentActivity.getResources().getString(R.string.currency);
-
-        textView = holder.findViewById(R.id.category_movement);
-        textView.setText(description);
-        textView = holder.findViewById(R.id.value_movement);
-        textView.setText(valueText);
-        textView = holder.findViewById(R.id.date_movement);
-
-        if (!date.equals(movementPreviousDate)) {
-            textView.setText(date);
-            movementPreviousDate = date;
-        } else {
-            textView.setHeight(0);
-        }
+    private void deleteProgress(final String description, final int percent) {
+        final boolean isLimit = cursorType.equals(CursorType.LIMITS);
 
-        deleteButton.setVisibility(View.INVISIBLE);
+        if (isLimit)
+            AvailableLimitCategories.add(description);
 
-        if (currentDateString.equals(date)) {
-            deleteButton.setVisibility(View.VISIBLE);
-            deleteButton.setOnClickListener(new View.OnClickListener() {
+        databaseExecutor.write(new DatabaseExecutor.Operation<Void>() {
 
-                @Override
-                public void onClick(View v) {
-                    if (movement.getValue() < 0)
-                        databaseHandler.increaseProgress(movement.getDescription(), -1 * Math.abs(movement.getValue()));
+            @Override
+            public Void run(DatabaseHandler databaseHandler) {
+                databaseHandler.removeProgress(description, !isLimit && percent < 100);
+                return null;
+            }
+        }, null);
+    }
 
-                    databaseHandler.increaseBalance(-1 * movement.getValue());
-                    databaseHandler.deleteMovement(movement.getID());
-                    parentActivity.getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container_main,
-                            new MovementsFragment()).commit();
-                }
-            });
+    /**
+     * Classe interna che descrive la vista utilizzata dal RecyclerView associato a CursorAdapter per visualizzare
+     * un progresso. Conserva le viste comuni a entrambi i layout e i buffer in cui ne vengono formattate le informazioni.
+     *
+     * @author Marco Michelini
+     */
+    public abstract class ViewHolder extends RecyclerView.ViewHolder {
+
+        /**
+         * Le viste in cui sono visualizzati descrizione, valore e massimo del progresso.
+         */
+        private TextView descriptionView, valueView, maxView;
+
+        /**
+         * Il buffer in cui viene formattato il valore del progresso.
+         */
+        private char[] valueBuffer;
+
+        /**
+         * Il buffer in cui viene formattato il massimo del progresso, preceduto da "/ ".
+         */
+        private char[] maxBuffer;
+
+        /**
+         * Inizializza un nuovo ViewHolder con la vista e gli identificativi forniti.
+         *
+         * @param holder La vista in cui saranno poi inserite le informazioni dei progressi.
+         * @param descriptionId L'identificativo della vista che visualizza la descrizione del progresso.
+         * @param valueId L'identificativo della vista che visualizza il valore del progresso.
+         * @param maxId L'identificativo della vista che visualizza il massimo del progresso.
+         */
+        ViewHolder(View holder, int descriptionId, int valueId, int maxId) {
+            super(holder);
+            descriptionView = holder.findViewById(descriptionId);
+            valueView = holder.findViewById(valueId);
+            maxView = holder.findViewById(maxId);
+            valueBuffer = new char[DataFormat.MAX_MONEY_LENGTH];
+            maxBuffer = new char[2 + DataFormat.MAX_MONEY_LENGTH];
+            maxBuffer[0] = '/';
+            maxBuffer[1] = ' ';
+        }
+
+        /**
+         * Inserisce nelle viste comuni le informazioni del progresso individuato dalla posizione fornita, e ne ritorna la
+         * percentuale di completamento.
+         *
+         * @param position La posizione del progresso all'interno dell'istantanea.
+         */
+        int bindCommon(int position) {
+            int percent = snapshot.getPercent(position);
+
+            descriptionView.setText(snapshot.getDescription(position));
+            valueView.setTextColor(percent < 100 ? belowMaxColor : overMaxColor);
+            valueView.setText(valueBuffer, 0, DataFormat.format(snapshot.getValue(position), valueBuffer, 0));
+            maxView.setText(maxBuffer, 0, DataFormat.format(snapshot.getMax(position), maxBuffer, 2));
+            return percent;
         }
+
+        /**
+         * Inserisce nella vista le informazioni del progresso individuato dalla posizione fornita.
+         *
+         * @param position La posizione del progresso all'interno dell'istantanea.
+         */
+        abstract void bind(int position);
+
     }
 
     /**
-     * Inserisce le informazioni del progresso fornito all'interno della vista fornita.
-     * In questo caso, il progresso è trattato come non rilevante.
-     * Inizializza inoltre i pulsanti di modifica ed eliminazione di un progresso, consentendo di rimuovere un progresso dal
-     * database o di modificarne il limite massimo.
+     * ViewHolder di un progresso non rilevante, provvisto dei pulsanti di modifica ed eliminazione, che consentono di
+     * modificare il limite massimo del progresso o di rimuoverlo dal database.
      *
-     * @param progress Il progresso di cui si vogliono visualizzare le informazioni.
-     * @param holder Il ViewHolder ritornato da onCreateViewHolder(ViewGroup, int), in cui inserire le informazioni del progresso.
+     * @author Marco Michelini
      */
-    private void bindProgressData(final Progress progress, View holder) {
-        TextView textView;
-        ImageButton editButton = holder.findViewById(R.id.button_edit_progress);
-        ImageButton deleteButton = holder.findViewById(R.id.button_delete_progress);
-        String description = progress.getDescription();
-        float value = progress.getValue(), max = progress.getMax();
-        int percent = progress.getPercent(), progressColor = selectProgressColor(percent);
-        String valueText = DataFormat.format(value), maxText = "/ " + DataFormat.format(max);
-
-        textView = holder.findViewById(R.id.description_progress);
-        textView.setText(description);
-        textView = holder.findViewById(R.id.value_progress);
-        textView.setTextColor(progressColor);
-        textView.setText(valueText);
-        textView = holder.findViewById(R.id.max_progress);
-        textView.setText(maxText);
-
-        editButton.setOnClickListener(new View.OnClickListener() {
+    public class ProgressViewHolder extends ViewHolder implements View.OnClickListener {
 
-            @Override
-            public void onClick(View v) {
+        /**
+         * Il pulsante di modifica del progresso.
+         */
+        private ImageButton editButton;
+
+        /**
+         * Inizializza un nuovo ProgressViewHolder con la vista fornita.
+         *
+         * @param holder La vista in cui saranno poi inserite le informazioni dei progressi.
+         */
+        ProgressViewHolder(View holder) {
+            super(holder, R.id.description_progress, R.id.value_progress, R.id.max_progress);
+            editButton = holder.findViewById(R.id.button_edit_progress);
+            editButton.setOnClickListener(this);
+            holder.findViewById(R.id.button_delete_progress).setOnClickListener(this);
+        }
+
+        /**
+         * Inserisce nella vista le informazioni del progresso individuato dalla posizione fornita.
+         *
+         * @param position La posizione del progresso all'interno dell'istantanea.
+         */
+        @Override
+        void bind(int position) {
+            bindCommon(position);
+        }
+
+        /**
+         * Metodo chiamato alla pressione del pulsante di modifica o di eliminazione del progresso visualizzato.
+         * Le informazioni del progresso sono lette dall'istantanea attuale, in base alla posizione attuale del ViewHolder.
+         *
+         * @param v Il pulsante premuto.
+         */
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+
+            if (position == RecyclerView.NO_POSITION)
+                return;
+
+            String description = snapshot.getDescription(position);
+
+            if (v == editButton) {
                 Intent intent = new Intent(parentActivity, NewEntryActivity.class);
                 intent.putExtra(IntentInfo.SCREEN, IntentInfo.EDIT_PROGRESS);
-                intent.putExtra(IntentInfo.TEXT, progress.getDescription());
+                intent.putExtra(IntentInfo.TEXT, description);
                 parentActivity.startActivity(intent);
+            } else {
+                deleteProgress(description, snapshot.getPercent(position));
             }
-        });
+        }
 
-        deleteButton.setOnClickListener(new View.OnClickListener() {
+    }
 
-            @Override
-            public void onClick(View v) {
-                if (progress instanceof Limit) {
-                    AvailableLimitCategories.add(progress.getDescription());
-                } else {
+    /**
+     * ViewHolder di un progresso rilevante, provvisto di una barra di completamento.
+     *
+     * @author Marco Michelini
+     */
+    public class RelevantProgressViewHolder extends ViewHolder {
 
-                    if (progress.getPercent() < 100) {
-                        databaseHandler.deleteMovement(progress.getDescription());
-                        databaseHandler.increaseBalance(progress.getValue());
-                    }
+        /**
+         * La barra di completamento del progresso.
+         */
+        private ProgressBar progressBar;
 
-                }
+        /**
+         * Inizializza un nuovo RelevantProgressViewHolder con la vista fornita.
+         *
+         * @param holder La vista in cui saranno poi inserite le informazioni dei progressi.
+         */
+        RelevantProgressViewHolder(View holder) {
+            super(holder, R.id.description_relevant_progress, R.id.value_relevant_progress, R.id.max_relevant_progress);
+            progressBar = holder.findViewById(R.id.bar_relevant_progress);
+        }
+
+        /**
+         * Inserisce nella vista le informazioni del progresso individuato dalla posizione fornita, compresa la barra di
+         * completamento (la cui percentuale non supera mai 100).
+         *
+         * @param position La posizione del progresso all'interno dell'istantanea.
+         */
+        @Override
+        void bind(int position) {
+            int percent = bindCommon(position);
 
-                databaseHandler.deleteProgress(progress.getDescription());
-                parentActivity.getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container_main,
-                        new ProgressesFragment()).commit();
+            progressBar.setProgressTintList(percent < 100 ? belowMaxTint : overMaxTint);
+            progressBar.setProgress(Math.min(percent, 100));
+        }
 
-            }
-        });
     }
 
     /**
-     * Ritorna il numero di record contenuti nel cursore passato al costruttore.
+     * Confronta due istantanee di progressi: due progressi sono lo stesso progresso se hanno lo stesso indice di riga, e il
+     * loro contenuto coincide se ne coincidono valore e massimo (da cui dipende la percentuale di completamento).
      */
-    @Override
-    public int getItemCount() {
-        if (showOnlyRelevant) {
-            int refItems = MAX_RELEVANT_LIMITS;
+    private static class SnapshotDiff extends DiffUtil.Callback {
 
-            if (cursorType.equals(CursorType.TARGETS))
-                refItems = MAX_RELEVANT_TARGETS;
+        /**
+         * Le istantanee da confrontare.
+         */
+        private ProgressesSnapshot oldSnapshot, newSnapshot;
 
-            return Math.min(refItems, cursor.getCount());
+        /**
+         * Inizializza un nuovo SnapshotDiff con le istantanee fornite.
+         *
+         * @param oldSnapshot L'istantanea precedente.
+         * @param newSnapshot La nuova istantanea.
+         */
+        SnapshotDiff(ProgressesSnapshot oldSnapshot, ProgressesSnapshot newSnapshot) {
+            this.oldSnapshot = oldSnapshot;
+            this.newSnapshot = newSnapshot;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldSnapshot.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newSnapshot.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldSnapshot.getRowId(oldItemPosition) == newSnapshot.getRowId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldSnapshot.getValue(oldItemPosition) == newSnapshot.getValue(newItemPosition)
+                    && oldSnapshot.getMax(oldItemPosition) == newSnapshot.getMax(newItemPosition);
         }
 
-        return cursor.getCount();
     }
 
     /**
-     * Classe interna che descrive la vista utilizzata dal RecyclerView associato a CursorAdapter per visualizzare
-     * i record contenuti in cursor. Diversi tipi di record sono rappresentati all'interno di ViewHolder con un differente layout.
-     *
-     * @author Marco Michelini
+     * Il risultato di una rilettura dell'istantanea, calcolato al di fuori del thread principale.
      */
-    public static class ViewHolder extends RecyclerView.ViewHolder {
+    private static class Reload {
 
         /**
-         * La vista in cui saranno poi inserite le informazioni dei record contenuti in cursor.
+         * La nuova istantanea.
          */
-        private View holder;
+        private ProgressesSnapshot snapshot;
 
         /**
-         * Inizializza un nuovo ViewHolder con la vista fornita.
-         *
-         * @param holder La vista in cui saranno poi inserite le informazioni dei record contenuti in cursor.
+         * Le differenze fra l'istantanea precedente e la nuova istantanea.
          */
-        public ViewHolder(View holder) {
-            super(holder);
-            this.holder = holder;
+        private DiffUtil.DiffResult diffResult;
+
+        /**
+         * Inizializza un nuovo Reload con i parametri forniti.
+         */
+        Reload(ProgressesSnapshot snapshot, DiffUtil.DiffResult diffResult) {
+            this.snapshot = snapshot;
+            this.diffResult = diffResult;
         }
+
     }
 
 }
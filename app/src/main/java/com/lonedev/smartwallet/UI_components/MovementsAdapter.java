@@ -0,0 +1,324 @@
+package com.lonedev.smartwallet.UI_components;
+
+import android.support.annotation.NonNull;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageButton;
+import android.widget.TextView;
+
+import com.lonedev.smartwallet.R;
+import com.lonedev.smartwallet.data.DatabaseExecutor;
+import com.lonedev.smartwallet.data.DatabaseHandler;
+import com.lonedev.smartwallet.data.Movement;
+import com.lonedev.smartwallet.data.MovementsPagingSource;
+import com.lonedev.smartwallet.data.MovementsWindow;
+import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
+
+/**
+ * Adapter facente da collegamento tra i movimenti forniti da un MovementsPagingSource e il RecyclerView della schermata
+ * Movimenti. Ogni modifica alla finestra di movimenti di MovementsPagingSource viene notificata al RecyclerView, che
+ * richiede così la lettura di nuove pagine man mano che l'utente scorre la lista.
+ * I movimenti sono raggruppati per giorno: ogni giorno è preceduto da un'intestazione, visualizzata con un tipo di vista
+ * dedicato, che ne riporta la data e il totale. Intestazioni e movimenti sono letti dall'indice delle sezioni della finestra
+ * (si veda la classe MovementsWindow), per cui la loro associazione richiede tempo costante in qualsiasi direzione di scorrimento.
+ * Ogni elemento è identificato stabilmente (si veda MovementsWindow.getItemId(int)), per cui, quando un movimento viene
+ * eliminato, vengono animati soltanto la sua rimozione e l'aggiornamento del totale del suo giorno.
+ *
+ * @author Marco Michelini
+ */
+public class MovementsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> implements MovementsPagingSource.Listener {
+
+    /**
+     * Il tipo di vista delle intestazioni dei giorni.
+     */
+    private static final int HEADER_VIEW = 0;
+
+    /**
+     * Il tipo di vista dei movimenti.
+     */
+    private static final int MOVEMENT_VIEW = 1;
+
+    /**
+     * Attributo che permette di eseguire le operazioni sul database al di fuori del thread principale.
+     */
+    private DatabaseExecutor databaseExecutor;
+
+    /**
+     * La fonte dei movimenti da visualizzare.
+     */
+    private MovementsPagingSource movementsSource;
+
+    /**
+     * Riferimento all'activity oontenente MovementsAdapter, in modo indiretto (attraverso MovementsFragment).
+     */
+    private AppCompatActivity parentActivity;
+
+    /**
+     * La data corrente, in formato epoch day, risolta alla creazione di MovementsAdapter.
+     */
+    private int today;
+
+    /**
+     * I caratteri della valuta, visualizzata dopo il valore di ogni movimento e il totale di ogni giorno.
+     */
+    private char[] currency;
+
+    /**
+     * Inizializza un nuovo MovementsAdapter con i parametri passati, registrandolo come destinatario delle modifiche alla
+     * finestra di movimenti di movementsSource.
+     *
+     * @param databaseExecutor Oggetto che permette di eseguire le operazioni sul database al di fuori del thread principale.
+     * @param movementsSource La fonte dei movimenti da visualizzare.
+     * @param parentActivity Riferimento all'activity oontenente MovementsAdapter.
+     */
+    public MovementsAdapter(DatabaseExecutor databaseExecutor, MovementsPagingSource movementsSource, AppCompatActivity parentActivity) {
+        this.databaseExecutor = databaseExecutor;
+        this.movementsSource = movementsSource;
+        this.parentActivity = parentActivity;
+        today = EpochDays.today();
+        currency = parentActivity.getResources().getString(R.string.currency).toCharArray();
+        movementsSource.setListener(this);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Ritorna l'identificativo stabile dell'elemento individuato dalla posizione fornita.
+     *
+     * @param position La posizione dell'elemento all'interno del RecyclerView associato a MovementsAdapter.
+     */
+    @Override
+    public long getItemId(int position) {
+        return movementsSource.getWindow().getItemId(position);
+    }
+
+    /**
+     * Ritorna il tipo di vista dell'elemento individuato dalla posizione fornita (HEADER_VIEW oppure MOVEMENT_VIEW).
+     *
+     * @param position La posizione dell'elemento all'interno del RecyclerView associato a MovementsAdapter.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return movementsSource.getWindow().isHeader(position) ? HEADER_VIEW : MOVEMENT_VIEW;
+    }
+
+    /**
+     * Metodo chiamato quando il RecyclerView associato a MovementsAdapter richiede un nuovo ViewHolder, in cui visualizzare
+     * un'intestazione o un movimento.
+     *
+     * @param viewGroup La vista in cui verrà inserito il nuovo ViewHolder dopo la sua creazione.
+     * @param viewType Il tipo della nuova vista.
+     * @return Il ViewHolder in cui inserire l'intestazione o il movimento.
+     */
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(viewGroup.getContext());
+
+        if (viewType == HEADER_VIEW)
+            return new HeaderViewHolder(inflater.inflate(R.layout.movement_header, viewGroup, false));
+
+        return new MovementViewHolder(inflater.inflate(R.layout.movement, viewGroup, false));
+    }
+
+    /**
+     * Inserisce all'interno del ViewHolder fornito le informazioni relative all'elemento individuato dalla posizione fornita,
+     * richiedendo se necessario la lettura della pagina adiacente. L'associazione non alloca alcun oggetto.
+     *
+     * @param viewHolder Il ViewHolder ritornato da onCreateViewHolder(ViewGroup, int).
+     * @param position La posizione dell'elemento all'interno del RecyclerView associato a MovementsAdapter.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder viewHolder, int position) {
+        MovementsWindow window = movementsSource.getWindow();
+
+        if (viewHolder instanceof HeaderViewHolder)
+            ((HeaderViewHolder) viewHolder).bind(window.getSectionEpochDay(position), window.getSectionTotal(position));
+        else
+            ((MovementViewHolder) viewHolder).bind(window.getMovement(position));
+
+        movementsSource.onItemShown(position);
+    }
+
+    /**
+     * Rimuove dal database il movimento individuato dalla posizione fornita, annullandone l'effetto sul relativo limite di
+     * spesa all'interno della stessa transazione (si veda DatabaseHandler.removeMovement(Movement)). La finestra di movimenti viene poi riletta da MovementsFragment, che osserva le modifiche alla tabella MOVEMENTS
+     * (si veda la classe InvalidationTracker).
+     *
+     * @param position La posizione del movimento all'interno del RecyclerView associato a MovementsAdapter.
+     */
+    private void deleteMovement(int position) {
+        final Movement movement = movementsSource.getWindow().getMovement(position);
+
+        databaseExecutor.write(new DatabaseExecutor.Operation<Void>() {
+
+            @Override
+            public Void run(DatabaseHandler databaseHandler) {
+                databaseHandler.removeMovement(movement);
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Ritorna il numero di elementi (intestazioni e movimenti) contenuti nella finestra di movementsSource.
+     */
+    @Override
+    public int getItemCount() {
+        return movementsSource.getWindow().getItemCount();
+    }
+
+    /**
+     * Notifica al RecyclerView le differenze fra la finestra precedente e quella attuale.
+     *
+     * @param diffResult Le differenze fra la finestra precedente e quella attuale.
+     */
+    @Override
+    public void onWindowChanged(DiffUtil.DiffResult diffResult) {
+        diffResult.dispatchUpdatesTo(this);
+    }
+
+    /**
+     * Formatta il valore fornito nel buffer fornito, preceduto dal suo segno e seguito dalla valuta, nel formato
+     * "+ 12.50 €" oppure "- 12.50 €".
+     *
+     * @param value Il valore da formattare, in centesimi.
+     * @param buffer Il buffer, di lunghezza almeno pari a quella ritornata da valueBufferLength().
+     * @return Il numero di caratteri scritti.
+     */
+    private int formatValue(long value, char[] buffer) {
+        buffer[0] = value < 0 ? '-' : '+';
+        buffer[1] = ' ';
+        int length = DataFormat.format(Math.abs(value), buffer, 2);
+        buffer[length++] = ' ';
+        System.arraycopy(currency, 0, buffer, length, currency.length);
+        return length + currency.length;
+    }
+
+    /**
+     * Ritorna la lunghezza del buffer necessario a formatValue(long, char[]).
+     */
+    private int valueBufferLength() {
+        return 3 + DataFormat.MAX_MONEY_LENGTH + currency.length;
+    }
+
+    /**
+     * Classe interna che descrive la vista utilizzata dal RecyclerView associato a MovementsAdapter per visualizzare
+     * l'intestazione di un giorno. Conserva le viste figlie e i buffer in cui ne vengono formattati data e totale.
+     *
+     * @author Marco Michelini
+     */
+    public class HeaderViewHolder extends RecyclerView.ViewHolder {
+
+        /**
+         * Le viste in cui sono visualizzati data e totale del giorno.
+         */
+        private TextView dateView, totalView;
+
+        /**
+         * Il buffer in cui viene formattata la data del giorno.
+         */
+        private char[] dateBuffer;
+
+        /**
+         * Il buffer in cui viene formattato il totale del giorno.
+         */
+        private char[] totalBuffer;
+
+        /**
+         * Inizializza un nuovo HeaderViewHolder con la vista fornita.
+         *
+         * @param holder La vista in cui saranno poi inserite le informazioni del giorno.
+         */
+        HeaderViewHolder(View holder) {
+            super(holder);
+            dateView = holder.findViewById(R.id.date_header);
+            totalView = holder.findViewById(R.id.total_header);
+            dateBuffer = new char[DataFormat.DATE_LENGTH];
+            totalBuffer = new char[valueBufferLength()];
+        }
+
+        /**
+         * Visualizza la data fornita, nel formato dd/mm/yy, e il totale fornito.
+         *
+         * @param epochDay La data del giorno, in formato epoch day.
+         * @param total Il totale dei movimenti del giorno, in centesimi.
+         */
+        private void bind(int epochDay, long total) {
+            int length = DataFormat.format(EpochDays.getDay(epochDay), EpochDays.getMonth(epochDay),
+                    EpochDays.getYear(epochDay), dateBuffer, 0);
+            dateView.setText(dateBuffer, 0, length);
+            totalView.setText(totalBuffer, 0, formatValue(total, totalBuffer));
+        }
+    }
+
+    /**
+     * Classe interna che descrive la vista utilizzata dal RecyclerView associato a MovementsAdapter per visualizzare
+     * un movimento. Conserva le viste figlie e il buffer in cui ne viene formattato il valore.
+     *
+     * @author Marco Michelini
+     */
+    public class MovementViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        /**
+         * Le viste in cui sono visualizzati categoria e valore del movimento.
+         */
+        private TextView categoryView, valueView;
+
+        /**
+         * Il pulsante di eliminazione del movimento.
+         */
+        private ImageButton deleteButton;
+
+        /**
+         * Il buffer in cui viene formattato il valore del movimento.
+         */
+        private char[] valueBuffer;
+
+        /**
+         * Inizializza un nuovo MovementViewHolder con la vista fornita.
+         *
+         * @param holder La vista in cui saranno poi inserite le informazioni del movimento.
+         */
+        MovementViewHolder(View holder) {
+            super(holder);
+            categoryView = holder.findViewById(R.id.category_movement);
+            valueView = holder.findViewById(R.id.value_movement);
+            deleteButton = holder.findViewById(R.id.button_delete_movement);
+            deleteButton.setOnClickListener(this);
+            valueBuffer = new char[valueBufferLength()];
+        }
+
+        /**
+         * Visualizza il movimento fornito. Il pulsante di eliminazione, che consente di rimuovere dal database ogni movimento
+         * la cui data di creazione sia quella corrente (ciò consente all'utente di correggere eventuali errori o distrazioni),
+         * è visibile soltanto per tali movimenti.
+         *
+         * @param movement Il movimento da visualizzare.
+         */
+        private void bind(Movement movement) {
+            categoryView.setText(movement.getDescription());
+            valueView.setText(valueBuffer, 0, formatValue(movement.getValue(), valueBuffer));
+            deleteButton.setVisibility(movement.getEpochDay() == today ? View.VISIBLE : View.INVISIBLE);
+        }
+
+        /**
+         * Metodo chiamato alla pressione del pulsante di eliminazione del movimento visualizzato.
+         *
+         * @param v Il pulsante di eliminazione.
+         */
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+
+            if (position != RecyclerView.NO_POSITION)
+                deleteMovement(position);
+
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import com.lonedev.smartwallet.R;
+import com.lonedev.smartwallet.support.Money;
 
 /**
  * Classe che modellizza un tastierino numerico, usato per inserire il valore di un movimento o il limite massimo di un progresso.
@@ -210,6 +211,14 @@ public class Numpad implements OnClickListener {
         return state;
     }
 
+    /**
+     * Ritorna il valore numerico inserito, espresso in centesimi (si veda la classe Money).
+     * Se la stringa associata al valore inserito non è valida, ritorna -1.
+     */
+    public long getValue() {
+        return Money.parse(value);
+    }
+
 }
 
 
@@ -0,0 +1,212 @@
+package com.lonedev.smartwallet.UI_components;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import com.lonedev.smartwallet.R;
+import com.lonedev.smartwallet.data.CategoryTotal;
+import com.lonedev.smartwallet.data.MonthTotal;
+import com.lonedev.smartwallet.data.Statistics;
+import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
+
+/**
+ * Adapter facente da collegamento tra le statistiche di un mese (si veda la classe Statistics) e i relativi RecyclerView della
+ * schermata Statistiche: l'andamento mensile delle spese, dal mese più recente al meno recente, oppure la ripartizione per
+ * categoria delle spese del mese.
+ * Tutti i valori visualizzati (comprese le percentuali delle barre) sono già calcolati dalle statistiche, per cui
+ * l'associazione di una vista si limita a formattarli. Quando le statistiche cambiano, vengono sostituite per intero (si veda
+ * swap(Statistics)): le liste contengono al più qualche decina di elementi.
+ *
+ * @author Marco Michelini
+ */
+public class TotalsAdapter extends RecyclerView.Adapter<TotalsAdapter.TotalViewHolder> {
+
+    /**
+     * Le statistiche visualizzate.
+     */
+    private Statistics statistics;
+
+    /**
+     * Determina gli elementi visualizzati: i mesi dell'andamento mensile (true) oppure le categorie del mese (false).
+     */
+    private boolean showTrend;
+
+    /**
+     * Le risorse dell'app, da cui sono lette le stringhe visualizzate.
+     */
+    private Resources resources;
+
+    /**
+     * I nomi dei mesi, da gennaio a dicembre.
+     */
+    private String[] monthNames;
+
+    /**
+     * La valuta, visualizzata dopo ogni quantità di denaro.
+     */
+    private String currency;
+
+    /**
+     * Inizializza un nuovo TotalsAdapter con i parametri forniti.
+     *
+     * @param statistics Le statistiche da visualizzare.
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     * @param showTrend Parametro che specifica se visualizzare l'andamento mensile oppure la ripartizione per categoria.
+     */
+    public TotalsAdapter(Statistics statistics, Context context, boolean showTrend) {
+        this.statistics = statistics;
+        this.showTrend = showTrend;
+        resources = context.getResources();
+        monthNames = resources.getStringArray(R.array.month_names);
+        currency = resources.getString(R.string.currency);
+    }
+
+    /**
+     * Metodo chiamato quando il RecyclerView associato a TotalsAdapter richiede un nuovo ViewHolder.
+     *
+     * @param viewGroup La vista in cui verrà inserito il nuovo ViewHolder dopo la sua creazione.
+     * @param viewType Il tipo della nuova vista.
+     * @return Il ViewHolder in cui inserire l'elemento successivo.
+     */
+    @NonNull
+    @Override
+    public TotalViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
+        return new TotalViewHolder(LayoutInflater.from(viewGroup.getContext()).inflate(R.layout.total, viewGroup, false));
+    }
+
+    /**
+     * Inserisce all'interno del ViewHolder fornito le informazioni dell'elemento individuato dalla posizione fornita.
+     *
+     * @param viewHolder Il ViewHolder ritornato da onCreateViewHolder(ViewGroup, int).
+     * @param position La posizione dell'elemento all'interno del RecyclerView associato a TotalsAdapter.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull TotalViewHolder viewHolder, int position) {
+        if (showTrend)
+            viewHolder.bindMonth(statistics.getTrendSize() - 1 - position);
+        else
+            viewHolder.bindCategory(position);
+
+    }
+
+    /**
+     * Ritorna il numero di elementi visualizzati.
+     */
+    @Override
+    public int getItemCount() {
+        return showTrend ? statistics.getTrendSize() : statistics.getCategoryCount();
+    }
+
+    /**
+     * Sostituisce le statistiche visualizzate con quelle fornite.
+     *
+     * @param newStatistics Le nuove statistiche.
+     */
+    public void swap(Statistics newStatistics) {
+        statistics = newStatistics;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Ritorna il nome del mese fornito, seguito dall'anno.
+     *
+     * @param resources Le risorse dell'app.
+     * @param monthNames I nomi dei mesi, da gennaio a dicembre.
+     * @param month Il primo giorno del mese, in formato epoch day.
+     */
+    public static String formatMonth(Resources resources, String[] monthNames, int month) {
+        return resources.getString(R.string.statistics_month, monthNames[EpochDays.getMonth(month) - 1],
+                EpochDays.getYear(month));
+    }
+
+    /**
+     * Classe interna che descrive la vista utilizzata dal RecyclerView associato a TotalsAdapter per visualizzare un mese
+     * oppure una categoria, con una barra proporzionale alle relative spese.
+     *
+     * @author Marco Michelini
+     */
+    class TotalViewHolder extends RecyclerView.ViewHolder {
+
+        /**
+         * Le viste in cui sono visualizzati descrizione, spese e dettagli dell'elemento.
+         */
+        private TextView descriptionView, valueView, detailView;
+
+        /**
+         * La barra proporzionale alle spese dell'elemento.
+         */
+        private ProgressBar bar;
+
+        /**
+         * Il buffer in cui vengono formattate le spese dell'elemento, seguite dalla valuta.
+         */
+        private char[] valueBuffer;
+
+        /**
+         * Inizializza un nuovo TotalViewHolder con la vista fornita.
+         *
+         * @param holder La vista in cui saranno poi inserite le informazioni degli elementi.
+         */
+        TotalViewHolder(View holder) {
+            super(holder);
+            descriptionView = holder.findViewById(R.id.description_total);
+            valueView = holder.findViewById(R.id.value_total);
+            detailView = holder.findViewById(R.id.detail_total);
+            bar = holder.findViewById(R.id.bar_total);
+            valueBuffer = new char[DataFormat.MAX_MONEY_LENGTH + 1 + currency.length()];
+        }
+
+        /**
+         * Inserisce nella vista le informazioni del mese dell'andamento mensile individuato dalla posizione fornita.
+         *
+         * @param trendPosition La posizione del mese all'interno dell'andamento mensile (0 per il meno recente).
+         */
+        void bindMonth(int trendPosition) {
+            MonthTotal monthTotal = statistics.getTrendMonth(trendPosition);
+
+            descriptionView.setText(formatMonth(resources, monthNames, monthTotal.getMonth()));
+            bindValue(monthTotal.getOutSum(), statistics.getTrendPercent(trendPosition));
+            detailView.setText(resources.getString(R.string.statistics_running_average, Statistics.RUNNING_AVERAGE_MONTHS,
+                    DataFormat.format(statistics.getRunningAverage(trendPosition))));
+        }
+
+        /**
+         * Inserisce nella vista le informazioni della categoria individuata dalla posizione fornita.
+         *
+         * @param position La posizione della categoria, in ordine di spesa decrescente.
+         */
+        void bindCategory(int position) {
+            CategoryTotal categoryTotal = statistics.getCategoryTotal(position);
+            String description = categoryTotal.getDescription();
+
+            descriptionView.setText(description != null ? description : resources.getString(R.string.statistics_targets));
+            bindValue(categoryTotal.getOutSum() != 0 ? categoryTotal.getOutSum() : categoryTotal.getInSum(),
+                    statistics.getCategoryPercent(position));
+            detailView.setText(resources.getString(R.string.statistics_count, categoryTotal.getCount()));
+        }
+
+        /**
+         * Inserisce nella vista la quantità di denaro e la percentuale fornite.
+         *
+         * @param cents La quantità di denaro, in centesimi.
+         * @param percent La percentuale visualizzata dalla barra.
+         */
+        private void bindValue(long cents, int percent) {
+            int length = DataFormat.format(cents, valueBuffer, 0);
+            valueBuffer[length++] = ' ';
+            currency.getChars(0, currency.length(), valueBuffer, length);
+            valueView.setText(valueBuffer, 0, length + currency.length());
+            bar.setProgress(Math.min(percent, 100));
+        }
+
+    }
+
+}
@@ -7,10 +7,7 @@ import android.os.Bundle;
 import com.lonedev.smartwallet.R;
 import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
 import com.lonedev.smartwallet.data.AvailableLimitCategories;
-import com.lonedev.smartwallet.data.DatabaseHandler;
-import com.lonedev.smartwallet.static_data.EntryTypeAccess;
-import com.lonedev.smartwallet.static_data.MovementPeriodAccess;
-import com.lonedev.smartwallet.support.MovementsFilter;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
 
 /**
  * Classe creata all'avvio dell'applicazione, si occupa di caricare in memoria e inizializzare le risorse necessarie.
@@ -19,11 +16,6 @@ import com.lonedev.smartwallet.support.MovementsFilter;
  */
 public class LoadingActivity extends AppCompatActivity {
 
-    /**
-     * Attributo che permette di accedere al database dell'app (sia in scrittura che in lettura).
-     */
-    private DatabaseHandler databaseHandler;
-
     /**
      * Metodo chiamato alla creazione dell'Activity.
      *
@@ -38,28 +30,14 @@ public class LoadingActivity extends AppCompatActivity {
         startActivity(new Intent(this, MainActivity.class));
     }
 
-    /**
-     * Metodo chiamato alla distruzione dell'Activity, permette di chiudere o liberare le risorse non più necessarie.
-     */
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        databaseHandler.close();
-    }
-
     /**
      * Metodo chiamato durante la creazione dell'Activity, per inizializzarne lo stato.
-     * Carica e inizializza le risorse necessarie al funzionamento dell'applicazione ed elimina movimenti e
-     * limiti di spesa non più pertinenti (precedenti l'anno e il mese corrente, rispettivamente).
+     * Carica e inizializza le risorse necessarie al funzionamento dell'applicazione. L'eliminazione di movimenti e limiti di
+     * spesa non più pertinenti è invece affidata alla manutenzione periodica del database (si veda MaintenanceScheduler).
      */
     private void initActivity() {
-        databaseHandler = new DatabaseHandler(this);
-        databaseHandler.clearOld();
-        EntryTypeAccess entryType = new EntryTypeAccess(this);
-        EntryCategoryAccess entryCategory = new EntryCategoryAccess(this);
-        MovementPeriodAccess movementPeriod = new MovementPeriodAccess(this);
+        EntryCategoryAccess entryCategory = StaticDataRegistry.getEntryCategoryAccess(this);
         AvailableLimitCategories.init(entryCategory.get(EntryCategoryAccess.NEW_LIMIT));
-        MovementsFilter.init(entryType, entryCategory, movementPeriod);
     }
 
 }
@@ -1,5 +1,6 @@
 package com.lonedev.smartwallet.activities;
 
+import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.support.design.widget.BottomNavigationView;
 import android.support.v4.app.Fragment;
@@ -14,14 +15,18 @@ import com.lonedev.smartwallet.static_data.IntentInfo;
 import com.lonedev.smartwallet.fragments.HomeFragment;
 import com.lonedev.smartwallet.fragments.MovementsFragment;
 import com.lonedev.smartwallet.fragments.ProgressesFragment;
+import com.lonedev.smartwallet.fragments.StatisticsFragment;
 import com.lonedev.smartwallet.R;
 import com.lonedev.smartwallet.static_data.MovementPeriodAccess;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
 import com.lonedev.smartwallet.static_data.WarningAccess;
+import com.lonedev.smartwallet.support.StartupTrace;
 
 /**
  * Classe creata dopo il caricamento e l'inizializzazione delle risorse (a opera di LoadingActivity).
- * Principalmente, gestisce il passaggio fra le tre schermate principali dell'applicazione (Home, Movimenti, Progressi),
- * rappresentate da altrettanti Fragment da essa racchiusi (HomeFragment, MovementsFragment, ProgressesFragment).
+ * Principalmente, gestisce il passaggio fra le quattro schermate principali dell'applicazione (Home, Movimenti, Progressi,
+ * Statistiche), rappresentate da altrettanti Fragment da essa racchiusi (HomeFragment, MovementsFragment, ProgressesFragment,
+ * StatisticsFragment).
  *
  * @author Marco Michelini
  */
@@ -63,6 +68,22 @@ public class MainActivity extends AppCompatActivity {
         checkForReachedProgress();
     }
 
+    /**
+     * Metodo chiamato quando l'Activity, già esistente, viene riportata in primo piano da un nuovo Intent (ad esempio al termine
+     * di NewEntryActivity). Le schermate non vengono ricreate: si aggiornano da sé osservando le modifiche al database (si veda
+     * la classe InvalidationTracker), per cui viene soltanto selezionata la schermata richiesta e segnalato l'eventuale
+     * raggiungimento di un progresso.
+     *
+     * @param intent Il nuovo Intent.
+     */
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        selectStartingFragment();
+        checkForReachedProgress();
+    }
+
     /**
      * Metodo chiamato durante la creazione dell'Activity, per inizializzarne lo stato.
      * Inizializza toolbar, barra di navigazione e attributi necessari ad accedere agli array statici usati dall'app.
@@ -71,13 +92,14 @@ public class MainActivity extends AppCompatActivity {
         setSupportActionBar((Toolbar) findViewById(R.id.toolbar_main));
         bottomNavigation = findViewById(R.id.navigation_bottom);
         bottomNavigation.setOnNavigationItemSelectedListener(bottomNavigationListener);
-        entryType = new EntryTypeAccess(this);
-        entryCategory = new EntryCategoryAccess(this);
-        movementPeriod = new MovementPeriodAccess(this);
+        bottomNavigation.setOnNavigationItemReselectedListener(bottomNavigationReselectedListener);
+        entryType = StaticDataRegistry.getEntryTypeAccess(this);
+        entryCategory = StaticDataRegistry.getEntryCategoryAccess(this);
+        movementPeriod = StaticDataRegistry.getMovementPeriodAccess(this);
     }
 
     /**
-     * Metodo che seleziona la schermata da visualizzare (tra Home, Movimenti e Progressi) sulla base dell'informazione passata
+     * Metodo che seleziona la schermata da visualizzare (tra Home, Movimenti, Progressi e Statistiche) sulla base dell'informazione passata
      * da un'istanza di Intent. In assenza di tale informazione, viene selezionata la schermata Home.
      */
     private void selectStartingFragment() {
@@ -85,9 +107,13 @@ public class MainActivity extends AppCompatActivity {
 
         if (intentType != 0) {
 
+            if (intentType != IntentInfo.HOME)
+                StartupTrace.cancel();
+
             if (intentType == IntentInfo.HOME) bottomNavigation.setSelectedItemId(R.id.nav_home);
             else if (intentType == IntentInfo.MOVEMENTS) bottomNavigation.setSelectedItemId(R.id.nav_movements);
             else if (intentType == IntentInfo.PROGRESSES) bottomNavigation.setSelectedItemId(R.id.nav_progresses);
+            else if (intentType == IntentInfo.STATISTICS) bottomNavigation.setSelectedItemId(R.id.nav_statistics);
 
         } else {
             bottomNavigation.setSelectedItemId(R.id.nav_home);
@@ -99,7 +125,7 @@ public class MainActivity extends AppCompatActivity {
      * all'Activity da un'istanza di Intent.
      */
     private void checkForReachedProgress() {
-        WarningAccess warningAccess = new WarningAccess(this);
+        WarningAccess warningAccess = StaticDataRegistry.getWarningAccess(this);
         int intentData = getIntent().getIntExtra(IntentInfo.WARNING, 0);
 
         if (intentData != 0) {
@@ -111,7 +137,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Listener utilizzato per rilevare l'item della barra di navigazione (Home, Movimenti, Progressi) selezionato
+     * Listener utilizzato per rilevare l'item della barra di navigazione (Home, Movimenti, Progressi, Statistiche) selezionato
      * dall'utente, e passare dunque alla relativa schermata.
      */
     private BottomNavigationView.OnNavigationItemSelectedListener bottomNavigationListener =
@@ -131,6 +157,9 @@ public class MainActivity extends AppCompatActivity {
                         case R.id.nav_progresses:
                             selectedFragment = new ProgressesFragment();
                             break;
+                        case R.id.nav_statistics:
+                            selectedFragment = new StatisticsFragment();
+                            break;
                     }
 
                     getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container_main, selectedFragment).commit();
@@ -138,6 +167,22 @@ public class MainActivity extends AppCompatActivity {
                 }
             };
 
+    /**
+     * Listener chiamato quando l'utente (o selectStartingFragment()) seleziona l'item della barra di navigazione già
+     * selezionato. La schermata attuale viene mantenuta, senza essere ricreata; se non è ancora visualizzata alcuna schermata
+     * (alla creazione dell'Activity, l'item della schermata Home risulta già selezionato), viene visualizzata quella dell'item.
+     */
+    private BottomNavigationView.OnNavigationItemReselectedListener bottomNavigationReselectedListener =
+            new BottomNavigationView.OnNavigationItemReselectedListener() {
+
+                @Override
+                public void onNavigationItemReselected(@NonNull MenuItem menuItem) {
+                    if (getSupportFragmentManager().findFragmentById(R.id.fragment_container_main) == null)
+                        bottomNavigationListener.onNavigationItemSelected(menuItem);
+
+                }
+            };
+
     /**
      * Ritorna un riferimento a entryType, evitando ai Fragment racchiusi nell'Activity di caricare nuovamente
      * in memoria l'array statico contenente i possibili tipi di Entry.
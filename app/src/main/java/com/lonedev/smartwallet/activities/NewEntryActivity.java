@@ -20,12 +20,16 @@ import com.lonedev.smartwallet.static_data.EntryTypeAccess;
 import com.lonedev.smartwallet.static_data.IntentInfo;
 import com.lonedev.smartwallet.data.Limit;
 import com.lonedev.smartwallet.data.Movement;
+import com.lonedev.smartwallet.data.Progress;
+import com.lonedev.smartwallet.data.RecordResult;
 import com.lonedev.smartwallet.data.AvailableLimitCategories;
+import com.lonedev.smartwallet.data.DatabaseExecutor;
 import com.lonedev.smartwallet.data.Target;
 import com.lonedev.smartwallet.fragments.NewMovementFragment;
 import com.lonedev.smartwallet.fragments.NewProgressFragment;
 import com.lonedev.smartwallet.UI_components.Numpad;
 import com.lonedev.smartwallet.data.DatabaseHandler;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
 import com.lonedev.smartwallet.static_data.WarningAccess;
 
 /**
@@ -50,14 +54,22 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
     private int intentType;
 
     /**
-     * L'intent che sarà poi utilizzato per la creazione di una nuova Activity.
+     * L'intent che sarà poi utilizzato per tornare a MainActivity. Questa non viene ricreata: la sua istanza esistente torna in
+     * primo piano (si veda MainActivity.onNewIntent(Intent)), e le schermate che visualizza si aggiornano da sé osservando le
+     * modifiche al database (si veda la classe InvalidationTracker).
      */
     private Intent outputIntent;
 
     /**
-     * Permette di accedere al database dell'app (sia in scrittura che in lettura).
+     * Permette di registrare i movimenti e i progressi al di fuori del thread principale.
      */
-    private DatabaseHandler databaseHandler;
+    private DatabaseExecutor databaseExecutor;
+
+    /**
+     * Indica se è in corso la registrazione di un movimento, oppure la creazione o la modifica di un progresso. Le conferme
+     * successive vengono ignorate fino al suo termine.
+     */
+    private boolean recording;
 
     /**
      * Prende in input il nome del nuovo obiettivo.
@@ -151,15 +163,6 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
         loadFragment();
     }
 
-    /**
-     * Metodo chiamato alla distruzione dell'Activity, permette di chiudere o liberare le risorse non più necessarie.
-     */
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        databaseHandler.close();
-    }
-
     /**
      * Metodo chiamato durante la creazione dell'Activity, per inizializzarne lo stato.
      */
@@ -168,11 +171,12 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
         newEntryValue = findViewById(R.id.value_new_entry);
         numpad = new Numpad((GridLayout) findViewById(R.id.layout_numpad), newEntryValue);
         intentType = getIntent().getIntExtra(IntentInfo.SCREEN, 0);
-        databaseHandler = new DatabaseHandler(this);
+        databaseExecutor = DatabaseExecutor.getInstance(this);
         outputIntent = new Intent(this, MainActivity.class);
-        warning = new WarningAccess(this);
-        entryType = new EntryTypeAccess(this);
-        entryCategory = new EntryCategoryAccess(this);
+        outputIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        warning = StaticDataRegistry.getWarningAccess(this);
+        entryType = StaticDataRegistry.getEntryTypeAccess(this);
+        entryCategory = StaticDataRegistry.getEntryCategoryAccess(this);
     }
 
     /**
@@ -256,20 +260,23 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
      * Metodo che si occupa della creazione di un nuovo movimento.
      * In particolare:
      *      1. Verifica che la selezione dell'utente sia valida.
-     *      2. Crea un nuovo movimento, inserendolo nel database dell'applicazione.
-     *      3. Aggiorna il saldo disponibile all'interno del database.
-     *      4. Incrementa il limite di spesa o l'obiettivo eventualmente associato al movimento e ne verifica il raggiungimento.
+     *      2. Crea un nuovo movimento e lo registra nel database dell'applicazione, aggiornando in un'unica transazione il saldo
+     *         disponibile e il limite di spesa o l'obiettivo eventualmente associato al movimento. La registrazione è eseguita
+     *         dal thread delle scritture (si veda la classe DatabaseExecutor), che può essere occupato ad esempio da
+     *         un'importazione di movimenti: il thread principale non attende mai il database.
+     *      3. Al termine della registrazione, verifica il raggiungimento di tale progresso e torna a MainActivity (si veda
+     *         onMovementRecorded(RecordResult, int)).
      */
     private void createNewMovement() {
         String type = (String) newMovementType.getSelectedItem(), category = (String) newMovementCategory.getSelectedItem(),
-                targetName = (String) this.targetName.getSelectedItem(), stringValue = newEntryValue.getText().toString();
+                targetName = (String) this.targetName.getSelectedItem();
         int typeID = (int) newMovementType.getSelectedItemId(), categoryID = (int) newMovementCategory.getSelectedItemId(),
                 targetNameID = (int) this.targetName.getSelectedItemId();
-        float value = -1;
-
-        if (!stringValue.isEmpty()) value = Float.valueOf(stringValue);
+        long value = numpad.getValue();
 
-        if (value == -1 || numpad.getState() != Numpad.VALID_VALUE) {
+        if (recording) {
+            return;
+        } else if (value == -1 || numpad.getState() != Numpad.VALID_VALUE) {
             warning.show(WarningAccess.INVALID_VALUE);
         } else if (typeID == 0) {
             warning.show(WarningAccess.MOVEMENT_TYPE_NOT_SELECTED);
@@ -278,42 +285,80 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
         } else if (typeID == 3 && targetNameID == 0) {
             warning.show( WarningAccess.TARGET_NOT_SELECTED);
         } else {
+            Movement movement = null;
+            String progressKey = null;
+            int progressWarning = IntentInfo.LIMIT_REACHED;
+
             if (type.equals(entryType.get(EntryTypeAccess.IN))) {
-                databaseHandler.increaseBalance(value);
-                databaseHandler.insert(new Movement(category, value));
-                outputIntent.putExtra(IntentInfo.SCREEN, IntentInfo.MOVEMENTS);
-                startActivity(outputIntent);
+                movement = new Movement(category, value);
             } else if (type.equals(entryType.get(EntryTypeAccess.OUT))) {
+                movement = new Movement(category, -1 * value);
+                progressKey = category;
+            } else if (type.equals(entryType.get(EntryTypeAccess.TARGET))) {
+                movement = new Movement(targetName, -1 * value);
+                progressKey = targetName;
+                progressWarning = IntentInfo.TARGET_REACHED;
+            }
 
-                if (databaseHandler.getBalance() - value >= 0) {
-                    databaseHandler.increaseBalance(-1 * value);
-                    databaseHandler.insert(new Movement(category, -1 * value));
-                    outputIntent.putExtra(IntentInfo.SCREEN, IntentInfo.MOVEMENTS);
+            if (movement != null)
+                recordMovement(movement, progressKey, progressWarning);
 
-                    if (databaseHandler.increaseProgress(category, value))
-                        outputIntent.putExtra(IntentInfo.WARNING, IntentInfo.LIMIT_REACHED);
+        }
+    }
 
-                    startActivity(outputIntent);
-                } else {
-                    warning.show( WarningAccess.NOT_ENOUGH_MONEY);
-                }
+    /**
+     * Registra il movimento fornito attraverso il thread delle scritture (si veda DatabaseHandler.recordMovement(Movement,
+     * String)) e ne consegna l'esito a onMovementRecorded(RecordResult, int). La registrazione non viene mai annullata: se
+     * l'Activity viene distrutta nel frattempo, il movimento viene comunque registrato, e le schermate di MainActivity si
+     * aggiornano da sé.
+     *
+     * @param movement Il movimento da registrare.
+     * @param progressKey La descrizione del progresso da incrementare, oppure null.
+     * @param progressWarning L'avviso da visualizzare se il progresso raggiunge il suo limite massimo.
+     */
+    private void recordMovement(final Movement movement, final String progressKey, final int progressWarning) {
+        recording = true;
 
-            } else if (type.equals(entryType.get(EntryTypeAccess.TARGET))) {
+        databaseExecutor.write(new DatabaseExecutor.Operation<RecordResult>() {
 
-                if (databaseHandler.getBalance() - value >= 0) {
-                    databaseHandler.increaseBalance(-1 * value);
-                    databaseHandler.insert(new Movement(targetName, -1 * value));
-                    outputIntent.putExtra(IntentInfo.SCREEN, IntentInfo.MOVEMENTS);
+            @Override
+            public RecordResult run(DatabaseHandler databaseHandler) {
+                return databaseHandler.recordMovement(movement, progressKey);
+            }
+        }, new DatabaseExecutor.Callback<RecordResult>() {
 
-                    if (databaseHandler.increaseProgress(targetName, value))
-                        outputIntent.putExtra(IntentInfo.WARNING, IntentInfo.TARGET_REACHED);
+            @Override
+            public void onResult(RecordResult result) {
+                recording = false;
 
-                    startActivity(outputIntent);
-                } else {
-                    warning.show( WarningAccess.NOT_ENOUGH_MONEY);
-                }
+                if (!isDestroyed())
+                    onMovementRecorded(result, progressWarning);
 
             }
+        });
+    }
+
+    /**
+     * Metodo chiamato sul thread principale al termine della registrazione di un movimento. Se il movimento è stato
+     * registrato, torna a MainActivity, segnalando l'eventuale raggiungimento del progresso associato; altrimenti avvisa
+     * l'utente che il saldo disponibile è insufficiente.
+     *
+     * @param result L'esito della registrazione, oppure null se non è stato possibile accedere al database.
+     * @param progressWarning L'avviso da visualizzare se il progresso raggiunge il suo limite massimo.
+     */
+    private void onMovementRecorded(RecordResult result, int progressWarning) {
+        if (result == null)
+            return;
+
+        if (result.isRecorded()) {
+            outputIntent.putExtra(IntentInfo.SCREEN, IntentInfo.MOVEMENTS);
+
+            if (result.isProgressReached())
+                outputIntent.putExtra(IntentInfo.WARNING, progressWarning);
+
+            startActivity(outputIntent);
+        } else {
+            warning.show(WarningAccess.NOT_ENOUGH_MONEY);
         }
     }
 
@@ -321,18 +366,18 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
      * Metodo che si occupa della creazione di un nuovo progresso.
      * In particolare:
      *      1. Verifica che la selezione dell'utente sia valida.
-     *      2. Crea un nuovo progresso, inserendolo nel database dell'applicazione. Se questo è un limite, rimuove la sua categoria dalla lista delle categorie monitorabili
-     *         (si veda la classe AvailableLimitCategories).
+     *      2. Crea un nuovo progresso e lo inserisce nel database dell'applicazione attraverso il thread delle scritture (si
+     *         veda insertProgress(Progress)), che verifica anche che non esista già un obiettivo con lo stesso nome.
      */
     private void createNewProgress() {
         String type = (String) newProgressType.getSelectedItem(), category = (String) newLimitCategory.getSelectedItem(),
-                targetName = newTargetName.getText().toString(), stringMax = newEntryValue.getText().toString();
+                targetName = newTargetName.getText().toString();
         int typeID = (int) newProgressType.getSelectedItemId(), categoryID = (int) newLimitCategory.getSelectedItemId();
-        float max = -1;
+        long max = numpad.getValue();
 
-        if (!stringMax.isEmpty()) max = Float.valueOf(stringMax);
-
-        if (max == -1 || numpad.getState() != Numpad.VALID_VALUE) {
+        if (recording) {
+            return;
+        } else if (max == -1 || numpad.getState() != Numpad.VALID_VALUE) {
             warning.show(WarningAccess.INVALID_VALUE);
         } else if (typeID == 0) {
             warning.show(WarningAccess.PROGRESS_TYPE_NOT_SELECTED);
@@ -340,22 +385,71 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
             warning.show(WarningAccess.LIMIT_CATEGORY_NOT_SELECTED);
         } else if (typeID == 2 && targetName.isEmpty()) {
             warning.show(WarningAccess.EMPTY_NAME_TARGET);
-        } else if (typeID == 2 && databaseHandler.getTargetNames().contains(targetName)) {
-            warning.show(WarningAccess.DUPLICATE_TARGET);
         } else {
 
-            if (type.equals(entryType.get(EntryTypeAccess.LIMIT))) {
-                AvailableLimitCategories.remove(category);
-                databaseHandler.insert(new Limit(category, max));
+            if (type.equals(entryType.get(EntryTypeAccess.LIMIT)))
+                insertProgress(new Limit(category, max));
+            else if (type.equals(entryType.get(EntryTypeAccess.TARGET)))
+                insertProgress(new Target(targetName, max));
 
-            } else if (type.equals(entryType.get(EntryTypeAccess.TARGET))) {
-                databaseHandler.insert(new Target(targetName, max));
+        }
+
+    }
+
+    /**
+     * Inserisce il progresso fornito nel database attraverso il thread delle scritture, a meno che non si tratti di un
+     * obiettivo il cui nome è già in uso: la verifica avviene sullo stesso thread, per cui nessun'altra scrittura può
+     * inserire lo stesso obiettivo nel frattempo. Se il progresso è un limite ed è stato inserito, la sua categoria viene
+     * rimossa dalla lista delle categorie monitorabili (si veda la classe AvailableLimitCategories). L'esito viene consegnato
+     * a onProgressWritten(Boolean).
+     *
+     * @param progress Il progresso da inserire.
+     */
+    private void insertProgress(final Progress progress) {
+        recording = true;
+
+        databaseExecutor.write(new DatabaseExecutor.Operation<Boolean>() {
+
+            @Override
+            public Boolean run(DatabaseHandler databaseHandler) {
+                if (progress instanceof Target && databaseHandler.getTargetNames().contains(progress.getDescription()))
+                    return false;
+
+                databaseHandler.insert(progress);
+                return true;
             }
+        }, new DatabaseExecutor.Callback<Boolean>() {
 
+            @Override
+            public void onResult(Boolean inserted) {
+                recording = false;
+
+                if (inserted != null && inserted && progress instanceof Limit)
+                    AvailableLimitCategories.remove(progress.getDescription());
+
+                if (!isDestroyed())
+                    onProgressWritten(inserted);
+
+            }
+        });
+    }
+
+    /**
+     * Metodo chiamato sul thread principale al termine della creazione o della modifica di un progresso. Se il progresso è
+     * stato scritto, torna a MainActivity; altrimenti avvisa l'utente che esiste già un obiettivo con lo stesso nome.
+     *
+     * @param written L'esito della scrittura, oppure null se non è stato possibile accedere al database.
+     */
+    private void onProgressWritten(Boolean written) {
+        if (written == null)
+            return;
+
+        if (written) {
             outputIntent.putExtra(IntentInfo.SCREEN, IntentInfo.PROGRESSES);
             startActivity(outputIntent);
+        } else {
+            warning.show(WarningAccess.DUPLICATE_TARGET);
         }
-
     }
 
     /**
@@ -363,20 +457,41 @@ public class NewEntryActivity extends AppCompatActivity implements NewMovementFr
      * mentre il nuovo massimo è quello impostato dall'utente.
      * In particolare:
      *      1. Verifica che la selezione dell'utente sia valida.
-     *      2. Aggiorna il progresso all'interno del database.
+     *      2. Aggiorna il progresso all'interno del database, attraverso il thread delle scritture, e al termine torna a
+     *         MainActivity (si veda onProgressWritten(Boolean)).
      */
     private void editProgress() {
-        String description = getIntent().getStringExtra(IntentInfo.TEXT);
-        float max = Float.valueOf(newEntryValue.getText().toString());
+        final String description = getIntent().getStringExtra(IntentInfo.TEXT);
+        final long max = numpad.getValue();
 
-        if (numpad.getState() == Numpad.VALID_VALUE) {
-            databaseHandler.updateProgress(description, max);
-            outputIntent.putExtra(IntentInfo.SCREEN, IntentInfo.PROGRESSES);
-            startActivity(outputIntent);
-        } else {
+        if (recording)
+            return;
+
+        if (numpad.getState() != Numpad.VALID_VALUE) {
             warning.show(WarningAccess.INVALID_VALUE);
+            return;
         }
 
+        recording = true;
+
+        databaseExecutor.write(new DatabaseExecutor.Operation<Boolean>() {
+
+            @Override
+            public Boolean run(DatabaseHandler databaseHandler) {
+                databaseHandler.updateProgress(description, max);
+                return true;
+            }
+        }, new DatabaseExecutor.Callback<Boolean>() {
+
+            @Override
+            public void onResult(Boolean updated) {
+                recording = false;
+
+                if (!isDestroyed())
+                    onProgressWritten(updated);
+
+            }
+        });
     }
 
     /**
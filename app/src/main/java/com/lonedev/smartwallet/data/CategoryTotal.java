@@ -0,0 +1,89 @@
+package com.lonedev.smartwallet.data;
+
+/**
+ * Classe che rappresenta i totali dei movimenti di una categoria in un mese, letti dalla tabella MONTHLY_TOTALS (si veda
+ * DatabaseHandler.getCategoryTotals(int)). Un CategoryTotal non viene mai modificato dopo la sua creazione.
+ *
+ * @author Marco Michelini
+ */
+public class CategoryTotal {
+
+    /**
+     * La chiave della categoria (si veda la classe EntryCategoryAccess), oppure EntryCategoryAccess.NONE per i movimenti
+     * associati agli obiettivi.
+     */
+    private int categoryId;
+
+    /**
+     * La descrizione della categoria nella lingua attuale del dispositivo, oppure null per i movimenti associati agli obiettivi.
+     */
+    private String description;
+
+    /**
+     * La somma dei movimenti in entrata, in centesimi.
+     */
+    private long inSum;
+
+    /**
+     * La somma dei movimenti in uscita, in centesimi (sempre positiva).
+     */
+    private long outSum;
+
+    /**
+     * Il numero di movimenti.
+     */
+    private int count;
+
+    /**
+     * Inizializza un nuovo CategoryTotal con i parametri forniti.
+     *
+     * @param categoryId La chiave della categoria.
+     * @param description La descrizione della categoria, oppure null.
+     * @param inSum La somma dei movimenti in entrata, in centesimi.
+     * @param outSum La somma dei movimenti in uscita, in centesimi.
+     * @param count Il numero di movimenti.
+     */
+    CategoryTotal(int categoryId, String description, long inSum, long outSum, int count) {
+        this.categoryId = categoryId;
+        this.description = description;
+        this.inSum = inSum;
+        this.outSum = outSum;
+        this.count = count;
+    }
+
+    /**
+     * Ritorna la chiave della categoria, oppure EntryCategoryAccess.NONE per i movimenti associati agli obiettivi.
+     */
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Ritorna la descrizione della categoria, oppure null per i movimenti associati agli obiettivi.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Ritorna la somma dei movimenti in entrata, in centesimi.
+     */
+    public long getInSum() {
+        return inSum;
+    }
+
+    /**
+     * Ritorna la somma dei movimenti in uscita, in centesimi (sempre positiva).
+     */
+    public long getOutSum() {
+        return outSum;
+    }
+
+    /**
+     * Ritorna il numero di movimenti.
+     */
+    public int getCount() {
+        return count;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.lonedev.smartwallet.data;
+
+/**
+ * Classe che rappresenta le informazioni visualizzate nella schermata Home: il saldo disponibile, i limiti di spesa rilevanti
+ * e gli obiettivi rilevanti, vale a dire quelli più vicini ad essere completati.
+ * Le tre informazioni sono lette all'interno di una stessa transazione, per cui sono sempre coerenti fra loro (si veda
+ * DatabaseHandler.getDashboard(int, int)).
+ * Un Dashboard non viene mai modificato dopo la sua creazione.
+ *
+ * @author Marco Michelini
+ */
+public class Dashboard {
+
+    /**
+     * Il saldo disponibile, in centesimi.
+     */
+    private long balance;
+
+    /**
+     * L'istantanea dei limiti di spesa rilevanti, in ordine di percentuale di completamento decrescente.
+     */
+    private ProgressesSnapshot relevantLimits;
+
+    /**
+     * L'istantanea degli obiettivi rilevanti, in ordine di percentuale di completamento decrescente.
+     */
+    private ProgressesSnapshot relevantTargets;
+
+    /**
+     * Inizializza un nuovo Dashboard con i parametri forniti.
+     *
+     * @param balance Il saldo disponibile, in centesimi.
+     * @param relevantLimits L'istantanea dei limiti di spesa rilevanti.
+     * @param relevantTargets L'istantanea degli obiettivi rilevanti.
+     */
+    Dashboard(long balance, ProgressesSnapshot relevantLimits, ProgressesSnapshot relevantTargets) {
+        this.balance = balance;
+        this.relevantLimits = relevantLimits;
+        this.relevantTargets = relevantTargets;
+    }
+
+    /**
+     * Ritorna il saldo disponibile, in centesimi.
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Ritorna l'istantanea dei limiti di spesa rilevanti, in ordine di percentuale di completamento decrescente.
+     */
+    public ProgressesSnapshot getRelevantLimits() {
+        return relevantLimits;
+    }
+
+    /**
+     * Ritorna l'istantanea degli obiettivi rilevanti, in ordine di percentuale di completamento decrescente.
+     */
+    public ProgressesSnapshot getRelevantTargets() {
+        return relevantTargets;
+    }
+
+}
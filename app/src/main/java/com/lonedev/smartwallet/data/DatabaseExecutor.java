@@ -0,0 +1,453 @@
+package com.lonedev.smartwallet.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
+import com.lonedev.smartwallet.static_data.WarningAccess;
+import com.lonedev.smartwallet.support.MovementsFilter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classe che esegue le operazioni sul database dell'app al di fuori del thread principale, consegnandone poi il risultato
+ * sul thread principale.
+ * Le scritture sono eseguite una alla volta, nell'ordine in cui sono state richieste, da un unico thread; le letture sono
+ * invece distribuite su un numero limitato di thread, e possono procedere in parallelo alle scritture grazie al write-ahead
+ * logging abilitato da DatabaseHandler.
+ * Ogni operazione ritorna un Task, che permette di annullarla (ad esempio quando la vista di un Fragment viene distrutta):
+ * il risultato di un'operazione annullata non viene consegnato e, se si tratta di un cursore, viene chiuso.
+ * Se un'operazione termina con un'eccezione, l'errore viene riportato nel log e segnalato all'utente, e al destinatario
+ * viene consegnato null: il thread che la eseguiva resta disponibile per le operazioni successive.
+ *
+ * @author Marco Michelini
+ */
+public class DatabaseExecutor {
+
+    /**
+     * Il tag con cui vengono riportati nel log gli errori delle operazioni.
+     */
+    private static final String TAG = "DatabaseExecutor";
+
+    /**
+     * Il numero massimo di thread dedicati alle letture.
+     */
+    private static final int READER_THREADS = 2;
+
+    /**
+     * Il tempo, in secondi, dopo il quale un thread inattivo viene terminato.
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * L'unica istanza di DatabaseExecutor, condivisa da tutte le Activity e i Fragment dell'applicazione.
+     */
+    private static DatabaseExecutor instance;
+
+    /**
+     * Attributo che permette di accedere al database dell'app (sia in scrittura che in lettura).
+     */
+    private DatabaseHandler databaseHandler;
+
+    /**
+     * L'esecutore delle scritture, composto da un unico thread.
+     */
+    private ExecutorService writer;
+
+    /**
+     * L'esecutore delle letture, composto da al più READER_THREADS thread.
+     */
+    private ExecutorService readers;
+
+    /**
+     * Handler associato al thread principale, usato per consegnare i risultati delle operazioni.
+     */
+    private Handler mainHandler;
+
+    /**
+     * Attributo che permette di leggere i file scelti dall'utente, ad esempio quelli da importare.
+     */
+    private ContentResolver contentResolver;
+
+    /**
+     * Il contesto dell'applicazione, usato per segnalare all'utente gli errori delle operazioni.
+     */
+    private Context context;
+
+    /**
+     * Operazione da eseguire sul database dell'app.
+     *
+     * @param <T> Il tipo del risultato dell'operazione.
+     */
+    public interface Operation<T> {
+
+        /**
+         * Esegue l'operazione e ne ritorna il risultato. Chiamato al di fuori del thread principale.
+         *
+         * @param databaseHandler Attributo che permette di accedere al database dell'app.
+         */
+        T run(DatabaseHandler databaseHandler);
+
+    }
+
+    /**
+     * Riceve il risultato di un'operazione sul database dell'app.
+     *
+     * @param <T> Il tipo del risultato dell'operazione.
+     */
+    public interface Callback<T> {
+
+        /**
+         * Metodo chiamato sul thread principale al termine dell'operazione, se questa non è stata annullata.
+         *
+         * @param result Il risultato dell'operazione, oppure null se l'operazione è terminata con un'eccezione.
+         */
+        void onResult(T result);
+
+    }
+
+    /**
+     * Riceve l'avanzamento di un'operazione di lunga durata, come l'esportazione dei movimenti.
+     */
+    public interface Progress {
+
+        /**
+         * Metodo chiamato sul thread principale ogni volta che la percentuale di completamento dell'operazione aumenta, se
+         * questa non è stata annullata.
+         *
+         * @param percent La percentuale di completamento dell'operazione.
+         */
+        void onProgress(int percent);
+
+    }
+
+    /**
+     * Riceve l'avanzamento di un'operazione di lunga durata sul thread che la esegue (si veda post(Task, Progress)).
+     */
+    interface ProgressCounter {
+
+        /**
+         * Metodo chiamato periodicamente durante l'operazione, sul thread che la esegue.
+         *
+         * @param done La quantità di lavoro svolto finora (ad esempio, il numero di movimenti esportati).
+         * @param total La quantità di lavoro complessiva, oppure un valore non positivo se non è nota.
+         */
+        void onProgress(long done, long total);
+
+    }
+
+    /**
+     * Rappresenta un'operazione richiesta a DatabaseExecutor, e permette di annullarla.
+     */
+    public static class Task {
+
+        /**
+         * Indica se l'operazione è stata annullata.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Annulla l'operazione. Se questa non è ancora iniziata non verrà eseguita; in ogni caso, il suo risultato non verrà
+         * consegnato.
+         * Deve essere chiamato sul thread principale.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Ritorna true se l'operazione è stata annullata.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+    }
+
+    /**
+     * Inizializza un nuovo DatabaseExecutor con il contesto fornito.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     */
+    private DatabaseExecutor(Context context) {
+        databaseHandler = DatabaseHandler.getInstance(context);
+        writer = createExecutor(1, "writer");
+        readers = createExecutor(READER_THREADS, "reader");
+        mainHandler = new Handler(Looper.getMainLooper());
+        contentResolver = context.getContentResolver();
+        this.context = context;
+    }
+
+    /**
+     * Ritorna l'unica istanza di DatabaseExecutor, creandola se necessario.
+     *
+     * @param context Un qualsiasi contesto dell'app. Viene conservato soltanto il contesto dell'applicazione.
+     */
+    public static synchronized DatabaseExecutor getInstance(Context context) {
+        if (instance == null)
+            instance = new DatabaseExecutor(context.getApplicationContext());
+
+        return instance;
+    }
+
+    /**
+     * Crea un esecutore composto da al più threads thread a bassa priorità, terminati dopo KEEP_ALIVE_SECONDS secondi di
+     * inattività.
+     *
+     * @param threads Il numero massimo di thread dell'esecutore.
+     * @param name Il nome dei thread dell'esecutore.
+     */
+    private ExecutorService createExecutor(int threads, final String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "database-" + name + "-" + count.incrementAndGet());
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Esegue l'operazione fornita, che si limita a leggere dal database, e ne consegna il risultato a callback.
+     *
+     * @param operation L'operazione da eseguire.
+     * @param callback Il destinatario del risultato dell'operazione, oppure null.
+     */
+    public <T> Task read(Operation<T> operation, Callback<T> callback) {
+        return submit(readers, operation, callback);
+    }
+
+    /**
+     * Esegue l'operazione fornita, che modifica il database, e ne consegna il risultato a callback.
+     *
+     * @param operation L'operazione da eseguire.
+     * @param callback Il destinatario del risultato dell'operazione, oppure null.
+     */
+    public <T> Task write(Operation<T> operation, Callback<T> callback) {
+        return submit(writer, operation, callback);
+    }
+
+    /**
+     * Legge l'istantanea dei progressi di tipo cursorType (si veda DatabaseHandler.getProgressesSnapshot(String)) e la
+     * consegna a callback. Il cursore da cui viene creata è chiuso prima della consegna, per cui il destinatario non deve
+     * liberare alcuna risorsa.
+     *
+     * @param cursorType Il tipo dei progressi da leggere.
+     * @param callback Il destinatario dell'istantanea.
+     */
+    public Task queryProgresses(final String cursorType, Callback<ProgressesSnapshot> callback) {
+        return read(new Operation<ProgressesSnapshot>() {
+
+            @Override
+            public ProgressesSnapshot run(DatabaseHandler databaseHandler) {
+                return databaseHandler.getProgressesSnapshot(cursorType);
+            }
+        }, callback);
+    }
+
+    /**
+     * Esporta i movimenti nel file CSV fornito (si veda DatabaseHandler.exportMovements(File, MovementsFilter.Snapshot, Task,
+     * ProgressCounter)),
+     * consegnandone l'avanzamento a progress e il numero di movimenti esportati (oppure -1, in caso di errore) a callback.
+     * L'esportazione è eseguita da uno dei thread di lettura, e il suo annullamento viene controllato prima della lettura di
+     * ogni pagina di movimenti: il file di destinazione resta allora invariato.
+     *
+     * @param file Il file di destinazione.
+     * @param filter I filtri della schermata Movimenti da applicare (si veda MovementsFilter.snapshot()), oppure null.
+     * @param progress Il destinatario dell'avanzamento dell'esportazione, oppure null.
+     * @param callback Il destinatario del numero di movimenti esportati, oppure null.
+     */
+    public Task exportMovements(final File file, final MovementsFilter.Snapshot filter, Progress progress,
+                                Callback<Integer> callback) {
+        final Task task = new Task();
+        final ProgressCounter counter = post(task, progress);
+
+        return submit(readers, task, new Operation<Integer>() {
+
+            @Override
+            public Integer run(DatabaseHandler databaseHandler) {
+                return databaseHandler.exportMovements(file, filter, task, counter);
+            }
+        }, callback);
+    }
+
+    /**
+     * Importa i movimenti del file CSV individuato da uri (si veda DatabaseHandler.importMovements(Reader, long, int, Task,
+     * ProgressCounter)), in gruppi di batchSize movimenti, consegnandone l'avanzamento a progress e l'esito (oppure null, se
+     * non è possibile accedere al database o aprire il file) a callback.
+     * Trattandosi di una scrittura, l'importazione è eseguita dal thread delle scritture, che resta occupato fino al suo
+     * termine. Il suo annullamento viene controllato prima di ogni gruppo: i gruppi già confermati restano nel database.
+     *
+     * @param uri Il file da importare.
+     * @param batchSize Il numero di movimenti inseriti da ciascuna transazione.
+     * @param progress Il destinatario dell'avanzamento dell'importazione, oppure null.
+     * @param callback Il destinatario dell'esito dell'importazione, oppure null.
+     */
+    public Task importMovements(final Uri uri, final int batchSize, Progress progress, Callback<ImportResult> callback) {
+        final Task task = new Task();
+        final ProgressCounter counter = post(task, progress);
+
+        return submit(writer, task, new Operation<ImportResult>() {
+
+            @Override
+            public ImportResult run(DatabaseHandler databaseHandler) {
+                AssetFileDescriptor descriptor = null;
+
+                try {
+                    descriptor = contentResolver.openAssetFileDescriptor(uri, "r");
+
+                    if (descriptor == null)
+                        return null;
+
+                    Reader reader = new InputStreamReader(descriptor.createInputStream(), "UTF-8");
+                    return databaseHandler.importMovements(reader, descriptor.getLength(), batchSize, task, counter);
+                } catch (IOException | SecurityException e) {
+                    return null;
+                } finally {
+                    if (descriptor != null) {
+                        try {
+                            descriptor.close();
+                        } catch (IOException ignored) {}
+                    }
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * Ritorna un ProgressCounter che converte l'avanzamento di un'operazione in una percentuale di completamento e la
+     * consegna a progress sul thread principale, soltanto quando aumenta e finché l'operazione non viene annullata.
+     *
+     * @param task Il task dell'operazione.
+     * @param progress Il destinatario dell'avanzamento, oppure null.
+     */
+    private ProgressCounter post(final Task task, final Progress progress) {
+        return new ProgressCounter() {
+
+            private int lastPercent = -1;
+
+            @Override
+            public void onProgress(long done, long total) {
+                final int percent = total > 0 ? (int) Math.min(100 * done / total, 100) : 0;
+
+                if (progress == null || percent <= lastPercent)
+                    return;
+
+                lastPercent = percent;
+                mainHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (!task.isCancelled())
+                            progress.onProgress(percent);
+
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Accoda l'operazione fornita all'esecutore fornito.
+     *
+     * @param executor L'esecutore dell'operazione.
+     * @param operation L'operazione da eseguire.
+     * @param callback Il destinatario del risultato dell'operazione, oppure null.
+     */
+    private <T> Task submit(ExecutorService executor, Operation<T> operation, Callback<T> callback) {
+        return submit(executor, new Task(), operation, callback);
+    }
+
+    /**
+     * Accoda l'operazione fornita, rappresentata dal task fornito, all'esecutore fornito.
+     * Le eccezioni lanciate dall'operazione vengono intercettate, in modo che il thread dell'esecutore non termini e che il
+     * destinatario riceva comunque un risultato (null).
+     *
+     * @param executor L'esecutore dell'operazione.
+     * @param task Il task che rappresenta l'operazione.
+     * @param operation L'operazione da eseguire.
+     * @param callback Il destinatario del risultato dell'operazione, oppure null.
+     */
+    private <T> Task submit(ExecutorService executor, final Task task, final Operation<T> operation,
+                            final Callback<T> callback) {
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                if (task.isCancelled())
+                    return;
+
+                T operationResult = null;
+                boolean failed = false;
+
+                try {
+                    operationResult = operation.run(databaseHandler);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Database operation failed", e);
+                    failed = true;
+                }
+
+                final T result = operationResult;
+                final boolean showError = failed;
+
+                mainHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (showError)
+                            StaticDataRegistry.getWarningAccess(context).show(WarningAccess.DATABASE_ERROR);
+
+                        if (task.isCancelled() || callback == null)
+                            release(result);
+                        else
+                            callback.onResult(result);
+                    }
+                });
+            }
+        });
+
+        return task;
+    }
+
+    /**
+     * Libera le risorse associate al risultato di un'operazione non consegnato (ad esempio, chiude un cursore).
+     *
+     * @param result Il risultato da liberare.
+     */
+    private void release(Object result) {
+        if (result instanceof Closeable) {
+            try {
+                ((Closeable) result).close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+}
@@ -2,24 +2,44 @@ package com.lonedev.smartwallet.data;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LongSparseArray;
+import android.util.SparseLongArray;
 
+import com.lonedev.smartwallet.R;
 import com.lonedev.smartwallet.static_data.CursorType;
 import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
 import com.lonedev.smartwallet.static_data.EntryTypeAccess;
 import com.lonedev.smartwallet.static_data.MovementPeriodAccess;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
 import com.lonedev.smartwallet.static_data.WarningAccess;
+import com.lonedev.smartwallet.support.EpochDays;
 import com.lonedev.smartwallet.support.MovementsFilter;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Classe che permette di gestire il database dell'applicazione, fornendovi un accesso in scrittura e in lettura.
+ * Ne esiste un'unica istanza per processo (si veda getInstance(Context)), la cui connessione al database viene aperta
+ * all'avvio dell'applicazione e mantenuta per tutta la sua durata (si veda la classe SmartWalletApplication).
  *
  * @author Marco Michelini
  */
@@ -35,56 +55,162 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      * L'attuale versione del database.
      * Permette di rilasciare aggiornamenti alla struttura del database in maniera sicura ed efficace.
      */
-    private static final int DB_VERSION = 1;
+    private static final int DB_VERSION = 9;
 
     /**
-     * Il numero di colonne della tabella MOVEMENTS all'interno del database.
+     * Espressione SQL che ricava dall'epoch day di un movimento (colonna EPOCH_DAY) l'epoch day del primo giorno del suo mese,
+     * usato come chiave della tabella BALANCE_SNAPSHOTS.
      */
-    private static final int MOVEMENTS_TABLE_COLUMNS = 6;
+    private static final String MOVEMENT_MONTH = "CAST(julianday(EPOCH_DAY + 2440587.5, 'start of month') - 2440587.5 AS INTEGER)";
 
     /**
-     * Il numero di colonne della tabella LIMITS all'interno del database.
+     * Espressione SQL che calcola la categoria di un movimento nella tabella MONTHLY_TOTALS: la sua chiave, oppure
+     * EntryCategoryAccess.NONE per i movimenti associati a un obiettivo.
      */
-    private static final int LIMITS_TABLE_COLUMNS = 5;
+    private static final String MOVEMENT_CATEGORY = "IFNULL(CATEGORY_ID, " + EntryCategoryAccess.NONE + ")";
 
     /**
-     * Il numero di colonne della tabella TARGETS all'interno del database.
+     * Espressioni SQL che calcolano la somma dei movimenti in entrata e in uscita (quest'ultima positiva) di un gruppo di movimenti.
      */
-    private static final int TARGETS_TABLE_COLUMNS = 4;
+    static final String IN_SUM = "SUM(CASE WHEN VALUE > 0 THEN VALUE ELSE 0 END)",
+            OUT_SUM = "SUM(CASE WHEN VALUE < 0 THEN -VALUE ELSE 0 END)";
+
+    /**
+     * Le chiavi delle categorie di movimento memorizzate nella tabella CATEGORIES (si veda la classe EntryCategoryAccess).
+     */
+    private static final int[] CATEGORIES = {EntryCategoryAccess.CLOTHING, EntryCategoryAccess.TRANSPORTATION,
+            EntryCategoryAccess.HEALTH, EntryCategoryAccess.SPORT, EntryCategoryAccess.FOOD, EntryCategoryAccess.OUTINGS,
+            EntryCategoryAccess.RENT, EntryCategoryAccess.HOBBIES, EntryCategoryAccess.TRIPS, EntryCategoryAccess.TECH,
+            EntryCategoryAccess.GARDENING, EntryCategoryAccess.BILLS, EntryCategoryAccess.VEHICLE_MAINTENANCE,
+            EntryCategoryAccess.SALARY, EntryCategoryAccess.SALES, EntryCategoryAccess.GIFTS, EntryCategoryAccess.OTHER};
+
+    /**
+     * I nomi fissi delle categorie di CATEGORIES, nello stesso ordine.
+     */
+    private static final String[] CATEGORY_NAMES = {"CLOTHING", "TRANSPORTATION", "HEALTH", "SPORT", "FOOD", "OUTINGS", "RENT",
+            "HOBBIES", "TRIPS", "TECH", "GARDENING", "BILLS", "VEHICLE_MAINTENANCE", "SALARY", "SALES", "GIFTS", "OTHER"};
+
+    /**
+     * Il numero di movimenti inseriti da ciascuna transazione durante un'importazione (si veda
+     * importMovements(Reader, long, int, DatabaseExecutor.Task, DatabaseExecutor.ProgressCounter)).
+     */
+    public static final int IMPORT_BATCH_SIZE = 1000;
+
+    /**
+     * L'unica istanza di DatabaseHandler, condivisa da tutte le Activity e i Fragment dell'applicazione.
+     */
+    private static DatabaseHandler instance;
 
     /**
      * Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
      */
     private Context context;
 
+    /**
+     * L'indice in memoria dei progressi, che evita di scorrere le tabelle LIMITS e TARGETS a ogni lettura o modifica di un
+     * progresso (si veda la classe ProgressIndex).
+     */
+    private final ProgressIndex progressIndex = new ProgressIndex();
+
+    /**
+     * Tiene traccia delle modifiche alle tabelle del database e le notifica agli osservatori (si veda onTablesChanged(int)).
+     */
+    private final InvalidationTracker invalidationTracker = new InvalidationTracker();
+
+    /**
+     * Le prime pagine di movimenti lette più di recente, una per combinazione di filtri (si veda la classe MovementsPageCache).
+     */
+    private final MovementsPageCache movementsPageCache = new MovementsPageCache();
+
+    /**
+     * Le statistiche dei mesi visualizzati più di recente (si veda la classe StatisticsCache).
+     */
+    private final StatisticsCache statisticsCache = new StatisticsCache();
+
+    /**
+     * L'archivio dei movimenti degli anni precedenti (si veda la classe MovementsArchive).
+     */
+    private final MovementsArchive movementsArchive = new MovementsArchive();
+
     /**
      * Inizializza un nuovo DatabaseHandler con il contesto fornito.
+     * Abilita il write-ahead logging, che permette letture concorrenti (su connessioni distinte, gestite internamente da
+     * SQLiteDatabase) durante una scrittura.
      *
      * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
      */
-    public DatabaseHandler(Context context) {
-        super(context, DB_NAME, null, DB_VERSION);
+    private DatabaseHandler(Context context) {
+        this(context, DB_NAME);
+    }
+
+    /**
+     * Inizializza un nuovo DatabaseHandler con il contesto fornito, associato al database con il nome fornito.
+     * Viene usato direttamente soltanto dai test, che operano su un database distinto da quello dell'app.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     * @param name Il nome del database.
+     */
+    DatabaseHandler(Context context, String name) {
+        super(context, name, null, DB_VERSION);
         this.context = context;
+        setWriteAheadLoggingEnabled(true);
     }
 
     /**
-     * Crea le quattro tabelle del database (BALANCE, MOVEMENTS, LIMITS, TARGETS) e inizializza il saldo disponibile.
+     * Ritorna l'unica istanza di DatabaseHandler, creandola se necessario.
+     * L'istanza è legata al contesto dell'applicazione, e non a quello dell'Activity o del Fragment chiamante.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     */
+    public static synchronized DatabaseHandler getInstance(Context context) {
+        if (instance == null)
+            instance = new DatabaseHandler(context.getApplicationContext());
+
+        return instance;
+    }
+
+    /**
+     * Apre la connessione al database, che rimane aperta fino alla chiamata di close().
+     * Chiamato alla creazione dell'applicazione, in modo da non dover aprire il database alla prima richiesta.
+     */
+    public void open() {
+        getDatabase();
+    }
+
+    /**
+     * Crea le sette tabelle del database (CATEGORIES, BALANCE_SNAPSHOTS, MOVEMENTS, MONTHLY_TOTALS, YEARLY_SUMMARIES, LIMITS,
+     * TARGETS) e i relativi indici. Le tabelle dell'archivio dei movimenti vengono create soltanto al termine di ogni anno (si
+     * veda la classe MovementsArchive).
      * Eseguito soltanto se il database non è ancora stato creato.
      *
      * @param database Il database dell'applicazione.
      */
     @Override
     public void onCreate(SQLiteDatabase database) {
-        createBalanceTable(database);
+        createCategoriesTable(database);
+        createBalanceSnapshotsTable(database);
         createMovementsTable(database);
+        createMovementsIndexes(database);
+        createMonthlyTotalsTable(database);
+        createYearlySummariesTable(database);
         createLimitsTable(database);
         createTargetsTable(database);
-        initBalance(database);
+        createProgressesIndexes(database);
     }
 
     /**
      * Aggiorna la struttura del database, modificando le tabelle esistenti o aggiungendone di nuove.
-     * Eseguito soltanto se la versione attuale del database precede DB_VERSION.
+     * Eseguito soltanto se la versione attuale del database precede DB_VERSION. Gli aggiornamenti sono applicati in
+     * ordine, una versione alla volta, all'interno della transazione aperta da SQLiteOpenHelper.
+     *
+     *      Versione 2  -> Aggiunge gli indici della tabella MOVEMENTS.
+     *      Versione 3  -> Sostituisce le colonne DAY, MONTH e YEAR della tabella MOVEMENTS con la colonna EPOCH_DAY.
+     *      Versione 4  -> Memorizza le quantità di denaro come numero intero di centesimi, anziché come numero reale.
+     *      Versione 5  -> Sostituisce la tabella BALANCE con il registro mensile BALANCE_SNAPSHOTS.
+     *      Versione 6  -> Aggiunge gli indici delle tabelle LIMITS e TARGETS sulla percentuale di completamento.
+     *      Versione 7  -> Sostituisce le categorie (testuali e tradotte) di MOVEMENTS e LIMITS con la colonna CATEGORY_ID.
+     *      Versione 8  -> Aggiunge la tabella MONTHLY_TOTALS, con i totali mensili dei movimenti di ogni categoria.
+     *      Versione 9  -> Aggiunge la tabella YEARLY_SUMMARIES, con il riepilogo degli anni archiviati.
      *
      * @param database Il database dell'app.
      * @param oldVersion L'attuale versione del database.
@@ -92,40 +218,331 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < 2)
+            upgradeToVersion2(database);
+
+        if (oldVersion < 3)
+            upgradeToVersion3(database);
+
+        if (oldVersion < 4)
+            upgradeToVersion4(database);
+
+        if (oldVersion < 5)
+            upgradeToVersion5(database);
+
+        if (oldVersion < 6)
+            upgradeToVersion6(database);
+
+        if (oldVersion < 7)
+            upgradeToVersion7(database);
 
+        if (oldVersion < 8)
+            upgradeToVersion8(database);
+
+        if (oldVersion < 9)
+            upgradeToVersion9(database);
     }
 
     /**
-     * Crea la tabella BALANCE, in cui viene memorizzato il saldo attuale. La tabella contiene una sola riga (è necessario un
-     * unico valore, che verrà di volta in volta aggiornato).
-     * Si riporta lo stato della tabella alla creazione del database:
+     * Aggiorna il database alla versione 2, aggiungendo gli indici sulle colonne usate per filtrare la tabella MOVEMENTS.
+     *
+     * @param database Il database dell'app.
+     */
+    private void upgradeToVersion2(SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX MOVEMENTS_DATE_INDEX ON MOVEMENTS (YEAR, MONTH, DAY);");
+        database.execSQL("CREATE INDEX MOVEMENTS_DESCRIPTION_INDEX ON MOVEMENTS (DESCRIPTION, YEAR, MONTH);");
+        database.execSQL("CREATE UNIQUE INDEX MOVEMENTS_ID_INDEX ON MOVEMENTS (ID);");
+    }
+
+    /**
+     * Aggiorna il database alla versione 3, sostituendo la data dei movimenti (memorizzata in tre colonne distinte) con il
+     * corrispondente epoch day. Dato che SQLite non permette di rimuovere colonne, la tabella MOVEMENTS viene ricostruita,
+     * preservando gli _id dei movimenti.
+     *
+     * @param database Il database dell'app.
+     */
+    private void upgradeToVersion3(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE MOVEMENTS_V3 ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "DESCRIPTION TEXT, "
+                + "VALUE REAL, "
+                + "EPOCH_DAY INTEGER, "
+                + "ID TEXT);");
+        database.execSQL("INSERT INTO MOVEMENTS_V3 (_id, DESCRIPTION, VALUE, EPOCH_DAY, ID) "
+                + "SELECT _id, DESCRIPTION, VALUE, "
+                + "CAST(julianday(printf('%04d-%02d-%02d', YEAR, MONTH, DAY)) - 2440587.5 AS INTEGER), ID "
+                + "FROM MOVEMENTS;");
+        database.execSQL("DROP TABLE MOVEMENTS;");
+        database.execSQL("ALTER TABLE MOVEMENTS_V3 RENAME TO MOVEMENTS;");
+        database.execSQL("CREATE INDEX MOVEMENTS_DATE_INDEX ON MOVEMENTS (EPOCH_DAY);");
+        database.execSQL("CREATE INDEX MOVEMENTS_DESCRIPTION_INDEX ON MOVEMENTS (DESCRIPTION, EPOCH_DAY);");
+        database.execSQL("CREATE UNIQUE INDEX MOVEMENTS_ID_INDEX ON MOVEMENTS (ID);");
+    }
+
+    /**
+     * Aggiorna il database alla versione 4, convertendo i valori reali delle colonne VALUE e MAX nel corrispondente numero di
+     * centesimi (si veda la classe Money). Le tabelle vengono ricostruite in modo che tali colonne abbiano affinità INTEGER,
+     * preservando gli _id dei record; le percentuali di completamento sono ricalcolate sui nuovi valori.
+     *
+     * @param database Il database dell'app.
+     */
+    private void upgradeToVersion4(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE BALANCE_V4 ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "VALUE INTEGER);");
+        database.execSQL("INSERT INTO BALANCE_V4 (_id, VALUE) "
+                + "SELECT _id, CAST(ROUND(VALUE * 100) AS INTEGER) FROM BALANCE;");
+        database.execSQL("DROP TABLE BALANCE;");
+        database.execSQL("ALTER TABLE BALANCE_V4 RENAME TO BALANCE;");
+
+        database.execSQL("CREATE TABLE MOVEMENTS_V4 ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "DESCRIPTION TEXT, "
+                + "VALUE INTEGER, "
+                + "EPOCH_DAY INTEGER, "
+                + "ID TEXT);");
+        database.execSQL("INSERT INTO MOVEMENTS_V4 (_id, DESCRIPTION, VALUE, EPOCH_DAY, ID) "
+                + "SELECT _id, DESCRIPTION, CAST(ROUND(VALUE * 100) AS INTEGER), EPOCH_DAY, ID FROM MOVEMENTS;");
+        database.execSQL("DROP TABLE MOVEMENTS;");
+        database.execSQL("ALTER TABLE MOVEMENTS_V4 RENAME TO MOVEMENTS;");
+        database.execSQL("CREATE INDEX MOVEMENTS_DATE_INDEX ON MOVEMENTS (EPOCH_DAY);");
+        database.execSQL("CREATE INDEX MOVEMENTS_DESCRIPTION_INDEX ON MOVEMENTS (DESCRIPTION, EPOCH_DAY);");
+        database.execSQL("CREATE UNIQUE INDEX MOVEMENTS_ID_INDEX ON MOVEMENTS (ID);");
+
+        database.execSQL("CREATE TABLE LIMITS_V4 ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "DESCRIPTION TEXT, "
+                + "VALUE INTEGER, "
+                + "MAX INTEGER, "
+                + "PERCENT INTEGER, "
+                + "MONTH INTEGER);");
+        database.execSQL("INSERT INTO LIMITS_V4 (_id, DESCRIPTION, VALUE, MAX, PERCENT, MONTH) "
+                + "SELECT _id, DESCRIPTION, CAST(ROUND(VALUE * 100) AS INTEGER), CAST(ROUND(MAX * 100) AS INTEGER), "
+                + "PERCENT, MONTH FROM LIMITS;");
+        database.execSQL("DROP TABLE LIMITS;");
+        database.execSQL("ALTER TABLE LIMITS_V4 RENAME TO LIMITS;");
+
+        database.execSQL("CREATE TABLE TARGETS_V4 ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "DESCRIPTION TEXT, "
+                + "VALUE INTEGER, "
+                + "MAX INTEGER, "
+                + "PERCENT INTEGER);");
+        database.execSQL("INSERT INTO TARGETS_V4 (_id, DESCRIPTION, VALUE, MAX, PERCENT) "
+                + "SELECT _id, DESCRIPTION, CAST(ROUND(VALUE * 100) AS INTEGER), CAST(ROUND(MAX * 100) AS INTEGER), "
+                + "PERCENT FROM TARGETS;");
+        database.execSQL("DROP TABLE TARGETS;");
+        database.execSQL("ALTER TABLE TARGETS_V4 RENAME TO TARGETS;");
+
+        database.execSQL("UPDATE LIMITS SET PERCENT = (VALUE * 200 + MAX) / (MAX * 2) WHERE MAX > 0;");
+        database.execSQL("UPDATE TARGETS SET PERCENT = (VALUE * 200 + MAX) / (MAX * 2) WHERE MAX > 0;");
+    }
+
+    /**
+     * Aggiorna il database alla versione 5, sostituendo la tabella BALANCE con la tabella BALANCE_SNAPSHOTS.
+     * Il registro viene ricostruito a ritroso a partire dal saldo memorizzato in BALANCE: per ogni mese in cui sono presenti
+     * movimenti, il saldo di apertura è pari al saldo attuale meno i movimenti di quel mese e dei mesi successivi. Il mese
+     * corrente è sempre presente, anche se privo di movimenti.
      *
-     *      _id     VALUE
-     *       1        0
+     * @param database Il database dell'app.
+     */
+    private void upgradeToVersion5(SQLiteDatabase database) {
+        int currentMonth = EpochDays.startOfMonth(EpochDays.today(), 0);
+
+        createBalanceSnapshotsTable(database);
+        database.execSQL("INSERT INTO BALANCE_SNAPSHOTS (MONTH, OPENING, DELTA) "
+                + "SELECT MONTH, (SELECT VALUE FROM BALANCE WHERE _id = 1) - "
+                + "(SELECT IFNULL(SUM(VALUE), 0) FROM MOVEMENTS WHERE EPOCH_DAY >= MONTH), DELTA "
+                + "FROM (SELECT " + MOVEMENT_MONTH + " AS MONTH, SUM(VALUE) AS DELTA FROM MOVEMENTS GROUP BY MONTH);");
+        database.execSQL("INSERT OR IGNORE INTO BALANCE_SNAPSHOTS (MONTH, OPENING, DELTA) "
+                + "SELECT ?1, VALUE - (SELECT IFNULL(SUM(VALUE), 0) FROM MOVEMENTS WHERE EPOCH_DAY >= ?1), 0 "
+                + "FROM BALANCE WHERE _id = 1;", new Object[] {currentMonth});
+        database.execSQL("DROP TABLE BALANCE;");
+    }
+
+    /**
+     * Aggiorna il database alla versione 6, aggiungendo gli indici delle tabelle LIMITS e TARGETS.
      *
-     *      _id    -> ID intero, usato all'interno del database per identificare una specifica riga.
-     *      VALUE  -> Il saldo disponibile.
+     * @param database Il database dell'app.
+     */
+    private void upgradeToVersion6(SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX LIMITS_PERCENT_INDEX ON LIMITS (MONTH, PERCENT);");
+        database.execSQL("CREATE INDEX TARGETS_PERCENT_INDEX ON TARGETS (PERCENT);");
+    }
+
+    /**
+     * Aggiorna il database alla versione 7, sostituendo le categorie dei movimenti e dei limiti di spesa, memorizzate nella
+     * lingua del dispositivo (colonna DESCRIPTION), con la chiave della categoria (colonna CATEGORY_ID, si veda la tabella
+     * CATEGORIES). Le categorie sono riconosciute attraverso le loro descrizioni in ogni lingua in cui è tradotta l'app (si
+     * veda addCategoryLabels(SQLiteDatabase)), dato che i record potrebbero essere stati registrati prima di un cambio di
+     * lingua del dispositivo. I movimenti la cui descrizione non corrisponde ad alcuna categoria (quelli associati a un
+     * obiettivo) conservano la loro descrizione, mentre i limiti di spesa non riconosciuti non vengono rimossi, ma spostati
+     * nella categoria EntryCategoryAccess.OTHER: per non avere più limiti della stessa categoria nello stesso mese, sono
+     * uniti, sommandone valori e massimi, all'eventuale limite di tale categoria già presente nel mese. Le tabelle MOVEMENTS e
+     * LIMITS vengono ricostruite, preservando gli _id dei record (dei limiti uniti resta il minore).
      *
      * @param database Il database dell'app.
      */
-    private void createBalanceTable(SQLiteDatabase database) {
-        database.execSQL("CREATE TABLE BALANCE ("
+    private void upgradeToVersion7(SQLiteDatabase database) {
+        createCategoriesTable(database);
+        database.execSQL("CREATE TEMP TABLE CATEGORY_LABELS (LABEL TEXT PRIMARY KEY, CATEGORY_ID INTEGER);");
+        addCategoryLabels(database);
+
+        database.execSQL("CREATE TABLE MOVEMENTS_V7 ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "CATEGORY_ID INTEGER REFERENCES CATEGORIES (_id), "
+                + "DESCRIPTION TEXT, "
+                + "VALUE INTEGER, "
+                + "EPOCH_DAY INTEGER, "
+                + "ID TEXT);");
+        database.execSQL("INSERT INTO MOVEMENTS_V7 (_id, CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY, ID) "
+                + "SELECT M._id, L.CATEGORY_ID, CASE WHEN L.CATEGORY_ID IS NULL THEN M.DESCRIPTION END, M.VALUE, M.EPOCH_DAY, M.ID "
+                + "FROM MOVEMENTS M LEFT JOIN CATEGORY_LABELS L ON L.LABEL = M.DESCRIPTION "
+                + "AND M.DESCRIPTION NOT IN (SELECT DESCRIPTION FROM TARGETS);");
+        database.execSQL("DROP TABLE MOVEMENTS;");
+        database.execSQL("ALTER TABLE MOVEMENTS_V7 RENAME TO MOVEMENTS;");
+        createMovementsIndexes(database);
+
+        database.execSQL("CREATE TABLE LIMITS_V7 ("
                 + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + "VALUE REAL);");
+                + "CATEGORY_ID INTEGER NOT NULL REFERENCES CATEGORIES (_id), "
+                + "VALUE INTEGER, "
+                + "MAX INTEGER, "
+                + "PERCENT INTEGER, "
+                + "MONTH INTEGER);");
+        database.execSQL("INSERT INTO LIMITS_V7 (_id, CATEGORY_ID, VALUE, MAX, PERCENT, MONTH) "
+                + "SELECT LIMITS._id, L.CATEGORY_ID, VALUE, MAX, PERCENT, MONTH "
+                + "FROM LIMITS JOIN CATEGORY_LABELS L ON L.LABEL = LIMITS.DESCRIPTION WHERE L.CATEGORY_ID <> ?;",
+                new Object[] {EntryCategoryAccess.OTHER});
+        database.execSQL("INSERT INTO LIMITS_V7 (_id, CATEGORY_ID, VALUE, MAX, PERCENT, MONTH) "
+                + "SELECT MIN(LIMITS._id), ?1, SUM(VALUE), SUM(MAX), "
+                + "CASE WHEN COUNT(*) = 1 OR SUM(MAX) <= 0 THEN MAX(PERCENT) ELSE " + percentOf("SUM(VALUE)", "SUM(MAX)") + " END, MONTH "
+                + "FROM LIMITS LEFT JOIN CATEGORY_LABELS L ON L.LABEL = LIMITS.DESCRIPTION "
+                + "WHERE L.CATEGORY_ID IS NULL OR L.CATEGORY_ID = ?1 GROUP BY MONTH;",
+                new Object[] {EntryCategoryAccess.OTHER});
+        database.execSQL("DROP TABLE LIMITS;");
+        database.execSQL("ALTER TABLE LIMITS_V7 RENAME TO LIMITS;");
+        createLimitsIndexes(database);
+
+        database.execSQL("DROP TABLE CATEGORY_LABELS;");
+    }
+
+    /**
+     * Inserisce nella tabella temporanea CATEGORY_LABELS (si veda upgradeToVersion7(SQLiteDatabase)) le descrizioni delle
+     * categorie in ogni lingua in cui è tradotta l'app, ciascuna associata alla chiave della sua categoria. Le descrizioni
+     * nella lingua attuale del dispositivo sono inserite per prime, per cui prevalgono nel caso (improbabile) in cui la stessa
+     * descrizione indichi categorie diverse in lingue diverse.
+     *
+     * @param database Il database dell'app.
+     */
+    private void addCategoryLabels(SQLiteDatabase database) {
+        List<String[]> translations = new ArrayList<>();
+        translations.add(context.getResources().getStringArray(R.array.entry_categories));
+
+        for (String locale : context.getAssets().getLocales()) {
+            Configuration configuration = new Configuration(context.getResources().getConfiguration());
+            configuration.setLocale(Locale.forLanguageTag(locale));
+            translations.add(context.createConfigurationContext(configuration).getResources()
+                    .getStringArray(R.array.entry_categories));
+        }
+
+        SQLiteStatement insert = database.compileStatement("INSERT OR IGNORE INTO CATEGORY_LABELS (LABEL, CATEGORY_ID) "
+                + "VALUES (?, ?)");
+
+        for (String[] labels : translations) {
+            for (int category : CATEGORIES) {
+                if (category >= labels.length)
+                    continue;
+
+                insert.bindString(1, labels[category]);
+                insert.bindLong(2, category);
+                insert.executeInsert();
+            }
+        }
+
+        insert.close();
+    }
+
+    /**
+     * Aggiorna il database alla versione 8, aggiungendo la tabella MONTHLY_TOTALS e popolandola a partire dai movimenti presenti
+     * nel database (si veda rebuildMonthlyTotals(SQLiteDatabase)).
+     *
+     * @param database Il database dell'app.
+     */
+    private void upgradeToVersion8(SQLiteDatabase database) {
+        createMonthlyTotalsTable(database);
+        rebuildMonthlyTotals(database);
+    }
+
+    /**
+     * Aggiorna il database alla versione 9, aggiungendo la tabella YEARLY_SUMMARIES. Fino alla versione 8, clearOld()
+     * eliminava i movimenti degli anni precedenti, che non possono essere recuperati: l'archivio è quindi inizialmente vuoto,
+     * e da questa versione i movimenti degli anni precedenti vengono spostati nelle tabelle MOVEMENTS_ seguito dall'anno (si
+     * veda la classe MovementsArchive).
+     *
+     * @param database Il database dell'app.
+     */
+    private void upgradeToVersion9(SQLiteDatabase database) {
+        createYearlySummariesTable(database);
+    }
+
+    /**
+     * Crea la tabella CATEGORIES, che contiene le categorie di movimento previste dall'app, una per riga, e la popola.
+     * Ogni categoria è identificata dalla sua chiave in EntryCategoryAccess, che non dipende dalla lingua del dispositivo: la
+     * descrizione di una categoria non viene mai memorizzata nel database, ma ricavata dalla chiave al momento della
+     * visualizzazione. Si riporta lo stato della tabella alla creazione del database:
+     *
+     *      _id   NAME
+     *
+     *      _id    -> La chiave della categoria (si veda la classe EntryCategoryAccess).
+     *      NAME   -> Il nome della categoria, fisso e indipendente dalla lingua del dispositivo.
+     *
+     * @param database Il database dell'app.
+     */
+    private void createCategoriesTable(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE CATEGORIES ("
+                + "_id INTEGER PRIMARY KEY, "
+                + "NAME TEXT NOT NULL UNIQUE);");
+
+        for (int i = 0; i < CATEGORIES.length; i++)
+            database.execSQL("INSERT INTO CATEGORIES (_id, NAME) VALUES (?, ?)", new Object[] {CATEGORIES[i], CATEGORY_NAMES[i]});
+
     }
 
     /**
-     * Crea la tabella MOVEMENTS, in cui vengono memorizzati i movimenti, uno per riga.
+     * Crea la tabella BALANCE_SNAPSHOTS, il registro da cui viene ricavato il saldo disponibile. La tabella contiene una riga
+     * per ogni mese in cui sono stati registrati movimenti, ed è aggiornata all'interno delle stesse transazioni che inseriscono
+     * o rimuovono i movimenti. Il saldo attuale è dato dall'ultima riga (OPENING + DELTA), e non dipende dai movimenti
+     * effettivamente conservati nella tabella MOVEMENTS: l'eliminazione dei movimenti degli anni precedenti non lo altera.
+     * Si riporta lo stato della tabella alla creazione del database:
+     *
+     *      MONTH   OPENING   DELTA
+     *
+     *      MONTH     -> L'epoch day del primo giorno del mese (si veda la classe EpochDays).
+     *      OPENING   -> Il saldo disponibile all'inizio del mese, in centesimi.
+     *      DELTA     -> La somma dei movimenti del mese, in centesimi.
+     *
+     * @param database Il database dell'app.
+     */
+    private void createBalanceSnapshotsTable(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE BALANCE_SNAPSHOTS ("
+                + "MONTH INTEGER PRIMARY KEY, "
+                + "OPENING INTEGER, "
+                + "DELTA INTEGER);");
+    }
+
+    /**
+     * Crea la tabella MOVEMENTS, in cui vengono memorizzati i movimenti dell'anno corrente, uno per riga (quelli degli anni
+     * precedenti sono spostati nell'archivio, si veda la classe MovementsArchive).
      * All'interno dell'app, i movimenti sono sempre ordinati dal più al meno recente.
      * Si riporta lo stato della tabella alla creazione del database:
      *
-     *      _id   DESCRIPTION   VALUE   DAY   MONTH   YEAR   ID
+     *      _id   CATEGORY_ID   DESCRIPTION   VALUE   EPOCH_DAY   ID
      *
-     *      DESCRIPTION   -> La categoria del movimento.
-     *      VALUE         -> Il valore del movimento.
-     *      DAY           -> Il giorno del mese del movimento.
-     *      MONTH         -> Il mese del movimento.
-     *      YEAR          -> L'anno del movimento.
+     *      CATEGORY_ID   -> La chiave della categoria del movimento (si veda la tabella CATEGORIES), oppure NULL.
+     *      DESCRIPTION   -> Il nome dell'obiettivo associato al movimento, se questo non ha categoria, altrimenti NULL.
+     *      VALUE         -> Il valore del movimento, in centesimi.
+     *      EPOCH_DAY     -> La data del movimento, come numero di giorni trascorsi dal 01/01/1970 (si veda la classe EpochDays).
      *      ID            -> L'ID del movimento.
      *
      * @param database Il database dell'app.
@@ -133,24 +550,108 @@ public class DatabaseHandler extends SQLiteOpenHelper {
     private void createMovementsTable(SQLiteDatabase database) {
         database.execSQL("CREATE TABLE MOVEMENTS ("
                 + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "CATEGORY_ID INTEGER REFERENCES CATEGORIES (_id), "
                 + "DESCRIPTION TEXT, "
-                + "VALUE REAL, "
-                + "DAY INTEGER, "
-                + "MONTH INTEGER, "
-                + "YEAR INTEGER, "
+                + "VALUE INTEGER, "
+                + "EPOCH_DAY INTEGER, "
                 + "ID TEXT);");
     }
 
+    /**
+     * Crea gli indici della tabella MOVEMENTS, utilizzati dai filtri della schermata Movimenti e dalle eliminazioni.
+     * Dato che ogni indice include implicitamente _id, una scansione all'indietro restituisce i movimenti già ordinati dal
+     * più al meno recente:
+     *
+     *      MOVEMENTS_DATE_INDEX          -> (EPOCH_DAY), per i filtri sul periodo e per archiveOldMovements().
+     *      MOVEMENTS_CATEGORY_INDEX      -> (CATEGORY_ID, EPOCH_DAY), per i filtri sulla categoria.
+     *      MOVEMENTS_DESCRIPTION_INDEX   -> (DESCRIPTION), parziale (soltanto i movimenti associati a un obiettivo), per
+     *                                       removeProgress(String, boolean).
+     *      MOVEMENTS_ID_INDEX            -> (ID), univoco, per removeMovement(Movement).
+     *
+     * @param database Il database dell'app.
+     */
+    private void createMovementsIndexes(SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX MOVEMENTS_DATE_INDEX ON MOVEMENTS (EPOCH_DAY);");
+        database.execSQL("CREATE INDEX MOVEMENTS_CATEGORY_INDEX ON MOVEMENTS (CATEGORY_ID, EPOCH_DAY);");
+        database.execSQL("CREATE INDEX MOVEMENTS_DESCRIPTION_INDEX ON MOVEMENTS (DESCRIPTION) WHERE DESCRIPTION IS NOT NULL;");
+        database.execSQL("CREATE UNIQUE INDEX MOVEMENTS_ID_INDEX ON MOVEMENTS (ID);");
+    }
+
+    /**
+     * Crea la tabella MONTHLY_TOTALS, in cui vengono memorizzati i totali dei movimenti di ogni mese e categoria, una
+     * combinazione per riga. La tabella viene aggiornata all'interno della stessa transazione che inserisce o rimuove i
+     * movimenti (si veda applyToTotals(SQLiteDatabase, int, int, long, long, int)), per cui le statistiche sui movimenti non
+     * richiedono mai di leggere la tabella MOVEMENTS. I totali dei mesi i cui movimenti sono stati spostati nell'archivio da
+     * clearOld() (si veda la classe MovementsArchive) restano invariati. Si riporta lo stato della tabella alla creazione del database:
+     *
+     *      MONTH   CATEGORY_ID   IN_SUM   OUT_SUM   COUNT
+     *
+     *      MONTH         -> L'epoch day del primo giorno del mese (si veda la classe EpochDays).
+     *      CATEGORY_ID   -> La chiave della categoria (si veda la tabella CATEGORIES), oppure EntryCategoryAccess.NONE per i
+     *                       movimenti associati agli obiettivi.
+     *      IN_SUM        -> La somma dei movimenti in entrata, in centesimi.
+     *      OUT_SUM       -> La somma dei movimenti in uscita, in centesimi (sempre positiva).
+     *      COUNT         -> Il numero di movimenti.
+     *
+     * @param database Il database dell'app.
+     */
+    private void createMonthlyTotalsTable(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE MONTHLY_TOTALS ("
+                + "MONTH INTEGER, "
+                + "CATEGORY_ID INTEGER, "
+                + "IN_SUM INTEGER, "
+                + "OUT_SUM INTEGER, "
+                + "COUNT INTEGER, "
+                + "PRIMARY KEY (MONTH, CATEGORY_ID)) WITHOUT ROWID;");
+    }
+
+    /**
+     * Ricalcola l'intera tabella MONTHLY_TOTALS a partire dai movimenti presenti nel database, con un'unica query aggregata.
+     * Vengono letti soltanto i movimenti della tabella MOVEMENTS, per cui i totali dei mesi archiviati andrebbero persi: per
+     * questo viene usato soltanto alla creazione della tabella (versione 8), quando l'archivio non esiste ancora e i movimenti
+     * degli anni precedenti erano già stati eliminati.
+     *
+     * @param database Il database dell'app.
+     */
+    private void rebuildMonthlyTotals(SQLiteDatabase database) {
+        database.execSQL("DELETE FROM MONTHLY_TOTALS;");
+        database.execSQL("INSERT INTO MONTHLY_TOTALS (MONTH, CATEGORY_ID, IN_SUM, OUT_SUM, COUNT) "
+                + "SELECT " + MOVEMENT_MONTH + ", " + MOVEMENT_CATEGORY + ", " + IN_SUM + ", " + OUT_SUM + ", COUNT(*) "
+                + "FROM MOVEMENTS GROUP BY 1, 2;");
+    }
+
+    /**
+     * Crea la tabella YEARLY_SUMMARIES, in cui viene memorizzato il riepilogo di ogni anno archiviato, uno per riga. Ogni riga
+     * corrisponde a una tabella dell'archivio dei movimenti (si veda la classe MovementsArchive), e viene aggiornata
+     * all'interno della stessa transazione che la modifica. Si riporta lo stato della tabella alla creazione del database:
+     *
+     *      YEAR   IN_SUM   OUT_SUM   COUNT
+     *
+     *      YEAR      -> L'anno archiviato.
+     *      IN_SUM    -> La somma dei movimenti in entrata dell'anno, in centesimi.
+     *      OUT_SUM   -> La somma dei movimenti in uscita dell'anno, in centesimi (sempre positiva).
+     *      COUNT     -> Il numero di movimenti dell'anno.
+     *
+     * @param database Il database dell'app.
+     */
+    private void createYearlySummariesTable(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE YEARLY_SUMMARIES ("
+                + "YEAR INTEGER PRIMARY KEY, "
+                + "IN_SUM INTEGER, "
+                + "OUT_SUM INTEGER, "
+                + "COUNT INTEGER);");
+    }
+
     /**
      * Crea la tabella LIMITS, in cui vengono memorizzati i limiti di spesa, uno per riga.
      * All'interno dell'app, i limiti di spesa sono sempre disposti in ordine di percentuale di completamento descrescente.
      * Si riporta lo stato della tabella alla creazione del database:
      *
-     *      _id   DESCRIPTION   VALUE   MAX   PERCENT   MONTH
+     *      _id   CATEGORY_ID   VALUE   MAX   PERCENT   MONTH
      *
-     *      DESCRIPTION   -> La categoria del limite di spesa.
-     *      VALUE         -> Il valore del limite di spesa.
-     *      MAX           -> Il valore massimo mensile del limite di spesa.
+     *      CATEGORY_ID   -> La chiave della categoria del limite di spesa (si veda la tabella CATEGORIES).
+     *      VALUE         -> Il valore del limite di spesa, in centesimi.
+     *      MAX           -> Il valore massimo mensile del limite di spesa, in centesimi.
      *      PERCENT       -> La percentuale di completamento del limite di spesa.
      *      MONTH         -> Il mese del limite di spesa.
      *
@@ -159,9 +660,9 @@ public class DatabaseHandler extends SQLiteOpenHelper {
     private void createLimitsTable(SQLiteDatabase database) {
         database.execSQL("CREATE TABLE LIMITS ("
                 + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + "DESCRIPTION TEXT, "
-                + "VALUE REAL, "
-                + "MAX REAL, "
+                + "CATEGORY_ID INTEGER NOT NULL REFERENCES CATEGORIES (_id), "
+                + "VALUE INTEGER, "
+                + "MAX INTEGER, "
                 + "PERCENT INTEGER, "
                 + "MONTH INTEGER);");
     }
@@ -174,8 +675,8 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      *      _id   DESCRIPTION   VALUE   MAX   PERCENT
      *
      *      DESCRIPTION   -> Il nome dell'obiettivo.
-     *      VALUE         -> Il valore dell'obiettivo.
-     *      MAX           -> Il valore obiettivo dell'obiettivo.
+     *      VALUE         -> Il valore dell'obiettivo, in centesimi.
+     *      MAX           -> Il valore obiettivo dell'obiettivo, in centesimi.
      *      PERCENT       -> La percentuale di completamento dell'obiettivo.
      *
      * @param database Il database dell'app.
@@ -184,237 +685,783 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         database.execSQL("CREATE TABLE TARGETS ("
                 + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + "DESCRIPTION TEXT, "
-                + "VALUE REAL, "
-                + "MAX REAL, "
+                + "VALUE INTEGER, "
+                + "MAX INTEGER, "
                 + "PERCENT INTEGER);");
     }
 
     /**
-     * Rimuove dal database movimenti e limiti di spesa non più validi.
+     * Crea gli indici delle tabelle LIMITS e TARGETS sulla percentuale di completamento, secondo la quale i progressi sono
+     * sempre ordinati. Una scansione all'indietro restituisce i progressi già ordinati, per cui la lettura dei soli progressi
+     * rilevanti (si veda getDashboard(int, int)) si interrompe dopo le prime righe:
+     *
+     *      LIMITS_PERCENT_INDEX    -> (MONTH, PERCENT), dato che vengono letti soltanto i limiti di spesa del mese corrente.
+     *      TARGETS_PERCENT_INDEX   -> (PERCENT).
+     *
+     * @param database Il database dell'app.
+     */
+    private void createProgressesIndexes(SQLiteDatabase database) {
+        createLimitsIndexes(database);
+        database.execSQL("CREATE INDEX TARGETS_PERCENT_INDEX ON TARGETS (PERCENT);");
+    }
+
+    /**
+     * Crea gli indici della tabella LIMITS (si veda createProgressesIndexes(SQLiteDatabase)).
+     *
+     * @param database Il database dell'app.
+     */
+    private void createLimitsIndexes(SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX LIMITS_PERCENT_INDEX ON LIMITS (MONTH, PERCENT);");
+    }
+
+    /**
+     * Archivia i movimenti degli anni precedenti e rimuove dal database i limiti di spesa non più validi.
      */
     public void clearOld() {
-        clearOldMovements();
+        archiveOldMovements();
         clearOldLimits();
     }
 
     /**
-     * Elimina dal database i movimenti degli anni precedenti.
+     * Esegue la manutenzione periodica del database (si veda la classe MaintenanceScheduler), che comprende:
+     *      1. L'archiviazione dei movimenti degli anni precedenti e la rimozione dei limiti di spesa non più validi.
+     *      2. La verifica del registro del saldo disponibile.
+     *      3. L'aggiornamento delle statistiche usate da SQLite per scegliere gli indici (ANALYZE e PRAGMA optimize, quest'ultimo
+     *         ignorato dalle versioni di SQLite che non lo supportano).
+     *      4. La compattazione del file del database (VACUUM).
+     * Se non è possibile accedere al database, ritorna false.
+     */
+    public boolean runMaintenance() {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return false;
+
+        clearOld();
+        verifyLedger();
+        database.execSQL("ANALYZE;");
+        database.execSQL("PRAGMA optimize;");
+        database.execSQL("VACUUM;");
+        return true;
+    }
+
+    /**
+     * Sposta nell'archivio i movimenti degli anni precedenti (si veda MovementsArchive.archive(SQLiteDatabase, int)), in modo
+     * che la tabella MOVEMENTS contenga soltanto quelli dell'anno corrente.
+     */
+    private void archiveOldMovements() {
+        int currentYearStart = EpochDays.startOfYear(EpochDays.today());
+        SQLiteDatabase database = getDatabase();
+
+        if (database != null) {
+            if (movementsArchive.archive(database, currentYearStart) > 0)
+                onTablesChanged(InvalidationTracker.MOVEMENTS);
+
+        }
+    }
+
+    /**
+     * Elimina dal database i limiti di spesa dei mesi precedenti (anche quelli di dicembre, a gennaio).
+     */
+    private void clearOldLimits() {
+        SQLiteDatabase database = getDatabase();
+
+        if (database != null) {
+            if (database.delete("LIMITS","MONTH != ?", new String[] {getCurrentMonth()}) > 0)
+                onTablesChanged(InvalidationTracker.LIMITS);
+
+            progressIndex.invalidate();
+        }
+    }
+
+    /**
+     * Ritorna il mese corrente (da 1 a 12), sotto forma di stringa.
+     * Dato che i limiti di spesa dei mesi precedenti sono eliminati solo periodicamente (si veda runMaintenance()), ogni
+     * lettura o modifica della tabella LIMITS considera soltanto i limiti di spesa del mese corrente.
+     */
+    private String getCurrentMonth() {
+        return String.valueOf(EpochDays.getMonth(EpochDays.today()));
+    }
+
+    /**
+     * Ritorna il saldo attualmente disponibile.
+     * Se non è possibile accedere al database, ritorna -1.
+     */
+    public long getBalance() {
+        long balance = -1;
+        SQLiteDatabase database = getDatabase();
+
+        if (database != null) {
+            SQLiteStatement balanceQuery = compileBalanceQuery(database);
+            balance = balanceQuery.simpleQueryForLong();
+            balanceQuery.close();
+        }
+
+        return balance;
+    }
+
+    /**
+     * Ritorna l'istruzione compilata che legge il saldo disponibile dall'ultima riga di BALANCE_SNAPSHOTS (0 se il registro è
+     * vuoto).
+     *
+     * @param database Il database dell'app.
+     */
+    private SQLiteStatement compileBalanceQuery(SQLiteDatabase database) {
+        return database.compileStatement("SELECT IFNULL((SELECT OPENING + DELTA FROM BALANCE_SNAPSHOTS "
+                + "ORDER BY MONTH DESC LIMIT 1), 0)");
+    }
+
+    /**
+     * Registra nella tabella BALANCE_SNAPSHOTS una variazione del saldo disponibile avvenuta nel mese fornito: ne aggiorna la
+     * somma dei movimenti e il saldo di apertura dei mesi successivi. Se il mese non è ancora presente nel registro, viene
+     * aggiunto con saldo di apertura pari al saldo di chiusura del mese precedente.
+     * Deve essere chiamato all'interno della transazione che inserisce o rimuove i movimenti corrispondenti.
+     *
+     * @param database Il database dell'app.
+     * @param month L'epoch day del primo giorno del mese.
+     * @param amount La variazione del saldo disponibile, in centesimi.
+     */
+    private void applyToLedger(SQLiteDatabase database, int month, long amount) {
+        Object[] bindArgs = new Object[] {month, amount};
+        database.execSQL("INSERT OR IGNORE INTO BALANCE_SNAPSHOTS (MONTH, OPENING, DELTA) SELECT ?1, IFNULL((SELECT "
+                + "OPENING + DELTA FROM BALANCE_SNAPSHOTS WHERE MONTH < ?1 ORDER BY MONTH DESC LIMIT 1), 0), 0",
+                new Object[] {month});
+        database.execSQL("UPDATE BALANCE_SNAPSHOTS SET DELTA = DELTA + ?2 WHERE MONTH = ?1", bindArgs);
+        database.execSQL("UPDATE BALANCE_SNAPSHOTS SET OPENING = OPENING + ?2 WHERE MONTH > ?1", bindArgs);
+    }
+
+    /**
+     * Registra nella tabella MONTHLY_TOTALS una variazione dei totali del mese e della categoria forniti, aggiungendo la riga
+     * corrispondente se non è ancora presente e rimuovendola se non vi restano movimenti.
+     * Deve essere chiamato all'interno della transazione che inserisce o rimuove i movimenti corrispondenti.
+     *
+     * @param database Il database dell'app.
+     * @param month L'epoch day del primo giorno del mese.
+     * @param categoryId La chiave della categoria, oppure EntryCategoryAccess.NONE.
+     * @param inSum La variazione della somma dei movimenti in entrata, in centesimi.
+     * @param outSum La variazione della somma dei movimenti in uscita, in centesimi.
+     * @param count La variazione del numero di movimenti.
+     */
+    private void applyToTotals(SQLiteDatabase database, int month, int categoryId, long inSum, long outSum, int count) {
+        Object[] keyArgs = new Object[] {month, categoryId};
+        database.execSQL("INSERT OR IGNORE INTO MONTHLY_TOTALS (MONTH, CATEGORY_ID, IN_SUM, OUT_SUM, COUNT) "
+                + "VALUES (?, ?, 0, 0, 0)", keyArgs);
+        database.execSQL("UPDATE MONTHLY_TOTALS SET IN_SUM = IN_SUM + ?3, OUT_SUM = OUT_SUM + ?4, COUNT = COUNT + ?5 "
+                + "WHERE MONTH = ?1 AND CATEGORY_ID = ?2", new Object[] {month, categoryId, inSum, outSum, count});
+
+        if (count < 0)
+            database.execSQL("DELETE FROM MONTHLY_TOTALS WHERE MONTH = ? AND CATEGORY_ID = ? AND COUNT <= 0", keyArgs);
+
+    }
+
+    /**
+     * Registra nella tabella MONTHLY_TOTALS l'inserimento del movimento fornito (si veda
+     * applyToTotals(SQLiteDatabase, int, int, long, long, int)).
+     *
+     * @param database Il database dell'app.
+     * @param movement Il movimento inserito.
+     */
+    private void addToTotals(SQLiteDatabase database, Movement movement) {
+        int categoryId = getCategoryId(movement.getDescription());
+        long value = movement.getValue();
+        applyToTotals(database, EpochDays.startOfMonth(movement.getEpochDay(), 0),
+                categoryId == -1 ? EntryCategoryAccess.NONE : categoryId, Math.max(value, 0), Math.max(-value, 0), 1);
+    }
+
+    /**
+     * Ricalcola il registro BALANCE_SNAPSHOTS a partire dai movimenti presenti nel database, con una query aggregata,
+     * e corregge le righe che non vi corrispondono. La somma dei movimenti di ogni mese viene ricalcolata a partire dal primo
+     * mese ancora presente nella tabella MOVEMENTS (quelli precedenti sono stati spostati nell'archivio da clearOld(), e le
+     * loro righe del registro restano invariate), comprendendo anche i movimenti archiviati di tali mesi: un movimento di un
+     * anno precedente registrato dopo l'ultima archiviazione resta infatti nella tabella MOVEMENTS fino alla successiva;
+     * i saldi di apertura vengono poi ricostruiti in sequenza a partire dal primo mese del registro.
+     * Se non è possibile accedere al database, ritorna false.
+     *
+     * @return true se il registro è stato corretto.
+     */
+    public boolean verifyLedger() {
+        SQLiteDatabase database = getDatabase();
+        boolean repaired = false;
+
+        if (database == null)
+            return false;
+
+        database.beginTransaction();
+
+        try {
+            SparseLongArray movementTotals = new SparseLongArray(), storedOpenings = new SparseLongArray(),
+                    storedDeltas = new SparseLongArray();
+            Cursor cursor = database.rawQuery("SELECT MIN(EPOCH_DAY) FROM MOVEMENTS", null);
+            Integer firstDay = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getInt(0) : null;
+            cursor.close();
+
+            if (firstDay != null) {
+                cursor = database.rawQuery("SELECT " + MOVEMENT_MONTH + " AS MONTH, SUM(VALUE) FROM "
+                        + movementsArchive.source(database, firstDay) + " WHERE EPOCH_DAY >= ? GROUP BY MONTH",
+                        new String[] {String.valueOf(EpochDays.startOfMonth(firstDay, 0))});
+
+                while (cursor.moveToNext())
+                    movementTotals.put(cursor.getInt(0), cursor.getLong(1));
+
+                cursor.close();
+            }
+
+            cursor = database.rawQuery("SELECT MONTH, OPENING, DELTA FROM BALANCE_SNAPSHOTS", null);
+
+            while (cursor.moveToNext()) {
+                storedOpenings.put(cursor.getInt(0), cursor.getLong(1));
+                storedDeltas.put(cursor.getInt(0), cursor.getLong(2));
+            }
+
+            cursor.close();
+
+            int firstRetainedMonth = movementTotals.size() == 0 ? Integer.MAX_VALUE : movementTotals.keyAt(0);
+            long opening = storedOpenings.size() == 0 ? 0 : storedOpenings.valueAt(0);
+            int i = 0, j = 0;
+
+            while (i < movementTotals.size() || j < storedOpenings.size()) {
+                int month;
+
+                if (j == storedOpenings.size() || (i < movementTotals.size() && movementTotals.keyAt(i) < storedOpenings.keyAt(j)))
+                    month = movementTotals.keyAt(i);
+                else
+                    month = storedOpenings.keyAt(j);
+
+                long delta = month >= firstRetainedMonth ? movementTotals.get(month, 0) : storedDeltas.get(month);
+
+                if (storedOpenings.indexOfKey(month) < 0 || storedOpenings.get(month) != opening
+                        || storedDeltas.get(month) != delta) {
+                    database.execSQL("INSERT OR REPLACE INTO BALANCE_SNAPSHOTS (MONTH, OPENING, DELTA) VALUES (?, ?, ?)",
+                            new Object[] {month, opening, delta});
+                    repaired = true;
+                }
+
+                if (i < movementTotals.size() && movementTotals.keyAt(i) == month)
+                    i++;
+
+                if (j < storedOpenings.size() && storedOpenings.keyAt(j) == month)
+                    j++;
+
+                opening += delta;
+            }
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (repaired)
+            onTablesChanged(InvalidationTracker.BALANCE);
+
+        return repaired;
+    }
+
+    /**
+     * Aggiunge un nuovo record al database, scegliendo autonomamente la tabella corretta. L'inserimento di un movimento
+     * aggiorna, all'interno della stessa transazione, la tabella MONTHLY_TOTALS.
+     * La categoria di un movimento o di un limite di spesa viene memorizzata attraverso la sua chiave (si veda
+     * getCategoryId(String)); soltanto la descrizione di un obiettivo, o di un movimento senza categoria, viene memorizzata
+     * come testo.
+     * Se non è possibile accedere al database, il record non viene aggiunto.
+     *
+     * @param entry Il record da aggiungere al database.
+     */
+    public void insert(Entry entry) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database != null) {
+            ContentValues contentValues = new ContentValues();
+            String table = null;
+            int categoryId = getCategoryId(entry.getDescription());
+            contentValues.put("VALUE", entry.getValue());
+
+            if (entry instanceof Limit)
+                contentValues.put("CATEGORY_ID", categoryId);
+            else if (entry instanceof Target || categoryId == -1)
+                contentValues.put("DESCRIPTION", entry.getDescription());
+            else
+                contentValues.put("CATEGORY_ID", categoryId);
+
+            if (entry instanceof Movement) {
+                contentValues.put("EPOCH_DAY", ((Movement) entry).getEpochDay());
+                contentValues.put("ID", ((Movement) entry).getID());
+                table = "MOVEMENTS";
+            } else if (entry instanceof Progress) {
+                contentValues.put("MAX", ((Progress) entry).getMax());
+                contentValues.put("PERCENT", ((Progress) entry).getPercent());
+
+                if (entry instanceof Limit) {
+                    contentValues.put("MONTH", ((Limit) entry).getMonth());
+                    table = "LIMITS";
+                } else if (entry instanceof Target) {
+                    table = "TARGETS";
+                }
+
+            }
+
+            database.beginTransaction();
+
+            try {
+                if (table != null)
+                    database.insert(table, null, contentValues);
+
+                if (entry instanceof Movement)
+                    addToTotals(database, (Movement) entry);
+
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+
+            if (entry instanceof Movement)
+                statisticsCache.invalidate(EpochDays.startOfMonth(((Movement) entry).getEpochDay(), 0));
+
+            if (entry instanceof Progress)
+                progressIndex.invalidate();
+
+            if (table != null)
+                onTablesChanged(entry instanceof Movement ? InvalidationTracker.MOVEMENTS
+                        : entry instanceof Limit ? InvalidationTracker.LIMITS : InvalidationTracker.TARGETS);
+
+        }
+
+    }
+
+    /**
+     * Registra il movimento fornito all'interno di un'unica transazione, che comprende:
+     *      1. La verifica del saldo disponibile (un movimento in uscita non può renderlo negativo).
+     *      2. L'aggiornamento del registro BALANCE_SNAPSHOTS.
+     *      3. L'inserimento del movimento nella tabella MOVEMENTS e l'aggiornamento della tabella MONTHLY_TOTALS.
+     *      4. L'incremento del progresso corrispondente a progressKey, se presente, e la verifica del suo raggiungimento.
+     * Il progresso è individuato attraverso l'indice in memoria (si veda la classe ProgressIndex) e aggiornato con un'unica
+     * UPDATE per indice di riga. In caso di errore nessuna delle operazioni viene applicata, e l'indice non viene modificato.
+     * Se non è possibile accedere al database, ritorna null.
+     *
+     * @param movement Il movimento da registrare. Il suo valore è negativo se si tratta di un movimento in uscita.
+     * @param progressKey La descrizione del progresso (limite di spesa o obiettivo) da incrementare, oppure null.
+     */
+    public RecordResult recordMovement(Movement movement, String progressKey) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return null;
+
+        long value = movement.getValue(), balance;
+        boolean progressReached = false;
+        ProgressIndex.Entry[] progresses = new ProgressIndex.Entry[0];
+        SQLiteStatement balanceQuery = null, movementInsert = null;
+        database.beginTransaction();
+
+        try {
+            balanceQuery = compileBalanceQuery(database);
+            balance = balanceQuery.simpleQueryForLong();
+
+            if (value < 0 && balance + value < 0)
+                return new RecordResult(false, balance, false);
+
+            balance += value;
+            applyToLedger(database, EpochDays.startOfMonth(movement.getEpochDay(), 0), value);
+
+            movementInsert = database.compileStatement("INSERT INTO MOVEMENTS (CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY, ID) "
+                    + "VALUES (?, ?, ?, ?, ?)");
+            bindMovement(movementInsert, movement);
+            movementInsert.executeInsert();
+            addToTotals(database, movement);
+
+            if (progressKey != null) {
+                progresses = findProgresses(database, progressKey);
+
+                for (ProgressIndex.Entry progress : progresses) {
+                    ProgressIndex.Entry increased = addToProgress(database, progress, -1 * value);
+                    progressReached |= increased != null && increased.value >= increased.max;
+                }
+            }
+
+            database.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            progressIndex.invalidate();
+            throw e;
+        } finally {
+            database.endTransaction();
+            closeStatements(balanceQuery, movementInsert);
+        }
+
+        statisticsCache.invalidate(EpochDays.startOfMonth(movement.getEpochDay(), 0));
+
+        onTablesChanged(InvalidationTracker.MOVEMENTS | InvalidationTracker.BALANCE | tablesOf(progresses));
+        return new RecordResult(true, balance, progressReached);
+    }
+
+    /**
+     * Ritorna l'oggetto che tiene traccia delle modifiche alle tabelle del database, al quale è possibile registrare gli
+     * osservatori di tali modifiche.
+     */
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+
+    /**
+     * Incrementa la versione delle tabelle fornite e ne notifica la modifica agli osservatori (si veda la classe
+     * InvalidationTracker). Se è stata modificata la tabella MOVEMENTS, scarta le pagine di movimenti conservate in memoria (si
+     * veda la classe MovementsPageCache). Deve essere chiamato dopo ogni modifica confermata del database.
+     *
+     * @param tables Le tabelle modificate (OR dei relativi flag di InvalidationTracker).
+     */
+    private void onTablesChanged(int tables) {
+        invalidationTracker.notifyChanged(tables);
+
+        if ((tables & InvalidationTracker.MOVEMENTS) != 0)
+            movementsPageCache.clear();
+
+    }
+
+    /**
+     * Ritorna le tabelle (OR dei relativi flag di InvalidationTracker) cui appartengono le righe dell'indice dei progressi
+     * fornite.
+     *
+     * @param progresses Le righe dell'indice dei progressi.
+     */
+    private static int tablesOf(ProgressIndex.Entry[] progresses) {
+        int tables = 0;
+
+        for (ProgressIndex.Entry progress : progresses)
+            tables |= progress.limit ? InvalidationTracker.LIMITS : InvalidationTracker.TARGETS;
+
+        return tables;
+    }
+
+    /**
+     * Associa all'istruzione di inserimento fornita (nella tabella MOVEMENTS, con le colonne CATEGORY_ID, DESCRIPTION, VALUE,
+     * EPOCH_DAY e ID, in quest'ordine) le informazioni del movimento fornito. Se la descrizione del movimento è una categoria,
+     * ne viene memorizzata soltanto la chiave; altrimenti (movimento associato a un obiettivo) soltanto la descrizione.
+     *
+     * @param movementInsert L'istruzione di inserimento.
+     * @param movement Il movimento da inserire.
+     */
+    private void bindMovement(SQLiteStatement movementInsert, Movement movement) {
+        int categoryId = getCategoryId(movement.getDescription());
+
+        if (categoryId == -1) {
+            movementInsert.bindNull(1);
+            movementInsert.bindString(2, movement.getDescription());
+        } else {
+            movementInsert.bindLong(1, categoryId);
+            movementInsert.bindNull(2);
+        }
+
+        movementInsert.bindLong(3, movement.getValue());
+        movementInsert.bindLong(4, movement.getEpochDay());
+        movementInsert.bindString(5, movement.getID());
+    }
+
+    /**
+     * Ritorna la chiave (si veda la classe EntryCategoryAccess) della categoria la cui descrizione, nella lingua attuale del
+     * dispositivo, è quella fornita, oppure -1 se la descrizione non corrisponde ad alcuna categoria.
+     *
+     * @param description La descrizione della categoria.
+     */
+    private int getCategoryId(String description) {
+        int categoryId = getCategories().getKey(description);
+        return categoryId > EntryCategoryAccess.ALL ? categoryId : -1;
+    }
+
+    /**
+     * Ritorna le categorie di movimento nella lingua attuale del dispositivo, dalle quali sono ricavate le descrizioni dei
+     * movimenti e dei limiti di spesa letti dal database.
+     */
+    private EntryCategoryAccess getCategories() {
+        return StaticDataRegistry.getEntryCategoryAccess(context);
+    }
+
+    /**
+     * Ritorna le righe dell'indice dei progressi corrispondenti alla descrizione fornita: il limite di spesa del mese corrente
+     * e l'obiettivo con tale descrizione, se esistono.
+     *
+     * @param database Il database dell'app.
+     * @param description La descrizione dei progressi.
      */
-    private void clearOldMovements() {
-        int currentYear = Calendar.getInstance().get(Calendar.YEAR);
-        SQLiteDatabase database = getDatabase();
-
-        if (database != null) {
-            database.delete("MOVEMENTS","YEAR < ?", new String[] {String.valueOf(currentYear)});
-            database.close();
-        }
+    private ProgressIndex.Entry[] findProgresses(SQLiteDatabase database, String description) {
+        EntryCategoryAccess categories = getCategories();
+        int categoryId = getCategoryId(description);
+        ProgressIndex.Entry limit = categoryId == -1 ? null
+                : progressIndex.getLimit(database, getCurrentMonth(), categories, categoryId);
+        ProgressIndex.Entry target = progressIndex.getTarget(database, getCurrentMonth(), categories, description);
+
+        if (limit != null && target != null)
+            return new ProgressIndex.Entry[] {limit, target};
+        else if (limit != null)
+            return new ProgressIndex.Entry[] {limit};
+        else if (target != null)
+            return new ProgressIndex.Entry[] {target};
+
+        return new ProgressIndex.Entry[0];
     }
 
     /**
-     * Elimina dal database i limiti di spesa dei mesi precedenti.
+     * Aggiunge l'ammontare fornito al valore del progresso individuato dalla riga dell'indice fornita, aggiornandone la
+     * percentuale di completamento, e ritorna la nuova riga dell'indice.
+     * L'incremento è calcolato da SQLite a partire dal valore memorizzato nel database, e non da quello della riga fornita,
+     * per cui nessun incremento va perso anche se la riga non è aggiornata.
+     * Deve essere chiamato all'interno di una transazione (si veda writeProgress(SQLiteDatabase, ProgressIndex.Entry, String,
+     * long)).
+     *
+     * @param database Il database dell'app.
+     * @param progress La riga del progresso da incrementare.
+     * @param amount La quantità di denaro da aggiungere al valore del progresso, in centesimi.
      */
-    private void clearOldLimits() {
-        int currentMonth = Calendar.getInstance().get(Calendar.MONTH) + 1;
-        SQLiteDatabase database = getDatabase();
-
-        if (database != null) {
-            database.delete("LIMITS","MONTH < ?", new String[] {String.valueOf(currentMonth)});
-            database.close();
-        }
+    private ProgressIndex.Entry addToProgress(SQLiteDatabase database, ProgressIndex.Entry progress, long amount) {
+        return writeProgress(database, progress, "VALUE = VALUE + ?1, PERCENT = " + percentOf("VALUE + ?1", "MAX"), amount);
     }
 
     /**
-     * Inizializza il saldo disponibile. Chiamato solo alla creazione del database.
+     * Imposta il limite massimo del progresso individuato dalla riga dell'indice fornita, aggiornandone la percentuale di
+     * completamento, e ritorna la nuova riga dell'indice.
+     * Deve essere chiamato all'interno di una transazione (si veda writeProgress(SQLiteDatabase, ProgressIndex.Entry, String,
+     * long)).
+     *
+     * @param database Il database dell'app.
+     * @param progress La riga del progresso da aggiornare.
+     * @param max Il nuovo limite massimo del progresso, in centesimi.
      */
-    private void initBalance(SQLiteDatabase database) {
-        ContentValues contentValues = new ContentValues();
-        contentValues.put("VALUE", 0);
-        database.insert("BALANCE", null, contentValues);
+    private ProgressIndex.Entry setProgressMax(SQLiteDatabase database, ProgressIndex.Entry progress, long max) {
+        return writeProgress(database, progress, "MAX = ?1, PERCENT = " + percentOf("VALUE", "?1"), max);
     }
 
     /**
-     * Ritorna il saldo attualmente disponibile.
-     * Se non è possibile accedere al database, ritorna -1.
+     * Aggiorna la riga del database corrispondente alla riga dell'indice fornita (individuata per indice di riga) con gli
+     * assegnamenti forniti, la rilegge e sostituisce nell'indice dei progressi la riga letta, che viene poi ritornata (oppure
+     * null, se il progresso non esiste più).
+     * Deve essere chiamato all'interno di una transazione: la riga viene letta e l'indice aggiornato mentre la transazione
+     * detiene il blocco in scrittura del database, per cui l'indice riceve le modifiche nello stesso ordine in cui sono
+     * confermate. Se la transazione viene annullata, l'indice deve essere invalidato.
+     *
+     * @param database Il database dell'app.
+     * @param progress La riga del progresso da aggiornare.
+     * @param assignments Gli assegnamenti della clausola SET, in cui ?1 indica argument.
+     * @param argument L'argomento degli assegnamenti.
      */
-    public float getBalance() {
-        float balance = -1;
-        SQLiteDatabase database = getDatabase();
-
-        if (database != null) {
-            Cursor cursor = database.query ("BALANCE", new String[] {"VALUE"}, "_id = ?",
-                    new String[] {Integer.toString(1)}, null, null, null);
-            cursor.moveToFirst();
-            balance = cursor.getFloat(0);
-            cursor.close();
-            database.close();
+    private ProgressIndex.Entry writeProgress(SQLiteDatabase database, ProgressIndex.Entry progress, String assignments,
+                                              long argument) {
+        SQLiteStatement statement = database.compileStatement("UPDATE " + progress.getTable() + " SET " + assignments
+                + " WHERE _id = ?2");
+        statement.bindLong(1, argument);
+        statement.bindLong(2, progress.rowId);
+        statement.executeUpdateDelete();
+        statement.close();
+
+        Cursor cursor = database.rawQuery("SELECT VALUE, MAX, PERCENT FROM " + progress.getTable() + " WHERE _id = ?",
+                new String[] {String.valueOf(progress.rowId)});
+        ProgressIndex.Entry written = null;
+
+        if (cursor.moveToFirst()) {
+            written = progress.with(cursor.getLong(0), cursor.getLong(1), cursor.getInt(2));
+            progressIndex.put(written);
+        } else {
+            progressIndex.invalidate();
         }
 
-        return balance;
+        cursor.close();
+        return written;
     }
 
     /**
-     * Incrementa il saldo disponibile dell'ammontare fornito.
-     * Se non è possibile accedere al database, il saldo disponibile non viene modificato.
+     * Ritorna l'espressione SQL della percentuale di completamento (arrotondata all'intero più vicino) che il valore fornito
+     * rappresenta rispetto al massimo fornito, calcolata come Money.percent(long, long): dato che la divisione intera di
+     * SQLite tronca verso lo zero, il resto viene sottratto al dividendo, in modo che il risultato sia arrotondato per difetto
+     * anche per valori negativi.
      *
-     * @param amount La quantità di denaro da aggiungere al saldo disponibile.
+     * @param value L'espressione del valore.
+     * @param max L'espressione del massimo, che deve essere positivo.
      */
-    public void increaseBalance(float amount) {
-        float balance = getBalance();
-        SQLiteDatabase database = getDatabase();
+    private static String percentOf(String value, String max) {
+        String dividend = "((" + value + ") * 200 + " + max + ")", divisor = "(" + max + " * 2)";
+        return "((" + dividend + " - (" + dividend + " % " + divisor + " + " + divisor + ") % " + divisor + ") / " + divisor
+                + ")";
+    }
 
-        if (balance != -1 && database != null) {
-            ContentValues contentValues = new ContentValues();
-            contentValues.put("VALUE", balance + amount);
-            database.update("BALANCE", contentValues, "_id = ?", new String[] {String.valueOf(1)});
-            database.close();
+    /**
+     * Chiude le istruzioni compilate fornite, ignorando quelle mai create.
+     *
+     * @param statements Le istruzioni da chiudere.
+     */
+    private void closeStatements(SQLiteStatement... statements) {
+        for (SQLiteStatement statement : statements) {
+            if (statement != null)
+                statement.close();
         }
-
     }
 
     /**
-     * Aggiunge un nuovo record al database, scegliendo autonomamente la tabella corretta.
-     * Se non è possibile accedere al database, il record non viene aggiunto.
+     * Rimuove dal database il movimento fornito e, all'interno della stessa transazione, ne annulla l'effetto sui progressi
+     * (limite di spesa o obiettivo corrispondenti alla sua descrizione, se si tratta di un movimento in uscita), sul saldo
+     * disponibile e sui totali mensili, aggiornando il registro BALANCE_SNAPSHOTS e la tabella MONTHLY_TOTALS. Il movimento
+     * viene cercato sia nella tabella MOVEMENTS che nell'archivio (si veda la classe MovementsArchive), di cui viene aggiornato
+     * il riepilogo. Se la transazione non va a buon fine, nessuna delle modifiche viene applicata.
+     * Se il movimento non esiste, o se non è possibile accedere al database, non viene cancellato alcun movimento.
      *
-     * @param entry Il record da aggiungere al database.
+     * @param movement Il movimento da rimuovere, individuato dal suo ID.
      */
-    public void insert(Entry entry) {
+    public void removeMovement(Movement movement) {
         SQLiteDatabase database = getDatabase();
 
         if (database != null) {
-            ContentValues contentValues = new ContentValues();
-            String table = null;
-            contentValues.put("DESCRIPTION", entry.getDescription());
-            contentValues.put("VALUE", entry.getValue());
+            List<Integer> months = new ArrayList<>();
+            int[] archivedYears = movementsArchive.getYears(database);
+            ProgressIndex.Entry[] progresses = new ProgressIndex.Entry[0];
+            database.beginTransaction();
 
-            if (entry instanceof Movement) {
-                contentValues.put("DAY", ((Movement) entry).getDay());
-                contentValues.put("MONTH", ((Movement) entry).getMonth());
-                contentValues.put("YEAR", ((Movement) entry).getYear());
-                contentValues.put("ID", ((Movement) entry).getID());
-                table = "MOVEMENTS";
-            } else if (entry instanceof Progress) {
-                contentValues.put("MAX", ((Progress) entry).getMax());
-                contentValues.put("PERCENT", ((Progress) entry).getPercent());
+            try {
+                if (movement.getValue() < 0) {
+                    progresses = findProgresses(database, movement.getDescription());
+
+                    for (ProgressIndex.Entry progress : progresses)
+                        addToProgress(database, progress, movement.getValue());
 
-                if (entry instanceof Limit) {
-                    contentValues.put("MONTH", ((Limit) entry).getMonth());
-                    table = "LIMITS";
-                } else if (entry instanceof Target) {
-                    table = "TARGETS";
                 }
 
+                deleteMovements(database, movement.getID(), archivedYears, months);
+                database.setTransactionSuccessful();
+            } catch (RuntimeException e) {
+                progressIndex.invalidate();
+                throw e;
+            } finally {
+                database.endTransaction();
+                movementsArchive.invalidate();
             }
 
-            if (table != null)
-                database.insert(table, null, contentValues);
+            for (int month : months)
+                statisticsCache.invalidate(month);
 
-            database.close();
+            onTablesChanged(InvalidationTracker.MOVEMENTS | InvalidationTracker.BALANCE | tablesOf(progresses));
         }
 
     }
 
     /**
-     * Ritorna il record corrispondente al cursore e alla posizione forniti.
-     * Se non è possibile recuperarlo, o questo non esiste, ritorna null.
+     * Rimuove dal database il progresso corrispondente alla descrizione fornita e, se richiesto, all'interno della stessa
+     * transazione anche i movimenti associati (nel caso di un obiettivo, quelli con la stessa descrizione), annullandone
+     * l'effetto sul saldo disponibile e sui totali mensili come removeMovement(Movement).
+     * Se non vi sono corrispondenze, o se non è possibile accedere al database, non viene rimosso alcun progresso.
      *
-     * @param cursor Il cursore da cui prelevare il record.
-     * @param position La posizione del record all'interno di cursor.
+     * @param description La descrizione del progresso da rimuovere dal database.
+     * @param withMovements true se vanno rimossi anche i movimenti associati al progresso.
      */
-    public Entry get(Cursor cursor, int position) {
-        if (cursor.getCount() == 0 || position < 0 || position > cursor.getCount()) {
-            return null;
-        } else {
-            cursor.moveToPosition(position);
-            String description = cursor.getString(0), cursorType = getCursorType(cursor);
-            float value = cursor.getFloat(1);
-
-            if (cursorType.equals(CursorType.MOVEMENTS)) {
-                int day = cursor.getInt(2);
-                int month = cursor.getInt(3);
-                int year = cursor.getInt(4);
-                String ID = cursor.getString(5);
-                return new Movement(description, value, day, month, year, ID);
-            } else if (cursorType.equals(CursorType.LIMITS) || cursorType.equals(CursorType.TARGETS)) {
-                float max = cursor.getFloat(2);
-                int percent = cursor.getInt(3);
-
-                if (cursorType.equals(CursorType.LIMITS)) {
-                    AvailableLimitCategories.remove(description);
-                    return new Limit(description, value, max, percent);
-                }
+    public void removeProgress(String description, boolean withMovements) {
+        SQLiteDatabase database = getDatabase();
 
-                return new Target(description, value, max, percent);
-            } else {
-                return null;
+        if (database != null) {
+            List<Integer> months = new ArrayList<>();
+            int[] archivedYears = movementsArchive.getYears(database);
+            int categoryId = getCategoryId(description);
+            database.beginTransaction();
+
+            try {
+                if (withMovements)
+                    deleteMovements(database, description, archivedYears, months);
+
+                if (categoryId != -1)
+                    database.delete("LIMITS", "CATEGORY_ID = ?", new String[] {String.valueOf(categoryId)});
+
+                database.delete("TARGETS", "DESCRIPTION = ?", new String[] {description});
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+                progressIndex.invalidate();
+                movementsArchive.invalidate();
             }
+
+            for (int month : months)
+                statisticsCache.invalidate(month);
+
+            onTablesChanged(InvalidationTracker.LIMITS | InvalidationTracker.TARGETS
+                    | (withMovements ? InvalidationTracker.MOVEMENTS | InvalidationTracker.BALANCE : 0));
         }
+
     }
 
     /**
-     * Rimuove dal database il movimento individuato da identifier.
-     * Se questo non esiste, o se non è possibile accedervi, non viene cancellato alcun movimento.
+     * Rimuove i movimenti individuati da identifier dalla tabella MOVEMENTS e dalle tabelle degli anni archiviati forniti,
+     * aggiornando il riepilogo degli anni modificati. Aggiunge a months i mesi dei movimenti rimossi.
+     * Deve essere chiamato all'interno di una transazione.
      *
-     * @param identifier Stringa che identifica il movimento. Può essere un ID oppure il nome dell'obiettivo associato al movimento.
+     * @param database Il database dell'app.
+     * @param identifier L'ID del movimento oppure il nome dell'obiettivo associato ai movimenti.
+     * @param archivedYears Gli anni archiviati (si veda MovementsArchive.getYears(SQLiteDatabase)).
+     * @param months La lista a cui aggiungere i mesi dei movimenti rimossi.
      */
-    public void deleteMovement(String identifier) {
-        List<String> targetNames = getTargetNames();
-        SQLiteDatabase database = getDatabase();
+    private void deleteMovements(SQLiteDatabase database, String identifier, int[] archivedYears, List<Integer> months) {
+        String[] selectionArgs = new String[] {identifier, identifier};
+        deleteMovement(database, MovementsArchive.HOT_TABLE, selectionArgs, months);
 
-        if (targetNames != null && database != null) {
-            database.delete("MOVEMENTS", "ID = ? OR DESCRIPTION = ?", new String[] {identifier, identifier});
-            database.close();
-        }
+        for (int year : archivedYears) {
+            if (deleteMovement(database, MovementsArchive.tableOf(year), selectionArgs, months))
+                movementsArchive.refreshSummary(database, year);
 
+        }
     }
 
     /**
-     * Rimuove dal database il progresso corrispodente alla descrizione fornita.
-     * Se non vi sono corrispondenze, o se non è possibile accedere al database, non viene rimosso alcun progresso.
+     * Rimuove dalla tabella fornita (MOVEMENTS oppure una tabella dell'archivio) i movimenti individuati da selectionArgs, e ne
+     * annulla l'effetto sul registro BALANCE_SNAPSHOTS e sulla tabella MONTHLY_TOTALS. Aggiunge a months i mesi dei movimenti
+     * rimossi, e ritorna true se è stato rimosso almeno un movimento.
+     * Deve essere chiamato all'interno di una transazione.
      *
-     * @param description La descrizione del progresso da rimuovere dal database.
+     * @param database Il database dell'app.
+     * @param table La tabella da cui rimuovere i movimenti.
+     * @param selectionArgs L'ID del movimento oppure il nome dell'obiettivo associato, ripetuto due volte.
+     * @param months La lista a cui aggiungere i mesi dei movimenti rimossi.
      */
-    public void deleteProgress(String description) {
-        SQLiteDatabase database = getDatabase();
-
-        if (database != null) {
-            database.delete("LIMITS", "DESCRIPTION = ?", new String[] {description});
-            database.delete("TARGETS", "DESCRIPTION = ?", new String[] {description});
-            database.close();
+    private boolean deleteMovement(SQLiteDatabase database, String table, String[] selectionArgs, List<Integer> months) {
+        Cursor cursor = database.rawQuery("SELECT " + MOVEMENT_MONTH + ", " + MOVEMENT_CATEGORY + ", SUM(VALUE), "
+                + IN_SUM + ", " + OUT_SUM + ", COUNT(*) FROM " + table + " WHERE ID = ? OR DESCRIPTION = ? GROUP BY 1, 2",
+                selectionArgs);
+
+        while (cursor.moveToNext()) {
+            months.add(cursor.getInt(0));
+            applyToLedger(database, cursor.getInt(0), -1 * cursor.getLong(2));
+            applyToTotals(database, cursor.getInt(0), cursor.getInt(1), -1 * cursor.getLong(3), -1 * cursor.getLong(4),
+                    -1 * cursor.getInt(5));
         }
 
+        cursor.close();
+        return database.delete(table, "ID = ? OR DESCRIPTION = ?", selectionArgs) > 0;
     }
 
     /**
-     * Incrementa il valore del progresso corrispondente alla descrizione fornita dell'ammontare fornito.
+     * Incrementa il valore del progresso corrispondente alla descrizione fornita dell'ammontare fornito, con un'unica UPDATE
+     * per indice di riga (il progresso è individuato attraverso l'indice in memoria dei progressi, e l'incremento è calcolato
+     * da SQLite, si veda addToProgress(SQLiteDatabase, ProgressIndex.Entry, long)).
      * Se non vi sono corrispondenze, o se non è possibile accedere al database, non viene incrementato alcun progresso.
      *
      * @param description La descrizione del progresso da incrementare.
      * @param amount La quantità di denaro da aggiungere al valore del progresso identificato da description.
      * @return true se il progresso ha raggiunto/superato il suo limite massimo.
      */
-    public boolean increaseProgress(String description, float amount) {
-        Progress progress = getProgress(description);
+    public boolean increaseProgress(String description, long amount) {
+        SQLiteDatabase database = getDatabase();
         boolean maxReached = false;
 
-        if (progress != null) {
-            float value = progress.getValue(), max = progress.getMax();
-            SQLiteDatabase database = getDatabase();
+        if (database != null) {
+            ProgressIndex.Entry[] progresses;
+            database.beginTransaction();
 
-            if (database != null) {
-                float newValue = value + amount;
-                int newPercent = Math.round((newValue / max) * 100);
+            try {
+                progresses = findProgresses(database, description);
 
-                if (newValue >= max)
-                    maxReached = true;
+                for (ProgressIndex.Entry progress : progresses) {
+                    ProgressIndex.Entry increased = addToProgress(database, progress, amount);
+                    maxReached |= increased != null && increased.value >= increased.max;
+                }
 
-                ContentValues contentValues = new ContentValues();
-                contentValues.put("VALUE", newValue);
-                contentValues.put("PERCENT", newPercent);
-                database.update("LIMITS", contentValues, "DESCRIPTION = ?", new String[] {description});
-                database.update("TARGETS", contentValues, "DESCRIPTION = ?", new String[] {description});
-                database.close();
+                database.setTransactionSuccessful();
+            } catch (RuntimeException e) {
+                progressIndex.invalidate();
+                throw e;
+            } finally {
+                database.endTransaction();
             }
 
+            onTablesChanged(tablesOf(progresses));
         }
 
         return maxReached;
@@ -428,58 +1475,46 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      * @param description La descrizione del progresso da aggiornare.
      * @param newMax Il nuovo limite massimo del progresso corrispondente a description.
      */
-    public void updateProgress(String description, float newMax) {
-        Progress progress = getProgress(description);
-
-        if (progress != null) {
-            float value = progress.getValue();
-            SQLiteDatabase database = getDatabase();
-
-            if (database != null) {
-                int newPercent = Math.round((value / newMax) * 100);
-                ContentValues contentValues = new ContentValues();
-                contentValues.put("PERCENT", newPercent);
-                contentValues.put("MAX", newMax);
-                database.update("LIMITS", contentValues, "DESCRIPTION = ?", new String[] {description});
-                database.update("TARGETS", contentValues, "DESCRIPTION = ?", new String[] {description});
-                database.close();
+    public void updateProgress(String description, long newMax) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database != null) {
+            ProgressIndex.Entry[] progresses;
+            database.beginTransaction();
+
+            try {
+                progresses = findProgresses(database, description);
+
+                for (ProgressIndex.Entry progress : progresses)
+                    setProgressMax(database, progress, newMax);
+
+                database.setTransactionSuccessful();
+            } catch (RuntimeException e) {
+                progressIndex.invalidate();
+                throw e;
+            } finally {
+                database.endTransaction();
             }
 
+            onTablesChanged(tablesOf(progresses));
         }
     }
 
     /**
-     * Ritorna il progresso corrispondente alla descrizione fornita.
+     * Ritorna il progresso corrispondente alla descrizione fornita (il limite di spesa, se ne esiste uno, altrimenti
+     * l'obiettivo), letto dall'indice in memoria dei progressi.
      * Se non vi sono corrispondenze, o se non è possibile accedere al database, ritorna null.
      *
      * @param description La descrizione del progresso da recuperare.
      */
     public Progress getProgress(String description) {
-        List<String> limitCategories = getLimitCategories(), targetNames = getTargetNames();
-        boolean descriptionIsCategory = false;
-        Cursor cursor = null;
-
-        if (limitCategories != null && limitCategories.contains(description)) {
-            cursor = getCursor(CursorType.LIMITS, description);
-            descriptionIsCategory = true;
-        } else if (targetNames != null && targetNames.contains(description)) {
-            cursor = getCursor(CursorType.TARGETS, description);
-        }
+        SQLiteDatabase database = getDatabase();
 
-        if (cursor == null || cursor.getCount() == 0) {
+        if (database == null)
             return null;
-        } else {
-            cursor.moveToFirst();
-            float value = cursor.getFloat(1);
-            float max = cursor.getFloat(2);
-            int percent = cursor.getInt(3);
-
-            if (descriptionIsCategory)
-                return new Limit(description, value, max, percent);
-
-            return new Target(description, value, max, percent);
-        }
 
+        ProgressIndex.Entry[] progresses = findProgresses(database, description);
+        return progresses.length > 0 ? progresses[0].toProgress() : null;
     }
 
     /**
@@ -490,21 +1525,21 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         SQLiteDatabase database = getDatabase();
 
         if (database != null) {
-            Cursor cursor = database.query("LIMITS", new String[]{"DESCRIPTION"}, null,
-                    null, null, null, null);
+            EntryCategoryAccess categories = getCategories();
+            Cursor cursor = database.query("LIMITS", new String[]{"CATEGORY_ID"}, "MONTH = ?",
+                    new String[] {getCurrentMonth()}, null, null, null);
 
             if (cursor.getCount() != 0) {
                 cursor.moveToFirst();
 
                 for (int i : new int[cursor.getCount()]) {
-                    limitCategories.add(cursor.getString(0));
+                    limitCategories.add(categories.get(cursor.getInt(0)));
                     cursor.moveToNext();
                 }
 
             }
 
             cursor.close();
-            database.close();
         }
 
         return limitCategories;
@@ -532,7 +1567,6 @@ public class DatabaseHandler extends SQLiteOpenHelper {
             }
 
             cursor.close();
-            database.close();
         }
 
         return targetNames;
@@ -540,123 +1574,564 @@ public class DatabaseHandler extends SQLiteOpenHelper {
 
     /**
      * Ritorna un SQLiteDatabase con accesso in scrittura e in lettura al database dell'app.
-     * Se non è possibile accedere al database, visualizza un errore in un Toast e ritorna null.
+     * La connessione viene aperta alla prima chiamata e poi riutilizzata, per cui non deve essere chiusa dal chiamante.
+     * Se non è possibile accedere al database, visualizza un errore in un Toast e ritorna null. Dato che il metodo può essere
+     * chiamato anche al di fuori del thread principale (si veda la classe DatabaseExecutor), il Toast viene sempre visualizzato
+     * dal thread principale.
      */
     private SQLiteDatabase getDatabase() {
         try {
             return getWritableDatabase();
         } catch (SQLiteException e) {
-            new WarningAccess(context).show(WarningAccess.DATABASE_ERROR);
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+
+                @Override
+                public void run() {
+                    StaticDataRegistry.getWarningAccess(context).show(WarningAccess.DATABASE_ERROR);
+                }
+            });
         }
 
         return null;
     }
 
     /**
-     * Ritorna il tipo del cursore fornito.
-     * Se il tipo del cursore non è fra quelli previsti dall'app, ritorna null.
+     * Ritorna il lettore dei progressi del tipo fornito (si veda la classe CursorType), in ordine di percentuale di
+     * completamento decrescente. Il tipo determina soltanto la query da eseguire: le righe sono poi lette senza ulteriori
+     * controlli. Se il tipo non è relativo a un progresso, ritorna null.
+     *
+     * @param database Il database dell'app.
+     * @param cursorType Il tipo dei progressi da leggere.
+     * @param limit Il massimo numero di progressi da leggere, oppure null per leggerli tutti.
+     */
+    private ProgressRow<?> queryProgresses(SQLiteDatabase database, String cursorType, String limit) {
+        switch (cursorType) {
+            case CursorType.LIMITS:
+                return queryLimits(database, limit);
+            case CursorType.TARGETS:
+                return queryTargets(database, limit);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Ritorna il lettore dei limiti di spesa del mese corrente, in ordine di percentuale di completamento decrescente.
      *
-     * @param cursor Il cursore da identificare.
+     * @param database Il database dell'app.
+     * @param limit Il massimo numero di limiti di spesa da leggere, oppure null per leggerli tutti.
      */
-    public String getCursorType(Cursor cursor) {
-        if (cursor.getColumnCount() == MOVEMENTS_TABLE_COLUMNS)
-            return CursorType.MOVEMENTS;
-        else if (cursor.getColumnCount() == LIMITS_TABLE_COLUMNS)
-            return CursorType.LIMITS;
-        else if (cursor.getColumnCount() == TARGETS_TABLE_COLUMNS)
-            return CursorType.TARGETS;
+    private LimitRow queryLimits(SQLiteDatabase database, String limit) {
+        return new LimitRow(database.query("LIMITS", new String[] {"CATEGORY_ID", "VALUE", "MAX", "PERCENT", "MONTH", "_id"},
+                "MONTH = ?", new String[] {getCurrentMonth()}, null, null, "PERCENT DESC", limit), getCategories());
+    }
 
-        return null;
+    /**
+     * Ritorna il lettore degli obiettivi, in ordine di percentuale di completamento decrescente.
+     *
+     * @param database Il database dell'app.
+     * @param limit Il massimo numero di obiettivi da leggere, oppure null per leggerli tutti.
+     */
+    private TargetRow queryTargets(SQLiteDatabase database, String limit) {
+        return new TargetRow(database.query("TARGETS", new String[] {"DESCRIPTION", "VALUE", "MAX", "PERCENT", "_id"},
+                null, null, null, null, "PERCENT DESC", limit));
     }
 
     /**
-     * Ritorna il cursore corrispondente al tipo fornito.
-     * Se il tipo del cursore non è fra quelli previsti dall'app, o se non è possibile accedere al database, ritorna null.
+     * Ritorna le informazioni visualizzate nella schermata Home: il saldo disponibile, i maxLimits limiti di spesa e i
+     * maxTargets obiettivi con la maggiore percentuale di completamento.
+     * Le tre letture avvengono all'interno di una stessa transazione non esclusiva, per cui vedono un'unica istantanea del
+     * database: il saldo e i progressi visualizzati sono sempre coerenti fra loro, anche se un'altra operazione modifica il
+     * database nel frattempo. La transazione occupa la connessione principale, dato che SQLiteDatabase non permette di aprirne
+     * in sola lettura, ma grazie al write-ahead logging e agli indici sulla percentuale di completamento (si veda
+     * createProgressesIndexes(SQLiteDatabase)) le letture richiedono pochi millisecondi, indipendentemente dal numero di
+     * progressi salvati, e ritardano le scritture soltanto per questo intervallo. Un'unica query composta avrebbe garantito la
+     * stessa coerenza, ma avrebbe dovuto unire in un solo cursore righe di forma diversa (il saldo, i limiti di spesa e gli
+     * obiettivi), che non potrebbero più essere lette dai lettori LimitRow e TargetRow.
+     * Se non è possibile accedere al database, ritorna null.
      *
-     * @param cursorType Il tipo del cursore da ritornare.
+     * @param maxLimits Il massimo numero di limiti di spesa da leggere.
+     * @param maxTargets Il massimo numero di obiettivi da leggere.
      */
-    public Cursor getCursor(String cursorType) {
-        Cursor cursor = null;
+    public Dashboard getDashboard(int maxLimits, int maxTargets) {
         SQLiteDatabase database = getDatabase();
 
-        if (database != null) {
+        if (database == null)
+            return null;
+
+        database.beginTransactionNonExclusive();
+
+        try {
+            SQLiteStatement balanceQuery = compileBalanceQuery(database);
+            long balance = balanceQuery.simpleQueryForLong();
+            balanceQuery.close();
+
+            ProgressesSnapshot relevantLimits = readProgresses(database, CursorType.LIMITS, String.valueOf(maxLimits));
+            ProgressesSnapshot relevantTargets = readProgresses(database, CursorType.TARGETS, String.valueOf(maxTargets));
+            database.setTransactionSuccessful();
+            return new Dashboard(balance, relevantLimits, relevantTargets);
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Ritorna l'istantanea dei progressi del tipo fornito, in ordine di percentuale di completamento decrescente, creata
+     * scorrendo una sola volta il relativo cursore, che viene chiuso subito dopo.
+     * Se il tipo non è relativo a un progresso, ritorna null.
+     *
+     * @param database Il database dell'app.
+     * @param cursorType Il tipo dei progressi da leggere.
+     * @param limit Il massimo numero di progressi da leggere, oppure null per leggerli tutti.
+     */
+    private ProgressesSnapshot readProgresses(SQLiteDatabase database, String cursorType, String limit) {
+        ProgressRow<?> row = queryProgresses(database, cursorType, limit);
+
+        if (row == null)
+            return null;
+
+        try {
+            return new ProgressesSnapshot(row);
+        } finally {
+            row.close();
+        }
+    }
+
+    /**
+     * Ritorna l'istantanea di tutti i progressi del tipo fornito (si veda la classe ProgressesSnapshot).
+     * Se il tipo non è relativo a un progresso, o se non è possibile accedere al database, ritorna null.
+     *
+     * @param cursorType Il tipo dei progressi dell'istantanea da ritornare.
+     */
+    public ProgressesSnapshot getProgressesSnapshot(String cursorType) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return null;
+
+        return readProgresses(database, cursorType, null);
+    }
+
+    /**
+     * Ritorna i totali dei movimenti di ogni categoria nel mese fornito, in ordine di spesa decrescente, letti dalla tabella
+     * MONTHLY_TOTALS. Le categorie senza movimenti nel mese non sono incluse.
+     * Se non è possibile accedere al database, ritorna null.
+     *
+     * @param month L'epoch day del primo giorno del mese (si veda EpochDays.startOfMonth(int, int)).
+     */
+    public List<CategoryTotal> getCategoryTotals(int month) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return null;
+
+        EntryCategoryAccess categories = getCategories();
+        List<CategoryTotal> categoryTotals = new ArrayList<>();
+        Cursor cursor = database.rawQuery("SELECT CATEGORY_ID, IN_SUM, OUT_SUM, COUNT FROM MONTHLY_TOTALS WHERE MONTH = ? "
+                + "ORDER BY OUT_SUM DESC, IN_SUM DESC", new String[] {String.valueOf(month)});
+
+        while (cursor.moveToNext()) {
+            int categoryId = cursor.getInt(0);
+            categoryTotals.add(new CategoryTotal(categoryId,
+                    categoryId == EntryCategoryAccess.NONE ? null : categories.get(categoryId), cursor.getLong(1),
+                    cursor.getLong(2), cursor.getInt(3)));
+        }
+
+        cursor.close();
+        return categoryTotals;
+    }
+
+    /**
+     * Ritorna i totali dei movimenti di tutte le categorie negli ultimi months mesi, fino al mese fornito compreso, letti dalla
+     * tabella MONTHLY_TOTALS con un'unica query aggregata. La lista contiene esattamente months elementi, dal mese meno recente
+     * al più recente: i mesi senza movimenti hanno totali nulli.
+     * Se non è possibile accedere al database, ritorna null.
+     *
+     * @param month L'epoch day del primo giorno dell'ultimo mese (si veda EpochDays.startOfMonth(int, int)).
+     * @param months Il numero di mesi.
+     */
+    public List<MonthTotal> getMonthlyTrend(int month, int months) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return null;
+
+        int firstMonth = EpochDays.startOfMonth(month, months - 1);
+        List<MonthTotal> monthTotals = new ArrayList<>();
+        Cursor cursor = database.rawQuery("SELECT MONTH, SUM(IN_SUM), SUM(OUT_SUM), SUM(COUNT) FROM MONTHLY_TOTALS "
+                + "WHERE MONTH BETWEEN ? AND ? GROUP BY MONTH ORDER BY MONTH",
+                new String[] {String.valueOf(firstMonth), String.valueOf(month)});
+
+        cursor.moveToFirst();
+
+        for (int i = months - 1; i >= 0; i--) {
+            int currentMonth = EpochDays.startOfMonth(month, i);
+
+            if (!cursor.isAfterLast() && cursor.getInt(0) == currentMonth) {
+                monthTotals.add(new MonthTotal(currentMonth, cursor.getLong(1), cursor.getLong(2), cursor.getInt(3)));
+                cursor.moveToNext();
+            } else {
+                monthTotals.add(new MonthTotal(currentMonth, 0, 0, 0));
+            }
+
+        }
+
+        cursor.close();
+        return monthTotals;
+    }
+
+    /**
+     * Ritorna le statistiche del mese fornito (si veda la classe Statistics), lette dalla tabella MONTHLY_TOTALS. Le due
+     * letture (andamento mensile e ripartizione per categoria) non avvengono all'interno di una transazione, che occuperebbe
+     * la connessione principale bloccando le scritture: se un movimento viene registrato fra l'una e l'altra, le statistiche
+     * lette vengono scartate dalla relativa invalidazione (si veda StatisticsCache.invalidate(int)) e StatisticsFragment,
+     * notificato della modifica alla tabella MOVEMENTS, le legge di nuovo. Le statistiche vengono conservate in memoria (si veda la classe
+     * StatisticsCache) e riutilizzate finché i movimenti dei mesi da cui dipendono non vengono modificati, il giorno non
+     * cambia e la lingua del dispositivo resta la stessa.
+     * Se non è possibile accedere al database, ritorna null.
+     *
+     * @param month L'epoch day del primo giorno del mese (si veda EpochDays.startOfMonth(int, int)).
+     */
+    public Statistics getStatistics(int month) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return null;
+
+        int today = EpochDays.today();
+        EntryCategoryAccess categories = getCategories();
+        long generation = statisticsCache.getGeneration();
+        Statistics statistics = statisticsCache.get(month);
+
+        if (statistics != null && statistics.day == today && statistics.categories == categories)
+            return statistics;
+
+        List<MonthTotal> monthTotals = getMonthlyTrend(month, Statistics.READ_MONTHS);
+        List<CategoryTotal> categoryTotals = getCategoryTotals(month);
+        statistics = new Statistics(month, today, monthTotals, categoryTotals, categories);
+        statisticsCache.put(month, generation, statistics);
+        return statistics;
+    }
+
+    /**
+     * Esporta i movimenti nel file CSV fornito (si veda la classe MovementsExporter), compresi quelli archiviati, e ritorna il
+     * numero di movimenti esportati. Se filter non è null, vengono esportati soltanto i movimenti che rispettano i filtri
+     * forniti, e vengono lette soltanto le tabelle dell'archivio del periodo selezionato.
+     * Se l'esportazione viene annullata, oppure non è possibile accedere al database o scrivere il file, ritorna -1.
+     *
+     * @param file Il file di destinazione.
+     * @param filter I filtri della schermata Movimenti da applicare (si veda MovementsFilter.snapshot()), oppure null.
+     * @param task Il task dell'esportazione, di cui viene controllato l'annullamento.
+     * @param progress Il destinatario dell'avanzamento dell'esportazione.
+     */
+    int exportMovements(File file, MovementsFilter.Snapshot filter, DatabaseExecutor.Task task,
+                        DatabaseExecutor.ProgressCounter progress) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return -1;
+
+        int today = EpochDays.today(), fromYear = filter != null ? EpochDays.getYear(getPeriodStart(filter, today)) : 0;
+        int[] archivedYears = movementsArchive.getYears(database);
+        List<String> tables = new ArrayList<>(archivedYears.length + 1);
+        tables.add(MovementsArchive.HOT_TABLE);
+
+        for (int i = archivedYears.length - 1; i >= 0 && archivedYears[i] >= fromYear; i--)
+            tables.add(MovementsArchive.tableOf(archivedYears[i]));
+
+        return new MovementsExporter(database, tables, filter != null ? generateSelection(filter) : null,
+                filter != null ? generateSelectionArgs(filter, today) : null, getCategories()).export(file, task, progress);
+    }
 
-            switch (cursorType) {
-                case CursorType.MOVEMENTS:
-                    String[] selectionArgs;
-                    String selection = generateSelection();
+    /**
+     * Importa i movimenti letti dal Reader fornito (si veda la classe MovementsParser), in gruppi di al più batchSize
+     * movimenti, e ne ritorna l'esito. Ogni gruppo è inserito in un'unica transazione attraverso la stessa istruzione
+     * compilata, e i suoi effetti sono accumulati in memoria e registrati una sola volta per gruppo: una modifica del
+     * registro BALANCE_SNAPSHOTS per mese, una della tabella MONTHLY_TOTALS per mese e categoria, e un incremento per
+     * progresso (limite di spesa o obiettivo) dei movimenti in uscita del mese corrente, come in recordMovement(Movement,
+     * String). Gli incrementi sono raggruppati per categoria assegnata (compresa EntryCategoryAccess.OTHER) oppure per
+     * obiettivo, e non per descrizione letta dal file.
+     * La descrizione di un movimento viene memorizzata come categoria, se corrisponde ad una di queste, oppure come nome di
+     * un obiettivo, se ne esiste uno; negli altri casi il movimento viene assegnato alla categoria EntryCategoryAccess.OTHER,
+     * e la descrizione originale non viene conservata: la colonna DESCRIPTION della tabella MOVEMENTS contiene soltanto nomi
+     * di obiettivi, e i movimenti che vi corrispondono vengono eliminati insieme all'obiettivo (si veda
+     * removeProgress(String, boolean)). I movimenti dei mesi precedenti non incrementano i progressi, che riguardano il solo
+     * mese corrente, ma restano comunque nel saldo e nelle statistiche.
+     * Trattandosi di movimenti già avvenuti, il saldo disponibile non viene verificato. I movimenti degli anni precedenti
+     * vengono infine spostati nell'archivio (si veda la classe MovementsArchive), e gli osservatori ricevono un'unica
+     * notifica al termine dell'importazione.
+     * L'annullamento del task fornito viene controllato prima di ogni gruppo. In caso di errore di lettura, il gruppo in corso
+     * viene annullato e restano importati soltanto i gruppi precedenti. Se non è possibile accedere al database, ritorna null.
+     *
+     * @param reader Il Reader da cui leggere i movimenti.
+     * @param length La lunghezza del file, in byte, oppure un valore negativo se non è nota.
+     * @param batchSize Il numero di movimenti inseriti da ciascuna transazione.
+     * @param task Il task dell'importazione.
+     * @param progress Il destinatario dell'avanzamento dell'importazione, chiamato dopo ogni gruppo.
+     */
+    ImportResult importMovements(Reader reader, long length, int batchSize, DatabaseExecutor.Task task,
+                                 DatabaseExecutor.ProgressCounter progress) {
+        SQLiteDatabase database = getDatabase();
 
-                    if (selection.isEmpty()) {
-                        cursor = database.query("MOVEMENTS", new String[]{"DESCRIPTION", "VALUE", "DAY", "MONTH",
-                                "YEAR", "ID"}, null, null, null, null, "_id DESC");
+        if (database == null)
+            return null;
+
+        int today = EpochDays.today(), currentMonth = EpochDays.startOfMonth(today, 0), imported = 0, tables = 0;
+        MovementsParser parser = new MovementsParser(reader, today);
+        Set<String> targetNames = new HashSet<>(getTargetNames());
+        SparseLongArray ledgerDeltas = new SparseLongArray();
+        LongSparseArray<long[]> totals = new LongSparseArray<>();
+        Map<String, Long> progressAmounts = new HashMap<>();
+        EntryCategoryAccess categories = getCategories();
+        boolean more = true, completed;
+        SQLiteStatement movementInsert = database.compileStatement("INSERT INTO MOVEMENTS (CATEGORY_ID, DESCRIPTION, VALUE, "
+                + "EPOCH_DAY, ID) VALUES (?, ?, ?, ?, ?)");
+
+        try {
+            while (more && !task.isCancelled()) {
+                int rows = 0;
+                database.beginTransaction();
+
+                try {
+                    while (rows < batchSize && (more = parser.next())) {
+                        String description = parser.getDescription();
+                        long value = parser.getValue();
+                        int month = EpochDays.startOfMonth(parser.getEpochDay(), 0), categoryId = getCategoryId(description);
+
+                        if (categoryId == -1 && !targetNames.contains(description))
+                            categoryId = EntryCategoryAccess.OTHER;
+
+                        if (categoryId == -1) {
+                            movementInsert.bindNull(1);
+                            movementInsert.bindString(2, description);
+                        } else {
+                            movementInsert.bindLong(1, categoryId);
+                            movementInsert.bindNull(2);
+                        }
+
+                        movementInsert.bindLong(3, value);
+                        movementInsert.bindLong(4, parser.getEpochDay());
+                        movementInsert.bindString(5, UUID.randomUUID().toString());
+                        movementInsert.executeInsert();
+
+                        long key = ((long) month << 32) | (categoryId == -1 ? EntryCategoryAccess.NONE : categoryId);
+                        long[] sums = totals.get(key);
+
+                        if (sums == null) {
+                            sums = new long[3];
+                            totals.put(key, sums);
+                        }
+
+                        sums[value > 0 ? 0 : 1] += Math.abs(value);
+                        sums[2]++;
+                        ledgerDeltas.put(month, ledgerDeltas.get(month) + value);
+
+                        if (value < 0 && month == currentMonth) {
+                            String progressKey = categoryId == -1 ? description : categories.get(categoryId);
+                            Long amount = progressAmounts.get(progressKey);
+                            progressAmounts.put(progressKey, (amount == null ? 0 : amount) - value);
+                        }
+
+                        rows++;
                     }
-                    else {
-                        selectionArgs = generateSelectionArgs();
-                        cursor = database.query("MOVEMENTS", new String[] {"DESCRIPTION", "VALUE", "DAY", "MONTH",
-                                "YEAR", "ID"}, selection, selectionArgs, null, null, "_id DESC");
+
+                    for (int i = 0; i < ledgerDeltas.size(); i++)
+                        applyToLedger(database, ledgerDeltas.keyAt(i), ledgerDeltas.valueAt(i));
+
+                    for (int i = 0; i < totals.size(); i++)
+                        applyToTotals(database, (int) (totals.keyAt(i) >> 32), (int) totals.keyAt(i), totals.valueAt(i)[0],
+                                totals.valueAt(i)[1], (int) totals.valueAt(i)[2]);
+
+                    for (Map.Entry<String, Long> amount : progressAmounts.entrySet()) {
+                        for (ProgressIndex.Entry entry : findProgresses(database, amount.getKey())) {
+                            addToProgress(database, entry, amount.getValue());
+                            tables |= entry.limit ? InvalidationTracker.LIMITS : InvalidationTracker.TARGETS;
+                        }
                     }
 
-                    break;
-                case CursorType.LIMITS:
-                    cursor = database.query("LIMITS", new String[] {"DESCRIPTION", "VALUE", "MAX", "PERCENT", "MONTH"},
-                            null, null, null, null, "PERCENT DESC");
-                    break;
-                case CursorType.TARGETS:
-                    cursor = database.query("TARGETS", new String[] {"DESCRIPTION", "VALUE", "MAX", "PERCENT"},
-                            null, null, null, null, "PERCENT DESC");
-                    break;
+                    database.setTransactionSuccessful();
+                } catch (RuntimeException e) {
+                    progressIndex.invalidate();
+                    throw e;
+                } finally {
+                    database.endTransaction();
+                }
+
+                imported += rows;
+
+                for (int i = 0; i < ledgerDeltas.size(); i++)
+                    statisticsCache.invalidate(ledgerDeltas.keyAt(i));
+
+                ledgerDeltas.clear();
+                totals.clear();
+                progressAmounts.clear();
+                progress.onProgress(parser.getPosition(), length);
             }
 
+            completed = !more;
+        } catch (IOException e) {
+            completed = false;
+        } finally {
+            movementInsert.close();
+        }
+
+        if (imported > 0) {
+            movementsArchive.archive(database, EpochDays.startOfYear(today));
+            onTablesChanged(InvalidationTracker.MOVEMENTS | InvalidationTracker.BALANCE | tables);
         }
 
-        return cursor;
+        return new ImportResult(imported, parser.getSkipped(), completed);
     }
 
     /**
-     * Ritorna il cursore corrispondente al tipo fornito e costituito dei soli progressi corrispondenti alla descrizione fornita.
-     * Se il tipo del cursore non è relativo a un progresso, o se non è possibile accedere al database, ritorna null.
+     * Ritorna la pagina di al più pageSize movimenti che, fra quelli che rispettano i filtri selezionati dall'utente nella
+     * schermata Movimenti, seguono l'ultimo movimento della pagina fornita (ovvero sono meno recenti di questo).
+     * Se page è null, ritorna la prima pagina, costituita dai movimenti più recenti.
+     * La lettura avviene per chiave (EPOCH_DAY, _id) e sfrutta l'ordinamento degli indici della tabella MOVEMENTS, per cui il
+     * suo costo dipende dalla dimensione della pagina e non dal numero di movimenti che la precedono.
+     * La prima pagina di ciascuna combinazione di filtri viene conservata in memoria (si veda la classe MovementsPageCache), e
+     * riletta dal database soltanto dopo una modifica della tabella MOVEMENTS.
+     * Se non è possibile accedere al database, ritorna null.
      *
-     * @param cursorType Il tipo del cursore da ritornare.
-     * @param entryDescription La descrizione che identifica i progressi del cursore da ritornare.
+     * @param filter I filtri selezionati dall'utente (si veda MovementsFilter.snapshot()).
+     * @param page La pagina che precede quella da ritornare, oppure null.
+     * @param pageSize Il massimo numero di movimenti della pagina da ritornare.
      */
-    public Cursor getCursor(String cursorType, String entryDescription) {
-        Cursor cursor = null;
-        SQLiteDatabase database = getDatabase();
+    public MovementsPage getMovementsPageAfter(MovementsFilter.Snapshot filter, MovementsPage page, int pageSize) {
+        int today = EpochDays.today();
 
-        if (database != null) {
+        if (page == null) {
+            String key = MovementsPageCache.key(filter.getType(), filter.getCategory(), filter.getPeriod(), today, pageSize);
+            // La versione viene letta prima della query: se la tabella viene modificata durante la lettura, la pagina viene
+            // conservata con una versione già superata, e quindi mai ritornata.
+            long version = invalidationTracker.getVersion(InvalidationTracker.MOVEMENTS);
+            MovementsPage firstPage = movementsPageCache.get(key, version);
+
+            if (firstPage == null) {
+                firstPage = queryMovementsPage(filter, today, null, null, false, pageSize);
+
+                if (firstPage != null)
+                    movementsPageCache.put(key, version, firstPage);
 
-            switch (cursorType) {
-                case CursorType.LIMITS:
-                    cursor = database.query("LIMITS", new String[] {"DESCRIPTION", "VALUE", "MAX", "PERCENT", "MONTH"},
-                            "DESCRIPTION = ?", new String[] {entryDescription}, null, null,
-                            "PERCENT DESC");
-                    break;
-                case CursorType.TARGETS:
-                    cursor = database.query("TARGETS", new String[] {"DESCRIPTION", "VALUE", "MAX", "PERCENT"},
-                            "DESCRIPTION = ?", new String[] {entryDescription}, null, null,
-                            "PERCENT DESC");
-                    break;
             }
 
+            return firstPage;
+        }
+
+        String lastEpochDay = String.valueOf(page.getLastEpochDay());
+        return queryMovementsPage(filter, today, "EPOCH_DAY <= ? AND (EPOCH_DAY < ? OR _id < ?)",
+                new String[] {lastEpochDay, lastEpochDay, String.valueOf(page.getLastRowId())}, false, pageSize);
+    }
+
+    /**
+     * Ritorna la pagina di al più pageSize movimenti che, fra quelli che rispettano i filtri selezionati dall'utente nella
+     * schermata Movimenti, iniziano dal primo movimento della pagina fornita (incluso). Permette di rileggere una finestra di
+     * movimenti già visualizzata, ad esempio dopo l'eliminazione di uno di questi.
+     * Se non è possibile accedere al database, ritorna null.
+     *
+     * @param filter I filtri selezionati dall'utente (si veda MovementsFilter.snapshot()).
+     * @param page La pagina da cui iniziare la lettura.
+     * @param pageSize Il massimo numero di movimenti della pagina da ritornare.
+     */
+    public MovementsPage getMovementsPageFrom(MovementsFilter.Snapshot filter, MovementsPage page, int pageSize) {
+        String firstEpochDay = String.valueOf(page.getFirstEpochDay());
+        return queryMovementsPage(filter, EpochDays.today(), "EPOCH_DAY <= ? AND (EPOCH_DAY < ? OR _id <= ?)",
+                new String[] {firstEpochDay, firstEpochDay, String.valueOf(page.getFirstRowId())}, false, pageSize);
+    }
+
+    /**
+     * Ritorna la pagina di al più pageSize movimenti che, fra quelli che rispettano i filtri selezionati dall'utente nella
+     * schermata Movimenti, precedono il primo movimento della pagina fornita (ovvero sono più recenti di questo).
+     * Se non è possibile accedere al database, ritorna null.
+     *
+     * @param filter I filtri selezionati dall'utente (si veda MovementsFilter.snapshot()).
+     * @param page La pagina che segue quella da ritornare.
+     * @param pageSize Il massimo numero di movimenti della pagina da ritornare.
+     */
+    public MovementsPage getMovementsPageBefore(MovementsFilter.Snapshot filter, MovementsPage page, int pageSize) {
+        String firstEpochDay = String.valueOf(page.getFirstEpochDay());
+        return queryMovementsPage(filter, EpochDays.today(), "EPOCH_DAY >= ? AND (EPOCH_DAY > ? OR _id > ?)",
+                new String[] {firstEpochDay, firstEpochDay, String.valueOf(page.getFirstRowId())}, true, pageSize);
+    }
+
+    /**
+     * Legge una pagina di al più pageSize movimenti che rispettano i filtri forniti e la condizione fornita.
+     * I movimenti sono letti dalla tabella MOVEMENTS oppure, se il periodo selezionato comprende degli anni archiviati,
+     * dall'unione di questa con le relative tabelle dell'archivio (si veda MovementsArchive.source(SQLiteDatabase, int)).
+     * Indipendentemente dall'ordine di lettura, i movimenti della pagina ritornata sono sempre ordinati dal più al meno
+     * recente. Legge inoltre, con un'unica query raggruppata per giorno, il totale dei movimenti (che rispettano i
+     * filtri) di ciascuno dei giorni della pagina.
+     * Se non è possibile accedere al database, ritorna null.
+     *
+     * @param filter I filtri selezionati dall'utente.
+     * @param today Il giorno corrente, in formato epoch day, da cui dipende l'inizio del periodo del filtro.
+     * @param keyCondition La condizione sulla chiave (EPOCH_DAY, _id) dei movimenti da leggere, oppure null.
+     * @param keyArgs Gli argomenti di keyCondition, oppure null.
+     * @param ascending Se true, vengono letti i movimenti meno recenti che rispettano la condizione, altrimenti i più recenti.
+     * @param pageSize Il massimo numero di movimenti della pagina.
+     */
+    private MovementsPage queryMovementsPage(MovementsFilter.Snapshot filter, int today, String keyCondition, String[] keyArgs,
+                                             boolean ascending, int pageSize) {
+        SQLiteDatabase database = getDatabase();
+
+        if (database == null)
+            return null;
+
+        String source = movementsArchive.source(database, getPeriodStart(filter, today));
+        String filterSelection = generateSelection(filter), selection = filterSelection;
+        List<String> selectionArgs = new ArrayList<>(Arrays.asList(generateSelectionArgs(filter, today)));
+        List<String> totalsSelectionArgs = new ArrayList<>(selectionArgs);
+
+        if (keyCondition != null) {
+            selection += " AND " + keyCondition;
+            selectionArgs.addAll(Arrays.asList(keyArgs));
+        }
+
+        MovementRow row = new MovementRow(database.query(source,
+                new String[] {"CATEGORY_ID", "DESCRIPTION", "VALUE", "EPOCH_DAY", "ID", "_id"}, selection,
+                selectionArgs.toArray(new String[0]), null, null, ascending ? "EPOCH_DAY ASC, _id ASC" : "EPOCH_DAY DESC, _id DESC",
+                String.valueOf(pageSize)), getCategories());
+        List<Movement> movements = new ArrayList<>(row.getCount());
+        long[] rowIds = new long[row.getCount()];
+
+        for (int i = 0; i < rowIds.length; i++) {
+            row.moveToPosition(ascending ? rowIds.length - 1 - i : i);
+            rowIds[i] = row.getRowId();
+            movements.add(row.read());
+        }
+
+        row.close();
+        SparseLongArray dayTotals = new SparseLongArray();
+
+        if (!movements.isEmpty()) {
+            totalsSelectionArgs.add(String.valueOf(movements.get(movements.size() - 1).getEpochDay()));
+            totalsSelectionArgs.add(String.valueOf(movements.get(0).getEpochDay()));
+            Cursor cursor = database.query(source, new String[] {"EPOCH_DAY", "SUM(VALUE)"},
+                    filterSelection + " AND EPOCH_DAY >= ? AND EPOCH_DAY <= ?", totalsSelectionArgs.toArray(new String[0]),
+                    "EPOCH_DAY", null, null);
+
+            while (cursor.moveToNext())
+                dayTotals.put(cursor.getInt(0), cursor.getLong(1));
+
+            cursor.close();
         }
 
-        return cursor;
+        return new MovementsPage(movements, rowIds, dayTotals);
     }
 
     /**
      * Genera l'argomento selection del metodo query (si veda la classe SQLiteDatabase sul sito Android Developers) utilizzato per
      * filtrare gli elementi di un determinato cursore. In questo caso, permette di considerare solo i movimenti che rispettano i
      * filtri selezionati dall'utente nella schermata Movimenti dell'app.
+     *
+     * @param filter I filtri selezionati dall'utente.
      */
-    private String generateSelection() {
+    private String generateSelection(MovementsFilter.Snapshot filter) {
         String partialCondition = null;
         StringBuilder selection = new StringBuilder();
-        EntryTypeAccess entryTypeAccess = new EntryTypeAccess(context);
-        EntryCategoryAccess entryCategoryAccess = new EntryCategoryAccess(context);
-        MovementPeriodAccess movementPeriodAccess = new MovementPeriodAccess(context);
 
-        if (!MovementsFilter.getType().equals(entryTypeAccess.get(EntryTypeAccess.ALL))) {
-            if (MovementsFilter.getType().equals(entryTypeAccess.get(EntryTypeAccess.INS)))
+        if (filter.getType() != EntryTypeAccess.ALL) {
+            if (filter.getType() == EntryTypeAccess.INS)
                 partialCondition = "VALUE > ?";
             else
                 partialCondition = "VALUE < ?";
@@ -664,28 +2139,18 @@ public class DatabaseHandler extends SQLiteOpenHelper {
             selection.append(partialCondition);
         }
 
-        if (!MovementsFilter.getCategory().equals(entryCategoryAccess.get(EntryCategoryAccess.ALL))) {
+        if (filter.getCategory() != EntryCategoryAccess.ALL) {
             if (partialCondition != null)
                 selection.append(" AND ");
 
-            partialCondition = "DESCRIPTION = ?";
+            partialCondition = "CATEGORY_ID = ?";
             selection.append(partialCondition);
         }
 
-        if (!MovementsFilter.getPeriod().equals(movementPeriodAccess.get(MovementPeriodAccess.LAST_YEAR))) {
-            if (partialCondition != null)
-                selection.append(" AND ");
-
-            if (MovementsFilter.getPeriod().equals(movementPeriodAccess.get(MovementPeriodAccess.LAST_WEEK)))
-                partialCondition = "MONTH = ? AND DAY >= ?";
-            else if (MovementsFilter.getPeriod().equals(movementPeriodAccess.get(MovementPeriodAccess.LAST_MONTH)))
-                partialCondition = "MONTH = ?";
-            else
-                partialCondition = "MONTH <= ?";
-
-            selection.append(partialCondition);
-        }
+        if (partialCondition != null)
+            selection.append(" AND ");
 
+        selection.append("EPOCH_DAY >= ? AND EPOCH_DAY < ?");
         return selection.toString();
     }
 
@@ -693,45 +2158,46 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      * Genera l'argomento selectionArgs del metodo query (si veda la classe SQLiteDatabase sul sito Android Developers) utilizzato per
      * filtrare gli elementi di un determinato cursore. In questo caso, permette di considerare solo i movimenti che rispettano i
      * filtri selezionati dall'utente nella schermata Movimenti dell'app.
+     *
+     * @param filter I filtri selezionati dall'utente.
+     * @param today Il giorno corrente, in formato epoch day.
      */
-    private String[] generateSelectionArgs() {
-        EntryTypeAccess entryTypeAccess = new EntryTypeAccess(context);
-        EntryCategoryAccess entryCategoryAccess = new EntryCategoryAccess(context);
-        MovementPeriodAccess movementPeriodAccess = new MovementPeriodAccess(context);
-        int currentDayOfWeek = Calendar.getInstance().get(Calendar.DAY_OF_WEEK);
-        int currentDayOfMonth = Calendar.getInstance().get(Calendar.DAY_OF_MONTH);
-        int currentMonth = Calendar.getInstance().get(Calendar.MONTH) + 1;
+    private String[] generateSelectionArgs(MovementsFilter.Snapshot filter, int today) {
         List<String> partialSelectionArgs = new ArrayList<>();
         String[] selectionArgs;
-        int dayCondition;
 
-        if (!MovementsFilter.getType().equals(entryTypeAccess.get(EntryTypeAccess.ALL)))
+        if (filter.getType() != EntryTypeAccess.ALL)
             partialSelectionArgs.add(String.valueOf(0));
 
-        if (!MovementsFilter.getCategory().equals(entryCategoryAccess.get(EntryCategoryAccess.ALL)))
-            partialSelectionArgs.add(MovementsFilter.getCategory());
-
-        if (!MovementsFilter.getPeriod().equals(movementPeriodAccess.get(MovementPeriodAccess.LAST_YEAR))) {
-            if (MovementsFilter.getPeriod().equals(movementPeriodAccess.get(MovementPeriodAccess.LAST_WEEK))) {
-                if (currentDayOfWeek == Calendar.SUNDAY)
-                    dayCondition = currentDayOfMonth - 6;
-                else
-                    dayCondition = currentDayOfMonth - currentDayOfWeek + 2;
-
-                partialSelectionArgs.add(String.valueOf(currentMonth));
-                partialSelectionArgs.add(String.valueOf(dayCondition));
-            }
+        if (filter.getCategory() != EntryCategoryAccess.ALL)
+            partialSelectionArgs.add(String.valueOf(filter.getCategory()));
 
-            else if (MovementsFilter.getPeriod().equals(movementPeriodAccess.get(MovementPeriodAccess.LAST_MONTH)))
-                partialSelectionArgs.add(String.valueOf(currentMonth));
-            else
-                partialSelectionArgs.add(String.valueOf(currentMonth - 2));
-        }
+        partialSelectionArgs.add(String.valueOf(getPeriodStart(filter, today)));
+        partialSelectionArgs.add(String.valueOf(today + 1));
 
         selectionArgs = new String[partialSelectionArgs.size()];
         selectionArgs = partialSelectionArgs.toArray(selectionArgs);
         return selectionArgs;
     }
 
+    /**
+     * Ritorna il primo giorno del periodo selezionato dall'utente nella schermata Movimenti dell'app, in formato epoch day.
+     *
+     * @param filter I filtri selezionati dall'utente.
+     * @param today Il giorno corrente, in formato epoch day.
+     */
+    private int getPeriodStart(MovementsFilter.Snapshot filter, int today) {
+        switch (filter.getPeriod()) {
+            case MovementPeriodAccess.LAST_WEEK:
+                return EpochDays.startOfWeek(today);
+            case MovementPeriodAccess.LAST_MONTH:
+                return EpochDays.startOfMonth(today, 0);
+            case MovementPeriodAccess.LAST_THREE_MONTHS:
+                return EpochDays.startOfMonth(today, 2);
+            default:
+                return EpochDays.startOfYear(today);
+        }
+    }
+
 }
 
@@ -17,13 +17,13 @@ public class Entry {
     protected String description;
 
     /**
-     * Il valore del record.
+     * Il valore del record, espresso in centesimi (si veda la classe Money).
      * Questo coincide con:
      *      - Per la classe Movement, la quantità di denaro associata al movimento.
      *      - Per la classe Limit, la quantità di denaro spesa nel mese corrente in una determinata categoria.
      *      - Per la classe Target, la quantità di denaro complessivamente destinata all'acquisto di un dato bene.
      */
-    protected float value;
+    protected long value;
 
     /**
      * Inizializza un nuovo record con la descrizione fornita.
@@ -41,7 +41,7 @@ public class Entry {
      * @param description La descrizione del nuovo record.
      * @param value Il valore del nuovo record.
      */
-    public Entry(String description, float value) {
+    public Entry(String description, long value) {
         this.description = description;
         this.value = value;
     }
@@ -56,7 +56,7 @@ public class Entry {
     /**
      * Ritorna il valore del record.
      */
-    public float getValue() {
+    public long getValue() {
         return value;
     }
 
@@ -0,0 +1,61 @@
+package com.lonedev.smartwallet.data;
+
+/**
+ * Classe che rappresenta l'esito dell'importazione di un file di movimenti (si veda
+ * DatabaseHandler.importMovements(Reader, long, int, DatabaseExecutor.Task, DatabaseExecutor.ProgressCounter)).
+ *
+ * @author Marco Michelini
+ */
+public class ImportResult {
+
+    /**
+     * Il numero di movimenti importati.
+     */
+    private int imported;
+
+    /**
+     * Il numero di righe saltate perché non valide.
+     */
+    private int skipped;
+
+    /**
+     * Indica se il file è stato letto per intero.
+     * In caso contrario (errore di lettura), restano importati soltanto i movimenti dei gruppi già confermati.
+     */
+    private boolean completed;
+
+    /**
+     * Inizializza un nuovo esito con le informazioni fornite.
+     *
+     * @param imported Il numero di movimenti importati.
+     * @param skipped Il numero di righe saltate perché non valide.
+     * @param completed true se il file è stato letto per intero.
+     */
+    ImportResult(int imported, int skipped, boolean completed) {
+        this.imported = imported;
+        this.skipped = skipped;
+        this.completed = completed;
+    }
+
+    /**
+     * Ritorna il numero di movimenti importati.
+     */
+    public int getImported() {
+        return imported;
+    }
+
+    /**
+     * Ritorna il numero di righe saltate perché non valide.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Ritorna true se il file è stato letto per intero.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+}
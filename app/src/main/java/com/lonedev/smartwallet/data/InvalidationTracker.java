@@ -0,0 +1,184 @@
+package com.lonedev.smartwallet.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe che tiene traccia delle modifiche alle tabelle del database dell'app e le notifica agli osservatori registrati.
+ * Ogni tabella osservabile è individuata da un flag (MOVEMENTS, LIMITS, TARGETS, BALANCE), per cui un insieme di tabelle è
+ * rappresentato dall'OR dei relativi flag. Dopo ogni scrittura confermata, DatabaseHandler incrementa la versione delle
+ * tabelle modificate (si veda notifyChanged(int)); le modifiche vengono quindi notificate sul thread principale, accorpando
+ * in un'unica notifica tutte quelle avvenute prima della sua consegna. Ogni osservatore riceve soltanto le tabelle cui è
+ * interessato, e non viene chiamato se nessuna di queste è stata modificata.
+ * La registrazione e la rimozione degli osservatori devono avvenire sul thread principale; notifyChanged(int) e
+ * getVersion(int) possono essere chiamati da qualsiasi thread.
+ *
+ * @author Marco Michelini
+ */
+public class InvalidationTracker {
+
+    /**
+     * La tabella MOVEMENTS, che contiene i movimenti.
+     */
+    public static final int MOVEMENTS = 1;
+
+    /**
+     * La tabella LIMITS, che contiene i limiti di spesa.
+     */
+    public static final int LIMITS = 1 << 1;
+
+    /**
+     * La tabella TARGETS, che contiene gli obiettivi.
+     */
+    public static final int TARGETS = 1 << 2;
+
+    /**
+     * La tabella BALANCE_SNAPSHOTS, che contiene il registro del saldo disponibile.
+     */
+    public static final int BALANCE = 1 << 3;
+
+    /**
+     * Il numero di tabelle osservabili.
+     */
+    private static final int TABLE_COUNT = 4;
+
+    /**
+     * Riceve le modifiche alle tabelle del database dell'app.
+     */
+    public interface Observer {
+
+        /**
+         * Metodo chiamato sul thread principale dopo che una o più delle tabelle osservate sono state modificate.
+         *
+         * @param tables Le tabelle osservate che sono state modificate (OR dei relativi flag).
+         */
+        void onTablesChanged(int tables);
+
+    }
+
+    /**
+     * Un osservatore registrato, assieme alle tabelle che osserva.
+     */
+    private static class Registration {
+
+        /**
+         * L'osservatore.
+         */
+        private final Observer observer;
+
+        /**
+         * Le tabelle osservate (OR dei relativi flag).
+         */
+        private final int tables;
+
+        /**
+         * Inizializza una nuova Registration con i parametri forniti.
+         */
+        Registration(Observer observer, int tables) {
+            this.observer = observer;
+            this.tables = tables;
+        }
+
+    }
+
+    /**
+     * La versione di ciascuna tabella, indicizzata per posizione del relativo flag.
+     */
+    private final long[] versions = new long[TABLE_COUNT];
+
+    /**
+     * Gli osservatori registrati. Letto e modificato soltanto sul thread principale.
+     */
+    private final List<Registration> registrations = new ArrayList<>();
+
+    /**
+     * Handler associato al thread principale, usato per consegnare le notifiche.
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Le tabelle modificate dall'ultima notifica consegnata (OR dei relativi flag).
+     */
+    private int pendingTables;
+
+    /**
+     * Consegna agli osservatori le modifiche accumulate in pendingTables.
+     */
+    private final Runnable dispatch = new Runnable() {
+
+        @Override
+        public void run() {
+            int tables;
+
+            synchronized (InvalidationTracker.this) {
+                tables = pendingTables;
+                pendingTables = 0;
+            }
+
+            // Un osservatore può rimuovere sé stesso (o altri osservatori) durante la notifica.
+            for (Registration registration : new ArrayList<>(registrations)) {
+                if ((registration.tables & tables) != 0 && registrations.contains(registration))
+                    registration.observer.onTablesChanged(registration.tables & tables);
+
+            }
+        }
+    };
+
+    /**
+     * Registra l'osservatore fornito, che riceverà le modifiche alle tabelle fornite. Deve essere chiamato sul thread principale.
+     *
+     * @param observer L'osservatore da registrare.
+     * @param tables Le tabelle da osservare (OR dei relativi flag).
+     */
+    public void addObserver(Observer observer, int tables) {
+        registrations.add(new Registration(observer, tables));
+    }
+
+    /**
+     * Rimuove l'osservatore fornito, che non riceverà più alcuna notifica. Deve essere chiamato sul thread principale.
+     *
+     * @param observer L'osservatore da rimuovere.
+     */
+    public void removeObserver(Observer observer) {
+        for (int i = registrations.size() - 1; i >= 0; i--) {
+            if (registrations.get(i).observer == observer)
+                registrations.remove(i);
+
+        }
+    }
+
+    /**
+     * Ritorna la versione attuale della tabella fornita, che viene incrementata dopo ogni sua modifica.
+     *
+     * @param table Il flag della tabella.
+     */
+    public synchronized long getVersion(int table) {
+        return versions[Integer.numberOfTrailingZeros(table)];
+    }
+
+    /**
+     * Incrementa la versione delle tabelle fornite e ne programma la notifica sul thread principale, se non è già in attesa di
+     * essere consegnata. Deve essere chiamato dopo che la modifica delle tabelle è stata confermata nel database.
+     *
+     * @param tables Le tabelle modificate (OR dei relativi flag).
+     */
+    synchronized void notifyChanged(int tables) {
+        if (tables == 0)
+            return;
+
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            if ((tables & (1 << i)) != 0)
+                versions[i]++;
+
+        }
+
+        if (pendingTables == 0)
+            mainHandler.post(dispatch);
+
+        pendingTables |= tables;
+    }
+
+}
@@ -22,7 +22,7 @@ public class Limit extends Progress {
      * @param description La categoria del nuovo limite di spesa.
      * @param max Il valore massimo mensile del nuovo limite di spesa.
      */
-    public Limit(String description, float max) {
+    public Limit(String description, long max) {
         super(description, max);
         month = (Calendar.getInstance().get(Calendar.MONTH)) + 1;
     }
@@ -35,7 +35,7 @@ public class Limit extends Progress {
      * @param max Il valore massimo mensile del nuovo limite di spesa.
      * @param percent La percentuale di completamento del nuovo limite di spesa.
      */
-    public Limit(String description, float value, float max, int percent) {
+    public Limit(String description, long value, long max, int percent) {
         super(description, value, max, percent);
         month = (Calendar.getInstance().get(Calendar.MONTH)) + 1;
     }
@@ -0,0 +1,53 @@
+package com.lonedev.smartwallet.data;
+
+import android.database.Cursor;
+
+import com.lonedev.smartwallet.static_data.CursorType;
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+
+/**
+ * Lettore delle righe di un cursore sulla tabella LIMITS (si veda la classe ProgressRow).
+ * La descrizione di un limite di spesa è ricavata dalla sua categoria (colonna CATEGORY_ID) nella lingua attuale del dispositivo.
+ *
+ * @author Marco Michelini
+ */
+final class LimitRow extends ProgressRow<Limit> {
+
+    /**
+     * Le categorie nella lingua attuale del dispositivo.
+     */
+    private final EntryCategoryAccess categories;
+
+    /**
+     * L'indice della colonna CATEGORY_ID del cursore.
+     */
+    private int categoryColumn;
+
+    /**
+     * Inizializza un nuovo lettore del cursore fornito, che deve essere stato ottenuto dalla tabella LIMITS.
+     *
+     * @param cursor Il cursore da cui leggere i limiti di spesa.
+     * @param categories Le categorie nella lingua attuale del dispositivo (si veda StaticDataRegistry).
+     */
+    LimitRow(Cursor cursor, EntryCategoryAccess categories) {
+        super(cursor);
+        this.categories = categories;
+        categoryColumn = cursor.getColumnIndexOrThrow("CATEGORY_ID");
+    }
+
+    @Override
+    String getCursorType() {
+        return CursorType.LIMITS;
+    }
+
+    @Override
+    String getDescription() {
+        return categories.get(cursor.getInt(categoryColumn));
+    }
+
+    @Override
+    Limit read() {
+        return new Limit(getDescription(), getValue(), getMax(), getPercent());
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.lonedev.smartwallet.data;
+
+/**
+ * Classe che rappresenta i totali dei movimenti di un mese, di tutte le categorie, letti dalla tabella MONTHLY_TOTALS (si veda
+ * DatabaseHandler.getMonthlyTrend(int, int)). Un MonthTotal non viene mai modificato dopo la sua creazione.
+ *
+ * @author Marco Michelini
+ */
+public class MonthTotal {
+
+    /**
+     * Il primo giorno del mese, in formato epoch day.
+     */
+    private int month;
+
+    /**
+     * La somma dei movimenti in entrata, in centesimi.
+     */
+    private long inSum;
+
+    /**
+     * La somma dei movimenti in uscita, in centesimi (sempre positiva).
+     */
+    private long outSum;
+
+    /**
+     * Il numero di movimenti.
+     */
+    private int count;
+
+    /**
+     * Inizializza un nuovo MonthTotal con i parametri forniti.
+     *
+     * @param month Il primo giorno del mese, in formato epoch day.
+     * @param inSum La somma dei movimenti in entrata, in centesimi.
+     * @param outSum La somma dei movimenti in uscita, in centesimi.
+     * @param count Il numero di movimenti.
+     */
+    MonthTotal(int month, long inSum, long outSum, int count) {
+        this.month = month;
+        this.inSum = inSum;
+        this.outSum = outSum;
+        this.count = count;
+    }
+
+    /**
+     * Ritorna il primo giorno del mese, in formato epoch day.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Ritorna la somma dei movimenti in entrata, in centesimi.
+     */
+    public long getInSum() {
+        return inSum;
+    }
+
+    /**
+     * Ritorna la somma dei movimenti in uscita, in centesimi (sempre positiva).
+     */
+    public long getOutSum() {
+        return outSum;
+    }
+
+    /**
+     * Ritorna il numero di movimenti.
+     */
+    public int getCount() {
+        return count;
+    }
+
+}
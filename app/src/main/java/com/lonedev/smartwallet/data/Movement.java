@@ -1,8 +1,8 @@
 package com.lonedev.smartwallet.data;
 
 import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
 
-import java.util.Calendar;
 import java.util.UUID;
 
 /**
@@ -15,19 +15,9 @@ import java.util.UUID;
 public class Movement extends Entry {
 
     /**
-     * Il giorno del mese in cui il movimento è stato creato.
+     * La data in cui il movimento è stato creato, in formato epoch day (si veda la classe EpochDays).
      */
-    private int day;
-
-    /**
-     * Il mese in cui il movimento è stato creato.
-     */
-    private int month;
-
-    /**
-     * L'anno in cui il movimento è stato creato.
-     */
-    private int year;
+    private int epochDay;
 
     /**
      * Identifica univocamente un movimento, permettendo di eliminarlo dal database.
@@ -41,11 +31,9 @@ public class Movement extends Entry {
      * @param description La categoria del nuovo movimento.
      * @param value Il valore del nuovo movimento.
      */
-    public Movement(String description, float value) {
+    public Movement(String description, long value) {
         super(description, value);
-        day = Calendar.getInstance().get(Calendar.DAY_OF_MONTH);
-        month = Calendar.getInstance().get(Calendar.MONTH) + 1;
-        year = Calendar.getInstance().get(Calendar.YEAR);
+        epochDay = EpochDays.today();
         ID = UUID.randomUUID().toString();
     }
 
@@ -54,38 +42,20 @@ public class Movement extends Entry {
      *
      * @param description La categoria del nuovo movimento.
      * @param value Il valore del nuovo movimento.
-     * @param day Il giorno del mese del nuovo movimento.
-     * @param month Il mese del nuovo movimento.
-     * @param year L'anno del nuovo movimento.
+     * @param epochDay La data del nuovo movimento, in formato epoch day.
      * @param ID L'ID del nuovo movimento.
      */
-    public Movement(String description, float value, int day, int month, int year, String ID) {
+    public Movement(String description, long value, int epochDay, String ID) {
         super(description, value);
-        this.day = day;
-        this.month = month;
-        this.year = year;
+        this.epochDay = epochDay;
         this.ID = ID;
     }
 
     /**
-     * Ritorna il giorno del mese del movimento.
-     */
-    public int getDay() {
-        return day;
-    }
-
-    /**
-     * Ritorna il mese del movimento.
-     */
-    public int getMonth() {
-        return month;
-    }
-
-    /**
-     * Ritorna l'anno del movimento.
+     * Ritorna la data del movimento, in formato epoch day.
      */
-    public int getYear() {
-        return year;
+    public int getEpochDay() {
+        return epochDay;
     }
 
     /**
@@ -99,7 +69,7 @@ public class Movement extends Entry {
      * Ritorna la data in cui il movimento è stato aggiunto nel formato dd/mm/yy.
      */
     public String getDate() {
-        return DataFormat.format(day, month, year);
+        return DataFormat.format(EpochDays.getDay(epochDay), EpochDays.getMonth(epochDay), EpochDays.getYear(epochDay));
     }
 
 }
@@ -0,0 +1,90 @@
+package com.lonedev.smartwallet.data;
+
+import android.database.Cursor;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+
+/**
+ * Classe che permette di leggere le righe di un cursore sulla tabella MOVEMENTS.
+ * Gli indici delle colonne sono risolti una sola volta, alla creazione del lettore, per cui la lettura di una riga non
+ * dipende dall'ordine delle colonne della query. Il lettore legge sempre la riga su cui è posizionato il cursore.
+ * La descrizione di un movimento è ricavata dalla sua categoria (colonna CATEGORY_ID) nella lingua attuale del dispositivo;
+ * soltanto per i movimenti associati a un obiettivo, che non hanno categoria, è letta dalla colonna DESCRIPTION.
+ *
+ * @author Marco Michelini
+ */
+final class MovementRow {
+
+    /**
+     * Il cursore da cui vengono lette le righe.
+     */
+    private final Cursor cursor;
+
+    /**
+     * Le categorie nella lingua attuale del dispositivo.
+     */
+    private final EntryCategoryAccess categories;
+
+    /**
+     * Gli indici delle colonne CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY, ID e _id del cursore.
+     */
+    private int categoryColumn, descriptionColumn, valueColumn, epochDayColumn, idColumn, rowIdColumn;
+
+    /**
+     * Inizializza un nuovo lettore del cursore fornito, risolvendone gli indici delle colonne.
+     *
+     * @param cursor Il cursore da cui leggere i movimenti.
+     * @param categories Le categorie nella lingua attuale del dispositivo (si veda StaticDataRegistry).
+     */
+    MovementRow(Cursor cursor, EntryCategoryAccess categories) {
+        this.cursor = cursor;
+        this.categories = categories;
+        categoryColumn = cursor.getColumnIndexOrThrow("CATEGORY_ID");
+        descriptionColumn = cursor.getColumnIndexOrThrow("DESCRIPTION");
+        valueColumn = cursor.getColumnIndexOrThrow("VALUE");
+        epochDayColumn = cursor.getColumnIndexOrThrow("EPOCH_DAY");
+        idColumn = cursor.getColumnIndexOrThrow("ID");
+        rowIdColumn = cursor.getColumnIndexOrThrow("_id");
+    }
+
+    /**
+     * Ritorna il numero di righe del cursore.
+     */
+    int getCount() {
+        return cursor.getCount();
+    }
+
+    /**
+     * Posiziona il cursore sulla riga fornita.
+     *
+     * @param position La posizione della riga.
+     * @return false se la riga non esiste.
+     */
+    boolean moveToPosition(int position) {
+        return cursor.moveToPosition(position);
+    }
+
+    /**
+     * Crea il movimento corrispondente alla riga attuale.
+     */
+    Movement read() {
+        String description = cursor.isNull(categoryColumn) ? cursor.getString(descriptionColumn)
+                : categories.get(cursor.getInt(categoryColumn));
+        return new Movement(description, cursor.getLong(valueColumn), cursor.getInt(epochDayColumn), cursor.getString(idColumn));
+    }
+
+    /**
+     * Ritorna l'indice di riga del movimento della riga attuale.
+     */
+    long getRowId() {
+        return cursor.getLong(rowIdColumn);
+    }
+
+    /**
+     * Chiude il cursore.
+     */
+    void close() {
+        cursor.close();
+    }
+
+}
@@ -0,0 +1,277 @@
+package com.lonedev.smartwallet.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.SparseIntArray;
+
+import com.lonedev.smartwallet.support.EpochDays;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe che gestisce l'archivio dei movimenti degli anni precedenti, suddiviso in una tabella per anno (MOVEMENTS_ seguito
+ * dall'anno, con le stesse colonne della tabella MOVEMENTS). Al termine di un anno, i suoi movimenti vengono spostati, in
+ * un'unica transazione, dalla tabella MOVEMENTS (che contiene così soltanto i movimenti dell'anno corrente) alla tabella del
+ * relativo anno, e il riepilogo dell'anno viene registrato nella tabella YEARLY_SUMMARIES (si veda archive(SQLiteDatabase, int)).
+ * Le letture dei movimenti passano per source(SQLiteDatabase, int), che ritorna la sola tabella MOVEMENTS se il periodo letto
+ * appartiene all'anno corrente, e l'unione di questa con le tabelle degli anni archiviati interessati altrimenti.
+ * Gli anni archiviati, con il relativo numero di movimenti, sono letti dalla tabella YEARLY_SUMMARIES alla prima richiesta
+ * (con un'unica query) e conservati in memoria; devono essere invalidati dopo ogni modifica confermata dell'archivio (si veda
+ * invalidate()). Le tabelle degli anni senza più movimenti non vengono mai lette.
+ * Tutti i metodi sono sincronizzati, per cui l'archivio può essere usato da qualsiasi thread.
+ *
+ * @author Marco Michelini
+ */
+final class MovementsArchive {
+
+    /**
+     * La tabella dei movimenti dell'anno corrente.
+     */
+    static final String HOT_TABLE = "MOVEMENTS";
+
+    /**
+     * Le colonne dei movimenti, comuni alla tabella MOVEMENTS e alle tabelle dell'archivio, escluso l'indice di riga.
+     */
+    private static final String DATA_COLUMNS = "CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY, ID";
+
+    /**
+     * Le colonne dei movimenti, compreso l'indice di riga.
+     */
+    private static final String COLUMNS = "_id, " + DATA_COLUMNS;
+
+    /**
+     * Il numero di movimenti di ciascun anno archiviato, indicizzato per anno, oppure null se non ancora letto.
+     */
+    private SparseIntArray years;
+
+    /**
+     * Ritorna il nome della tabella dell'archivio che contiene i movimenti dell'anno fornito.
+     *
+     * @param year L'anno.
+     */
+    static String tableOf(int year) {
+        return HOT_TABLE + "_" + year;
+    }
+
+    /**
+     * Sposta nell'archivio i movimenti della tabella MOVEMENTS che precedono l'anno corrente, un anno alla volta: per ogni
+     * anno, la copia dei movimenti nella relativa tabella (creata se necessario), la loro rimozione dalla tabella MOVEMENTS e
+     * l'aggiornamento del riepilogo avvengono in un'unica transazione. I movimenti conservano nella tabella dell'anno il proprio
+     * indice di riga, su cui si basano gli identificativi stabili della schermata Movimenti: prima della copia, gli indici di
+     * riga della tabella MOVEMENTS vengono separati da quelli già archiviati (si veda separateRowIds(SQLiteDatabase, String)),
+     * dato che un anno può essere archiviato più volte (ad esempio dopo un'importazione). I totali mensili (tabelle
+     * BALANCE_SNAPSHOTS e MONTHLY_TOTALS) non vengono modificati, dato che i movimenti restano nel database.
+     * Ritorna il numero di movimenti archiviati.
+     *
+     * @param database Il database dell'app.
+     * @param currentYearStart Il primo giorno dell'anno corrente, in formato epoch day.
+     */
+    synchronized int archive(SQLiteDatabase database, int currentYearStart) {
+        int archived = 0;
+
+        try {
+            for (int year = getFirstHotYear(database, currentYearStart); year != -1;
+                 year = getFirstHotYear(database, currentYearStart)) {
+                String[] range = new String[] {String.valueOf(EpochDays.of(1, 1, year)),
+                        String.valueOf(EpochDays.of(1, 1, year + 1))};
+                String table = tableOf(year);
+                database.beginTransaction();
+
+                try {
+                    database.execSQL("CREATE TABLE IF NOT EXISTS " + table + " ("
+                            + "_id INTEGER PRIMARY KEY, "
+                            + "CATEGORY_ID INTEGER, "
+                            + "DESCRIPTION TEXT, "
+                            + "VALUE INTEGER, "
+                            + "EPOCH_DAY INTEGER, "
+                            + "ID TEXT);");
+                    database.execSQL("CREATE INDEX IF NOT EXISTS " + table + "_DATE_INDEX ON " + table + " (EPOCH_DAY);");
+                    separateRowIds(database, table);
+                    database.execSQL("INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + HOT_TABLE
+                            + " WHERE EPOCH_DAY >= ? AND EPOCH_DAY < ?", range);
+                    archived += database.delete(HOT_TABLE, "EPOCH_DAY >= ? AND EPOCH_DAY < ?", range);
+                    refreshSummary(database, year);
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+            }
+        } finally {
+            invalidate();
+        }
+
+        return archived;
+    }
+
+    /**
+     * Fa sì che gli indici di riga della tabella MOVEMENTS siano diversi da tutti quelli delle tabelle dell'archivio, compresa
+     * la tabella fornita (appena creata, se l'anno non era ancora archiviato), e che i movimenti inseriti in seguito ricevano
+     * indici di riga maggiori del massimo archiviato: i movimenti della tabella MOVEMENTS con un indice di riga già archiviato
+     * vengono rinumerati a partire dal massimo tra gli indici di riga delle due parti e l'ultimo assegnato (tabella
+     * sqlite_sequence, dato che la colonna _id della tabella MOVEMENTS è AUTOINCREMENT), che viene poi aggiornato.
+     * Dopo la prima esecuzione nessun indice di riga della tabella MOVEMENTS può coincidere con uno archiviato, per cui la
+     * ricerca dei conflitti legge soltanto gli indici di riga massimi di ciascuna tabella.
+     * Deve essere chiamato all'interno della transazione che archivia i movimenti.
+     *
+     * @param database Il database dell'app.
+     * @param table La tabella dell'archivio in cui verranno copiati i movimenti.
+     */
+    private void separateRowIds(SQLiteDatabase database, String table) {
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = database.rawQuery("SELECT YEAR FROM YEARLY_SUMMARIES", null);
+
+        while (cursor.moveToNext())
+            tables.add(tableOf(cursor.getInt(0)));
+
+        cursor.close();
+
+        if (!tables.contains(table))
+            tables.add(table);
+
+        long archivedMax = 0;
+        StringBuilder conflict = new StringBuilder();
+
+        for (String archiveTable : tables) {
+            archivedMax = Math.max(archivedMax, DatabaseUtils.longForQuery(database,
+                    "SELECT IFNULL(MAX(_id), 0) FROM " + archiveTable, null));
+            conflict.append(conflict.length() == 0 ? "" : " OR ").append("EXISTS (SELECT 1 FROM ").append(archiveTable)
+                    .append(" WHERE ").append(archiveTable).append("._id = ").append(HOT_TABLE).append("._id)");
+        }
+
+        long sequence = DatabaseUtils.longForQuery(database,
+                "SELECT IFNULL(MAX(seq), 0) FROM sqlite_sequence WHERE name = ?", new String[] {HOT_TABLE});
+        long lastRowId = Math.max(archivedMax, Math.max(sequence, DatabaseUtils.longForQuery(database,
+                "SELECT IFNULL(MAX(_id), 0) FROM " + HOT_TABLE, null)));
+        cursor = database.rawQuery("SELECT _id FROM " + HOT_TABLE + " WHERE _id <= ? AND (" + conflict + ")",
+                new String[] {String.valueOf(archivedMax)});
+
+        while (cursor.moveToNext())
+            database.execSQL("UPDATE " + HOT_TABLE + " SET _id = ? WHERE _id = ?", new Object[] {++lastRowId, cursor.getLong(0)});
+
+        cursor.close();
+
+        if (lastRowId > sequence) {
+            ContentValues values = new ContentValues();
+            values.put("seq", lastRowId);
+
+            if (database.update("sqlite_sequence", values, "name = ?", new String[] {HOT_TABLE}) == 0) {
+                values.put("name", HOT_TABLE);
+                database.insert("sqlite_sequence", null, values);
+            }
+        }
+    }
+
+    /**
+     * Ritorna l'anno del movimento meno recente della tabella MOVEMENTS, se precede l'anno corrente, altrimenti -1.
+     *
+     * @param database Il database dell'app.
+     * @param currentYearStart Il primo giorno dell'anno corrente, in formato epoch day.
+     */
+    private int getFirstHotYear(SQLiteDatabase database, int currentYearStart) {
+        Cursor cursor = database.rawQuery("SELECT MIN(EPOCH_DAY) FROM " + HOT_TABLE + " WHERE EPOCH_DAY < ?",
+                new String[] {String.valueOf(currentYearStart)});
+        int year = -1;
+
+        if (cursor.moveToFirst() && !cursor.isNull(0))
+            year = EpochDays.getYear(cursor.getInt(0));
+
+        cursor.close();
+        return year;
+    }
+
+    /**
+     * Ricalcola il riepilogo dell'anno fornito (tabella YEARLY_SUMMARIES) a partire dalla relativa tabella dell'archivio.
+     * Deve essere chiamato all'interno della transazione che modifica la tabella.
+     *
+     * @param database Il database dell'app.
+     * @param year L'anno archiviato.
+     */
+    synchronized void refreshSummary(SQLiteDatabase database, int year) {
+        database.execSQL("INSERT OR REPLACE INTO YEARLY_SUMMARIES (YEAR, IN_SUM, OUT_SUM, COUNT) SELECT " + year + ", "
+                + "IFNULL(" + DatabaseHandler.IN_SUM + ", 0), IFNULL(" + DatabaseHandler.OUT_SUM + ", 0), COUNT(*) FROM "
+                + tableOf(year));
+    }
+
+    /**
+     * Ritorna la sorgente (una tabella, oppure una sottoquery) da cui leggere i movimenti a partire dal giorno fornito: la
+     * tabella MOVEMENTS, se nessun anno archiviato con almeno un movimento segue tale giorno, altrimenti l'unione delle tabelle
+     * di tali anni e della tabella MOVEMENTS. La sorgente ha le stesse colonne della tabella MOVEMENTS, per cui può essere
+     * letta e filtrata allo stesso modo; gli indici di riga restano univoci anche nell'unione, dato che i movimenti conservano
+     * nell'archivio il proprio indice di riga e quelli della tabella MOVEMENTS ne vengono tenuti separati (si veda
+     * archive(SQLiteDatabase, int)).
+     *
+     * @param database Il database dell'app.
+     * @param fromDay Il primo giorno del periodo da leggere, in formato epoch day.
+     */
+    synchronized String source(SQLiteDatabase database, int fromDay) {
+        StringBuilder source = new StringBuilder();
+        int fromYear = EpochDays.getYear(fromDay);
+        load(database);
+
+        for (int i = 0; i < years.size(); i++) {
+            if (years.keyAt(i) >= fromYear && years.valueAt(i) > 0)
+                source.append("SELECT ").append(COLUMNS).append(" FROM ").append(tableOf(years.keyAt(i))).append(" UNION ALL ");
+
+        }
+
+        if (source.length() == 0)
+            return HOT_TABLE;
+
+        return "(" + source.append("SELECT ").append(COLUMNS).append(" FROM ").append(HOT_TABLE).append(")").toString();
+    }
+
+    /**
+     * Ritorna gli anni archiviati con almeno un movimento, in ordine crescente.
+     *
+     * @param database Il database dell'app.
+     */
+    synchronized int[] getYears(SQLiteDatabase database) {
+        int count = 0;
+        load(database);
+
+        for (int i = 0; i < years.size(); i++) {
+            if (years.valueAt(i) > 0)
+                count++;
+
+        }
+
+        int[] archivedYears = new int[count];
+
+        for (int i = 0, j = 0; i < years.size(); i++) {
+            if (years.valueAt(i) > 0)
+                archivedYears[j++] = years.keyAt(i);
+
+        }
+
+        return archivedYears;
+    }
+
+    /**
+     * Invalida gli anni archiviati conservati in memoria, che verranno riletti alla successiva richiesta.
+     */
+    synchronized void invalidate() {
+        years = null;
+    }
+
+    /**
+     * Legge dalla tabella YEARLY_SUMMARIES gli anni archiviati, con un'unica query, se non sono già stati letti.
+     *
+     * @param database Il database dell'app.
+     */
+    private void load(SQLiteDatabase database) {
+        if (years != null)
+            return;
+
+        Cursor cursor = database.rawQuery("SELECT YEAR, COUNT FROM YEARLY_SUMMARIES", null);
+        years = new SparseIntArray();
+
+        while (cursor.moveToNext())
+            years.put(cursor.getInt(0), cursor.getInt(1));
+
+        cursor.close();
+    }
+
+}
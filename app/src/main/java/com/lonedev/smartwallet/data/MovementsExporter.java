@@ -0,0 +1,276 @@
+package com.lonedev.smartwallet.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.List;
+
+/**
+ * Classe che esporta i movimenti in un file CSV (una riga per movimento, dal più al meno recente, con data, descrizione e
+ * valore), leggendoli dalla tabella MOVEMENTS e dalle tabelle dell'archivio (si veda la classe MovementsArchive).
+ * Le tabelle vengono lette una alla volta, dalla più recente, per pagine di al più PAGE_SIZE movimenti lette per chiave
+ * (EPOCH_DAY, _id): ogni pagina è una query breve, che sfrutta l'indice sulla data della tabella, e il cursore viene
+ * percorso una sola volta in avanti. Le righe sono formattate in un unico buffer e scritte nel file attraverso un Writer
+ * bufferizzato sul FileChannel del file, per cui la memoria utilizzata non dipende dal numero di movimenti esportati.
+ * I movimenti vengono scritti in un file temporaneo, che sostituisce il file di destinazione soltanto al termine
+ * dell'esportazione: un'esportazione annullata o fallita non lascia alcun file incompleto.
+ *
+ * @author Marco Michelini
+ */
+final class MovementsExporter {
+
+    /**
+     * Il massimo numero di movimenti letti da ciascuna query.
+     */
+    private static final int PAGE_SIZE = 512;
+
+    /**
+     * La dimensione, in caratteri, del buffer del Writer.
+     */
+    private static final int WRITER_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * La prima riga del file, con i nomi delle colonne.
+     */
+    private static final String HEADER = "date,description,value\n";
+
+    /**
+     * La lunghezza, in caratteri, di una data formattata da formatDate(int, int), nel formato yyyy-mm-dd.
+     */
+    private static final int ISO_DATE_LENGTH = 10;
+
+    /**
+     * Il database dell'app.
+     */
+    private final SQLiteDatabase database;
+
+    /**
+     * Le tabelle da cui leggere i movimenti, dalla più recente alla meno recente.
+     */
+    private final List<String> tables;
+
+    /**
+     * La condizione che i movimenti esportati devono rispettare, oppure null per esportarli tutti.
+     */
+    private final String selection;
+
+    /**
+     * Gli argomenti di selection, oppure un array vuoto.
+     */
+    private final String[] selectionArgs;
+
+    /**
+     * Le categorie nella lingua attuale del dispositivo, da cui sono ricavate le descrizioni dei movimenti.
+     */
+    private final EntryCategoryAccess categories;
+
+    /**
+     * Il buffer in cui vengono formattate data e valore di ciascun movimento.
+     */
+    private final char[] lineBuffer = new char[ISO_DATE_LENGTH + DataFormat.MAX_MONEY_LENGTH + 2];
+
+    /**
+     * Inizializza un nuovo MovementsExporter con i parametri forniti.
+     *
+     * @param database Il database dell'app.
+     * @param tables Le tabelle da cui leggere i movimenti, dalla più recente alla meno recente.
+     * @param selection La condizione che i movimenti esportati devono rispettare, oppure null.
+     * @param selectionArgs Gli argomenti di selection, oppure null.
+     * @param categories Le categorie nella lingua attuale del dispositivo (si veda StaticDataRegistry).
+     */
+    MovementsExporter(SQLiteDatabase database, List<String> tables, String selection, String[] selectionArgs,
+                      EntryCategoryAccess categories) {
+        this.database = database;
+        this.tables = tables;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs != null ? selectionArgs : new String[0];
+        this.categories = categories;
+    }
+
+    /**
+     * Esporta i movimenti nel file fornito, e ritorna il numero di movimenti esportati. L'annullamento del task fornito viene
+     * controllato prima di ogni pagina.
+     * Ritorna -1 se l'esportazione è stata annullata oppure non è stato possibile scrivere il file.
+     *
+     * @param file Il file di destinazione, sostituito se esiste già.
+     * @param task Il task dell'esportazione.
+     * @param progress Il destinatario dell'avanzamento dell'esportazione, chiamato dopo la scrittura di ogni pagina.
+     */
+    int export(File file, DatabaseExecutor.Task task, DatabaseExecutor.ProgressCounter progress) {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        int total = count(), exported = 0;
+        boolean completed = false;
+
+        try {
+            Writer writer = new BufferedWriter(Channels.newWriter(new FileOutputStream(temporaryFile).getChannel(), "UTF-8"),
+                    WRITER_BUFFER_SIZE);
+
+            try {
+                writer.write(HEADER);
+
+                for (int i = 0; i < tables.size() && !task.isCancelled(); i++) {
+                    int written = PAGE_SIZE;
+                    String lastEpochDay = null, lastRowId = null;
+
+                    while (written == PAGE_SIZE && !task.isCancelled()) {
+                        Cursor cursor = queryPage(tables.get(i), lastEpochDay, lastRowId);
+                        written = 0;
+
+                        while (cursor.moveToNext()) {
+                            writeMovement(writer, cursor);
+                            lastEpochDay = cursor.getString(3);
+                            lastRowId = cursor.getString(4);
+                            written++;
+                        }
+
+                        cursor.close();
+                        exported += written;
+                        progress.onProgress(exported, total);
+                    }
+                }
+
+                completed = !task.isCancelled();
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            completed = false;
+        }
+
+        if (completed && temporaryFile.renameTo(file))
+            return exported;
+
+        temporaryFile.delete();
+        return -1;
+    }
+
+    /**
+     * Ritorna il numero di movimenti da esportare.
+     */
+    private int count() {
+        int total = 0;
+
+        for (String table : tables) {
+            Cursor cursor = database.query(table, new String[] {"COUNT(*)"}, selection, selectionArgs, null, null, null);
+
+            if (cursor.moveToFirst())
+                total += cursor.getInt(0);
+
+            cursor.close();
+        }
+
+        return total;
+    }
+
+    /**
+     * Legge dalla tabella fornita la pagina di movimenti che segue quello individuato dalla chiave fornita (oppure la prima, se
+     * la chiave è null). Le colonne del cursore sono, in ordine, CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY e _id.
+     *
+     * @param table La tabella da cui leggere i movimenti.
+     * @param lastEpochDay La data dell'ultimo movimento letto, oppure null.
+     * @param lastRowId L'indice di riga dell'ultimo movimento letto, oppure null.
+     */
+    private Cursor queryPage(String table, String lastEpochDay, String lastRowId) {
+        String pageSelection = selection;
+        String[] pageSelectionArgs = selectionArgs;
+
+        if (lastEpochDay != null) {
+            pageSelection = (selection != null ? selection + " AND " : "") + "EPOCH_DAY <= ? AND (EPOCH_DAY < ? OR _id < ?)";
+            pageSelectionArgs = new String[selectionArgs.length + 3];
+            System.arraycopy(selectionArgs, 0, pageSelectionArgs, 0, selectionArgs.length);
+            pageSelectionArgs[selectionArgs.length] = lastEpochDay;
+            pageSelectionArgs[selectionArgs.length + 1] = lastEpochDay;
+            pageSelectionArgs[selectionArgs.length + 2] = lastRowId;
+        }
+
+        return database.query(table, new String[] {"CATEGORY_ID", "DESCRIPTION", "VALUE", "EPOCH_DAY", "_id"}, pageSelection,
+                pageSelectionArgs, null, null, "EPOCH_DAY DESC, _id DESC", String.valueOf(PAGE_SIZE));
+    }
+
+    /**
+     * Scrive la riga CSV del movimento su cui è posizionato il cursore fornito.
+     *
+     * @param writer Il Writer del file.
+     * @param cursor Il cursore ritornato da queryPage(String, String, String).
+     */
+    private void writeMovement(Writer writer, Cursor cursor) throws IOException {
+        String description = cursor.isNull(0) ? cursor.getString(1) : categories.get(cursor.getInt(0));
+        int length = formatDate(cursor.getInt(3), 0);
+
+        lineBuffer[length++] = ',';
+        writer.write(lineBuffer, 0, length);
+        writeField(writer, description);
+        lineBuffer[0] = ',';
+        length = DataFormat.format(cursor.getLong(2), lineBuffer, 1);
+        lineBuffer[length++] = '\n';
+        writer.write(lineBuffer, 0, length);
+    }
+
+    /**
+     * Scrive il campo fornito, racchiudendolo tra virgolette (e raddoppiando quelle che contiene) soltanto se contiene
+     * virgole, virgolette o a capo.
+     *
+     * @param writer Il Writer del file.
+     * @param field Il campo da scrivere, oppure null.
+     */
+    private void writeField(Writer writer, String field) throws IOException {
+        if (field == null)
+            return;
+
+        boolean quoted = false;
+
+        for (int i = 0; i < field.length() && !quoted; i++) {
+            char c = field.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quoted) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+
+        for (int i = 0; i < field.length(); i++) {
+            if (field.charAt(i) == '"')
+                writer.write('"');
+
+            writer.write(field.charAt(i));
+        }
+
+        writer.write('"');
+    }
+
+    /**
+     * Formatta la data fornita nel formato yyyy-mm-dd, scrivendola all'interno di lineBuffer a partire da offset.
+     * Ritorna la posizione successiva all'ultimo carattere scritto.
+     *
+     * @param epochDay La data da formattare, in formato epoch day.
+     * @param offset La posizione del primo carattere da scrivere.
+     */
+    private int formatDate(int epochDay, int offset) {
+        int year = EpochDays.getYear(epochDay), month = EpochDays.getMonth(epochDay), day = EpochDays.getDay(epochDay);
+
+        for (int i = 3; i >= 0; i--, year /= 10)
+            lineBuffer[offset + i] = (char) ('0' + year % 10);
+
+        lineBuffer[offset + 4] = '-';
+        lineBuffer[offset + 5] = (char) ('0' + month / 10);
+        lineBuffer[offset + 6] = (char) ('0' + month % 10);
+        lineBuffer[offset + 7] = '-';
+        lineBuffer[offset + 8] = (char) ('0' + day / 10);
+        lineBuffer[offset + 9] = (char) ('0' + day % 10);
+        return offset + ISO_DATE_LENGTH;
+    }
+
+}
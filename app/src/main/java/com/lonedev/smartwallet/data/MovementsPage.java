@@ -0,0 +1,122 @@
+package com.lonedev.smartwallet.data;
+
+import android.util.SparseLongArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classe che rappresenta una pagina di movimenti, ovvero un insieme di movimenti consecutivi (ordinati dal più al meno
+ * recente) letti dal database dell'app.
+ * Oltre ai movimenti, conserva il loro indice di riga (colonna _id), che li identifica stabilmente all'interno delle liste
+ * e, assieme alla data, costituisce la chiave (EPOCH_DAY, _id) che permette di leggere le pagine adiacenti senza scorrere
+ * quelle già lette (si vedano i metodi getMovementsPageAfter(MovementsPage, int) e getMovementsPageBefore(MovementsPage, int)
+ * di DatabaseHandler). Conserva inoltre il totale, fra i movimenti che rispettano i filtri selezionati, di ciascuno dei giorni
+ * della pagina. Una pagina non viene mai modificata dopo la sua creazione.
+ *
+ * @author Marco Michelini
+ */
+public class MovementsPage {
+
+    /**
+     * I movimenti della pagina, dal più al meno recente.
+     */
+    private List<Movement> movements;
+
+    /**
+     * Gli indici di riga dei movimenti della pagina, nello stesso ordine di movements.
+     */
+    private long[] rowIds;
+
+    /**
+     * Il totale dei movimenti di ciascun giorno della pagina, in centesimi, indicizzato per data (in formato epoch day).
+     * Comprende anche i movimenti di tali giorni che non appartengono alla pagina.
+     */
+    private SparseLongArray dayTotals;
+
+    /**
+     * Inizializza una nuova pagina con i movimenti, gli indici di riga e i totali giornalieri forniti.
+     *
+     * @param movements I movimenti della pagina, dal più al meno recente.
+     * @param rowIds Gli indici di riga dei movimenti, nello stesso ordine di movements.
+     * @param dayTotals Il totale dei movimenti di ciascun giorno della pagina, indicizzato per data.
+     */
+    MovementsPage(List<Movement> movements, long[] rowIds, SparseLongArray dayTotals) {
+        this.movements = movements;
+        this.rowIds = rowIds;
+        this.dayTotals = dayTotals;
+    }
+
+    /**
+     * Ritorna il numero di movimenti della pagina.
+     */
+    public int size() {
+        return movements.size();
+    }
+
+    /**
+     * Ritorna il movimento della pagina individuato dalla posizione fornita.
+     *
+     * @param position La posizione del movimento all'interno della pagina.
+     */
+    public Movement get(int position) {
+        return movements.get(position);
+    }
+
+    /**
+     * Ritorna l'indice di riga del movimento della pagina individuato dalla posizione fornita.
+     *
+     * @param position La posizione del movimento all'interno della pagina.
+     */
+    public long getRowId(int position) {
+        return rowIds[position];
+    }
+
+    /**
+     * Ritorna il totale, in centesimi, dei movimenti del giorno fornito, che deve essere uno dei giorni della pagina.
+     *
+     * @param epochDay Il giorno, in formato epoch day.
+     */
+    public long getDayTotal(int epochDay) {
+        return dayTotals.get(epochDay);
+    }
+
+    /**
+     * Ritorna la data, in formato epoch day, del primo movimento della pagina. La pagina non deve essere vuota.
+     */
+    public int getFirstEpochDay() {
+        return movements.get(0).getEpochDay();
+    }
+
+    /**
+     * Ritorna l'indice di riga del primo movimento della pagina. La pagina non deve essere vuota.
+     */
+    public long getFirstRowId() {
+        return rowIds[0];
+    }
+
+    /**
+     * Ritorna la data, in formato epoch day, dell'ultimo movimento della pagina. La pagina non deve essere vuota.
+     */
+    public int getLastEpochDay() {
+        return movements.get(movements.size() - 1).getEpochDay();
+    }
+
+    /**
+     * Ritorna l'indice di riga dell'ultimo movimento della pagina. La pagina non deve essere vuota.
+     */
+    public long getLastRowId() {
+        return rowIds[rowIds.length - 1];
+    }
+
+    /**
+     * Ritorna la pagina costituita dai movimenti compresi fra le posizioni fornite.
+     *
+     * @param start La posizione del primo movimento (inclusa).
+     * @param end La posizione dell'ultimo movimento (esclusa).
+     */
+    MovementsPage subPage(int start, int end) {
+        return new MovementsPage(movements.subList(start, end), Arrays.copyOfRange(rowIds, start, end), dayTotals);
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.lonedev.smartwallet.data;
+
+import android.util.LruCache;
+
+/**
+ * Classe che conserva in memoria le prime pagine di movimenti (si veda la classe MovementsPage) lette più di recente, una per
+ * ciascuna combinazione di filtri (tipo, categoria e periodo) selezionata nella schermata Movimenti.
+ * Permette di tornare a una combinazione di filtri già visualizzata senza rileggere i movimenti dal database. Vengono
+ * conservate al più MAX_ENTRIES pagine, scartando quella utilizzata meno di recente, per cui l'occupazione di memoria è
+ * limitata. Ogni pagina è associata alla versione della tabella MOVEMENTS (si veda InvalidationTracker) letta prima della sua
+ * lettura: una pagina letta prima dell'ultima modifica della tabella non viene mai ritornata.
+ * Tutti i metodi sono sincronizzati, per cui la cache può essere usata da qualsiasi thread.
+ *
+ * @author Marco Michelini
+ */
+final class MovementsPageCache {
+
+    /**
+     * Il massimo numero di pagine conservate in memoria.
+     */
+    private static final int MAX_ENTRIES = 4;
+
+    /**
+     * Una pagina conservata, assieme alla versione della tabella MOVEMENTS alla quale è stata letta.
+     */
+    private static final class CachedPage {
+
+        /**
+         * La versione della tabella MOVEMENTS alla quale è stata letta la pagina.
+         */
+        private final long version;
+
+        /**
+         * La pagina conservata.
+         */
+        private final MovementsPage page;
+
+        /**
+         * Inizializza una nuova CachedPage con i parametri forniti.
+         */
+        CachedPage(long version, MovementsPage page) {
+            this.version = version;
+            this.page = page;
+        }
+
+    }
+
+    /**
+     * Le pagine conservate, indicizzate per chiave (si veda key(int, int, int, int, int)).
+     */
+    private final LruCache<String, CachedPage> pages = new LruCache<>(MAX_ENTRIES);
+
+    /**
+     * Ritorna la chiave della prima pagina di al più pageSize movimenti che rispettano i filtri forniti, letta nel giorno
+     * fornito. Il giorno fa parte della chiave perché l'inizio del periodo del filtro dipende da esso.
+     *
+     * @param type La chiave del tipo di filtro.
+     * @param category La chiave della categoria del filtro.
+     * @param period La chiave del periodo del filtro.
+     * @param today Il giorno corrente, in formato epoch day.
+     * @param pageSize Il massimo numero di movimenti della pagina.
+     */
+    static String key(int type, int category, int period, int today, int pageSize) {
+        return type + ":" + category + ":" + period + ":" + today + ":" + pageSize;
+    }
+
+    /**
+     * Ritorna la pagina corrispondente alla chiave fornita, se è stata letta alla versione fornita della tabella MOVEMENTS,
+     * oppure null.
+     *
+     * @param key La chiave della pagina.
+     * @param version La versione attuale della tabella MOVEMENTS.
+     */
+    synchronized MovementsPage get(String key, long version) {
+        CachedPage cachedPage = pages.get(key);
+
+        if (cachedPage == null)
+            return null;
+
+        if (cachedPage.version != version) {
+            pages.remove(key);
+            return null;
+        }
+
+        return cachedPage.page;
+    }
+
+    /**
+     * Conserva la pagina fornita, letta alla versione fornita della tabella MOVEMENTS, sostituendo quella con la stessa chiave.
+     *
+     * @param key La chiave della pagina.
+     * @param version La versione della tabella MOVEMENTS letta prima della lettura della pagina.
+     * @param page La pagina da conservare.
+     */
+    synchronized void put(String key, long version, MovementsPage page) {
+        pages.put(key, new CachedPage(version, page));
+    }
+
+    /**
+     * Scarta tutte le pagine conservate. Le pagine non più valide vengono comunque ignorate da get(String, long); questo metodo
+     * permette di liberarne subito la memoria.
+     */
+    synchronized void clear() {
+        pages.evictAll();
+    }
+
+}
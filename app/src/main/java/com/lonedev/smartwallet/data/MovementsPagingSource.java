@@ -0,0 +1,406 @@
+package com.lonedev.smartwallet.data;
+
+import android.support.v7.util.DiffUtil;
+
+import com.lonedev.smartwallet.support.MovementsFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classe che fornisce i movimenti visualizzati nella schermata Movimenti, leggendoli dal database una pagina alla volta
+ * (si veda la classe MovementsPage) man mano che l'utente scorre la lista.
+ * In memoria viene conservata soltanto una finestra di al più MAX_PAGES pagine consecutive: quando la finestra si sposta in
+ * una direzione, le pagine all'estremità opposta vengono scartate, e rilette dal database se l'utente torna indietro.
+ * In questo modo, il costo di apertura della schermata e l'occupazione di memoria non dipendono dal numero di movimenti
+ * salvati. Ogni nuova finestra (si veda la classe MovementsWindow), con il suo indice delle sezioni giornaliere, viene
+ * costruita e confrontata con quella precedente al di fuori del thread principale, in modo da notificare soltanto le
+ * differenze. Viene eseguita una sola lettura alla volta: una rilettura (si veda refresh(boolean)) annulla quella in corso.
+ * Tutti i metodi devono essere chiamati sul thread principale.
+ *
+ * @author Marco Michelini
+ */
+public class MovementsPagingSource {
+
+    /**
+     * Il numero di movimenti contenuti in una pagina.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Il massimo numero di pagine conservate in memoria.
+     */
+    private static final int MAX_PAGES = 5;
+
+    /**
+     * La distanza, in elementi, da un'estremità della finestra entro la quale viene richiesta la pagina adiacente.
+     */
+    private static final int PREFETCH_DISTANCE = 15;
+
+    /**
+     * Riceve le modifiche alla finestra di movimenti conservata da MovementsPagingSource.
+     */
+    public interface Listener {
+
+        /**
+         * Metodo chiamato dopo che la finestra è stata sostituita da una nuova finestra.
+         *
+         * @param diffResult Le differenze fra la finestra precedente e quella attuale.
+         */
+        void onWindowChanged(DiffUtil.DiffResult diffResult);
+
+    }
+
+    /**
+     * Costruisce, al di fuori del thread principale, la finestra che sostituirà quella attuale.
+     */
+    private interface WindowLoader {
+
+        /**
+         * Ritorna la nuova finestra, oppure null se non è possibile accedere al database.
+         *
+         * @param databaseHandler Oggetto che permette di accedere al database dell'app.
+         * @param window La finestra attuale.
+         */
+        MovementsWindow load(DatabaseHandler databaseHandler, MovementsWindow window);
+
+    }
+
+    /**
+     * Attributo che permette di eseguire le letture dal database al di fuori del thread principale.
+     */
+    private DatabaseExecutor databaseExecutor;
+
+    /**
+     * La finestra attuale.
+     */
+    private MovementsWindow window;
+
+    /**
+     * La lettura in corso, oppure null.
+     */
+    private DatabaseExecutor.Task task;
+
+    /**
+     * Il destinatario delle modifiche alla finestra, oppure null.
+     */
+    private Listener listener;
+
+    /**
+     * Indica se MovementsPagingSource è stato chiuso (si veda close()).
+     */
+    private boolean closed;
+
+    /**
+     * Inizializza un nuovo MovementsPagingSource, con una finestra inizialmente vuota.
+     *
+     * @param databaseExecutor Attributo che permette di eseguire le letture dal database al di fuori del thread principale.
+     */
+    public MovementsPagingSource(DatabaseExecutor databaseExecutor) {
+        this.databaseExecutor = databaseExecutor;
+        window = MovementsWindow.EMPTY;
+        closed = false;
+    }
+
+    /**
+     * Imposta il destinatario delle modifiche alla finestra.
+     *
+     * @param listener Il destinatario delle modifiche alla finestra, oppure null.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Legge la prima pagina di movimenti e consegna a callback la finestra che la contiene, dopo averla resa attuale.
+     * I filtri della schermata Movimenti vengono letti sul thread principale (si veda MovementsFilter.snapshot()) e conservati
+     * nella finestra, per cui le pagine adiacenti vengono lette con gli stessi filtri.
+     * Se non è possibile accedere al database, a callback viene consegnato null.
+     *
+     * @param callback Il destinatario della prima finestra di movimenti.
+     */
+    public void loadInitial(DatabaseExecutor.Callback<MovementsWindow> callback) {
+        final MovementsFilter.Snapshot filter = MovementsFilter.snapshot();
+
+        submit(new WindowLoader() {
+
+            @Override
+            public MovementsWindow load(DatabaseHandler databaseHandler, MovementsWindow window) {
+                MovementsPage page = databaseHandler.getMovementsPageAfter(filter, null, PAGE_SIZE);
+
+                if (page == null)
+                    return null;
+
+                return new MovementsWindow(filter, page.size() == 0 ? Collections.<MovementsPage>emptyList()
+                        : Collections.singletonList(page), false, page.size() == PAGE_SIZE);
+            }
+        }, callback);
+    }
+
+    /**
+     * Ritorna la finestra attuale.
+     */
+    public MovementsWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Metodo chiamato quando viene visualizzato l'elemento della finestra individuato dalla posizione fornita.
+     * Se questo si trova in prossimità di un'estremità della finestra, richiede la lettura della pagina adiacente.
+     *
+     * @param position La posizione dell'elemento all'interno della finestra.
+     */
+    public void onItemShown(int position) {
+        if (position < PREFETCH_DISTANCE)
+            loadBefore();
+
+        if (position >= window.getItemCount() - PREFETCH_DISTANCE)
+            loadAfter();
+
+    }
+
+    /**
+     * Rilegge la finestra dal database e la sostituisce a quella attuale, notificando al destinatario soltanto le differenze
+     * fra le due. Annulla l'eventuale lettura in corso.
+     * Se fromStart è true (ad esempio dopo una modifica dei filtri), la nuova finestra è costituita dalla prima pagina di
+     * movimenti; altrimenti (ad esempio dopo l'eliminazione di un movimento) vengono riletti i movimenti a partire dal primo
+     * movimento della finestra attuale, in numero pari a quelli attualmente contenuti. In entrambi i casi, vengono applicati i
+     * filtri attuali della schermata Movimenti.
+     *
+     * @param fromStart Se true, la finestra viene riletta dall'inizio.
+     */
+    public void refresh(final boolean fromStart) {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        final MovementsFilter.Snapshot filter = MovementsFilter.snapshot();
+
+        submit(new WindowLoader() {
+
+            @Override
+            public MovementsWindow load(DatabaseHandler databaseHandler, MovementsWindow window) {
+                List<MovementsPage> oldPages = window.copyPages();
+                boolean fromFirstPage = fromStart || !window.hasMoreBefore() || oldPages.isEmpty();
+                int count = fromStart ? PAGE_SIZE : Math.max(window.getMovementCount(), PAGE_SIZE);
+                MovementsPage page;
+
+                if (fromFirstPage)
+                    page = databaseHandler.getMovementsPageAfter(filter, null, count);
+                else
+                    page = databaseHandler.getMovementsPageFrom(filter, oldPages.get(0), count);
+
+                if (page == null)
+                    return null;
+
+                List<MovementsPage> newPages = new ArrayList<>();
+
+                for (int start = 0; start < page.size(); start += PAGE_SIZE)
+                    newPages.add(page.subPage(start, Math.min(start + PAGE_SIZE, page.size())));
+
+                return new MovementsWindow(filter, newPages, !fromFirstPage, page.size() == count);
+            }
+        }, null);
+    }
+
+    /**
+     * Annulla la lettura in corso e scollega il destinatario delle modifiche alla finestra.
+     * Deve essere chiamato quando la lista di movimenti non viene più visualizzata.
+     */
+    public void close() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        listener = null;
+        closed = true;
+    }
+
+    /**
+     * Richiede la lettura della pagina che precede la finestra, se esiste e non è in corso un'altra lettura.
+     * Se la finestra supera così MAX_PAGES pagine, ne viene scartata l'ultima pagina.
+     */
+    private void loadBefore() {
+        if (!window.hasMoreBefore() || task != null || window.getMovementCount() == 0)
+            return;
+
+        submit(new WindowLoader() {
+
+            @Override
+            public MovementsWindow load(DatabaseHandler databaseHandler, MovementsWindow window) {
+                List<MovementsPage> pages = window.copyPages();
+                MovementsPage page = databaseHandler.getMovementsPageBefore(window.getFilter(), pages.get(0), PAGE_SIZE);
+
+                if (page == null)
+                    return null;
+
+                boolean hasMoreAfter = window.hasMoreAfter();
+
+                if (page.size() > 0)
+                    pages.add(0, page);
+
+                if (pages.size() > MAX_PAGES) {
+                    pages.remove(pages.size() - 1);
+                    hasMoreAfter = true;
+                }
+
+                return new MovementsWindow(window.getFilter(), pages, page.size() == PAGE_SIZE, hasMoreAfter);
+            }
+        }, null);
+    }
+
+    /**
+     * Richiede la lettura della pagina che segue la finestra, se esiste e non è in corso un'altra lettura.
+     * Se la finestra supera così MAX_PAGES pagine, ne viene scartata la prima pagina.
+     */
+    private void loadAfter() {
+        if (!window.hasMoreAfter() || task != null || window.getMovementCount() == 0)
+            return;
+
+        submit(new WindowLoader() {
+
+            @Override
+            public MovementsWindow load(DatabaseHandler databaseHandler, MovementsWindow window) {
+                List<MovementsPage> pages = window.copyPages();
+                MovementsPage page = databaseHandler.getMovementsPageAfter(window.getFilter(), pages.get(pages.size() - 1),
+                        PAGE_SIZE);
+
+                if (page == null)
+                    return null;
+
+                boolean hasMoreBefore = window.hasMoreBefore();
+
+                if (page.size() > 0)
+                    pages.add(page);
+
+                if (pages.size() > MAX_PAGES) {
+                    pages.remove(0);
+                    hasMoreBefore = true;
+                }
+
+                return new MovementsWindow(window.getFilter(), pages, hasMoreBefore, page.size() == PAGE_SIZE);
+            }
+        }, null);
+    }
+
+    /**
+     * Costruisce con loader, al di fuori del thread principale, la finestra che sostituirà quella attuale, e ne calcola le
+     * differenze rispetto a quest'ultima. Sul thread principale, rende attuale la nuova finestra, ne notifica le differenze
+     * al destinatario e infine la consegna a callback (null se non è possibile accedere al database).
+     *
+     * @param loader Oggetto che costruisce la nuova finestra.
+     * @param callback Il destinatario della nuova finestra, oppure null.
+     */
+    private void submit(final WindowLoader loader, final DatabaseExecutor.Callback<MovementsWindow> callback) {
+        if (closed)
+            return;
+
+        final MovementsWindow oldWindow = window;
+
+        task = databaseExecutor.read(new DatabaseExecutor.Operation<WindowChange>() {
+
+            @Override
+            public WindowChange run(DatabaseHandler databaseHandler) {
+                MovementsWindow newWindow = loader.load(databaseHandler, oldWindow);
+
+                if (newWindow == null)
+                    return null;
+
+                return new WindowChange(newWindow, DiffUtil.calculateDiff(new WindowDiff(oldWindow, newWindow)));
+            }
+        }, new DatabaseExecutor.Callback<WindowChange>() {
+
+            @Override
+            public void onResult(WindowChange result) {
+                task = null;
+
+                if (result != null) {
+                    window = result.window;
+
+                    if (listener != null)
+                        listener.onWindowChanged(result.diffResult);
+
+                }
+
+                if (callback != null)
+                    callback.onResult(result != null ? result.window : null);
+
+            }
+        });
+    }
+
+    /**
+     * Una nuova finestra e le sue differenze rispetto a quella che sostituisce, calcolate al di fuori del thread principale.
+     */
+    private static class WindowChange {
+
+        /**
+         * La nuova finestra.
+         */
+        private MovementsWindow window;
+
+        /**
+         * Le differenze fra la finestra precedente e la nuova finestra.
+         */
+        private DiffUtil.DiffResult diffResult;
+
+        /**
+         * Inizializza un nuovo WindowChange con i parametri forniti.
+         */
+        WindowChange(MovementsWindow window, DiffUtil.DiffResult diffResult) {
+            this.window = window;
+            this.diffResult = diffResult;
+        }
+
+    }
+
+    /**
+     * Confronta due finestre di movimenti. Due elementi sono lo stesso elemento se hanno lo stesso identificativo (si veda
+     * MovementsWindow.getItemId(int)). Dato che un movimento salvato non viene mai modificato, il contenuto visualizzato di
+     * due movimenti uguali coincide sempre; quello di due intestazioni uguali coincide se il totale del giorno non è cambiato.
+     */
+    private static class WindowDiff extends DiffUtil.Callback {
+
+        /**
+         * La finestra precedente e la nuova finestra.
+         */
+        private MovementsWindow oldWindow, newWindow;
+
+        /**
+         * Inizializza un nuovo WindowDiff con le finestre fornite.
+         *
+         * @param oldWindow La finestra precedente.
+         * @param newWindow La nuova finestra.
+         */
+        WindowDiff(MovementsWindow oldWindow, MovementsWindow newWindow) {
+            this.oldWindow = oldWindow;
+            this.newWindow = newWindow;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldWindow.getItemCount();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newWindow.getItemCount();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldWindow.getItemId(oldItemPosition) == newWindow.getItemId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return !oldWindow.isHeader(oldItemPosition)
+                    || oldWindow.getSectionTotal(oldItemPosition) == newWindow.getSectionTotal(newItemPosition);
+        }
+
+    }
+
+}
@@ -0,0 +1,399 @@
+package com.lonedev.smartwallet.data;
+
+import com.lonedev.smartwallet.support.EpochDays;
+import com.lonedev.smartwallet.support.Money;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Classe che legge i movimenti da un file CSV, una riga alla volta (si veda next()). Ogni riga contiene, nelle prime tre
+ * colonne, data, descrizione e valore del movimento; le eventuali colonne successive vengono ignorate. Sono riconosciuti due
+ * formati, distinti dal separatore della prima riga:
+ *      Virgola           -> Il formato dei file esportati dall'app (si veda la classe MovementsExporter): date nel formato
+ *                           yyyy-mm-dd e valori con il punto come separatore decimale.
+ *      Punto e virgola   -> Il formato degli estratti conto bancari (data;descrizione;importo): date nel formato dd/mm/yyyy
+ *                           (oppure dd/mm/yy) e valori con la virgola come separatore decimale e il punto come separatore
+ *                           delle migliaia.
+ * In entrambi i formati i campi possono essere racchiusi tra virgolette, e il valore è negativo per i movimenti in uscita.
+ * Le righe la cui data o il cui valore non sono validi (compresa quella delle intestazioni, se presente) vengono saltate.
+ * La descrizione viene ritornata così com'è letta: è DatabaseHandler.importMovements(Reader, long, int,
+ * DatabaseExecutor.Task, DatabaseExecutor.ProgressCounter) a ricondurla a una categoria o a un obiettivo, assegnando alla
+ * categoria EntryCategoryAccess.OTHER (senza conservarne il testo) le descrizioni che non corrispondono a nessuno dei due,
+ * come quelle degli estratti conto bancari.
+ * Il file viene letto attraverso un unico buffer, e i campi sono copiati in buffer di lunghezza fissa, dai quali data e
+ * valore vengono ricavati direttamente: per ogni riga viene allocata soltanto la stringa della descrizione.
+ *
+ * @author Marco Michelini
+ */
+final class MovementsParser {
+
+    /**
+     * La dimensione, in caratteri, del buffer di lettura.
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * La massima lunghezza, in caratteri, di una descrizione. Le descrizioni più lunghe vengono troncate.
+     */
+    private static final int MAX_DESCRIPTION_LENGTH = 128;
+
+    /**
+     * La massima lunghezza, in caratteri, di una data o di un valore. I campi più lunghi non sono validi.
+     */
+    private static final int MAX_FIELD_LENGTH = 32;
+
+    /**
+     * Il massimo valore assoluto di un movimento, in centesimi.
+     */
+    private static final long MAX_CENTS = 1000000000000000L;
+
+    /**
+     * Il Reader da cui vengono letti i movimenti.
+     */
+    private final Reader reader;
+
+    /**
+     * L'ultimo giorno ammesso per un movimento, in formato epoch day. I movimenti successivi vengono saltati.
+     */
+    private final int lastDay;
+
+    /**
+     * Il buffer di lettura.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * I buffer in cui vengono copiati data, descrizione e valore della riga attuale.
+     */
+    private final char[] dateField = new char[MAX_FIELD_LENGTH], descriptionField = new char[MAX_DESCRIPTION_LENGTH],
+            valueField = new char[MAX_FIELD_LENGTH];
+
+    /**
+     * La posizione del prossimo carattere da leggere e il numero di caratteri presenti nel buffer di lettura.
+     */
+    private int position, limit;
+
+    /**
+     * Le lunghezze dei campi della riga attuale.
+     */
+    private int dateLength, descriptionLength, valueLength;
+
+    /**
+     * Il separatore dei campi, oppure 0 se la prima riga non è ancora stata letta.
+     */
+    private char separator;
+
+    /**
+     * Il numero di righe lette e il numero di righe saltate (esclusa la prima, che può contenere le intestazioni).
+     */
+    private int rows, skipped;
+
+    /**
+     * Il numero di caratteri letti.
+     */
+    private long consumed;
+
+    /**
+     * La data dell'ultimo movimento letto, in formato epoch day.
+     */
+    private int epochDay;
+
+    /**
+     * La descrizione dell'ultimo movimento letto.
+     */
+    private String description;
+
+    /**
+     * Il valore dell'ultimo movimento letto, in centesimi.
+     */
+    private long value;
+
+    /**
+     * Inizializza un nuovo MovementsParser con i parametri forniti.
+     *
+     * @param reader Il Reader da cui leggere i movimenti. Non è necessario che sia bufferizzato.
+     * @param lastDay L'ultimo giorno ammesso per un movimento, in formato epoch day.
+     */
+    MovementsParser(Reader reader, int lastDay) {
+        this.reader = reader;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * Legge il prossimo movimento valido, saltando le righe non valide e quelle vuote.
+     *
+     * @return false se il file è terminato.
+     */
+    boolean next() throws IOException {
+        while (readRow()) {
+            rows++;
+
+            if (dateLength == 0 && descriptionLength == 0 && valueLength == 0)
+                continue;
+
+            if (parseDate() && parseValue() && epochDay <= lastDay) {
+                description = new String(descriptionField, 0, descriptionLength).trim();
+                return true;
+            }
+
+            if (rows > 1)
+                skipped++;
+
+        }
+
+        return false;
+    }
+
+    /**
+     * Ritorna la data dell'ultimo movimento letto, in formato epoch day.
+     */
+    int getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Ritorna la descrizione dell'ultimo movimento letto, eventualmente vuota.
+     */
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * Ritorna il valore dell'ultimo movimento letto, in centesimi. È negativo se si tratta di un movimento in uscita.
+     */
+    long getValue() {
+        return value;
+    }
+
+    /**
+     * Ritorna il numero di righe saltate perché non valide.
+     */
+    int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Ritorna il numero di caratteri letti finora.
+     */
+    long getPosition() {
+        return consumed;
+    }
+
+    /**
+     * Legge la prossima riga, copiandone data, descrizione e valore nei relativi buffer.
+     *
+     * @return false se il file è terminato.
+     */
+    private boolean readRow() throws IOException {
+        int c = read();
+
+        if (c == -1)
+            return false;
+
+        if (separator == 0)
+            separator = detectSeparator();
+
+        int field = 0;
+        boolean quoted = false, fieldStart = true;
+        dateLength = descriptionLength = valueLength = 0;
+
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    c = read();
+
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+
+                append(field, (char) c);
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+            } else if (c == separator) {
+                field++;
+                fieldStart = true;
+                c = read();
+                continue;
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r' && c != '\uFEFF') {
+                append(field, (char) c);
+            }
+
+            fieldStart = false;
+            c = read();
+        }
+
+        return true;
+    }
+
+    /**
+     * Ritorna il separatore dei campi: il punto e virgola se compare nella prima riga (o almeno nella sua parte presente nel
+     * buffer di lettura), altrimenti la virgola.
+     */
+    private char detectSeparator() {
+        for (int i = position - 1; i < limit && buffer[i] != '\n'; i++) {
+            if (buffer[i] == ';')
+                return ';';
+
+        }
+
+        return ',';
+    }
+
+    /**
+     * Aggiunge il carattere fornito al buffer del campo fornito, ignorandolo se il buffer è pieno. Il carattere di un campo
+     * di data o di valore troppo lungo viene comunque contato, in modo che il campo risulti non valido.
+     *
+     * @param field L'indice del campo (0 per la data, 1 per la descrizione, 2 per il valore).
+     * @param c Il carattere da aggiungere.
+     */
+    private void append(int field, char c) {
+        switch (field) {
+            case 0:
+                if (dateLength < MAX_FIELD_LENGTH)
+                    dateField[dateLength] = c;
+
+                dateLength = Math.min(dateLength + 1, MAX_FIELD_LENGTH + 1);
+                break;
+            case 1:
+                if (descriptionLength < MAX_DESCRIPTION_LENGTH)
+                    descriptionField[descriptionLength++] = c;
+
+                break;
+            case 2:
+                if (valueLength < MAX_FIELD_LENGTH)
+                    valueField[valueLength] = c;
+
+                valueLength = Math.min(valueLength + 1, MAX_FIELD_LENGTH + 1);
+                break;
+        }
+    }
+
+    /**
+     * Legge il prossimo carattere, riempiendo il buffer di lettura se necessario.
+     *
+     * @return Il carattere letto, oppure -1 se il file è terminato.
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = Math.max(reader.read(buffer, 0, BUFFER_SIZE), 0);
+            position = 0;
+
+            if (limit == 0)
+                return -1;
+
+        }
+
+        consumed++;
+        return buffer[position++];
+    }
+
+    /**
+     * Ricava la data del movimento dal relativo campo, nel formato yyyy-mm-dd oppure dd/mm/yyyy (o dd/mm/yy, per gli anni a
+     * partire dal 2000). Come separatori sono ammessi il trattino, la barra e il punto; un eventuale orario che segue la data,
+     * separato da uno spazio, viene ignorato.
+     *
+     * @return false se la data non è valida.
+     */
+    private boolean parseDate() {
+        int part = 0, number = 0, digits = 0, first = 0, second = 0, firstDigits = 0;
+
+        if (dateLength > MAX_FIELD_LENGTH)
+            return false;
+
+        for (int i = 0; i < dateLength; i++) {
+            char c = dateField[i];
+
+            if (c >= '0' && c <= '9' && digits < 4) {
+                number = number * 10 + c - '0';
+                digits++;
+            } else if ((c == '-' || c == '/' || c == '.') && digits > 0 && part < 2) {
+                if (part == 0) {
+                    first = number;
+                    firstDigits = digits;
+                } else {
+                    second = number;
+                }
+
+                part++;
+                number = digits = 0;
+            } else if (c == ' ' && (part == 2 ? digits > 0 : digits == 0 && part == 0)) {
+                if (part == 2)
+                    break;
+
+            } else {
+                return false;
+            }
+        }
+
+        if (part != 2 || digits == 0)
+            return false;
+
+        int day, month = second, year;
+
+        if (firstDigits == 4) {
+            year = first;
+            day = number;
+        } else if (digits == 4 || digits == 2) {
+            day = first;
+            year = digits == 2 ? 2000 + number : number;
+        } else {
+            return false;
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > 31)
+            return false;
+
+        epochDay = EpochDays.of(day, month, year);
+        return EpochDays.getDay(epochDay) == day && EpochDays.getMonth(epochDay) == month;
+    }
+
+    /**
+     * Ricava il valore del movimento dal relativo campo, con al più Money.DECIMAL_DIGITS cifre decimali. Oltre al segno,
+     * sono ammessi spazi, il simbolo dell'euro e, nel formato degli estratti conto, il punto come separatore delle migliaia.
+     *
+     * @return false se il valore non è valido oppure è nullo.
+     */
+    private boolean parseValue() {
+        char decimalSeparator = separator == ';' ? ',' : '.';
+        long cents = 0;
+        int decimals = -1;
+        boolean negative = false, digits = false;
+
+        if (valueLength > MAX_FIELD_LENGTH)
+            return false;
+
+        for (int i = 0; i < valueLength; i++) {
+            char c = valueField[i];
+
+            if (c >= '0' && c <= '9') {
+                if (decimals >= 0 && ++decimals > Money.DECIMAL_DIGITS)
+                    return false;
+
+                cents = cents * 10 + c - '0';
+                digits = true;
+
+                if (cents > MAX_CENTS)
+                    return false;
+
+            } else if (c == decimalSeparator && decimals < 0 && digits) {
+                decimals = 0;
+            } else if ((c == '-' || c == '+') && !digits && !negative) {
+                negative = c == '-';
+            } else if (!(c == ' ' || c == '\u00A0' || c == '€' || (c == '.' && separator == ';' && decimals < 0 && digits))) {
+                return false;
+            }
+        }
+
+        for (int i = Math.max(decimals, 0); i < Money.DECIMAL_DIGITS; i++)
+            cents *= 10;
+
+        value = negative ? -cents : cents;
+        return digits && value != 0;
+    }
+
+}
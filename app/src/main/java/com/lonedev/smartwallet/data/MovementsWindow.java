@@ -0,0 +1,212 @@
+package com.lonedev.smartwallet.data;
+
+import com.lonedev.smartwallet.support.MovementsFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classe che rappresenta la finestra di movimenti fornita da MovementsPagingSource, ovvero un insieme di pagine consecutive
+ * (si veda la classe MovementsPage) suddivise in sezioni, una per ciascun giorno.
+ * Ogni sezione è costituita da un'intestazione, che riporta la data e il totale dei movimenti del giorno, seguita dai relativi
+ * movimenti. L'indice delle sezioni viene calcolato in un'unica scansione alla creazione della finestra (che avviene al di
+ * fuori del thread principale), per cui ogni elemento della lista visualizzata, intestazione o movimento, è individuato in
+ * tempo costante, indipendentemente dalla direzione di scorrimento. Una finestra non viene mai modificata dopo la sua creazione.
+ *
+ * @author Marco Michelini
+ */
+public class MovementsWindow {
+
+    /**
+     * La finestra vuota, dalla quale parte ogni MovementsPagingSource.
+     */
+    static final MovementsWindow EMPTY = new MovementsWindow(null, Collections.<MovementsPage>emptyList(), false, true);
+
+    /**
+     * I filtri con cui sono state lette le pagine della finestra, oppure null per la finestra vuota.
+     */
+    private MovementsFilter.Snapshot filter;
+
+    /**
+     * Le pagine della finestra, dalla più alla meno recente.
+     */
+    private List<MovementsPage> pages;
+
+    /**
+     * Indica se esistono movimenti più recenti del primo movimento della finestra.
+     */
+    private boolean hasMoreBefore;
+
+    /**
+     * Indica se esistono movimenti meno recenti dell'ultimo movimento della finestra.
+     */
+    private boolean hasMoreAfter;
+
+    /**
+     * I movimenti della finestra, dal più al meno recente.
+     */
+    private Movement[] movements;
+
+    /**
+     * Gli indici di riga dei movimenti della finestra, nello stesso ordine di movements.
+     */
+    private long[] rowIds;
+
+    /**
+     * Per ogni elemento della lista: se non negativo, la posizione del movimento in movements; altrimenti, detto s l'indice
+     * della sezione di cui l'elemento è l'intestazione, il valore -s - 1.
+     */
+    private int[] items;
+
+    /**
+     * La data, in formato epoch day, di ciascuna sezione.
+     */
+    private int[] sectionEpochDays;
+
+    /**
+     * Il totale, in centesimi, dei movimenti di ciascuna sezione.
+     */
+    private long[] sectionTotals;
+
+    /**
+     * Inizializza una nuova finestra con le pagine fornite, calcolandone l'indice delle sezioni.
+     *
+     * @param filter I filtri con cui sono state lette le pagine.
+     * @param pages Le pagine della finestra, dalla più alla meno recente.
+     * @param hasMoreBefore Se true, esistono movimenti più recenti del primo movimento della finestra.
+     * @param hasMoreAfter Se true, esistono movimenti meno recenti dell'ultimo movimento della finestra.
+     */
+    MovementsWindow(MovementsFilter.Snapshot filter, List<MovementsPage> pages, boolean hasMoreBefore, boolean hasMoreAfter) {
+        this.filter = filter;
+        this.pages = pages;
+        this.hasMoreBefore = hasMoreBefore;
+        this.hasMoreAfter = hasMoreAfter;
+
+        int movementCount = 0;
+
+        for (MovementsPage page : pages)
+            movementCount += page.size();
+
+        movements = new Movement[movementCount];
+        rowIds = new long[movementCount];
+        // Nel caso peggiore, ogni movimento appartiene a un giorno diverso.
+        int[] items = new int[2 * movementCount];
+        int[] sectionEpochDays = new int[movementCount];
+        long[] sectionTotals = new long[movementCount];
+        int itemCount = 0, sectionCount = 0, position = 0;
+
+        for (MovementsPage page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                Movement movement = page.get(i);
+                int epochDay = movement.getEpochDay();
+
+                if (sectionCount == 0 || sectionEpochDays[sectionCount - 1] != epochDay) {
+                    sectionEpochDays[sectionCount] = epochDay;
+                    sectionTotals[sectionCount] = page.getDayTotal(epochDay);
+                    items[itemCount++] = -++sectionCount;
+                }
+
+                movements[position] = movement;
+                rowIds[position] = page.getRowId(i);
+                items[itemCount++] = position++;
+            }
+        }
+
+        this.items = Arrays.copyOf(items, itemCount);
+        this.sectionEpochDays = Arrays.copyOf(sectionEpochDays, sectionCount);
+        this.sectionTotals = Arrays.copyOf(sectionTotals, sectionCount);
+    }
+
+    /**
+     * Ritorna il numero di elementi (intestazioni e movimenti) della finestra.
+     */
+    public int getItemCount() {
+        return items.length;
+    }
+
+    /**
+     * Ritorna il numero di movimenti della finestra.
+     */
+    public int getMovementCount() {
+        return movements.length;
+    }
+
+    /**
+     * Ritorna true se l'elemento individuato dalla posizione fornita è l'intestazione di una sezione.
+     *
+     * @param position La posizione dell'elemento all'interno della finestra.
+     */
+    public boolean isHeader(int position) {
+        return items[position] < 0;
+    }
+
+    /**
+     * Ritorna il movimento individuato dalla posizione fornita, che non deve essere un'intestazione.
+     *
+     * @param position La posizione del movimento all'interno della finestra.
+     */
+    public Movement getMovement(int position) {
+        return movements[items[position]];
+    }
+
+    /**
+     * Ritorna la data, in formato epoch day, della sezione di cui l'elemento individuato dalla posizione fornita è l'intestazione.
+     *
+     * @param position La posizione dell'intestazione all'interno della finestra.
+     */
+    public int getSectionEpochDay(int position) {
+        return sectionEpochDays[-items[position] - 1];
+    }
+
+    /**
+     * Ritorna il totale, in centesimi, dei movimenti della sezione di cui l'elemento individuato dalla posizione fornita è
+     * l'intestazione. Il totale comprende anche i movimenti del giorno che non sono contenuti nella finestra.
+     *
+     * @param position La posizione dell'intestazione all'interno della finestra.
+     */
+    public long getSectionTotal(int position) {
+        return sectionTotals[-items[position] - 1];
+    }
+
+    /**
+     * Ritorna l'identificativo stabile dell'elemento individuato dalla posizione fornita: l'indice di riga per i movimenti
+     * (sempre positivo), il complemento della data per le intestazioni (sempre negativo).
+     *
+     * @param position La posizione dell'elemento all'interno della finestra.
+     */
+    public long getItemId(int position) {
+        int item = items[position];
+        return item < 0 ? ~(long) sectionEpochDays[-item - 1] : rowIds[item];
+    }
+
+    /**
+     * Ritorna i filtri con cui sono state lette le pagine della finestra, e con cui devono essere lette quelle adiacenti.
+     */
+    MovementsFilter.Snapshot getFilter() {
+        return filter;
+    }
+
+    /**
+     * Ritorna true se esistono movimenti più recenti del primo movimento della finestra.
+     */
+    boolean hasMoreBefore() {
+        return hasMoreBefore;
+    }
+
+    /**
+     * Ritorna true se esistono movimenti meno recenti dell'ultimo movimento della finestra.
+     */
+    boolean hasMoreAfter() {
+        return hasMoreAfter;
+    }
+
+    /**
+     * Ritorna una copia della lista delle pagine della finestra, dalla più alla meno recente.
+     */
+    List<MovementsPage> copyPages() {
+        return new ArrayList<>(pages);
+    }
+
+}
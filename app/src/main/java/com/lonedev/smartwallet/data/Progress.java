@@ -8,12 +8,12 @@ package com.lonedev.smartwallet.data;
 public class Progress extends Entry {
 
     /**
-     * Il limite massimo del progresso.
+     * Il limite massimo del progresso, espresso in centesimi.
      * Corrisponde:
      *      - Per un limite di spesa, al suo valore massimo mensile.
      *      - Per un obiettivo, al suo valore obiettivo.
      */
-    protected float max;
+    protected long max;
 
     /**
      * La percentuale di completamento del progresso.
@@ -26,7 +26,7 @@ public class Progress extends Entry {
      * @param description La descrizione del nuovo progresso.
      * @param max Il limite massimo del nuovo progresso.
      */
-    public Progress(String description, float max) {
+    public Progress(String description, long max) {
         super(description);
         this.max = max;
         percent = 0;
@@ -40,7 +40,7 @@ public class Progress extends Entry {
      * @param max Il limite massimo del nuovo progresso.
      * @param percent La percentuale di completamento del nuovo progresso.
      */
-    public Progress(String description, float value, float max, int percent) {
+    public Progress(String description, long value, long max, int percent) {
         super(description, value);
         this.max = max;
         this.percent = percent;
@@ -49,7 +49,7 @@ public class Progress extends Entry {
     /**
      * Ritorna il limite massimo del progresso.
      */
-    public float getMax() {
+    public long getMax() {
         return max;
     }
 
@@ -0,0 +1,212 @@
+package com.lonedev.smartwallet.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.SparseArray;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classe che conserva in memoria, per ogni progresso, l'associazione fra la sua chiave (la categoria, per i limiti di spesa,
+ * e il nome, per gli obiettivi) e la sua riga (tabella e indice di riga), assieme a valore, massimo e percentuale di
+ * completamento. Le descrizioni dei limiti di spesa sono ricavate dalle relative categorie al caricamento dell'indice, che
+ * viene quindi ricaricato anche al cambio della lingua del dispositivo.
+ * Permette a DatabaseHandler di leggere un progresso senza alcuna query e di aggiornarlo con un'unica UPDATE per indice di
+ * riga, anziché scorrere le tabelle LIMITS e TARGETS a ogni movimento. L'indice viene caricato alla prima richiesta (con
+ * un'unica query) e ricaricato al cambio di mese; deve essere aggiornato con la riga riletta dal database dopo ogni modifica
+ * di un progresso (si veda put(Entry)) e invalidato dopo ogni inserimento o rimozione di progressi (si veda invalidate()).
+ * Tutti i metodi sono sincronizzati, per cui l'indice può essere usato da qualsiasi thread.
+ *
+ * @author Marco Michelini
+ */
+final class ProgressIndex {
+
+    /**
+     * Una riga dell'indice, che descrive un progresso. Non viene mai modificata dopo la sua creazione.
+     */
+    static final class Entry {
+
+        /**
+         * La descrizione del progresso.
+         */
+        final String description;
+
+        /**
+         * La chiave della categoria del limite di spesa (si veda la classe EntryCategoryAccess), oppure
+         * EntryCategoryAccess.NONE per gli obiettivi.
+         */
+        final int categoryId;
+
+        /**
+         * Indica se il progresso è un limite di spesa (tabella LIMITS) oppure un obiettivo (tabella TARGETS).
+         */
+        final boolean limit;
+
+        /**
+         * L'indice di riga del progresso.
+         */
+        final long rowId;
+
+        /**
+         * Il valore e il massimo del progresso, in centesimi.
+         */
+        final long value, max;
+
+        /**
+         * La percentuale di completamento del progresso.
+         */
+        final int percent;
+
+        /**
+         * Inizializza una nuova riga dell'indice con i parametri forniti.
+         */
+        Entry(String description, int categoryId, boolean limit, long rowId, long value, long max, int percent) {
+            this.description = description;
+            this.categoryId = categoryId;
+            this.limit = limit;
+            this.rowId = rowId;
+            this.value = value;
+            this.max = max;
+            this.percent = percent;
+        }
+
+        /**
+         * Ritorna la tabella del progresso (LIMITS oppure TARGETS).
+         */
+        String getTable() {
+            return limit ? "LIMITS" : "TARGETS";
+        }
+
+        /**
+         * Ritorna una copia della riga con il valore, il massimo e la percentuale di completamento forniti.
+         */
+        Entry with(long value, long max, int percent) {
+            return new Entry(description, categoryId, limit, rowId, value, max, percent);
+        }
+
+        /**
+         * Crea il progresso (Limit oppure Target) descritto dalla riga.
+         */
+        Progress toProgress() {
+            if (limit)
+                return new Limit(description, value, max, percent);
+
+            return new Target(description, value, max, percent);
+        }
+
+    }
+
+    /**
+     * I limiti di spesa del mese per cui è stato caricato l'indice, indicizzati per categoria, oppure null se l'indice non è
+     * caricato.
+     */
+    private SparseArray<Entry> limits;
+
+    /**
+     * Gli obiettivi, indicizzati per nome, oppure null se l'indice non è caricato.
+     */
+    private Map<String, Entry> targets;
+
+    /**
+     * Il mese per cui è stato caricato l'indice.
+     */
+    private String month;
+
+    /**
+     * Le categorie (nella lingua del dispositivo) da cui sono state ricavate le descrizioni dei limiti di spesa.
+     */
+    private EntryCategoryAccess categories;
+
+    /**
+     * Ritorna il limite di spesa del mese fornito corrispondente alla categoria fornita, oppure null.
+     * Se necessario, carica l'indice dal database.
+     *
+     * @param database Il database dell'app.
+     * @param currentMonth Il mese corrente (si veda DatabaseHandler.getCurrentMonth()).
+     * @param categories Le categorie nella lingua attuale del dispositivo (si veda StaticDataRegistry).
+     * @param categoryId La chiave della categoria del limite di spesa.
+     */
+    synchronized Entry getLimit(SQLiteDatabase database, String currentMonth, EntryCategoryAccess categories,
+                                int categoryId) {
+        load(database, currentMonth, categories);
+        return limits.get(categoryId);
+    }
+
+    /**
+     * Ritorna l'obiettivo corrispondente al nome fornito, oppure null.
+     * Se necessario, carica l'indice dal database.
+     *
+     * @param database Il database dell'app.
+     * @param currentMonth Il mese corrente (si veda DatabaseHandler.getCurrentMonth()).
+     * @param categories Le categorie nella lingua attuale del dispositivo (si veda StaticDataRegistry).
+     * @param name Il nome dell'obiettivo.
+     */
+    synchronized Entry getTarget(SQLiteDatabase database, String currentMonth, EntryCategoryAccess categories, String name) {
+        load(database, currentMonth, categories);
+        return targets.get(name);
+    }
+
+    /**
+     * Sostituisce nell'indice la riga corrispondente al progresso fornito. Deve essere chiamato all'interno della transazione
+     * che modifica il progresso, con la riga riletta dal database, in modo che le modifiche raggiungano l'indice nello stesso
+     * ordine in cui vengono confermate; se la transazione viene annullata, l'indice deve essere invalidato.
+     *
+     * @param entry La nuova riga del progresso.
+     */
+    synchronized void put(Entry entry) {
+        if (limits == null)
+            return;
+
+        if (entry.limit)
+            limits.put(entry.categoryId, entry);
+        else
+            targets.put(entry.description, entry);
+
+    }
+
+    /**
+     * Invalida l'indice, che verrà ricaricato alla successiva richiesta.
+     */
+    synchronized void invalidate() {
+        limits = null;
+        targets = null;
+    }
+
+    /**
+     * Carica l'indice dal database con un'unica query, se non è già caricato per il mese e le categorie forniti.
+     *
+     * @param database Il database dell'app.
+     * @param currentMonth Il mese corrente.
+     * @param categories Le categorie nella lingua attuale del dispositivo.
+     */
+    private void load(SQLiteDatabase database, String currentMonth, EntryCategoryAccess categories) {
+        if (limits != null && currentMonth.equals(month) && categories == this.categories)
+            return;
+
+        Cursor cursor = database.rawQuery("SELECT 1, _id, CATEGORY_ID, NULL, VALUE, MAX, PERCENT FROM LIMITS WHERE MONTH = ? "
+                + "UNION ALL SELECT 0, _id, " + EntryCategoryAccess.NONE + ", DESCRIPTION, VALUE, MAX, PERCENT FROM TARGETS",
+                new String[] {currentMonth});
+        limits = new SparseArray<>();
+        targets = new HashMap<>();
+        month = currentMonth;
+        this.categories = categories;
+
+        while (cursor.moveToNext()) {
+            boolean limit = cursor.getInt(0) == 1;
+            int categoryId = cursor.getInt(2);
+            Entry entry = new Entry(limit ? categories.get(categoryId) : cursor.getString(3), categoryId, limit,
+                    cursor.getLong(1), cursor.getLong(4), cursor.getLong(5), cursor.getInt(6));
+
+            if (limit)
+                limits.put(categoryId, entry);
+            else
+                targets.put(entry.description, entry);
+        }
+
+        cursor.close();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.lonedev.smartwallet.data;
+
+import android.database.Cursor;
+
+/**
+ * Classe che permette di leggere le righe di un cursore di progressi (tabella LIMITS oppure TARGETS).
+ * Gli indici delle colonne sono risolti una sola volta, alla creazione del lettore, e il tipo dei progressi è noto fin dalla
+ * creazione della query (si vedano le classi LimitRow e TargetRow): la lettura di una riga non confronta alcuna stringa, e
+ * l'aggiunta di nuove colonne alle tabelle non ne altera il comportamento.
+ * Il lettore legge sempre la riga su cui è posizionato il cursore.
+ *
+ * @param <P> Il tipo dei progressi letti.
+ * @author Marco Michelini
+ */
+abstract class ProgressRow<P extends Progress> {
+
+    /**
+     * Il cursore da cui vengono lette le righe.
+     */
+    final Cursor cursor;
+
+    /**
+     * Gli indici delle colonne VALUE, MAX, PERCENT e _id del cursore.
+     */
+    private int valueColumn, maxColumn, percentColumn, idColumn;
+
+    /**
+     * Inizializza un nuovo lettore del cursore fornito, risolvendone gli indici delle colonne.
+     *
+     * @param cursor Il cursore da cui leggere i progressi.
+     */
+    ProgressRow(Cursor cursor) {
+        this.cursor = cursor;
+        valueColumn = cursor.getColumnIndexOrThrow("VALUE");
+        maxColumn = cursor.getColumnIndexOrThrow("MAX");
+        percentColumn = cursor.getColumnIndexOrThrow("PERCENT");
+        idColumn = cursor.getColumnIndexOrThrow("_id");
+    }
+
+    /**
+     * Ritorna il tipo dei progressi letti (si veda la classe CursorType).
+     */
+    abstract String getCursorType();
+
+    /**
+     * Crea il progresso corrispondente alla riga attuale.
+     */
+    abstract P read();
+
+    /**
+     * Ritorna il numero di righe del cursore.
+     */
+    int getCount() {
+        return cursor.getCount();
+    }
+
+    /**
+     * Posiziona il cursore sulla riga fornita.
+     *
+     * @param position La posizione della riga.
+     * @return false se la riga non esiste.
+     */
+    boolean moveToPosition(int position) {
+        return cursor.moveToPosition(position);
+    }
+
+    /**
+     * Ritorna la descrizione del progresso della riga attuale.
+     */
+    abstract String getDescription();
+
+    /**
+     * Ritorna il valore, in centesimi, del progresso della riga attuale.
+     */
+    long getValue() {
+        return cursor.getLong(valueColumn);
+    }
+
+    /**
+     * Ritorna il massimo, in centesimi, del progresso della riga attuale.
+     */
+    long getMax() {
+        return cursor.getLong(maxColumn);
+    }
+
+    /**
+     * Ritorna la percentuale di completamento del progresso della riga attuale.
+     */
+    int getPercent() {
+        return cursor.getInt(percentColumn);
+    }
+
+    /**
+     * Ritorna l'indice di riga del progresso della riga attuale.
+     */
+    long getRowId() {
+        return cursor.getLong(idColumn);
+    }
+
+    /**
+     * Chiude il cursore.
+     */
+    void close() {
+        cursor.close();
+    }
+
+}
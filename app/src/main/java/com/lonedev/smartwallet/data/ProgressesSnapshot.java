@@ -0,0 +1,146 @@
+package com.lonedev.smartwallet.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classe che rappresenta un'istantanea dei progressi (limiti di spesa oppure obiettivi) letti dal database dell'app.
+ * Le informazioni dei progressi sono conservate per colonne, in array di tipi primitivi, senza alcun oggetto per riga: le
+ * descrizioni, che si ripetono, sono conservate una sola volta in una tabella, e ogni progresso ne conserva soltanto
+ * l'indice. L'istantanea viene creata al di fuori del thread principale scorrendo una sola volta il cursore (attraverso il
+ * relativo lettore, si veda la classe ProgressRow), che viene chiuso subito dopo (si veda
+ * DatabaseHandler.getProgressesSnapshot(String)), per cui la sua occupazione di memoria è proporzionale ai soli progressi letti. Un'istantanea non viene mai modificata dopo la sua creazione.
+ *
+ * @author Marco Michelini
+ */
+public class ProgressesSnapshot {
+
+    /**
+     * Il tipo dei progressi dell'istantanea (si veda la classe CursorType).
+     */
+    private String cursorType;
+
+    /**
+     * Gli indici di riga dei progressi, nell'ordine del cursore.
+     */
+    private long[] rowIds;
+
+    /**
+     * I valori e i massimi dei progressi, in centesimi, nell'ordine del cursore.
+     */
+    private long[] values, maxes;
+
+    /**
+     * Le percentuali di completamento dei progressi, nell'ordine del cursore.
+     */
+    private int[] percents;
+
+    /**
+     * Per ogni progresso, l'indice della sua descrizione in descriptions.
+     */
+    private short[] descriptionIndices;
+
+    /**
+     * Le descrizioni distinte dei progressi, nell'ordine in cui compaiono per la prima volta.
+     */
+    private String[] descriptions;
+
+    /**
+     * Inizializza una nuova istantanea dei progressi letti da row, scorrendone una sola volta il cursore, che non viene chiuso.
+     *
+     * @param row Il lettore dei progressi di cui creare l'istantanea.
+     */
+    ProgressesSnapshot(ProgressRow<?> row) {
+        int count = row.getCount();
+        Map<String, Short> internedDescriptions = new HashMap<>();
+
+        cursorType = row.getCursorType();
+        rowIds = new long[count];
+        values = new long[count];
+        maxes = new long[count];
+        percents = new int[count];
+        descriptionIndices = new short[count];
+        descriptions = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            row.moveToPosition(i);
+            String description = row.getDescription();
+            Short descriptionIndex = internedDescriptions.get(description);
+
+            if (descriptionIndex == null) {
+                descriptionIndex = (short) internedDescriptions.size();
+                internedDescriptions.put(description, descriptionIndex);
+                descriptions[descriptionIndex] = description;
+            }
+
+            rowIds[i] = row.getRowId();
+            values[i] = row.getValue();
+            maxes[i] = row.getMax();
+            percents[i] = row.getPercent();
+            descriptionIndices[i] = descriptionIndex;
+        }
+
+        descriptions = Arrays.copyOf(descriptions, internedDescriptions.size());
+    }
+
+    /**
+     * Ritorna il tipo dei progressi dell'istantanea (si veda la classe CursorType).
+     */
+    public String getCursorType() {
+        return cursorType;
+    }
+
+    /**
+     * Ritorna il numero di progressi dell'istantanea.
+     */
+    public int size() {
+        return rowIds.length;
+    }
+
+    /**
+     * Ritorna l'indice di riga del progresso individuato dalla posizione fornita.
+     *
+     * @param position La posizione del progresso all'interno dell'istantanea.
+     */
+    public long getRowId(int position) {
+        return rowIds[position];
+    }
+
+    /**
+     * Ritorna la descrizione del progresso individuato dalla posizione fornita.
+     *
+     * @param position La posizione del progresso all'interno dell'istantanea.
+     */
+    public String getDescription(int position) {
+        return descriptions[descriptionIndices[position]];
+    }
+
+    /**
+     * Ritorna il valore, in centesimi, del progresso individuato dalla posizione fornita.
+     *
+     * @param position La posizione del progresso all'interno dell'istantanea.
+     */
+    public long getValue(int position) {
+        return values[position];
+    }
+
+    /**
+     * Ritorna il massimo, in centesimi, del progresso individuato dalla posizione fornita.
+     *
+     * @param position La posizione del progresso all'interno dell'istantanea.
+     */
+    public long getMax(int position) {
+        return maxes[position];
+    }
+
+    /**
+     * Ritorna la percentuale di completamento del progresso individuato dalla posizione fornita.
+     *
+     * @param position La posizione del progresso all'interno dell'istantanea.
+     */
+    public int getPercent(int position) {
+        return percents[position];
+    }
+
+}
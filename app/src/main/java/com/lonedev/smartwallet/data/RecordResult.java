@@ -0,0 +1,60 @@
+package com.lonedev.smartwallet.data;
+
+/**
+ * Classe che rappresenta l'esito della registrazione di un movimento (si veda DatabaseHandler.recordMovement(Movement, String)).
+ *
+ * @author Marco Michelini
+ */
+public class RecordResult {
+
+    /**
+     * Indica se il movimento è stato effettivamente registrato nel database.
+     * Un movimento in uscita non viene registrato se il saldo disponibile è insufficiente.
+     */
+    private boolean recorded;
+
+    /**
+     * Il saldo disponibile dopo la registrazione del movimento (o quello attuale, se il movimento non è stato registrato).
+     */
+    private long balance;
+
+    /**
+     * Indica se il progresso associato al movimento ha raggiunto/superato il suo limite massimo.
+     */
+    private boolean progressReached;
+
+    /**
+     * Inizializza un nuovo esito con le informazioni fornite.
+     *
+     * @param recorded true se il movimento è stato registrato nel database.
+     * @param balance Il saldo disponibile dopo la registrazione del movimento.
+     * @param progressReached true se il progresso associato al movimento ha raggiunto/superato il suo limite massimo.
+     */
+    public RecordResult(boolean recorded, long balance, boolean progressReached) {
+        this.recorded = recorded;
+        this.balance = balance;
+        this.progressReached = progressReached;
+    }
+
+    /**
+     * Ritorna true se il movimento è stato registrato nel database.
+     */
+    public boolean isRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Ritorna il saldo disponibile dopo la registrazione del movimento.
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Ritorna true se il progresso associato al movimento ha raggiunto/superato il suo limite massimo.
+     */
+    public boolean isProgressReached() {
+        return progressReached;
+    }
+
+}
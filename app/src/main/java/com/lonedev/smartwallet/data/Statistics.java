@@ -0,0 +1,259 @@
+package com.lonedev.smartwallet.data;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+import com.lonedev.smartwallet.support.EpochDays;
+import com.lonedev.smartwallet.support.Money;
+
+import java.util.List;
+
+/**
+ * Classe che rappresenta le statistiche di un mese visualizzate nella schermata Statistiche: l'andamento mensile delle spese
+ * negli ultimi TREND_MONTHS mesi, la ripartizione per categoria dei movimenti del mese e la spesa media giornaliera.
+ * Le statistiche sono lette dalla tabella MONTHLY_TOTALS, senza mai scorrere i movimenti (si veda
+ * DatabaseHandler.getStatistics(int)); le serie derivate (differenze rispetto al mese precedente, medie mobili, percentuali
+ * delle barre) sono calcolate alla creazione, al di fuori del thread principale, per cui la loro visualizzazione non richiede
+ * alcun calcolo. Le statistiche non vengono mai modificate dopo la loro creazione, e sono conservate in memoria finché i
+ * movimenti dei mesi da cui dipendono non vengono modificati (si veda la classe StatisticsCache).
+ *
+ * @author Marco Michelini
+ */
+public class Statistics {
+
+    /**
+     * Il numero di mesi dell'andamento mensile, compreso il mese delle statistiche.
+     */
+    public static final int TREND_MONTHS = 12;
+
+    /**
+     * Il numero di mesi su cui è calcolata la media mobile delle spese.
+     */
+    public static final int RUNNING_AVERAGE_MONTHS = 3;
+
+    /**
+     * Il numero di mesi letti dalla tabella MONTHLY_TOTALS: oltre a quelli dell'andamento mensile, i mesi precedenti necessari
+     * a calcolarne le differenze e le medie mobili.
+     */
+    static final int READ_MONTHS = TREND_MONTHS + RUNNING_AVERAGE_MONTHS - 1;
+
+    /**
+     * Il primo giorno del mese delle statistiche, in formato epoch day.
+     */
+    private int month;
+
+    /**
+     * Il giorno in cui sono state calcolate le statistiche, in formato epoch day (la spesa media giornaliera del mese corrente
+     * dipende da esso).
+     */
+    final int day;
+
+    /**
+     * Le categorie da cui sono ricavate le descrizioni di categoryTotals.
+     */
+    final EntryCategoryAccess categories;
+
+    /**
+     * I totali degli ultimi TREND_MONTHS mesi, dal meno recente al mese delle statistiche.
+     */
+    private MonthTotal[] trend;
+
+    /**
+     * Per ogni mese di trend, la differenza fra le sue spese e quelle del mese precedente, in centesimi.
+     */
+    private long[] outDeltas;
+
+    /**
+     * Per ogni mese di trend, la media delle spese degli ultimi RUNNING_AVERAGE_MONTHS mesi, fino ad esso compreso, in centesimi.
+     */
+    private long[] runningAverages;
+
+    /**
+     * Per ogni mese di trend, la percentuale che le sue spese rappresentano rispetto a quelle del mese con la spesa maggiore.
+     */
+    private int[] trendPercents;
+
+    /**
+     * I totali di ogni categoria nel mese delle statistiche, in ordine di spesa decrescente.
+     */
+    private CategoryTotal[] categoryTotals;
+
+    /**
+     * Per ogni categoria di categoryTotals, la percentuale che le sue spese rappresentano rispetto alle spese del mese.
+     */
+    private int[] categoryPercents;
+
+    /**
+     * La spesa media giornaliera del mese delle statistiche, in centesimi.
+     */
+    private long averageDailySpend;
+
+    /**
+     * Inizializza le statistiche del mese fornito, calcolandone le serie derivate.
+     *
+     * @param month Il primo giorno del mese, in formato epoch day.
+     * @param day Il giorno corrente, in formato epoch day.
+     * @param monthTotals I totali degli ultimi READ_MONTHS mesi, dal meno recente al mese fornito.
+     * @param categoryTotals I totali di ogni categoria nel mese fornito, in ordine di spesa decrescente.
+     * @param categories Le categorie da cui sono ricavate le descrizioni di categoryTotals.
+     */
+    Statistics(int month, int day, List<MonthTotal> monthTotals, List<CategoryTotal> categoryTotals,
+               EntryCategoryAccess categories) {
+        int skippedMonths = monthTotals.size() - TREND_MONTHS;
+        long maxOutSum = 0, windowSum = 0;
+
+        this.month = month;
+        this.day = day;
+        this.categories = categories;
+        trend = new MonthTotal[TREND_MONTHS];
+        outDeltas = new long[TREND_MONTHS];
+        runningAverages = new long[TREND_MONTHS];
+        trendPercents = new int[TREND_MONTHS];
+
+        for (int i = 0; i < monthTotals.size(); i++) {
+            long outSum = monthTotals.get(i).getOutSum();
+            windowSum += outSum;
+
+            if (i >= RUNNING_AVERAGE_MONTHS)
+                windowSum -= monthTotals.get(i - RUNNING_AVERAGE_MONTHS).getOutSum();
+
+            if (i >= skippedMonths) {
+                trend[i - skippedMonths] = monthTotals.get(i);
+                outDeltas[i - skippedMonths] = i == 0 ? 0 : outSum - monthTotals.get(i - 1).getOutSum();
+                runningAverages[i - skippedMonths] = windowSum / Math.min(i + 1, RUNNING_AVERAGE_MONTHS);
+                maxOutSum = Math.max(maxOutSum, outSum);
+            }
+        }
+
+        for (int i = 0; i < TREND_MONTHS; i++)
+            trendPercents[i] = maxOutSum == 0 ? 0 : Money.percent(trend[i].getOutSum(), maxOutSum);
+
+        long monthOutSum = trend[TREND_MONTHS - 1].getOutSum();
+        this.categoryTotals = categoryTotals.toArray(new CategoryTotal[0]);
+        categoryPercents = new int[this.categoryTotals.length];
+
+        for (int i = 0; i < categoryPercents.length; i++)
+            categoryPercents[i] = monthOutSum == 0 ? 0 : Money.percent(this.categoryTotals[i].getOutSum(), monthOutSum);
+
+        averageDailySpend = monthOutSum / Math.max(getElapsedDays(month, day), 1);
+    }
+
+    /**
+     * Ritorna il numero di giorni del mese fornito trascorsi fino al giorno fornito compreso: tutti i giorni del mese, se
+     * questo è già terminato.
+     *
+     * @param month Il primo giorno del mese, in formato epoch day.
+     * @param day Il giorno corrente, in formato epoch day.
+     */
+    private static int getElapsedDays(int month, int day) {
+        int nextMonth = EpochDays.startOfMonth(month, -1);
+        return Math.min(day + 1, nextMonth) - month;
+    }
+
+    /**
+     * Ritorna il primo giorno del mese delle statistiche, in formato epoch day.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Ritorna il primo giorno del mese meno recente letto per calcolare le statistiche, in formato epoch day: le statistiche
+     * non sono più valide se i movimenti di un mese compreso fra questo e getMonth() vengono modificati.
+     */
+    int getFirstReadMonth() {
+        return EpochDays.startOfMonth(month, READ_MONTHS - 1);
+    }
+
+    /**
+     * Ritorna il numero di mesi dell'andamento mensile (TREND_MONTHS).
+     */
+    public int getTrendSize() {
+        return trend.length;
+    }
+
+    /**
+     * Ritorna i totali del mese dell'andamento mensile individuato dalla posizione fornita (0 per il meno recente).
+     *
+     * @param position La posizione del mese.
+     */
+    public MonthTotal getTrendMonth(int position) {
+        return trend[position];
+    }
+
+    /**
+     * Ritorna la differenza fra le spese del mese individuato dalla posizione fornita e quelle del mese precedente, in centesimi.
+     *
+     * @param position La posizione del mese.
+     */
+    public long getOutDelta(int position) {
+        return outDeltas[position];
+    }
+
+    /**
+     * Ritorna la media delle spese degli ultimi RUNNING_AVERAGE_MONTHS mesi, fino al mese individuato dalla posizione fornita
+     * compreso, in centesimi.
+     *
+     * @param position La posizione del mese.
+     */
+    public long getRunningAverage(int position) {
+        return runningAverages[position];
+    }
+
+    /**
+     * Ritorna la percentuale che le spese del mese individuato dalla posizione fornita rappresentano rispetto a quelle del mese
+     * dell'andamento con la spesa maggiore.
+     *
+     * @param position La posizione del mese.
+     */
+    public int getTrendPercent(int position) {
+        return trendPercents[position];
+    }
+
+    /**
+     * Ritorna i totali del mese delle statistiche.
+     */
+    public MonthTotal getMonthTotal() {
+        return trend[TREND_MONTHS - 1];
+    }
+
+    /**
+     * Ritorna la differenza fra le spese del mese delle statistiche e quelle del mese precedente, in centesimi.
+     */
+    public long getMonthOutDelta() {
+        return outDeltas[TREND_MONTHS - 1];
+    }
+
+    /**
+     * Ritorna il numero di categorie con almeno un movimento nel mese delle statistiche.
+     */
+    public int getCategoryCount() {
+        return categoryTotals.length;
+    }
+
+    /**
+     * Ritorna i totali della categoria individuata dalla posizione fornita, in ordine di spesa decrescente.
+     *
+     * @param position La posizione della categoria.
+     */
+    public CategoryTotal getCategoryTotal(int position) {
+        return categoryTotals[position];
+    }
+
+    /**
+     * Ritorna la percentuale che le spese della categoria individuata dalla posizione fornita rappresentano rispetto alle spese
+     * del mese delle statistiche.
+     *
+     * @param position La posizione della categoria.
+     */
+    public int getCategoryPercent(int position) {
+        return categoryPercents[position];
+    }
+
+    /**
+     * Ritorna la spesa media giornaliera del mese delle statistiche, calcolata sui giorni trascorsi se si tratta del mese
+     * corrente, in centesimi.
+     */
+    public long getAverageDailySpend() {
+        return averageDailySpend;
+    }
+
+}
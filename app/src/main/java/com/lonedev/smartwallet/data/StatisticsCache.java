@@ -0,0 +1,80 @@
+package com.lonedev.smartwallet.data;
+
+import android.util.LruCache;
+
+/**
+ * Classe che conserva in memoria le statistiche (si veda la classe Statistics) dei mesi visualizzati più di recente nella
+ * schermata Statistiche, una per mese.
+ * Le statistiche di un mese dipendono soltanto dai totali dei mesi da cui sono state calcolate (si veda
+ * Statistics.getFirstReadMonth()), per cui vengono scartate soltanto quando vengono modificati i movimenti di uno di questi
+ * mesi (si veda invalidate(int)), e non ad ogni modifica della tabella MOVEMENTS. Ogni invalidazione incrementa inoltre la
+ * generazione della cache: le statistiche lette prima di un'invalidazione non vengono conservate (si veda
+ * put(int, long, Statistics)), perché potrebbero essere state calcolate a partire dai totali precedenti alla modifica.
+ * Vengono conservate al più MAX_ENTRIES statistiche, scartando quelle utilizzate meno di recente.
+ * Tutti i metodi sono sincronizzati, per cui la cache può essere usata da qualsiasi thread.
+ *
+ * @author Marco Michelini
+ */
+final class StatisticsCache {
+
+    /**
+     * Il massimo numero di statistiche conservate in memoria.
+     */
+    private static final int MAX_ENTRIES = 6;
+
+    /**
+     * Le statistiche conservate, indicizzate per mese (epoch day del primo giorno).
+     */
+    private final LruCache<Integer, Statistics> statistics = new LruCache<>(MAX_ENTRIES);
+
+    /**
+     * Il numero di invalidazioni avvenute.
+     */
+    private long generation;
+
+    /**
+     * Ritorna la generazione attuale della cache, da leggere prima di calcolare le statistiche da conservare.
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Ritorna le statistiche del mese fornito, oppure null se non sono conservate.
+     *
+     * @param month Il primo giorno del mese, in formato epoch day.
+     */
+    synchronized Statistics get(int month) {
+        return statistics.get(month);
+    }
+
+    /**
+     * Conserva le statistiche fornite, se nel frattempo non è avvenuta alcuna invalidazione.
+     *
+     * @param month Il primo giorno del mese delle statistiche, in formato epoch day.
+     * @param generation La generazione della cache letta prima di calcolare le statistiche.
+     * @param monthStatistics Le statistiche da conservare.
+     */
+    synchronized void put(int month, long generation, Statistics monthStatistics) {
+        if (generation == this.generation)
+            statistics.put(month, monthStatistics);
+
+    }
+
+    /**
+     * Scarta le statistiche che dipendono dai totali del mese fornito. Deve essere chiamato dopo che la modifica dei movimenti
+     * del mese è stata confermata nel database.
+     *
+     * @param month Il primo giorno del mese modificato, in formato epoch day.
+     */
+    synchronized void invalidate(int month) {
+        generation++;
+
+        for (Statistics cachedStatistics : statistics.snapshot().values()) {
+            if (cachedStatistics.getFirstReadMonth() <= month && month <= cachedStatistics.getMonth())
+                statistics.remove(cachedStatistics.getMonth());
+
+        }
+    }
+
+}
@@ -15,7 +15,7 @@ public class Target extends Progress {
      * @param description Il nome del nuovo obiettivo.
      * @param max Il valore obiettivo del nuovo obiettivo.
      */
-    public Target(String description, float max) {
+    public Target(String description, long max) {
         super(description, max);
     }
 
@@ -27,7 +27,7 @@ public class Target extends Progress {
      * @param max Il valore obiettivo del nuovo obiettivo.
      * @param percent La percentuale di completamento del nuovo obiettivo.
      */
-    public Target(String description, float value, float max, int percent) {
+    public Target(String description, long value, long max, int percent) {
         super(description, value, max, percent);
     }
 
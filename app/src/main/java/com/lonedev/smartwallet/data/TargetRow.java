@@ -0,0 +1,44 @@
+package com.lonedev.smartwallet.data;
+
+import android.database.Cursor;
+
+import com.lonedev.smartwallet.static_data.CursorType;
+
+/**
+ * Lettore delle righe di un cursore sulla tabella TARGETS (si veda la classe ProgressRow).
+ *
+ * @author Marco Michelini
+ */
+final class TargetRow extends ProgressRow<Target> {
+
+    /**
+     * L'indice della colonna DESCRIPTION del cursore.
+     */
+    private int descriptionColumn;
+
+    /**
+     * Inizializza un nuovo lettore del cursore fornito, che deve essere stato ottenuto dalla tabella TARGETS.
+     *
+     * @param cursor Il cursore da cui leggere gli obiettivi.
+     */
+    TargetRow(Cursor cursor) {
+        super(cursor);
+        descriptionColumn = cursor.getColumnIndexOrThrow("DESCRIPTION");
+    }
+
+    @Override
+    String getCursorType() {
+        return CursorType.TARGETS;
+    }
+
+    @Override
+    String getDescription() {
+        return cursor.getString(descriptionColumn);
+    }
+
+    @Override
+    Target read() {
+        return new Target(getDescription(), getValue(), getMax(), getPercent());
+    }
+
+}
@@ -2,7 +2,6 @@ package com.lonedev.smartwallet.fragments;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
@@ -17,10 +16,17 @@ import android.widget.TextView;
 import com.lonedev.smartwallet.R;
 import com.lonedev.smartwallet.UI_components.CursorAdapter;
 import com.lonedev.smartwallet.activities.MainActivity;
-import com.lonedev.smartwallet.static_data.CursorType;
 import com.lonedev.smartwallet.static_data.IntentInfo;
 import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.StartupTrace;
+import com.lonedev.smartwallet.data.Dashboard;
+import com.lonedev.smartwallet.data.DatabaseExecutor;
 import com.lonedev.smartwallet.data.DatabaseHandler;
+import com.lonedev.smartwallet.data.InvalidationTracker;
+import com.lonedev.smartwallet.data.ProgressesSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Classe che rappresenta la schermata Home dell'applicazione.
@@ -28,7 +34,17 @@ import com.lonedev.smartwallet.data.DatabaseHandler;
  *
  * @author Marco Michelini
  */
-public class HomeFragment extends Fragment {
+public class HomeFragment extends Fragment implements InvalidationTracker.Observer {
+
+    /**
+     * Il massimo numero di limiti di spesa da visualizzare.
+     */
+    private static final int MAX_RELEVANT_LIMITS = 5;
+
+    /**
+     * Il massimo numero di obiettivi da visualizzare.
+     */
+    private static final int MAX_RELEVANT_TARGETS = 3;
 
     /**
      * Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
@@ -41,16 +57,14 @@ public class HomeFragment extends Fragment {
     private DatabaseHandler databaseHandler;
 
     /**
-     * Cursore contenente esclusivamente i limiti di spesa rilevanti, vale a dire quelli più
-     * vicini ad essere completati.
+     * Attributo che permette di eseguire le operazioni sul database al di fuori del thread principale.
      */
-    private Cursor limitsCursor;
+    private DatabaseExecutor databaseExecutor;
 
     /**
-     * Cursore contenente esclusivamente gli obiettivi rilevanti, vale a dire quelli più
-     * vicini ad essere completati.
+     * Le operazioni sul database richieste dal Fragment, annullate quando la sua vista viene distrutta.
      */
-    private Cursor targetsCursor;
+    private List<DatabaseExecutor.Task> tasks = new ArrayList<>();
 
     /**
      * Vista usata per visualizzare il saldo attualmente disponibile.
@@ -67,6 +81,16 @@ public class HomeFragment extends Fragment {
      */
     private LinearLayout relevantTargetsLayout;
 
+    /**
+     * Elementi dell'UI visualizzati al posto dei limiti di spesa e degli obiettivi rilevanti quando non ve ne sono.
+     */
+    private View noLimitsView, noTargetsView;
+
+    /**
+     * Gli adapter dei limiti di spesa e degli obiettivi rilevanti, oppure null se non ne sono stati caricati.
+     */
+    private CursorAdapter relevantLimitsAdapter, relevantTargetsAdapter;
+
     /**
      * Elemento dell'UI in cui vengono visualizzati i limiti di spesa rilevanti.
      */
@@ -101,7 +125,9 @@ public class HomeFragment extends Fragment {
 
     /**
      * Crea e ritorna l'interfaccia del Fragment, aggiungendo le viste necessarie al suo layout (estensione .xml).
-     * In questo caso, vengono aggiunti il saldo disponibile e i progressi rilevanti.
+     * In questo caso, vengono aggiunti il saldo disponibile e i progressi rilevanti: la vista viene ritornata immediatamente, e
+     * tali informazioni vi sono inserite non appena vengono caricate dal database. Da questo momento, il Fragment osserva le
+     * modifiche alle tabelle da cui sono lette (si veda onTablesChanged(int)).
      *
      * @param inflater Oggetto che converte un layout nell'oggetto Java corrispondente.
      * @param container La vista alla quale è associata l'UI del Fragment.
@@ -113,9 +139,15 @@ public class HomeFragment extends Fragment {
         View homeView = inflater.inflate(R.layout.fragment_home, container, false);
 
         initFragment(homeView);
-        loadBalance();
-        loadRelevantLimits(inflater, container);
-        loadRelevantTargets(inflater, container);
+        StartupTrace.reportFirstFrame(homeView);
+
+        if (parentActivity != null) {
+            noLimitsView = inflater.inflate(R.layout.no_limits, container, false);
+            noTargetsView = inflater.inflate(R.layout.no_targets, container, false);
+            databaseHandler.getInvalidationTracker().addObserver(this,
+                    InvalidationTracker.BALANCE | InvalidationTracker.LIMITS | InvalidationTracker.TARGETS);
+            loadDashboard();
+        }
 
         return homeView;
     }
@@ -123,13 +155,34 @@ public class HomeFragment extends Fragment {
     /**
      * Metodo chiamato quando la vista ritornata da onCreateView(LayoutInflater, ViewGroup, Bundle) è scollegata dal Fragment.
      * Generalmente usato per chiudere o liberare le risorse non più necessarie.
+     * Annulla inoltre le operazioni sul database ancora in corso.
      */
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        limitsCursor.close();
-        targetsCursor.close();
-        databaseHandler.close();
+
+        for (DatabaseExecutor.Task task : tasks)
+            task.cancel();
+
+        if (databaseHandler != null)
+            databaseHandler.getInvalidationTracker().removeObserver(this);
+
+    }
+
+    /**
+     * Metodo chiamato dopo una modifica del registro del saldo disponibile e/o delle tabelle LIMITS e TARGETS, anche se avvenuta
+     * in un'altra schermata. Se sono stati modificati dei progressi, rilegge l'intera schermata con un'unica lettura; altrimenti
+     * rilegge soltanto il saldo disponibile.
+     *
+     * @param tables Le tabelle modificate (OR dei relativi flag di InvalidationTracker).
+     */
+    @Override
+    public void onTablesChanged(int tables) {
+        if ((tables & (InvalidationTracker.LIMITS | InvalidationTracker.TARGETS)) != 0)
+            loadDashboard();
+        else
+            loadBalance();
+
     }
 
     /**
@@ -147,7 +200,8 @@ public class HomeFragment extends Fragment {
             reloadIntent.putExtra(IntentInfo.SCREEN, IntentInfo.HOME);
             startActivity(reloadIntent);
         } else {
-            databaseHandler = new DatabaseHandler(getActivity());
+            databaseHandler = DatabaseHandler.getInstance(context);
+            databaseExecutor = DatabaseExecutor.getInstance(context);
             balanceView = homeView.findViewById(R.id.balance);
             relevantLimitsLayout = homeView.findViewById(R.id.layout_relevant_limits);
             relevantTargetsLayout = homeView.findViewById(R.id.layout_relevant_targets);
@@ -158,51 +212,89 @@ public class HomeFragment extends Fragment {
     }
 
     /**
-     * Carica il saldo attualmente disponibile dal database e imposta il relativo TextView.
+     * Carica dal database, con un'unica lettura (si veda DatabaseHandler.getDashboard(int, int)), il saldo attualmente
+     * disponibile e i progressi rilevanti, e li inserisce nelle relative viste.
      */
-    private void loadBalance() {
-        String balance = DataFormat.format(databaseHandler.getBalance()) + " " + getResources().getString(R.string.currency);
-        balanceView.setText(balance);
+    private void loadDashboard() {
+        tasks.add(databaseExecutor.read(new DatabaseExecutor.Operation<Dashboard>() {
+
+            @Override
+            public Dashboard run(DatabaseHandler databaseHandler) {
+                return databaseHandler.getDashboard(MAX_RELEVANT_LIMITS, MAX_RELEVANT_TARGETS);
+            }
+        }, new DatabaseExecutor.Callback<Dashboard>() {
+
+            @Override
+            public void onResult(Dashboard result) {
+                if (result != null) {
+                    showBalance(result.getBalance());
+                    relevantLimitsAdapter = showRelevantProgresses(result.getRelevantLimits(), relevantLimitsAdapter,
+                            relevantLimitsLayout, relevantLimitsRecycler, noLimitsView);
+                    relevantTargetsAdapter = showRelevantProgresses(result.getRelevantTargets(), relevantTargetsAdapter,
+                            relevantTargetsLayout, relevantTargetsRecycler, noTargetsView);
+                }
+            }
+        }));
     }
 
     /**
-     * Carica i limiti di spesa rilevanti dal database all'interno del relativo LinearLayout.
+     * Carica dal database il saldo attualmente disponibile e lo inserisce nella relativa vista.
      */
-    private void loadRelevantLimits(@NonNull LayoutInflater inflater, ViewGroup container) {
-        limitsCursor = databaseHandler.getCursor(CursorType.LIMITS);
-
-        if (limitsCursor != null) {
+    private void loadBalance() {
+        tasks.add(databaseExecutor.read(new DatabaseExecutor.Operation<Long>() {
 
-            if (limitsCursor.getCount() == 0) {
-                relevantLimitsLayout.addView(inflater.inflate(R.layout.no_limits, container, false));
-            } else {
-                CursorAdapter limitAdapter = new CursorAdapter(databaseHandler, limitsCursor, parentActivity, true);
-                LinearLayoutManager layoutManager = new LinearLayoutManager(context);
-                relevantLimitsRecycler.setAdapter(limitAdapter);
-                relevantLimitsRecycler.setLayoutManager(layoutManager);
+            @Override
+            public Long run(DatabaseHandler databaseHandler) {
+                return databaseHandler.getBalance();
             }
+        }, new DatabaseExecutor.Callback<Long>() {
 
-        }
+            @Override
+            public void onResult(Long result) {
+                if (result != null && result != -1)
+                    showBalance(result);
+
+            }
+        }));
     }
 
     /**
-     * Carica gli obiettivi rilevanti dal database all'interno del relativo LinearLayout.
+     * Visualizza il saldo disponibile fornito.
+     *
+     * @param balance Il saldo disponibile, in centesimi.
      */
-    private void loadRelevantTargets(@NonNull LayoutInflater inflater, ViewGroup container) {
-        targetsCursor = databaseHandler.getCursor(CursorType.TARGETS);
+    private void showBalance(long balance) {
+        balanceView.setText(DataFormat.format(balance) + " " + getResources().getString(R.string.currency));
+    }
 
-        if (targetsCursor != null) {
+    /**
+     * Visualizza i progressi rilevanti forniti all'interno del relativo RecyclerView e ritorna il relativo adapter, creandolo
+     * se necessario. Se non vi sono progressi, al posto della lista viene visualizzata la vista fornita.
+     *
+     * @param progresses L'istantanea dei progressi rilevanti.
+     * @param adapter L'adapter della lista di progressi, oppure null se non è ancora stato creato.
+     * @param layout Il LinearLayout che racchiude recycler.
+     * @param recycler Il RecyclerView in cui visualizzare i progressi.
+     * @param emptyView La vista da visualizzare al posto di recycler se non vi sono progressi.
+     */
+    private CursorAdapter showRelevantProgresses(ProgressesSnapshot progresses, CursorAdapter adapter, LinearLayout layout,
+                                                 RecyclerView recycler, View emptyView) {
+        boolean empty = progresses.size() == 0;
+
+        if (adapter == null) {
+            adapter = new CursorAdapter(progresses, parentActivity, true);
+            recycler.setAdapter(adapter);
+            recycler.setLayoutManager(new LinearLayoutManager(context));
+        } else {
+            adapter.swap(progresses);
+        }
 
-            if (targetsCursor.getCount() == 0) {
-                relevantTargetsLayout.addView(inflater.inflate(R.layout.no_targets, container, false));
-            } else {
-                CursorAdapter targetAdapter = new CursorAdapter(databaseHandler, targetsCursor, parentActivity, true);
-                LinearLayoutManager layoutManager = new LinearLayoutManager(context);
-                relevantTargetsRecycler.setAdapter(targetAdapter);
-                relevantTargetsRecycler.setLayoutManager(layoutManager);
-            }
+        if (empty && emptyView.getParent() == null)
+            layout.addView(emptyView);
 
-        }
+        emptyView.setVisibility(empty ? View.VISIBLE : View.GONE);
+        recycler.setVisibility(empty ? View.GONE : View.VISIBLE);
+        return adapter;
     }
 
-}
\ No newline at end of file
+}
@@ -1,9 +1,10 @@
 package com.lonedev.smartwallet.fragments;
 
 import android.content.Context;
+import android.app.Activity;
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Environment;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
 import android.support.v7.widget.LinearLayoutManager;
@@ -14,28 +15,53 @@ import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.LinearLayout;
 import android.widget.Spinner;
+import android.widget.Toast;
 
 import com.lonedev.smartwallet.R;
-import com.lonedev.smartwallet.UI_components.CursorAdapter;
+import com.lonedev.smartwallet.UI_components.MovementsAdapter;
 import com.lonedev.smartwallet.activities.MainActivity;
 import com.lonedev.smartwallet.activities.NewEntryActivity;
-import com.lonedev.smartwallet.static_data.CursorType;
 import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
 import com.lonedev.smartwallet.static_data.EntryTypeAccess;
 import com.lonedev.smartwallet.static_data.IntentInfo;
 import com.lonedev.smartwallet.static_data.MovementPeriodAccess;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
+import com.lonedev.smartwallet.static_data.WarningAccess;
+import com.lonedev.smartwallet.data.DatabaseExecutor;
 import com.lonedev.smartwallet.data.DatabaseHandler;
+import com.lonedev.smartwallet.data.ImportResult;
+import com.lonedev.smartwallet.data.InvalidationTracker;
+import com.lonedev.smartwallet.data.MovementsPagingSource;
+import com.lonedev.smartwallet.data.MovementsWindow;
 import com.lonedev.smartwallet.support.MovementsFilter;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
 /**
  * Classe che rappresenta la schermata Movimenti dell'applicazione.
+ * Permette inoltre di esportare i movimenti (tutti oppure soltanto quelli che rispettano i filtri selezionati) in un file CSV,
+ * e di importarli da un file CSV scelto dall'utente.
  * Trattandosi di un Fragment, la sua esistenza è strettamente legata a quella dell'Activity che la contiene, in questo caso MainActivity.
  *
  * @author Marco Michelini
  */
-public class MovementsFragment extends Fragment implements View.OnClickListener, AdapterView.OnItemSelectedListener {
+public class MovementsFragment extends Fragment implements View.OnClickListener, AdapterView.OnItemSelectedListener,
+        InvalidationTracker.Observer {
+
+    /**
+     * Il nome del file in cui vengono esportati i movimenti.
+     */
+    private static final String EXPORT_FILE_NAME = "movimenti.csv";
+
+    /**
+     * Il codice della richiesta con cui viene scelto il file da importare (si veda onActivityResult(int, int, Intent)).
+     */
+    private static final int IMPORT_REQUEST = 1;
 
     /**
      * Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
@@ -43,16 +69,21 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
     private Context context;
 
     /**
-     * Cursore contenente esclusivamente movimenti. Di default, sono caricati tutti i movimenti relativi
-     * alla settimana corrente.
+     * La fonte dei movimenti visualizzati, letti dal database una pagina alla volta. Di default, sono caricati i movimenti
+     * relativi alla settimana corrente.
      */
-    private Cursor movementsCursor;
+    private MovementsPagingSource movementsSource;
 
     /**
      * Attributo che permette di accedere al database dell'app (sia in scrittura che in lettura).
      */
     private DatabaseHandler databaseHandler;
 
+    /**
+     * Attributo che permette di eseguire le operazioni sul database al di fuori del thread principale.
+     */
+    private DatabaseExecutor databaseExecutor;
+
     /**
      * Elemento dell'UI in cui vengono visualizzati i movimenti. Racchiude la RecyclerView corrispondente.
      */
@@ -63,6 +94,22 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
      */
     private RecyclerView movementsRecycler;
 
+    /**
+     * Elemento dell'UI visualizzato al posto dei movimenti quando nessun movimento rispetta i filtri selezionati.
+     * Viene creato solo quando necessario.
+     */
+    private View noMovementsView;
+
+    /**
+     * Lo Spinner contenente le possibili categorie di movimento selezionabili dall'utente.
+     */
+    private Spinner filterCategory;
+
+    /**
+     * L'adapter dello Spinner delle categorie, le cui voci dipendono dal tipo di movimento selezionato.
+     */
+    private ArrayAdapter<String> categoryAdapter;
+
     /**
      * Attributo che permette di accedere all'array statico contenente i possibili tipi di Entry.
      * Questi sono mostrati all'interno di uno Spinner, permettendo all'utente di selezionare il tipo di movimenti da visualizzare.
@@ -81,6 +128,39 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
      */
     private MovementPeriodAccess movementPeriod;
 
+    /**
+     * Il pulsante che avvia l'esportazione dei movimenti e, durante questa, ne visualizza l'avanzamento e permette di annullarla.
+     */
+    private Button exportButton;
+
+    /**
+     * Il pulsante che permette di scegliere il file da importare e, durante l'importazione, ne visualizza l'avanzamento e
+     * permette di annullarla.
+     */
+    private Button importButton;
+
+    /**
+     * La casella che determina se esportare soltanto i movimenti che rispettano i filtri selezionati.
+     */
+    private CheckBox exportFilteredBox;
+
+    /**
+     * L'esportazione dei movimenti in corso, oppure null.
+     */
+    private DatabaseExecutor.Task exportTask;
+
+    /**
+     * L'importazione dei movimenti in corso, oppure null. Sopravvive alla distruzione della vista del Fragment (si veda
+     * onDestroyView()).
+     */
+    private DatabaseExecutor.Task importTask;
+
+    /**
+     * L'ultima percentuale di completamento dell'importazione in corso, visualizzata dal pulsante di importazione anche
+     * quando la vista del Fragment viene ricreata.
+     */
+    private int importPercent;
+
     /**
      * Riferimento all'activity che racchiude il Fragment.
      */
@@ -105,7 +185,8 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
 
     /**
      * Crea e ritorna l'interfaccia del Fragment, aggiungendo le viste necessarie al suo layout (estensione .xml).
-     * In questo caso, vengono aggiunti i movimenti relativi ai filtri selezionati.
+     * In questo caso, vengono aggiunti i movimenti relativi ai filtri selezionati: la vista viene ritornata immediatamente, e
+     * questi vi sono inseriti non appena vengono caricati dal database.
      *
      * @param inflater Oggetto che converte un layout nell'oggetto Java corrispondente.
      * @param container La vista alla quale è associata l'UI del Fragment.
@@ -117,7 +198,9 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
         View movementsView = inflater.inflate(R.layout.fragment_movements, container, false);
 
         initFragment(movementsView);
-        loadMovements(inflater, container);
+
+        if (parentActivity != null)
+            loadMovements();
 
         return movementsView;
     }
@@ -125,17 +208,41 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
     /**
      * Metodo chiamato quando la vista ritornata da onCreateView(LayoutInflater, ViewGroup, Bundle) è scollegata dal Fragment.
      * Generalmente usato per chiudere o liberare le risorse non più necessarie.
+     * Annulla inoltre il caricamento e l'esportazione dei movimenti, se ancora in corso. L'importazione invece prosegue, dato
+     * che annullarla lascerebbe importati soltanto i gruppi già confermati: viene scollegato soltanto il pulsante che ne
+     * visualizza l'avanzamento, e al termine l'esito viene comunque mostrato all'utente (si veda importMovements(Intent)).
      */
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        movementsCursor.close();
-        databaseHandler.close();
+
+        if (exportTask != null)
+            exportTask.cancel();
+
+        importButton = null;
+
+        if (movementsSource != null) {
+            databaseHandler.getInvalidationTracker().removeObserver(this);
+            movementsSource.close();
+        }
+    }
+
+    /**
+     * Metodo chiamato dopo una modifica della tabella MOVEMENTS (ad esempio l'aggiunta o l'eliminazione di un movimento),
+     * anche se avvenuta in un'altra schermata. Rilegge la finestra di movimenti, notificando alla lista soltanto le differenze e
+     * mantenendone la posizione.
+     *
+     * @param tables Le tabelle modificate, in questo caso soltanto InvalidationTracker.MOVEMENTS.
+     */
+    @Override
+    public void onTablesChanged(int tables) {
+        movementsSource.refresh(false);
     }
 
     /**
      * Metodo che inizializza l'UI del Fragment, aggiungendo i necessari elementi alla vista fornita.
-     * In particolare, viene inizializzato il Button che permette all'utente di aggiungere un nuovo movimento.
+     * In particolare, vengono inizializzati i Button che permettono all'utente di aggiungere un nuovo movimento, di esportare
+     * i movimenti e di importarli.
      * Se non è possibile recuperare un riferimento all'Activity che contiene il Fragment, questa viene distrutta e poi ricreata,
      * assieme al Fragment stesso.
      *
@@ -150,7 +257,8 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
             startActivity(reloadIntent);
         } else {
             Button newMovementButton = movementsView.findViewById(R.id.button_new_movement);
-            databaseHandler = new DatabaseHandler(context);
+            databaseHandler = DatabaseHandler.getInstance(context);
+            databaseExecutor = DatabaseExecutor.getInstance(context);
 
             initTypeSpinner(movementsView);
             initCategorySpinner(movementsView);
@@ -158,8 +266,18 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
 
             movementsLayout = movementsView.findViewById(R.id.layout_movements);
             movementsRecycler = movementsView.findViewById(R.id.recycler_movements);
+            movementsRecycler.setHasFixedSize(true);
+            exportButton = movementsView.findViewById(R.id.button_export);
+            importButton = movementsView.findViewById(R.id.button_import);
+            exportFilteredBox = movementsView.findViewById(R.id.check_export_filtered);
 
             newMovementButton.setOnClickListener(this);
+            exportButton.setOnClickListener(this);
+            importButton.setOnClickListener(this);
+
+            if (importTask != null)
+                importButton.setText(getResources().getString(R.string.import_progress, importPercent));
+
         }
 
     }
@@ -188,8 +306,9 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
      */
     private void initCategorySpinner(View movementsView) {
         entryCategory = parentActivity.getEntryCategoryAccess();
-        Spinner filterCategory = movementsView.findViewById(R.id.spinner_category_filter);
-        ArrayAdapter<String> categoryAdapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_item, selectCategorySpinnerItems());
+        filterCategory = movementsView.findViewById(R.id.spinner_category_filter);
+        categoryAdapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_item,
+                new ArrayList<>(Arrays.asList(selectCategorySpinnerItems())));
         categoryAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         filterCategory.setAdapter(categoryAdapter);
         filterCategory.setSelection(MovementsFilter.getCategoryPosition());
@@ -217,35 +336,76 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
      * attualmente selezionato.
      */
     private String[] selectCategorySpinnerItems() {
-        if (MovementsFilter.getType().equals(entryType.get(EntryTypeAccess.INS)))
-            return entryCategory.get(EntryCategoryAccess.FILTER_IN);
-        else if (MovementsFilter.getType().equals(entryType.get(EntryTypeAccess.OUTS)))
-            return entryCategory.get(EntryCategoryAccess.FILTER_OUT);
-        else
-            return entryCategory.get(EntryCategoryAccess.FILTER_ALL);
+        return entryCategory.get(MovementsFilter.getCategoryKeys());
     }
 
     /**
-     * Carica i movimenti (relativi ai filtri selezionati) dal database all'interno del relativo LinearLayout.
-     *
-     * @param inflater Oggetto che converte un layout nell'oggetto Java corrispondente.
-     * @param container La vista alla quale è associata l'UI del Fragment.
+     * Carica la prima pagina di movimenti (relativi ai filtri selezionati) dal database all'interno del relativo RecyclerView.
+     * Le pagine successive sono caricate da MovementsPagingSource man mano che l'utente scorre la lista; ad ogni modifica
+     * della lista viene aggiornata la visualizzazione del messaggio che segnala l'assenza di movimenti. Da questo momento, il
+     * Fragment osserva le modifiche alla tabella MOVEMENTS (si veda onTablesChanged(int)).
      */
-    private void loadMovements(LayoutInflater inflater, ViewGroup container) {
-        movementsCursor = databaseHandler.getCursor(CursorType.MOVEMENTS);
+    private void loadMovements() {
+        movementsSource = new MovementsPagingSource(databaseExecutor);
+        databaseHandler.getInvalidationTracker().addObserver(this, InvalidationTracker.MOVEMENTS);
+        MovementsAdapter adapter = new MovementsAdapter(databaseExecutor, movementsSource, parentActivity);
+
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+
+            @Override
+            public void onChanged() {
+                updateEmptyState();
+            }
 
-        if (movementsCursor != null) {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
+        });
+
+        movementsRecycler.setAdapter(adapter);
+        movementsRecycler.setLayoutManager(new LinearLayoutManager(context));
+        movementsSource.loadInitial(new DatabaseExecutor.Callback<MovementsWindow>() {
+
+            @Override
+            public void onResult(MovementsWindow result) {
+                if (result != null)
+                    updateEmptyState();
 
-            if (movementsCursor.getCount() == 0) {
-                movementsLayout.addView(inflater.inflate(R.layout.no_movements, container, false));
-            } else {
-                CursorAdapter adapter = new CursorAdapter(databaseHandler, movementsCursor, parentActivity);
-                movementsRecycler.setAdapter(adapter);
-                LinearLayoutManager layoutManager = new LinearLayoutManager(context);
-                movementsRecycler.setLayoutManager(layoutManager);
             }
+        });
+    }
 
+    /**
+     * Visualizza il messaggio che segnala l'assenza di movimenti se nessun movimento rispetta i filtri selezionati, altrimenti
+     * visualizza la lista dei movimenti.
+     */
+    private void updateEmptyState() {
+        boolean empty = movementsSource.getWindow().getItemCount() == 0;
+
+        if (empty && noMovementsView == null) {
+            noMovementsView = getLayoutInflater().inflate(R.layout.no_movements, movementsLayout, false);
+            movementsLayout.addView(noMovementsView);
         }
+
+        if (noMovementsView != null)
+            noMovementsView.setVisibility(empty ? View.VISIBLE : View.GONE);
+
+        movementsRecycler.setVisibility(empty ? View.GONE : View.VISIBLE);
+    }
+
+    /**
+     * Ricarica i movimenti in seguito a una modifica dei filtri, sostituendo soltanto le righe che differiscono e riportando
+     * la lista all'inizio.
+     */
+    private void reloadMovements() {
+        movementsRecycler.scrollToPosition(0);
+        movementsSource.refresh(true);
     }
 
     /**
@@ -260,14 +420,14 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
      */
     @Override
     public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-        if (movementsCursor != null) {
+        if (databaseHandler != null) {
 
             switch (parent.getId()) {
                 case R.id.spinner_type_filter:
                     selectFilterType((int) id);
                     break;
                 case R.id.spinner_category_filter:
-                    selectFilterCategory(parent, (int) id);
+                    selectFilterCategory(position);
                     break;
                 case R.id.spinner_period_filter:
                     selectFilterPeriod((int) id);
@@ -280,77 +440,77 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
     /**
      * Aggiorna la classe static MovementsFilter (in particolare, ne aggiorna il tipo) sulla base del tipo di
      * movimento selezionato.
-     * Inoltre, se tale tipo è diverso da quello selezionato in precedenza, crea e inizializza una nuova istanza del Fragment.
+     * Inoltre, se tale tipo è diverso da quello selezionato in precedenza, aggiorna le categorie selezionabili e ricarica i
+     * movimenti.
      *
      * @param itemID L'indice di riga associato all'elemento selezionato.
      */
     private void selectFilterType(int itemID) {
-        String previousType = MovementsFilter.getType();
+        int previousType = MovementsFilter.getType();
 
         switch (itemID) {
             case 1:
-                MovementsFilter.setType(entryType.get(EntryTypeAccess.INS));
+                MovementsFilter.setType(EntryTypeAccess.INS);
                 break;
             case 2:
-                MovementsFilter.setType(entryType.get(EntryTypeAccess.OUTS));
+                MovementsFilter.setType(EntryTypeAccess.OUTS);
                 break;
             default:
-                MovementsFilter.setType(entryType.get(EntryTypeAccess.ALL));
+                MovementsFilter.setType(EntryTypeAccess.ALL);
+        }
+
+        if (MovementsFilter.getType() != previousType) {
+            categoryAdapter.clear();
+            categoryAdapter.addAll(selectCategorySpinnerItems());
+            filterCategory.setSelection(MovementsFilter.getCategoryPosition());
+            reloadMovements();
         }
 
-        if (!MovementsFilter.getType().equals(previousType))
-            parentActivity.getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container_main,
-                    new MovementsFragment()).commit();
     }
 
     /**
      * Aggiorna la classe static MovementsFilter (in particolare, ne aggiorna la categoria) sulla base della categoria di
      * movimento selezionata.
-     * Inoltre, se tale categoria è diversa da quella selezionata in precedenza, crea e inizializza una nuova istanza del Fragment.
+     * Inoltre, se tale categoria è diversa da quella selezionata in precedenza, ricarica i movimenti.
      *
-     * @param parent Lo Spinner corrispondente all'elemento selezionato.
-     * @param itemID L'indice di riga associato all'elemento selezionato.
+     * @param position La posizione dell'elemento selezionato all'interno dello Spinner.
      */
-    private void selectFilterCategory(AdapterView<?> parent, int itemID) {
-        String previousCategory = MovementsFilter.getCategory();
+    private void selectFilterCategory(int position) {
+        int previousCategory = MovementsFilter.getCategory();
+        MovementsFilter.setCategory(MovementsFilter.getCategoryKeys()[position]);
 
-        if (itemID == 0)
-            MovementsFilter.setCategory(entryCategory.get(EntryCategoryAccess.ALL));
-        else
-            MovementsFilter.setCategory((String) parent.getSelectedItem());
+        if (MovementsFilter.getCategory() != previousCategory)
+            reloadMovements();
 
-        if (!MovementsFilter.getCategory().equals(previousCategory))
-            parentActivity.getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container_main,
-                    new MovementsFragment()).commit();
     }
 
     /**
      * Aggiorna la classe static MovementsFilter (in particolare, ne aggiorna il periodo) sulla base del periodo di
      * movimento selezionato.
-     * Inoltre, se tale periodo è diverso da quello selezionato in precedenza, crea e inizializza una nuova istanza del Fragment.
+     * Inoltre, se tale periodo è diverso da quello selezionato in precedenza, ricarica i movimenti.
      *
      * @param itemID L'indice di riga associato all'elemento selezionato.
      */
     private void selectFilterPeriod(int itemID) {
-        String previousPeriod = MovementsFilter.getPeriod();
+        int previousPeriod = MovementsFilter.getPeriod();
 
         switch (itemID) {
             case 1:
-                MovementsFilter.setPeriod(movementPeriod.get(MovementPeriodAccess.LAST_MONTH));
+                MovementsFilter.setPeriod(MovementPeriodAccess.LAST_MONTH);
                 break;
             case 2:
-                MovementsFilter.setPeriod(movementPeriod.get(MovementPeriodAccess.LAST_THREE_MONTHS));
+                MovementsFilter.setPeriod(MovementPeriodAccess.LAST_THREE_MONTHS);
                 break;
             case 3:
-                MovementsFilter.setPeriod(movementPeriod.get(MovementPeriodAccess.LAST_YEAR));
+                MovementsFilter.setPeriod(MovementPeriodAccess.LAST_YEAR);
                 break;
             default:
-                MovementsFilter.setPeriod(movementPeriod.get(MovementPeriodAccess.LAST_WEEK));
+                MovementsFilter.setPeriod(MovementPeriodAccess.LAST_WEEK);
         }
 
-        if (!MovementsFilter.getPeriod().equals(previousPeriod))
-            parentActivity.getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container_main,
-                    new MovementsFragment()).commit();
+        if (MovementsFilter.getPeriod() != previousPeriod)
+            reloadMovements();
+
     }
 
     /**
@@ -362,16 +522,162 @@ public class MovementsFragment extends Fragment implements View.OnClickListener,
     public void onNothingSelected(AdapterView<?> parent) {}
 
     /**
-     * Metodo chiamato alla pressione del pulsante di aggiunta di un nuovo movimento.
-     * Crea e visualizza una nuova istanza di NewEntryActivity.
+     * Metodo chiamato alla pressione del pulsante di aggiunta di un nuovo movimento, di quello di esportazione oppure di quello
+     * di importazione. Nel primo caso, crea e visualizza una nuova istanza di NewEntryActivity; negli altri, avvia
+     * l'esportazione dei movimenti (oppure la scelta del file da importare) o, se questa è già in corso, la annulla.
      *
-     * @param v Il pulsante di aggiunta di un nuovo movimento.
+     * @param v Il pulsante premuto.
      */
     @Override
     public void onClick(View v) {
+        if (v == exportButton) {
+            if (exportTask == null)
+                exportMovements();
+            else
+                cancelExport();
+
+            return;
+        }
+
+        if (v == importButton) {
+            if (importTask == null)
+                chooseImportFile();
+            else
+                cancelImport();
+
+            return;
+        }
+
         Intent intent = new Intent(context, NewEntryActivity.class);
         intent.putExtra(IntentInfo.SCREEN, IntentInfo.MOVEMENTS);
         startActivity(intent);
     }
 
+    /**
+     * Esporta i movimenti nel file EXPORT_FILE_NAME della cartella dei documenti dell'app (si veda
+     * DatabaseExecutor.exportMovements(File, MovementsFilter.Snapshot, DatabaseExecutor.Progress, DatabaseExecutor.Callback)),
+     * applicando i filtri selezionati se richiesto. Durante l'esportazione, il pulsante di esportazione ne visualizza l'avanzamento; al
+     * termine, un Toast visualizza il percorso del file oppure un errore.
+     */
+    private void exportMovements() {
+        File directory = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
+        final File file = new File(directory != null ? directory : context.getFilesDir(), EXPORT_FILE_NAME);
+        MovementsFilter.Snapshot filter = exportFilteredBox.isChecked() ? MovementsFilter.snapshot() : null;
+
+        exportButton.setText(getResources().getString(R.string.export_progress, 0));
+        exportTask = databaseExecutor.exportMovements(file, filter, new DatabaseExecutor.Progress() {
+
+            @Override
+            public void onProgress(int percent) {
+                exportButton.setText(getResources().getString(R.string.export_progress, percent));
+            }
+        }, new DatabaseExecutor.Callback<Integer>() {
+
+            @Override
+            public void onResult(Integer result) {
+                exportTask = null;
+                exportButton.setText(R.string.export_button_text);
+
+                if (result != null && result >= 0)
+                    Toast.makeText(context, getResources().getString(R.string.export_completed, result, file.getPath()),
+                            Toast.LENGTH_LONG).show();
+                else
+                    StaticDataRegistry.getWarningAccess(context).show(WarningAccess.EXPORT_FAILED);
+
+            }
+        });
+    }
+
+    /**
+     * Annulla l'esportazione dei movimenti in corso. Il file di destinazione resta invariato.
+     */
+    private void cancelExport() {
+        exportTask.cancel();
+        exportTask = null;
+        exportButton.setText(R.string.export_button_text);
+    }
+
+    /**
+     * Visualizza la schermata di sistema in cui l'utente sceglie il file CSV da importare (si veda
+     * onActivityResult(int, int, Intent)).
+     */
+    private void chooseImportFile() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[] {"text/*", "application/csv", "application/vnd.ms-excel"});
+        startActivityForResult(intent, IMPORT_REQUEST);
+    }
+
+    /**
+     * Metodo chiamato quando l'utente ha scelto (oppure non ha scelto) il file da importare, che viene allora importato.
+     *
+     * @param requestCode Il codice della richiesta, in questo caso IMPORT_REQUEST.
+     * @param resultCode L'esito della scelta.
+     * @param data L'Intent che contiene il file scelto.
+     */
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        if (requestCode == IMPORT_REQUEST && resultCode == Activity.RESULT_OK && data != null && data.getData() != null
+                && importButton != null && importTask == null)
+            importMovements(data);
+
+    }
+
+    /**
+     * Importa i movimenti del file scelto dall'utente, in gruppi di DatabaseHandler.IMPORT_BATCH_SIZE movimenti (si veda
+     * DatabaseExecutor.importMovements(Uri, int, DatabaseExecutor.Progress, DatabaseExecutor.Callback)). Durante
+     * l'importazione, il pulsante di importazione ne visualizza l'avanzamento (se la vista del Fragment esiste ancora); al
+     * termine, un Toast visualizza il numero di movimenti importati oppure un errore, anche se nel frattempo la vista è stata
+     * distrutta. La lista dei movimenti viene aggiornata dall'osservatore della tabella MOVEMENTS.
+     *
+     * @param data L'Intent che contiene il file scelto.
+     */
+    private void importMovements(Intent data) {
+        final Context applicationContext = context.getApplicationContext();
+        importPercent = 0;
+        importButton.setText(getResources().getString(R.string.import_progress, 0));
+        importTask = databaseExecutor.importMovements(data.getData(), DatabaseHandler.IMPORT_BATCH_SIZE,
+                new DatabaseExecutor.Progress() {
+
+            @Override
+            public void onProgress(int percent) {
+                importPercent = percent;
+
+                if (importButton != null)
+                    importButton.setText(applicationContext.getString(R.string.import_progress, percent));
+
+            }
+        }, new DatabaseExecutor.Callback<ImportResult>() {
+
+            @Override
+            public void onResult(ImportResult result) {
+                importTask = null;
+
+                if (importButton != null)
+                    importButton.setText(R.string.import_button_text);
+
+                if (result != null && result.isCompleted())
+                    Toast.makeText(applicationContext, applicationContext.getString(R.string.import_completed,
+                            result.getImported(), result.getSkipped()), Toast.LENGTH_LONG).show();
+                else
+                    StaticDataRegistry.getWarningAccess(applicationContext).show(WarningAccess.IMPORT_FAILED);
+
+            }
+        });
+    }
+
+    /**
+     * Annulla, su richiesta dell'utente, l'importazione dei movimenti in corso, avvisandolo che i movimenti dei gruppi già
+     * confermati restano importati.
+     */
+    private void cancelImport() {
+        importTask.cancel();
+        importTask = null;
+        importButton.setText(R.string.import_button_text);
+        Toast.makeText(context, R.string.import_cancelled, Toast.LENGTH_LONG).show();
+    }
+
 }
@@ -135,16 +135,6 @@ public class NewMovementFragment extends Fragment implements AdapterView.OnItemS
         return newMovementView;
     }
 
-    /**
-     * Metodo chiamato quando la vista ritornata da onCreateView(LayoutInflater, ViewGroup, Bundle) è scollegata dal Fragment.
-     * Generalmente usato per chiudere o liberare le risorse non più necessarie.
-     */
-    @Override
-    public void onDestroyView() {
-        super.onDestroyView();
-        databaseHandler.close();
-    }
-
     /**
      * Metodo che inizializza l'UI del Fragment, aggiungendo i necessari elementi alla vista fornita.
      * Se non è possibile recuperare un riferimento all'Activity che contiene il Fragment, questa viene distrutta e poi ricreata,
@@ -159,7 +149,7 @@ public class NewMovementFragment extends Fragment implements AdapterView.OnItemS
             Intent reloadIntent = new Intent(context, NewEntryActivity.class);
             startActivity(reloadIntent);
         } else {
-            databaseHandler = new DatabaseHandler(context);
+            databaseHandler = DatabaseHandler.getInstance(context);
 
             initTypeSpinner(newMovementView);
             initCategorySpinner(newMovementView);
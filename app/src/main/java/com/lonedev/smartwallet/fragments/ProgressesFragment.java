@@ -2,7 +2,6 @@ package com.lonedev.smartwallet.fragments;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
@@ -20,7 +19,13 @@ import com.lonedev.smartwallet.activities.MainActivity;
 import com.lonedev.smartwallet.activities.NewEntryActivity;
 import com.lonedev.smartwallet.static_data.CursorType;
 import com.lonedev.smartwallet.static_data.IntentInfo;
+import com.lonedev.smartwallet.data.DatabaseExecutor;
 import com.lonedev.smartwallet.data.DatabaseHandler;
+import com.lonedev.smartwallet.data.InvalidationTracker;
+import com.lonedev.smartwallet.data.ProgressesSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Classe che rappresenta la schermata Progressi dell'applicazione.
@@ -28,7 +33,7 @@ import com.lonedev.smartwallet.data.DatabaseHandler;
  *
  * @author Marco Michelini
  */
-public class ProgressesFragment extends Fragment implements View.OnClickListener {
+public class ProgressesFragment extends Fragment implements View.OnClickListener, InvalidationTracker.Observer {
 
     /**
      * Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
@@ -41,14 +46,24 @@ public class ProgressesFragment extends Fragment implements View.OnClickListener
     private DatabaseHandler databaseHandler;
 
     /**
-     * Cursore contenente esclusivamente limiti di spesa.
+     * Attributo che permette di eseguire le operazioni sul database al di fuori del thread principale.
+     */
+    private DatabaseExecutor databaseExecutor;
+
+    /**
+     * Le operazioni sul database richieste dal Fragment, annullate quando la sua vista viene distrutta.
+     */
+    private List<DatabaseExecutor.Task> tasks = new ArrayList<>();
+
+    /**
+     * L'adapter dei limiti di spesa, oppure null se non ne sono stati caricati.
      */
-    private Cursor limitsCursor;
+    private CursorAdapter limitsAdapter;
 
     /**
-     * Cursore contenente esclusivamente obiettivi.
+     * L'adapter degli obiettivi, oppure null se non ne sono stati caricati.
      */
-    private Cursor targetsCursor;
+    private CursorAdapter targetsAdapter;
 
     /**
      * Elemento dell'UI in cui vengono visualizzati i limiti di spesa. Racchiude la RecyclerView corrispondente.
@@ -60,6 +75,11 @@ public class ProgressesFragment extends Fragment implements View.OnClickListener
      */
     private LinearLayout targetsLayout;
 
+    /**
+     * Elementi dell'UI visualizzati al posto dei limiti di spesa e degli obiettivi quando non ve ne sono.
+     */
+    private View noLimitsView, noTargetsView;
+
     /**
      * Elemento dell'UI in cui vengono visualizzati i limiti di spesa.
      */
@@ -94,7 +114,9 @@ public class ProgressesFragment extends Fragment implements View.OnClickListener
 
     /**
      * Crea e ritorna l'interfaccia del Fragment, aggiungendo le viste necessarie al suo layout (estensione .xml).
-     * In questo caso, vengono aggiunti limiti di spesa e obiettivi.
+     * In questo caso, vengono aggiunti limiti di spesa e obiettivi: la vista viene ritornata immediatamente, e questi vi sono
+     * inseriti non appena vengono caricati dal database. Da questo momento, il Fragment osserva le modifiche alle tabelle LIMITS
+     * e TARGETS (si veda onTablesChanged(int)).
      *
      * @param inflater Oggetto che converte un layout nell'oggetto Java corrispondente.
      * @param container La vista alla quale è associata l'UI del Fragment.
@@ -106,8 +128,14 @@ public class ProgressesFragment extends Fragment implements View.OnClickListener
         View progressesView = inflater.inflate(R.layout.fragment_progresses, container, false);
 
         initFragment(progressesView);
-        loadLimits(inflater, container);
-        loadTargets(inflater, container);
+
+        if (parentActivity != null) {
+            noLimitsView = inflater.inflate(R.layout.no_limits, container, false);
+            noTargetsView = inflater.inflate(R.layout.no_targets, container, false);
+            databaseHandler.getInvalidationTracker().addObserver(this, InvalidationTracker.LIMITS | InvalidationTracker.TARGETS);
+            loadLimits();
+            loadTargets();
+        }
 
         return progressesView;
     }
@@ -115,13 +143,23 @@ public class ProgressesFragment extends Fragment implements View.OnClickListener
     /**
      * Metodo chiamato quando la vista ritornata da onCreateView(LayoutInflater, ViewGroup, Bundle) è scollegata dal Fragment.
      * Generalmente usato per chiudere o liberare le risorse non più necessarie.
+     * Annulla inoltre le operazioni sul database ancora in corso.
      */
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        limitsCursor.close();
-        targetsCursor.close();
-        databaseHandler.close();
+
+        for (DatabaseExecutor.Task task : tasks)
+            task.cancel();
+
+        if (databaseHandler != null)
+            databaseHandler.getInvalidationTracker().removeObserver(this);
+
+        if (limitsAdapter != null)
+            limitsAdapter.close();
+
+        if (targetsAdapter != null)
+            targetsAdapter.close();
     }
 
     /**
@@ -140,7 +178,8 @@ public class ProgressesFragment extends Fragment implements View.OnClickListener
             startActivity(reloadIntent);
         } else {
             Button newProgressButton = progressesView.findViewById(R.id.button_new_progress);
-            databaseHandler = new DatabaseHandler(context);
+            databaseHandler = DatabaseHandler.getInstance(context);
+            databaseExecutor = DatabaseExecutor.getInstance(context);
             limitsLayout = progressesView.findViewById(R.id.layout_limits);
             targetsLayout = progressesView.findViewById(R.id.layout_targets);
             limitsRecycler = progressesView.findViewById(R.id.recycler_limits);
@@ -153,40 +192,127 @@ public class ProgressesFragment extends Fragment implements View.OnClickListener
     /**
      * Carica i limiti di spesa dal database all'interno del relativo LinearLayout.
      */
-    private void loadLimits(@NonNull LayoutInflater inflater, ViewGroup container) {
-        limitsCursor = databaseHandler.getCursor(CursorType.LIMITS);
+    private void loadLimits() {
+        tasks.add(databaseExecutor.queryProgresses(CursorType.LIMITS, new DatabaseExecutor.Callback<ProgressesSnapshot>() {
+
+            @Override
+            public void onResult(ProgressesSnapshot result) {
+                if (result != null)
+                    limitsAdapter = showProgresses(result, limitsAdapter, limitsLayout, limitsRecycler, noLimitsView);
+
+            }
+        }));
+    }
+
+    /**
+     * Carica gli obiettivi dal database all'interno del relativo LinearLayout.
+     */
+    private void loadTargets() {
+        tasks.add(databaseExecutor.queryProgresses(CursorType.TARGETS, new DatabaseExecutor.Callback<ProgressesSnapshot>() {
 
-        if (limitsCursor != null) {
+            @Override
+            public void onResult(ProgressesSnapshot result) {
+                if (result != null)
+                    targetsAdapter = showProgresses(result, targetsAdapter, targetsLayout, targetsRecycler, noTargetsView);
 
-            if (limitsCursor.getCount() == 0) {
-                limitsLayout.addView(inflater.inflate(R.layout.no_limits, container, false));
-            } else {
-                CursorAdapter limitAdapter = new CursorAdapter(databaseHandler, limitsCursor, parentActivity);
-                limitsRecycler.setAdapter(limitAdapter);
-                LinearLayoutManager layoutManager = new LinearLayoutManager(context);
-                limitsRecycler.setLayoutManager(layoutManager);
             }
+        }));
+    }
 
+    /**
+     * Visualizza i progressi dell'istantanea fornita all'interno del RecyclerView fornito e ritorna il relativo adapter,
+     * creandolo se necessario. Se non vi sono progressi, al posto della lista viene visualizzata la vista fornita.
+     *
+     * @param snapshot L'istantanea dei progressi da visualizzare.
+     * @param adapter L'adapter della lista di progressi, oppure null se non è ancora stato creato.
+     * @param layout L'elemento dell'UI che racchiude la lista di progressi.
+     * @param recycler La lista di progressi.
+     * @param emptyView La vista da visualizzare quando la lista è vuota.
+     */
+    private CursorAdapter showProgresses(ProgressesSnapshot snapshot, CursorAdapter adapter, LinearLayout layout,
+                                         RecyclerView recycler, View emptyView) {
+        if (adapter == null) {
+            adapter = new CursorAdapter(snapshot, parentActivity);
+            showWhenEmpty(adapter, layout, recycler, emptyView);
+            recycler.setAdapter(adapter);
+            recycler.setLayoutManager(new LinearLayoutManager(context));
+        } else {
+            adapter.swap(snapshot);
         }
+
+        updateEmptyState(adapter, layout, recycler, emptyView);
+        return adapter;
     }
 
     /**
-     * Carica gli obiettivi dal database all'interno del relativo LinearLayout.
+     * Fa sì che, ad ogni modifica della lista di adapter, venga aggiornata la visualizzazione della vista fornita al posto della
+     * lista, quando questa è vuota.
+     *
+     * @param adapter L'adapter della lista di progressi.
+     * @param layout L'elemento dell'UI che racchiude la lista di progressi.
+     * @param recycler La lista di progressi.
+     * @param emptyView La vista da visualizzare quando la lista è vuota.
      */
-    private void loadTargets(@NonNull LayoutInflater inflater, ViewGroup container) {
-        targetsCursor = databaseHandler.getCursor(CursorType.TARGETS);
+    private void showWhenEmpty(final CursorAdapter adapter, final LinearLayout layout, final RecyclerView recycler,
+                               final View emptyView) {
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+
+            @Override
+            public void onChanged() {
+                updateEmptyState(adapter, layout, recycler, emptyView);
+            }
 
-        if (targetsCursor != null) {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyState(adapter, layout, recycler, emptyView);
+            }
 
-            if (targetsCursor.getCount() == 0) {
-                targetsLayout.addView(inflater.inflate(R.layout.no_targets, container, false));
-            } else {
-                CursorAdapter targetAdapter = new CursorAdapter(databaseHandler, targetsCursor, parentActivity);
-                targetsRecycler.setAdapter(targetAdapter);
-                LinearLayoutManager layoutManager = new LinearLayoutManager(context);
-                targetsRecycler.setLayoutManager(layoutManager);
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyState(adapter, layout, recycler, emptyView);
             }
+        });
+    }
+
+    /**
+     * Visualizza la vista fornita al posto della lista di progressi se questa è vuota, altrimenti visualizza la lista.
+     *
+     * @param adapter L'adapter della lista di progressi.
+     * @param layout L'elemento dell'UI che racchiude la lista di progressi.
+     * @param recycler La lista di progressi.
+     * @param emptyView La vista da visualizzare quando la lista è vuota.
+     */
+    private void updateEmptyState(CursorAdapter adapter, LinearLayout layout, RecyclerView recycler, View emptyView) {
+        boolean empty = adapter.getItemCount() == 0;
+
+        if (empty && emptyView.getParent() == null)
+            layout.addView(emptyView);
+
+        emptyView.setVisibility(empty ? View.VISIBLE : View.GONE);
+        recycler.setVisibility(empty ? View.GONE : View.VISIBLE);
+    }
+
+    /**
+     * Metodo chiamato dopo una modifica delle tabelle LIMITS e/o TARGETS, anche se avvenuta in un'altra schermata (ad esempio
+     * l'aggiunta di un progresso o di un movimento a esso associato). Rilegge soltanto i progressi delle tabelle modificate,
+     * notificando alle relative liste soltanto le differenze.
+     *
+     * @param tables Le tabelle modificate (OR dei relativi flag di InvalidationTracker).
+     */
+    @Override
+    public void onTablesChanged(int tables) {
+        if ((tables & InvalidationTracker.LIMITS) != 0) {
+            if (limitsAdapter != null)
+                limitsAdapter.reload();
+            else
+                loadLimits();
+        }
 
+        if ((tables & InvalidationTracker.TARGETS) != 0) {
+            if (targetsAdapter != null)
+                targetsAdapter.reload();
+            else
+                loadTargets();
         }
     }
 
@@ -0,0 +1,287 @@
+package com.lonedev.smartwallet.fragments;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import com.lonedev.smartwallet.R;
+import com.lonedev.smartwallet.UI_components.TotalsAdapter;
+import com.lonedev.smartwallet.activities.MainActivity;
+import com.lonedev.smartwallet.data.DatabaseExecutor;
+import com.lonedev.smartwallet.data.DatabaseHandler;
+import com.lonedev.smartwallet.data.InvalidationTracker;
+import com.lonedev.smartwallet.data.Statistics;
+import com.lonedev.smartwallet.static_data.IntentInfo;
+import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
+
+/**
+ * Classe che rappresenta la schermata Statistiche dell'applicazione, che visualizza le spese di un mese (inizialmente quello
+ * corrente), la loro ripartizione per categoria e il loro andamento negli ultimi mesi.
+ * Le statistiche vengono lette e calcolate al di fuori del thread principale (si veda DatabaseHandler.getStatistics(int)),
+ * per cui alla loro consegna resta soltanto da inserirle nelle viste.
+ * Trattandosi di un Fragment, la sua esistenza è strettamente legata a quella dell'Activity che la contiene, in questo caso MainActivity.
+ *
+ * @author Marco Michelini
+ */
+public class StatisticsFragment extends Fragment implements View.OnClickListener, InvalidationTracker.Observer {
+
+    /**
+     * Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     */
+    private Context context;
+
+    /**
+     * Attributo che permette di accedere al database dell'app (sia in scrittura che in lettura).
+     */
+    private DatabaseHandler databaseHandler;
+
+    /**
+     * Attributo che permette di eseguire le operazioni sul database al di fuori del thread principale.
+     */
+    private DatabaseExecutor databaseExecutor;
+
+    /**
+     * La lettura delle statistiche in corso, oppure null.
+     */
+    private DatabaseExecutor.Task loadTask;
+
+    /**
+     * Il mese visualizzato e il mese corrente, come epoch day del loro primo giorno.
+     */
+    private int month, currentMonth;
+
+    /**
+     * I nomi dei mesi, da gennaio a dicembre.
+     */
+    private String[] monthNames;
+
+    /**
+     * Le viste in cui sono visualizzati il mese, le sue spese, la differenza rispetto al mese precedente, le sue entrate e la
+     * spesa media giornaliera.
+     */
+    private TextView monthView, outView, deltaView, inView, dailyAverageView;
+
+    /**
+     * Elemento dell'UI visualizzato al posto della ripartizione per categoria quando il mese non ha movimenti.
+     */
+    private TextView noStatisticsView;
+
+    /**
+     * I pulsanti che visualizzano il mese precedente e quello successivo.
+     */
+    private Button previousMonthButton, nextMonthButton;
+
+    /**
+     * Elementi dell'UI in cui vengono visualizzati la ripartizione per categoria e l'andamento mensile.
+     */
+    private RecyclerView categoryTotalsRecycler, trendRecycler;
+
+    /**
+     * Gli adapter della ripartizione per categoria e dell'andamento mensile, oppure null se non sono state caricate statistiche.
+     */
+    private TotalsAdapter categoryTotalsAdapter, trendAdapter;
+
+    /**
+     * Riferimento all'activity che racchiude il Fragment.
+     */
+    private MainActivity parentActivity;
+
+    /**
+     * Costruttore di default del Fragment.
+     * Deve obbligatoriamente essere esplicitato, anche se vuoto (come in questo caso).
+     */
+    public StatisticsFragment() {}
+
+    /**
+     * Metodo chiamato quando il Fragment è associato alla sua Activity.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     */
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        this.context = context;
+    }
+
+    /**
+     * Crea e ritorna l'interfaccia del Fragment, aggiungendo le viste necessarie al suo layout (estensione .xml).
+     * La vista viene ritornata immediatamente, e le statistiche del mese corrente vi sono inserite non appena vengono lette.
+     * Da questo momento, il Fragment osserva le modifiche alla tabella MOVEMENTS (si veda onTablesChanged(int)).
+     *
+     * @param inflater Oggetto che converte un layout nell'oggetto Java corrispondente.
+     * @param container La vista alla quale è associata l'UI del Fragment.
+     * @param savedInstanceState Variabile utilizzata per salvare/caricare lo stato del Fragment.
+     */
+    @NonNull
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        View statisticsView = inflater.inflate(R.layout.fragment_statistics, container, false);
+
+        initFragment(statisticsView);
+
+        if (parentActivity != null) {
+            databaseHandler.getInvalidationTracker().addObserver(this, InvalidationTracker.MOVEMENTS);
+            loadStatistics();
+        }
+
+        return statisticsView;
+    }
+
+    /**
+     * Metodo chiamato quando la vista ritornata da onCreateView(LayoutInflater, ViewGroup, Bundle) è scollegata dal Fragment.
+     * Generalmente usato per chiudere o liberare le risorse non più necessarie.
+     * Annulla inoltre la lettura delle statistiche ancora in corso.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+
+        if (loadTask != null)
+            loadTask.cancel();
+
+        if (databaseHandler != null)
+            databaseHandler.getInvalidationTracker().removeObserver(this);
+
+    }
+
+    /**
+     * Metodo chiamato dopo una modifica della tabella MOVEMENTS, anche se avvenuta in un'altra schermata. Rilegge le statistiche
+     * del mese visualizzato: se i movimenti modificati non vi influiscono, queste sono già conservate in memoria (si veda
+     * DatabaseHandler.getStatistics(int)).
+     *
+     * @param tables Le tabelle modificate (OR dei relativi flag di InvalidationTracker).
+     */
+    @Override
+    public void onTablesChanged(int tables) {
+        loadStatistics();
+    }
+
+    /**
+     * Metodo chiamato alla pressione del pulsante del mese precedente o di quello successivo, che visualizza le statistiche
+     * del mese corrispondente. Non è possibile andare oltre il mese corrente.
+     *
+     * @param v Il pulsante premuto.
+     */
+    @Override
+    public void onClick(View v) {
+        if (v == previousMonthButton)
+            month = EpochDays.startOfMonth(month, 1);
+        else if (month < currentMonth)
+            month = EpochDays.startOfMonth(month, -1);
+
+        loadStatistics();
+    }
+
+    /**
+     * Metodo che inizializza l'UI del Fragment, aggiungendo i necessari elementi alla vista fornita.
+     * Se non è possibile recuperare un riferimento all'Activity che contiene il Fragment, questa viene distrutta e poi ricreata,
+     * assieme al Fragment stesso.
+     *
+     * @param statisticsView La vista creata da onCreateView(LayoutInflater, ViewGroup, Bundle).
+     */
+    private void initFragment(View statisticsView) {
+        parentActivity = (MainActivity) getActivity();
+
+        if (parentActivity == null) {
+            Intent reloadIntent = new Intent(context, MainActivity.class);
+            reloadIntent.putExtra(IntentInfo.SCREEN, IntentInfo.STATISTICS);
+            startActivity(reloadIntent);
+        } else {
+            databaseHandler = DatabaseHandler.getInstance(context);
+            databaseExecutor = DatabaseExecutor.getInstance(context);
+            currentMonth = EpochDays.startOfMonth(EpochDays.today(), 0);
+            month = currentMonth;
+            monthNames = getResources().getStringArray(R.array.month_names);
+            monthView = statisticsView.findViewById(R.id.statistics_month);
+            outView = statisticsView.findViewById(R.id.month_out);
+            deltaView = statisticsView.findViewById(R.id.month_delta);
+            inView = statisticsView.findViewById(R.id.month_in);
+            dailyAverageView = statisticsView.findViewById(R.id.daily_average);
+            noStatisticsView = statisticsView.findViewById(R.id.no_statistics);
+            categoryTotalsRecycler = statisticsView.findViewById(R.id.recycler_category_totals);
+            trendRecycler = statisticsView.findViewById(R.id.recycler_trend);
+            previousMonthButton = statisticsView.findViewById(R.id.button_previous_month);
+            nextMonthButton = statisticsView.findViewById(R.id.button_next_month);
+            previousMonthButton.setOnClickListener(this);
+            nextMonthButton.setOnClickListener(this);
+            categoryTotalsRecycler.setLayoutManager(new LinearLayoutManager(context));
+            trendRecycler.setLayoutManager(new LinearLayoutManager(context));
+        }
+
+    }
+
+    /**
+     * Legge dal database le statistiche del mese visualizzato e le inserisce nelle relative viste, annullando l'eventuale
+     * lettura precedente ancora in corso.
+     */
+    private void loadStatistics() {
+        final int requestedMonth = month;
+
+        monthView.setText(TotalsAdapter.formatMonth(getResources(), monthNames, requestedMonth));
+        nextMonthButton.setEnabled(requestedMonth < currentMonth);
+
+        if (loadTask != null)
+            loadTask.cancel();
+
+        loadTask = databaseExecutor.read(new DatabaseExecutor.Operation<Statistics>() {
+
+            @Override
+            public Statistics run(DatabaseHandler databaseHandler) {
+                return databaseHandler.getStatistics(requestedMonth);
+            }
+        }, new DatabaseExecutor.Callback<Statistics>() {
+
+            @Override
+            public void onResult(Statistics result) {
+                loadTask = null;
+
+                if (result != null)
+                    showStatistics(result);
+
+            }
+        });
+    }
+
+    /**
+     * Visualizza le statistiche fornite.
+     *
+     * @param statistics Le statistiche del mese visualizzato.
+     */
+    private void showStatistics(Statistics statistics) {
+        long delta = statistics.getMonthOutDelta();
+        boolean empty = statistics.getCategoryCount() == 0;
+
+        outView.setText(DataFormat.format(statistics.getMonthTotal().getOutSum()) + " "
+                + getResources().getString(R.string.currency));
+        deltaView.setText(getResources().getString(R.string.statistics_delta,
+                (delta > 0 ? "+" : "") + DataFormat.format(delta)));
+        inView.setText(getResources().getString(R.string.statistics_in,
+                DataFormat.format(statistics.getMonthTotal().getInSum())));
+        dailyAverageView.setText(getResources().getString(R.string.statistics_daily_average,
+                DataFormat.format(statistics.getAverageDailySpend())));
+
+        if (categoryTotalsAdapter == null) {
+            categoryTotalsAdapter = new TotalsAdapter(statistics, context, false);
+            trendAdapter = new TotalsAdapter(statistics, context, true);
+            categoryTotalsRecycler.setAdapter(categoryTotalsAdapter);
+            trendRecycler.setAdapter(trendAdapter);
+        } else {
+            categoryTotalsAdapter.swap(statistics);
+            trendAdapter.swap(statistics);
+        }
+
+        noStatisticsView.setVisibility(empty ? View.VISIBLE : View.GONE);
+        categoryTotalsRecycler.setVisibility(empty ? View.GONE : View.VISIBLE);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.lonedev.smartwallet.services;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+import com.lonedev.smartwallet.data.DatabaseExecutor;
+
+/**
+ * Servizio avviato da JobScheduler per eseguire la manutenzione periodica del database dell'app (si veda la classe
+ * MaintenanceScheduler).
+ * La manutenzione viene eseguita al di fuori del thread principale, tramite DatabaseExecutor.
+ *
+ * @author Marco Michelini
+ */
+public class MaintenanceJobService extends JobService {
+
+    /**
+     * La manutenzione attualmente in corso, oppure null.
+     */
+    private DatabaseExecutor.Task maintenanceTask;
+
+    /**
+     * Metodo chiamato da JobScheduler all'avvio del job. Avvia la manutenzione e notifica JobScheduler al suo termine.
+     *
+     * @param params I parametri del job.
+     * @return true, dato che la manutenzione prosegue in background.
+     */
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        maintenanceTask = MaintenanceScheduler.run(this, new DatabaseExecutor.Callback<Boolean>() {
+
+            @Override
+            public void onResult(Boolean result) {
+                maintenanceTask = null;
+                jobFinished(params, result == null || !result);
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Metodo chiamato da JobScheduler quando le condizioni del job non sono più soddisfatte (ad esempio, il dispositivo non
+     * è più in carica). Se non ancora iniziata, la manutenzione viene annullata e rimandata.
+     *
+     * @param params I parametri del job.
+     * @return true, in modo che il job venga ripianificato.
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (maintenanceTask != null)
+            maintenanceTask.cancel();
+
+        return true;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.lonedev.smartwallet.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.lonedev.smartwallet.data.DatabaseExecutor;
+import com.lonedev.smartwallet.data.DatabaseHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classe che pianifica la manutenzione periodica del database dell'app (si veda DatabaseHandler.runMaintenance()), in modo che
+ * questa non venga eseguita all'avvio dell'applicazione.
+ * La manutenzione è affidata a JobScheduler, che la esegue al più una volta ogni MAINTENANCE_INTERVAL quando il dispositivo è
+ * inattivo e in carica. Se JobScheduler non è disponibile, la manutenzione viene eseguita da DatabaseExecutor, ma solo se
+ * dall'ultima esecuzione è trascorso almeno MAINTENANCE_INTERVAL.
+ * La data dell'ultima esecuzione è conservata nelle SharedPreferences dell'app.
+ *
+ * @author Marco Michelini
+ */
+public abstract class MaintenanceScheduler {
+
+    /**
+     * L'ID del job di manutenzione all'interno di JobScheduler.
+     */
+    static final int MAINTENANCE_JOB_ID = 1;
+
+    /**
+     * L'intervallo minimo, in millisecondi, fra due esecuzioni della manutenzione.
+     */
+    static final long MAINTENANCE_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Il nome del file di SharedPreferences in cui è conservata la data dell'ultima manutenzione.
+     */
+    private static final String PREFERENCES_NAME = "maintenance";
+
+    /**
+     * La chiave associata alla data dell'ultima manutenzione, in millisecondi.
+     */
+    private static final String LAST_RUN_KEY = "last_run";
+
+    /**
+     * Pianifica la manutenzione del database, se non è già pianificata.
+     * Non accede al database, a meno che JobScheduler non sia disponibile e la manutenzione sia scaduta.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     */
+    public static void schedule(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        if (jobScheduler != null) {
+
+            if (jobScheduler.getPendingJob(MAINTENANCE_JOB_ID) == null) {
+                JobInfo job = new JobInfo.Builder(MAINTENANCE_JOB_ID, new ComponentName(context, MaintenanceJobService.class))
+                        .setRequiresDeviceIdle(true)
+                        .setRequiresCharging(true)
+                        .setPeriodic(MAINTENANCE_INTERVAL)
+                        .build();
+                jobScheduler.schedule(job);
+            }
+
+        } else if (isDue(context, System.currentTimeMillis())) {
+            run(context, null);
+        }
+    }
+
+    /**
+     * Esegue la manutenzione del database tramite DatabaseExecutor e, se questa va a buon fine, ne registra la data.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     * @param callback Il destinatario dell'esito della manutenzione, oppure null.
+     */
+    static DatabaseExecutor.Task run(Context context, DatabaseExecutor.Callback<Boolean> callback) {
+        final Context applicationContext = context.getApplicationContext();
+
+        return DatabaseExecutor.getInstance(applicationContext).write(new DatabaseExecutor.Operation<Boolean>() {
+
+            @Override
+            public Boolean run(DatabaseHandler databaseHandler) {
+                boolean completed = databaseHandler.runMaintenance();
+
+                if (completed)
+                    getPreferences(applicationContext).edit().putLong(LAST_RUN_KEY, System.currentTimeMillis()).apply();
+
+                return completed;
+            }
+        }, callback);
+    }
+
+    /**
+     * Ritorna true se dall'ultima manutenzione è trascorso almeno MAINTENANCE_INTERVAL, o se questa non è mai stata eseguita.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     * @param now La data attuale, in millisecondi.
+     */
+    static boolean isDue(Context context, long now) {
+        return now - getLastRun(context) >= MAINTENANCE_INTERVAL;
+    }
+
+    /**
+     * Ritorna la data dell'ultima manutenzione, in millisecondi, oppure 0 se questa non è mai stata eseguita.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     */
+    public static long getLastRun(Context context) {
+        return getPreferences(context).getLong(LAST_RUN_KEY, 0);
+    }
+
+    /**
+     * Ritorna le SharedPreferences in cui è conservata la data dell'ultima manutenzione.
+     *
+     * @param context Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
+     */
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+}
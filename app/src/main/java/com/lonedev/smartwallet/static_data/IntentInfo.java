@@ -57,4 +57,9 @@ public final class IntentInfo {
      */
     public static final int EDIT_PROGRESS = 4;
 
+    /**
+     * Valore possibilmente associato a SCREEN. Indica come StatisticsFragment la schermata da visualizzare.
+     */
+    public static final int STATISTICS = 5;
+
 }
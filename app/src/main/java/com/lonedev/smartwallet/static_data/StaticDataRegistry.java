@@ -0,0 +1,125 @@
+package com.lonedev.smartwallet.static_data;
+
+import android.content.Context;
+
+import java.util.Locale;
+
+/**
+ * Classe che conserva un'unica istanza, condivisa da tutta l'applicazione, di ciascuna sottoclasse di StringArrayAccess.
+ * Ogni istanza viene creata soltanto al primo utilizzo, a partire dal contesto dell'applicazione, e viene riutilizzata finché
+ * la lingua del dispositivo non cambia: in tal caso (o dopo una chiamata a invalidate()) le istanze vengono ricreate, in modo
+ * che le stringhe corrispondano sempre alla lingua corrente.
+ *
+ * @author Marco Michelini
+ */
+public abstract class StaticDataRegistry {
+
+    /**
+     * La lingua per cui sono state create le istanze attualmente conservate.
+     */
+    private static Locale locale;
+
+    /**
+     * L'istanza condivisa di EntryTypeAccess, oppure null se non ancora creata.
+     */
+    private static EntryTypeAccess entryType;
+
+    /**
+     * L'istanza condivisa di EntryCategoryAccess, oppure null se non ancora creata.
+     */
+    private static EntryCategoryAccess entryCategory;
+
+    /**
+     * L'istanza condivisa di MovementPeriodAccess, oppure null se non ancora creata.
+     */
+    private static MovementPeriodAccess movementPeriod;
+
+    /**
+     * L'istanza condivisa di WarningAccess, oppure null se non ancora creata.
+     */
+    private static WarningAccess warning;
+
+    /**
+     * Ritorna l'istanza condivisa di EntryTypeAccess, creandola se necessario.
+     *
+     * @param context Un qualsiasi contesto dell'app.
+     */
+    public static synchronized EntryTypeAccess getEntryTypeAccess(Context context) {
+        checkLocale(context);
+
+        if (entryType == null)
+            entryType = new EntryTypeAccess(context.getApplicationContext());
+
+        return entryType;
+    }
+
+    /**
+     * Ritorna l'istanza condivisa di EntryCategoryAccess, creandola se necessario.
+     *
+     * @param context Un qualsiasi contesto dell'app.
+     */
+    public static synchronized EntryCategoryAccess getEntryCategoryAccess(Context context) {
+        checkLocale(context);
+
+        if (entryCategory == null)
+            entryCategory = new EntryCategoryAccess(context.getApplicationContext());
+
+        return entryCategory;
+    }
+
+    /**
+     * Ritorna l'istanza condivisa di MovementPeriodAccess, creandola se necessario.
+     *
+     * @param context Un qualsiasi contesto dell'app.
+     */
+    public static synchronized MovementPeriodAccess getMovementPeriodAccess(Context context) {
+        checkLocale(context);
+
+        if (movementPeriod == null)
+            movementPeriod = new MovementPeriodAccess(context.getApplicationContext());
+
+        return movementPeriod;
+    }
+
+    /**
+     * Ritorna l'istanza condivisa di WarningAccess, creandola se necessario.
+     *
+     * @param context Un qualsiasi contesto dell'app.
+     */
+    public static synchronized WarningAccess getWarningAccess(Context context) {
+        checkLocale(context);
+
+        if (warning == null)
+            warning = new WarningAccess(context.getApplicationContext());
+
+        return warning;
+    }
+
+    /**
+     * Elimina tutte le istanze conservate, che verranno ricreate al successivo utilizzo.
+     * Chiamato quando cambia la configurazione del dispositivo (si veda SmartWalletApplication).
+     */
+    public static synchronized void invalidate() {
+        entryType = null;
+        entryCategory = null;
+        movementPeriod = null;
+        warning = null;
+        locale = null;
+    }
+
+    /**
+     * Verifica che le istanze conservate siano state create per la lingua attuale del dispositivo; in caso contrario,
+     * le elimina.
+     *
+     * @param context Un qualsiasi contesto dell'app.
+     */
+    private static void checkLocale(Context context) {
+        Locale currentLocale = context.getResources().getConfiguration().getLocales().get(0);
+
+        if (!currentLocale.equals(locale)) {
+            invalidate();
+            locale = currentLocale;
+        }
+    }
+
+}
@@ -47,6 +47,20 @@ public abstract class StringArrayAccess {
         return null;
     }
 
+    /**
+     * Ritorna la chiave corrispondente alla stringa passata come parametro. Se la stringa non appartiene a stringArray,
+     * ritorna invece -1.
+     *
+     * @param value Stringa.
+     */
+    public int getKey(String value) {
+        for (int i = 0; i < stringArray.size(); i++) {
+            if (stringArray.valueAt(i).equals(value)) return stringArray.keyAt(i);
+        }
+
+        return -1;
+    }
+
     /**
      * Ritorna un array contenente le stringhe corrispondenti alle chiavi passate come parametro. Eventuali chiavi
      * non appartenenti a stringArray sono ignorate.
@@ -24,6 +24,8 @@ public class WarningAccess extends StringArrayAccess {
     public static final int NOT_ENOUGH_MONEY = 9;
     public static final int EMPTY_NAME_TARGET = 10;
     public static final int DUPLICATE_TARGET = 11;
+    public static final int EXPORT_FAILED = 12;
+    public static final int IMPORT_FAILED = 13;
 
     /**
      * Il contesto dell'app. Conserva informazioni di carattere generale sull'applicazione.
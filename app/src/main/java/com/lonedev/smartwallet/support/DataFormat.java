@@ -9,34 +9,49 @@ package com.lonedev.smartwallet.support;
 public abstract class DataFormat {
 
     /**
-     * Il massimo numero di cifre decimali visualizzate all'interno dell'app.
+     * La massima lunghezza, in caratteri, di una quantità di denaro formattata da format(long, char[], int).
      */
-    private static final int MAX_DECIMAL_DIGITS = 2;
+    public static final int MAX_MONEY_LENGTH = 21 + Money.DECIMAL_DIGITS;
 
     /**
-     * Formatta il valore numerico fornito in modo che risulti essere un intero oppure un numero decimale avente MAX_DECIMAL_DIGITS
-     * cifre decimali, e ne ritorna la stringa.
+     * La lunghezza, in caratteri, di una data formattata da format(int, int, int, char[], int).
+     */
+    public static final int DATE_LENGTH = 8;
+
+    /**
+     * Formatta la quantità di denaro fornita in modo che risulti essere un intero oppure un numero decimale avente
+     * Money.DECIMAL_DIGITS cifre decimali, e ne ritorna la stringa.
      *
-     * @param value Il valore numerico da formattare.
+     * @param cents La quantità di denaro da formattare, in centesimi (si veda la classe Money).
      */
-    public static String format(float value) {
-        StringBuilder stringBuilder = new StringBuilder(String.valueOf(value));
-        int commaIndex = stringBuilder.lastIndexOf("."), stringLength = stringBuilder.length();
+    public static String format(long cents) {
+        char[] buffer = new char[MAX_MONEY_LENGTH];
+        return new String(buffer, 0, format(cents, buffer, 0));
+    }
 
-        if (commaIndex == -1 || stringLength - commaIndex == MAX_DECIMAL_DIGITS + 1) {
-            return stringBuilder.toString();
-        } else if (stringLength - commaIndex == MAX_DECIMAL_DIGITS) {
+    /**
+     * Formatta la quantità di denaro fornita come format(long), scrivendola all'interno di buffer a partire da offset.
+     * Ritorna la posizione successiva all'ultimo carattere scritto. Non alloca alcun oggetto, per cui può essere chiamato
+     * ad ogni associazione di una vista di un RecyclerView.
+     *
+     * @param cents La quantità di denaro da formattare, in centesimi (si veda la classe Money).
+     * @param buffer L'array in cui scrivere la quantità formattata. Deve contenere almeno MAX_MONEY_LENGTH caratteri a partire da offset.
+     * @param offset La posizione del primo carattere da scrivere.
+     */
+    public static int format(long cents, char[] buffer, int offset) {
+        long units = Math.abs(cents / Money.CENTS_PER_UNIT), remainder = Math.abs(cents % Money.CENTS_PER_UNIT);
+
+        if (cents < 0)
+            buffer[offset++] = '-';
 
-            if (stringBuilder.charAt(stringLength - 1) == '0')
-                stringBuilder.delete(commaIndex, stringLength);
-            else
-                stringBuilder.append("0");
+        offset = appendDigits(units, 1, buffer, offset);
 
-        } else if (stringLength - commaIndex > MAX_DECIMAL_DIGITS + 1) {
-            stringBuilder.delete(commaIndex + MAX_DECIMAL_DIGITS + 1, stringLength);
+        if (remainder != 0) {
+            buffer[offset++] = '.';
+            offset = appendDigits(remainder, Money.DECIMAL_DIGITS, buffer, offset);
         }
 
-        return stringBuilder.toString();
+        return offset;
     }
 
     /**
@@ -47,18 +62,51 @@ public abstract class DataFormat {
      * @param year Anno da formattare.
      */
     public static String format(int day, int month, int year) {
-        StringBuilder stringBuilder = new StringBuilder();
+        char[] buffer = new char[DATE_LENGTH];
+        return new String(buffer, 0, format(day, month, year, buffer, 0));
+    }
+
+    /**
+     * Formatta la data fornita nel formato dd/mm/yy, scrivendola all'interno di buffer a partire da offset.
+     * Ritorna la posizione successiva all'ultimo carattere scritto, senza allocare alcun oggetto.
+     *
+     * @param day Giorno del mese da formattare.
+     * @param month Mese da formattare.
+     * @param year Anno da formattare.
+     * @param buffer L'array in cui scrivere la data formattata. Deve contenere almeno DATE_LENGTH caratteri a partire da offset.
+     * @param offset La posizione del primo carattere da scrivere.
+     */
+    public static int format(int day, int month, int year, char[] buffer, int offset) {
+        offset = appendDigits(day, 2, buffer, offset);
+        buffer[offset++] = '/';
+        offset = appendDigits(month, 2, buffer, offset);
+        buffer[offset++] = '/';
+        return appendDigits(Math.abs(year % 100), 2, buffer, offset);
+    }
 
-        if (day < 10)
-            stringBuilder.append("0");
+    /**
+     * Scrive le cifre del numero non negativo fornito all'interno di buffer a partire da offset, aggiungendo degli zeri
+     * iniziali fino a raggiungere minDigits cifre. Ritorna la posizione successiva all'ultima cifra scritta.
+     *
+     * @param number Il numero da scrivere.
+     * @param minDigits Il minimo numero di cifre da scrivere.
+     * @param buffer L'array in cui scrivere il numero.
+     * @param offset La posizione della prima cifra da scrivere.
+     */
+    private static int appendDigits(long number, int minDigits, char[] buffer, int offset) {
+        int digits = 1;
 
-        stringBuilder.append(day).append("/");
+        for (long rest = number / 10; rest > 0; rest /= 10)
+            digits++;
 
-        if (month < 10)
-            stringBuilder.append("0");
+        digits = Math.max(digits, minDigits);
+
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
 
-        stringBuilder.append(month).append("/").append(String.valueOf(year).substring(2));
-        return stringBuilder.toString();
+        return offset + digits;
     }
 
 }
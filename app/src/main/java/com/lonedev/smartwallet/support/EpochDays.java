@@ -0,0 +1,128 @@
+package com.lonedev.smartwallet.support;
+
+import java.util.Calendar;
+
+/**
+ * Classe che fornisce metodi utili alla gestione delle date in formato "epoch day", ovvero come numero di giorni trascorsi
+ * dal 01/01/1970. Tale formato occupa un solo intero, è ordinabile e permette di esprimere un periodo come un intervallo
+ * [inizio, fine), senza dover confrontare separatamente giorno, mese e anno.
+ * Le conversioni sono puramente aritmetiche (calendario gregoriano), senza istanziare alcun oggetto.
+ *
+ * @author Marco Michelini
+ */
+public abstract class EpochDays {
+
+    /**
+     * Il numero di giorni di un ciclo di 400 anni del calendario gregoriano.
+     */
+    private static final int DAYS_PER_ERA = 146097;
+
+    /**
+     * Il numero di giorni tra l'01/03/0000 (inizio del ciclo di riferimento) e l'01/01/1970.
+     */
+    private static final int EPOCH_OFFSET = 719468;
+
+    /**
+     * Ritorna la data corrente in formato epoch day.
+     */
+    public static int today() {
+        Calendar calendar = Calendar.getInstance();
+        return of(calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.YEAR));
+    }
+
+    /**
+     * Ritorna la data fornita in formato epoch day.
+     *
+     * @param day Il giorno del mese (a partire da 1).
+     * @param month Il mese (a partire da 1).
+     * @param year L'anno.
+     */
+    public static int of(int day, int month, int year) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - EPOCH_OFFSET;
+    }
+
+    /**
+     * Ritorna il giorno del mese (a partire da 1) della data fornita.
+     *
+     * @param epochDay La data in formato epoch day.
+     */
+    public static int getDay(int epochDay) {
+        int dayOfYear = getMarchBasedDayOfYear(epochDay);
+        return dayOfYear - (153 * ((5 * dayOfYear + 2) / 153) + 2) / 5 + 1;
+    }
+
+    /**
+     * Ritorna il mese (a partire da 1) della data fornita.
+     *
+     * @param epochDay La data in formato epoch day.
+     */
+    public static int getMonth(int epochDay) {
+        int marchBasedMonth = (5 * getMarchBasedDayOfYear(epochDay) + 2) / 153;
+        return marchBasedMonth < 10 ? marchBasedMonth + 3 : marchBasedMonth - 9;
+    }
+
+    /**
+     * Ritorna l'anno della data fornita.
+     *
+     * @param epochDay La data in formato epoch day.
+     */
+    public static int getYear(int epochDay) {
+        int z = epochDay + EPOCH_OFFSET;
+        int era = Math.floorDiv(z, DAYS_PER_ERA);
+        int dayOfEra = z - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int year = yearOfEra + era * 400;
+        return getMonth(epochDay) <= 2 ? year + 1 : year;
+    }
+
+    /**
+     * Ritorna il lunedì della settimana a cui appartiene la data fornita, in formato epoch day.
+     * L'01/01/1970 era un giovedì.
+     *
+     * @param epochDay La data in formato epoch day.
+     */
+    public static int startOfWeek(int epochDay) {
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+
+    /**
+     * Ritorna il primo giorno del mese a cui appartiene la data fornita, spostato di monthsBefore mesi all'indietro, in
+     * formato epoch day.
+     *
+     * @param epochDay La data in formato epoch day.
+     * @param monthsBefore Il numero di mesi di cui spostarsi all'indietro (0 per il mese della data fornita).
+     */
+    public static int startOfMonth(int epochDay, int monthsBefore) {
+        int months = getYear(epochDay) * 12 + getMonth(epochDay) - 1 - monthsBefore;
+        return of(1, Math.floorMod(months, 12) + 1, Math.floorDiv(months, 12));
+    }
+
+    /**
+     * Ritorna il primo giorno dell'anno a cui appartiene la data fornita, in formato epoch day.
+     *
+     * @param epochDay La data in formato epoch day.
+     */
+    public static int startOfYear(int epochDay) {
+        return of(1, 1, getYear(epochDay));
+    }
+
+    /**
+     * Ritorna il giorno dell'anno della data fornita, contato a partire dal primo marzo (0 = 1 marzo).
+     * Far iniziare l'anno a marzo pone il 29 febbraio in coda, semplificando le conversioni.
+     *
+     * @param epochDay La data in formato epoch day.
+     */
+    private static int getMarchBasedDayOfYear(int epochDay) {
+        int z = epochDay + EPOCH_OFFSET;
+        int era = Math.floorDiv(z, DAYS_PER_ERA);
+        int dayOfEra = z - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.lonedev.smartwallet.support;
+
+/**
+ * Classe che fornisce metodi utili alla gestione delle quantità di denaro all'interno dell'app.
+ * Ogni quantità di denaro è rappresentata da un long pari al numero di centesimi corrispondenti (ad esempio, 12,50 equivale a
+ * 1250): in questo modo somme e confronti sono sempre esatti, sia in Java che nelle query SQLite.
+ *
+ * @author Marco Michelini
+ */
+public abstract class Money {
+
+    /**
+     * Il numero di centesimi contenuti in un'unità di valuta.
+     */
+    public static final long CENTS_PER_UNIT = 100;
+
+    /**
+     * Il numero di cifre decimali di una quantità di denaro.
+     */
+    public static final int DECIMAL_DIGITS = 2;
+
+    /**
+     * Converte la stringa fornita, composta da sole cifre ed eventualmente da un punto seguito da al più DECIMAL_DIGITS
+     * cifre decimali, nel corrispondente numero di centesimi.
+     * Se la stringa non rispetta tale formato, ritorna -1.
+     *
+     * @param text La stringa da convertire.
+     */
+    public static long parse(CharSequence text) {
+        long units = 0, cents = 0;
+        int length = text.length(), decimalDigits = -1;
+
+        if (length == 0)
+            return -1;
+
+        for (int i = 0; i < length; i++) {
+            char character = text.charAt(i);
+
+            if (character == '.' && decimalDigits == -1) {
+                decimalDigits = 0;
+            } else if (character >= '0' && character <= '9') {
+
+                if (decimalDigits == -1) {
+                    units = units * 10 + (character - '0');
+                } else if (decimalDigits < DECIMAL_DIGITS) {
+                    cents = cents * 10 + (character - '0');
+                    decimalDigits++;
+                } else {
+                    return -1;
+                }
+
+            } else {
+                return -1;
+            }
+        }
+
+        for (int i = Math.max(decimalDigits, 0); i < DECIMAL_DIGITS; i++)
+            cents *= 10;
+
+        return units * CENTS_PER_UNIT + cents;
+    }
+
+    /**
+     * Ritorna la percentuale, arrotondata all'intero più vicino, che il valore fornito rappresenta rispetto al massimo fornito.
+     * Il calcolo è svolto in aritmetica intera, in modo da coincidere con quello eseguito dalle query SQLite di DatabaseHandler.
+     *
+     * @param value Il valore, in centesimi.
+     * @param max Il massimo, in centesimi. Deve essere positivo.
+     */
+    public static int percent(long value, long max) {
+        return (int) Math.floorDiv(value * 200 + max, max * 2);
+    }
+
+}
@@ -4,170 +4,191 @@ import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
 import com.lonedev.smartwallet.static_data.EntryTypeAccess;
 import com.lonedev.smartwallet.static_data.MovementPeriodAccess;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 /**
  * Classe astratta che modellizza un filtro per movimenti.
  * Contiene i filtri impostati dall'utente nella schermata Movimenti, utilizzati per selezionare
  * quali movimenti visualizzare nel relativo RecyclerView.
+ * I filtri sono memorizzati tramite le chiavi delle relative sottoclassi di StringArrayAccess, e sono quindi indipendenti
+ * dalla lingua dell'app. Di default, vengono visualizzati tutti i movimenti della settimana corrente.
+ * I filtri vengono letti e modificati soltanto sul thread principale: le letture dei movimenti, eseguite al di fuori di
+ * questo, ricevono invece un'istantanea immutabile dei filtri (si veda snapshot()).
  *
  * @author Marco Michelini
  */
 public abstract class MovementsFilter {
 
     /**
-     * Il tipo di filtro, per filtrare i movimenti in base al loro tipo.
+     * Il tipo di filtro, per filtrare i movimenti in base al loro tipo (una chiave di EntryTypeAccess.FILTER).
      */
-    private static String type;
+    private static int type = EntryTypeAccess.ALL;
 
     /**
-     * L'indice di riga associato al tipo di filtro all'interno del relativo Spinner di MovementsFragment.
-     * Permette di mantenere la selezione del tipo anche quando l'utente abbandona la schermata Movimenti.
+     * La categoria del filtro, per filtrare i movimenti in base alla loro categoria (una chiave di EntryCategoryAccess).
      */
-    private static int typePosition;
+    private static int category = EntryCategoryAccess.ALL;
 
     /**
-     * La categoria del filtro, per filtrare i movimenti in base alla loro categoria.
+     * Il periodo del filtro, per filtrare i movimenti in base alla loro data di creazione (una chiave di MovementPeriodAccess).
      */
-    private static String category;
+    private static int period = MovementPeriodAccess.LAST_WEEK;
 
     /**
-     * L'indice di riga associato alla categoria del filtro all'interno del relativo Spinner di MovementsFragment.
-     * Permette di mantenere la selezione della categoria anche quando l'utente abbandona la schermata Movimenti.
+     * Istantanea immutabile dei filtri, che può essere letta da qualsiasi thread (si veda snapshot()).
      */
-    private static int categoryPosition;
+    public static final class Snapshot {
 
-    /**
-     * Il periodo del filtro, per filtrare i movimenti in base alla loro data di creazione.
-     */
-    private static String period;
+        /**
+         * Le chiavi del tipo, della categoria e del periodo del filtro al momento della creazione dell'istantanea.
+         */
+        private final int type, category, period;
 
-    /**
-     * L'indice di riga associato al periodo del filtro all'interno del relativo Spinner di MovementsFragment.
-     * Permette di mantenere la selezione del periodo anche quando l'utente abbandona la schermata Movimenti.
-     */
-    private static int periodPosition;
+        /**
+         * Inizializza una nuova istantanea con i filtri forniti.
+         *
+         * @param type La chiave del tipo di filtro.
+         * @param category La chiave della categoria del filtro.
+         * @param period La chiave del periodo del filtro.
+         */
+        private Snapshot(int type, int category, int period) {
+            this.type = type;
+            this.category = category;
+            this.period = period;
+        }
 
-    /**
-     * Attributo che permette di accedere all'array statico contenente i possibili tipi di Entry.
-     * Questi sono mostrati all'interno di uno Spinner, permettendo all'utente di selezionare il tipo di movimenti da visualizzare.
-     */
-    private static EntryTypeAccess entryType;
+        /**
+         * Ritorna la chiave del tipo di filtro.
+         */
+        public int getType() {
+            return type;
+        }
 
-    /**
-     * Attributo che permette di accedere all'array statico contenente le possibili categorie di Entry.
-     * Questi sono mostrati all'interno di uno Spinner, permettendo all'utente di selezionare la categoria di movimenti da visualizzare.
-     */
-    private static EntryCategoryAccess entryCategory;
+        /**
+         * Ritorna la chiave della categoria del filtro.
+         */
+        public int getCategory() {
+            return category;
+        }
 
-    /**
-     * Attributo che permette di accedere all'array statico contenente i possibili periodi temporali di un movimenti da visualizzare.
-     * Questi sono mostrati all'interno di uno Spinner, permettendo all'utente di selezionare il periodo di movimenti da visualizzare.
-     */
-    private static MovementPeriodAccess movementPeriod;
+        /**
+         * Ritorna la chiave del periodo del filtro.
+         */
+        public int getPeriod() {
+            return period;
+        }
+
+    }
 
     /**
-     * Inizializza MovementsFilter con le sottoclassi di StringArrayAccess fornite.
-     *
-     * @param eta Riferimento all'istanza di EntryTypeAccess.
-     * @param eca Riferimento all'istanza di EntryCategoryAccess.
-     * @param mpa Riferimento all'istanza di MovementPeriodAccess.
-     */
-    public static void init(EntryTypeAccess eta, EntryCategoryAccess eca, MovementPeriodAccess mpa) {
-        entryType = eta;
-        entryCategory = eca;
-        movementPeriod = mpa;
-        type = entryType.get(EntryTypeAccess.ALL);
-        category = entryCategory.get(EntryCategoryAccess.ALL);
-        period = movementPeriod.get(MovementPeriodAccess.LAST_WEEK);
-        typePosition = -1;
-        categoryPosition = -1;
-        periodPosition = -1;
+     * Ritorna un'istantanea dei filtri attuali, da passare alle letture eseguite al di fuori del thread principale.
+     * Deve essere chiamato sul thread principale.
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot(type, category, period);
     }
 
     /**
-     * Ritorna il tipo di filtro.
+     * Ritorna la chiave del tipo di filtro.
      */
-    public static String getType() {
+    public static int getType() {
         return type;
     }
 
     /**
-     * Ritorna la categoria del filtro.
+     * Ritorna la chiave della categoria del filtro.
      */
-    public static String getCategory() {
+    public static int getCategory() {
         return category;
     }
 
     /**
-     * Ritorna il periodo del filtro.
+     * Ritorna la chiave del periodo del filtro.
      */
-    public static String getPeriod() {
+    public static int getPeriod() {
         return period;
     }
 
+    /**
+     * Ritorna l'array delle chiavi delle categorie selezionabili dall'utente, sulla base del tipo di filtro attuale.
+     */
+    public static int[] getCategoryKeys() {
+        if (type == EntryTypeAccess.INS)
+            return EntryCategoryAccess.FILTER_IN;
+        else if (type == EntryTypeAccess.OUTS)
+            return EntryCategoryAccess.FILTER_OUT;
+        else
+            return EntryCategoryAccess.FILTER_ALL;
+    }
+
     /**
      * Ritorna l'indice di riga associato al tipo di filtro all'interno del relativo Spinner di MovementsFragment.
+     * Permette di mantenere la selezione del tipo anche quando l'utente abbandona la schermata Movimenti.
      */
     public static int getTypePosition() {
-        return typePosition;
+        return indexOf(EntryTypeAccess.FILTER, type);
     }
 
     /**
      * Ritorna l'indice di riga associato alla categoria del filtro all'interno del relativo Spinner di MovementsFragment.
+     * Permette di mantenere la selezione della categoria anche quando l'utente abbandona la schermata Movimenti.
      */
     public static int getCategoryPosition() {
-        return categoryPosition;
+        return indexOf(getCategoryKeys(), category);
     }
 
     /**
      * Ritorna l'indice di riga associato al periodo del filtro all'interno del relativo Spinner di MovementsFragment.
+     * Permette di mantenere la selezione del periodo anche quando l'utente abbandona la schermata Movimenti.
      */
     public static int getPeriodPosition() {
-        return periodPosition;
+        return period;
     }
 
     /**
-     * Imposta il tipo di filtro al tipo fornito, e ne aggiorna la posizione.
+     * Imposta il tipo di filtro al tipo fornito.
+     * Se la categoria del filtro non è selezionabile con il nuovo tipo (si veda getCategoryKeys()), viene reimpostata a
+     * EntryCategoryAccess.ALL.
      *
-     * @param t Il nuovo tipo di filtro.
+     * @param t La chiave del nuovo tipo di filtro.
      */
-    public static void setType(String t) {
+    public static void setType(int t) {
         type = t;
-        List<String> types = new ArrayList<>(Arrays.asList(entryType.get(EntryTypeAccess.FILTER)));
-        typePosition = types.indexOf(t);
+
+        if (getCategoryPosition() == -1)
+            category = EntryCategoryAccess.ALL;
+
     }
 
     /**
-     * Imposta la categoria del filtro alla categoria fornita, e ne aggiorna la posizione.
+     * Imposta la categoria del filtro alla categoria fornita.
      *
-     * @param c La nuova categoria del filtro.
+     * @param c La chiave della nuova categoria del filtro.
      */
-    public static void setCategory(String c) {
+    public static void setCategory(int c) {
         category = c;
-        List<String> categories;
-
-        if (type.equals(entryType.get(EntryTypeAccess.INS)))
-            categories = new ArrayList<>(Arrays.asList(entryCategory.get(EntryCategoryAccess.FILTER_IN)));
-        else if (type.equals(entryType.get(EntryTypeAccess.OUTS)))
-            categories = new ArrayList<>(Arrays.asList(entryCategory.get(EntryCategoryAccess.FILTER_OUT)));
-        else
-            categories = new ArrayList<>(Arrays.asList(entryCategory.get(EntryCategoryAccess.FILTER_ALL)));
-
-        categoryPosition = categories.indexOf(c);
     }
 
     /**
-     * Imposta il periodo del filtro al periodo fornito, e ne aggiorna la posizione.
+     * Imposta il periodo del filtro al periodo fornito.
      *
-     * @param p Il nuovo periodo del filtro.
+     * @param p La chiave del nuovo periodo del filtro.
      */
-    public static void setPeriod(String p) {
+    public static void setPeriod(int p) {
         period = p;
-        List<String> periods = new ArrayList<>(Arrays.asList(movementPeriod.getAll()));
-        periodPosition = periods.indexOf(p);
+    }
+
+    /**
+     * Ritorna la posizione della chiave fornita all'interno dell'array di chiavi fornito, oppure -1 se non presente.
+     *
+     * @param keys L'array di chiavi.
+     * @param key La chiave da cercare.
+     */
+    private static int indexOf(int[] keys, int key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key)
+                return i;
+        }
+
+        return -1;
     }
 
 }
@@ -0,0 +1,69 @@
+package com.lonedev.smartwallet.support;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Classe che misura il tempo di avvio dell'applicazione, ovvero il tempo trascorso fra la creazione dell'applicazione
+ * (SmartWalletApplication.onCreate()) e il primo frame della schermata Home, e lo riporta nel log con il tag TAG.
+ * La misura viene riportata una sola volta per processo, e soltanto se la schermata Home è la prima ad essere visualizzata.
+ *
+ * @author Marco Michelini
+ */
+public abstract class StartupTrace {
+
+    /**
+     * Il tag con cui la misura viene riportata nel log.
+     */
+    public static final String TAG = "StartupTrace";
+
+    /**
+     * L'istante di creazione dell'applicazione, in millisecondi (si veda SystemClock.uptimeMillis()), oppure -1 se la misura
+     * è già stata riportata o non è mai iniziata.
+     */
+    private static long startTime = -1;
+
+    /**
+     * Registra l'istante di creazione dell'applicazione. Chiamato da SmartWalletApplication.onCreate().
+     */
+    public static void begin() {
+        startTime = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Attende il primo frame della vista fornita e riporta nel log il tempo trascorso dalla chiamata a begin().
+     * Se la misura è già stata riportata, non fa nulla.
+     *
+     * @param view La vista di cui attendere il primo frame.
+     */
+    public static void reportFirstFrame(final View view) {
+        if (startTime == -1)
+            return;
+
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                if (startTime != -1) {
+                    Log.i(TAG, "Application.onCreate -> first HomeFragment frame: "
+                            + (SystemClock.uptimeMillis() - startTime) + " ms");
+                    startTime = -1;
+                }
+
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Interrompe la misura senza riportarla. Chiamato quando la prima schermata visualizzata non è la schermata Home.
+     */
+    public static void cancel() {
+        startTime = -1;
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.lonedev.smartwallet.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
+import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test di proprietà del saldo disponibile e del registro BALANCE_SNAPSHOTS, eseguito su un database reale (si veda la classe
+ * DatabaseHandler). Una sequenza casuale di registrazioni, rimozioni e importazioni di movimenti, distribuiti sugli ultimi
+ * YEARS anni, viene applicata al database; dopo ogni operazione il saldo disponibile deve coincidere con la somma dei
+ * movimenti registrati, in centesimi, e verifyLedger() non deve trovare alcuna riga del registro da correggere.
+ *
+ * @author Marco Michelini
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BalanceLedgerPropertyTest {
+
+    /**
+     * Il nome del database usato dal test, distinto da quello dell'app.
+     */
+    private static final String DATABASE_NAME = "ledger-test";
+
+    /**
+     * Il numero di operazioni della sequenza casuale.
+     */
+    private static final int OPERATIONS = 2000;
+
+    /**
+     * Il numero di anni su cui sono distribuiti i movimenti.
+     */
+    private static final int YEARS = 3;
+
+    /**
+     * Il massimo numero di movimenti di un file importato.
+     */
+    private static final int MAX_IMPORTED = 200;
+
+    /**
+     * Il massimo valore di un movimento, in centesimi.
+     */
+    private static final int MAX_CENTS = 10000000;
+
+    /**
+     * Il nome dell'obiettivo incrementato da alcuni movimenti.
+     */
+    private static final String TARGET_NAME = "Vacanza";
+
+    /**
+     * Il contesto dell'applicazione.
+     */
+    private Context context;
+
+    /**
+     * Il DatabaseHandler del database usato dal test.
+     */
+    private DatabaseHandler databaseHandler;
+
+    /**
+     * Le categorie nella lingua attuale del dispositivo.
+     */
+    private EntryCategoryAccess categories;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        context.deleteDatabase(DATABASE_NAME);
+        databaseHandler = new DatabaseHandler(context, DATABASE_NAME);
+        categories = StaticDataRegistry.getEntryCategoryAccess(context);
+        databaseHandler.insert(new Target(TARGET_NAME, 100000));
+    }
+
+    @After
+    public void tearDown() {
+        databaseHandler.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void randomOperationsKeepBalanceAndLedgerExact() {
+        Random random = new Random(20181120);
+        int today = EpochDays.today(), firstDay = EpochDays.of(1, 1, EpochDays.getYear(today) - YEARS + 1);
+        List<Movement> movements = new ArrayList<>();
+        long expected = 0;
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int operation = random.nextInt(20);
+
+            if (operation == 0) {
+                expected += importRandomMovements(random, firstDay, today);
+                movements = readMovements();
+            } else if (operation < 7 && !movements.isEmpty()) {
+                int index = random.nextInt(movements.size());
+                Movement movement = movements.get(index);
+                databaseHandler.removeMovement(movement);
+                expected -= movement.getValue();
+                movements.set(index, movements.get(movements.size() - 1));
+                movements.remove(movements.size() - 1);
+            } else {
+                boolean target = random.nextInt(10) == 0;
+                long cents = 1 + random.nextInt(MAX_CENTS);
+                Movement movement = new Movement(target ? TARGET_NAME : randomCategory(random),
+                        random.nextInt(3) == 0 ? cents : -cents, firstDay + random.nextInt(today - firstDay + 1),
+                        UUID.randomUUID().toString());
+                RecordResult result = databaseHandler.recordMovement(movement, target ? TARGET_NAME : null);
+
+                assertNotNull(result);
+                assertEquals(movement.getValue() > 0 || expected + movement.getValue() >= 0, result.isRecorded());
+
+                if (result.isRecorded()) {
+                    expected += movement.getValue();
+                    movements.add(movement);
+                }
+
+                assertEquals(expected, result.getBalance());
+            }
+
+            assertEquals("Operazione " + i, expected, databaseHandler.getBalance());
+            assertFalse("Operazione " + i, databaseHandler.verifyLedger());
+        }
+
+        // Rimuovendo tutti i movimenti rimasti, il saldo torna esattamente a zero.
+        for (Movement movement : readMovements())
+            databaseHandler.removeMovement(movement);
+
+        assertEquals(0, databaseHandler.getBalance());
+        assertFalse(databaseHandler.verifyLedger());
+    }
+
+    /**
+     * Importa un file di movimenti casuali, nel formato dei file esportati dall'app (si veda la classe MovementsExporter), in
+     * gruppi di dimensione casuale, e ritorna la somma dei loro valori, in centesimi.
+     *
+     * @param random Il generatore di numeri casuali.
+     * @param firstDay Il primo giorno ammesso per i movimenti, in formato epoch day.
+     * @param today La data di oggi, in formato epoch day.
+     */
+    private long importRandomMovements(Random random, int firstDay, int today) {
+        StringBuilder file = new StringBuilder("date,description,value\n");
+        int rows = 1 + random.nextInt(MAX_IMPORTED);
+        long total = 0;
+
+        for (int i = 0; i < rows; i++) {
+            int epochDay = firstDay + random.nextInt(today - firstDay + 1);
+            long cents = 1 + random.nextInt(MAX_CENTS), value = random.nextBoolean() ? cents : -cents;
+            String description = random.nextInt(10) == 0 ? TARGET_NAME
+                    : random.nextInt(5) == 0 ? "Movimento " + random.nextInt(100) : randomCategory(random);
+
+            file.append(String.format("%04d-%02d-%02d,", EpochDays.getYear(epochDay), EpochDays.getMonth(epochDay),
+                    EpochDays.getDay(epochDay))).append(description).append(',').append(DataFormat.format(value)).append('\n');
+            total += value;
+        }
+
+        ImportResult result = databaseHandler.importMovements(new StringReader(file.toString()), file.length(),
+                1 + random.nextInt(50), new DatabaseExecutor.Task(), new DatabaseExecutor.ProgressCounter() {
+
+                    @Override
+                    public void onProgress(long done, long total) {
+                    }
+                });
+
+        assertNotNull(result);
+        assertEquals(rows, result.getImported());
+        assertEquals(0, result.getSkipped());
+        assertTrue(result.isCompleted());
+        return total;
+    }
+
+    /**
+     * Ritorna la descrizione di una categoria di movimento casuale.
+     *
+     * @param random Il generatore di numeri casuali.
+     */
+    private String randomCategory(Random random) {
+        return categories.get(EntryCategoryAccess.FILTER_ALL[1 + random.nextInt(EntryCategoryAccess.FILTER_ALL.length - 1)]);
+    }
+
+    /**
+     * Ritorna tutti i movimenti presenti nel database, compresi quelli archiviati (tabelle MOVEMENTS_ seguito dall'anno).
+     */
+    private List<Movement> readMovements() {
+        SQLiteDatabase database = databaseHandler.getReadableDatabase();
+        StringBuilder union = new StringBuilder("SELECT CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY, ID FROM MOVEMENTS");
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name LIKE 'MOVEMENTS\\_%' "
+                + "ESCAPE '\\'", null);
+
+        while (cursor.moveToNext())
+            union.append(" UNION ALL SELECT CATEGORY_ID, DESCRIPTION, VALUE, EPOCH_DAY, ID FROM ").append(cursor.getString(0));
+
+        cursor.close();
+
+        List<Movement> movements = new ArrayList<>();
+        cursor = database.rawQuery(union.toString(), null);
+
+        while (cursor.moveToNext())
+            movements.add(new Movement(cursor.isNull(0) ? cursor.getString(1) : categories.get(cursor.getInt(0)),
+                    cursor.getLong(2), cursor.getInt(3), cursor.getString(4)));
+
+        cursor.close();
+        return movements;
+    }
+
+}
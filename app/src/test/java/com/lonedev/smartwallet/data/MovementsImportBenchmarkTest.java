@@ -0,0 +1,140 @@
+package com.lonedev.smartwallet.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.lonedev.smartwallet.static_data.EntryCategoryAccess;
+import com.lonedev.smartwallet.static_data.StaticDataRegistry;
+import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Misura il tempo di importazione di un file di ROWS movimenti (si veda
+ * DatabaseHandler.importMovements(Reader, long, int, DatabaseExecutor.Task, DatabaseExecutor.ProgressCounter)), con la
+ * dimensione dei gruppi usata dall'app, e verifica che vengano importati tutti, che il saldo disponibile coincida con la loro
+ * somma e che l'importazione termini entro MAX_MILLIS millisecondi.
+ *
+ * @author Marco Michelini
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovementsImportBenchmarkTest {
+
+    /**
+     * Il nome del database usato dal test, distinto da quello dell'app.
+     */
+    private static final String DATABASE_NAME = "import-benchmark";
+
+    /**
+     * Il numero di movimenti del file importato.
+     */
+    private static final int ROWS = 100000;
+
+    /**
+     * Il numero di anni su cui sono distribuiti i movimenti.
+     */
+    private static final int YEARS = 3;
+
+    /**
+     * Il tempo massimo dell'importazione, in millisecondi.
+     */
+    private static final long MAX_MILLIS = 10000;
+
+    /**
+     * Il contesto dell'applicazione.
+     */
+    private Context context;
+
+    /**
+     * Il DatabaseHandler del database usato dal test.
+     */
+    private DatabaseHandler databaseHandler;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        context.deleteDatabase(DATABASE_NAME);
+        databaseHandler = new DatabaseHandler(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        databaseHandler.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void importBenchmark() {
+        EntryCategoryAccess categories = StaticDataRegistry.getEntryCategoryAccess(context);
+        Random random = new Random(25);
+        int today = EpochDays.today(), firstDay = EpochDays.of(1, 1, EpochDays.getYear(today) - YEARS + 1);
+        StringBuilder file = new StringBuilder("date,description,value\n");
+        long total = 0;
+
+        for (int i = 0; i < ROWS; i++) {
+            int epochDay = firstDay + random.nextInt(today - firstDay + 1);
+            int category = EntryCategoryAccess.FILTER_ALL[1 + random.nextInt(EntryCategoryAccess.FILTER_ALL.length - 1)];
+            long cents = 1 + random.nextInt(100000), value = random.nextInt(4) == 0 ? cents : -cents;
+
+            file.append(String.format("%04d-%02d-%02d,", EpochDays.getYear(epochDay), EpochDays.getMonth(epochDay),
+                    EpochDays.getDay(epochDay))).append(categories.get(category)).append(',')
+                    .append(DataFormat.format(value)).append('\n');
+            total += value;
+        }
+
+        String text = file.toString();
+        long start = System.nanoTime();
+        ImportResult result = databaseHandler.importMovements(new StringReader(text), text.length(),
+                DatabaseHandler.IMPORT_BATCH_SIZE, new DatabaseExecutor.Task(), new DatabaseExecutor.ProgressCounter() {
+
+                    @Override
+                    public void onProgress(long done, long total) {
+                    }
+                });
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        System.out.println("Importazione di " + ROWS + " movimenti: " + elapsed + " ms");
+
+        assertNotNull(result);
+        assertEquals(ROWS, result.getImported());
+        assertEquals(0, result.getSkipped());
+        assertTrue(result.isCompleted());
+        assertEquals(ROWS, countMovements());
+        assertEquals(total, databaseHandler.getBalance());
+        assertFalse(databaseHandler.verifyLedger());
+        assertTrue("Importazione di " + ROWS + " movimenti: " + elapsed + " ms", elapsed < MAX_MILLIS);
+    }
+
+    /**
+     * Ritorna il numero di movimenti presenti nel database, compresi quelli archiviati (tabelle MOVEMENTS_ seguito
+     * dall'anno).
+     */
+    private long countMovements() {
+        SQLiteDatabase database = databaseHandler.getReadableDatabase();
+        long count = DatabaseUtils.queryNumEntries(database, "MOVEMENTS");
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name LIKE 'MOVEMENTS\\_%' "
+                + "ESCAPE '\\'", null);
+
+        while (cursor.moveToNext())
+            count += DatabaseUtils.queryNumEntries(database, cursor.getString(0));
+
+        cursor.close();
+        return count;
+    }
+
+}
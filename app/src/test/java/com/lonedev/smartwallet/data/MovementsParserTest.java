@@ -0,0 +1,211 @@
+package com.lonedev.smartwallet.data;
+
+import com.lonedev.smartwallet.support.DataFormat;
+import com.lonedev.smartwallet.support.EpochDays;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test della lettura dei movimenti da file CSV (si veda la classe MovementsParser), in entrambi i formati riconosciuti: quello
+ * dei file esportati dall'app (si veda la classe MovementsExporter), le cui righe vengono generate casualmente e rilette, e
+ * quello degli estratti conto bancari. Il test misura anche il tempo di lettura di un file di BENCHMARK_ROWS movimenti.
+ *
+ * @author Marco Michelini
+ */
+public class MovementsParserTest {
+
+    /**
+     * Il numero di movimenti del file riletto dopo l'esportazione.
+     */
+    private static final int ROUND_TRIP_ROWS = 20000;
+
+    /**
+     * Il numero di movimenti del file di cui viene misurato il tempo di lettura.
+     */
+    private static final int BENCHMARK_ROWS = 500000;
+
+    /**
+     * L'ultimo giorno ammesso per i movimenti letti, in formato epoch day.
+     */
+    private static final int LAST_DAY = EpochDays.of(31, 12, 2019);
+
+    @Test
+    public void readsExportedFormat() throws IOException {
+        MovementsParser parser = new MovementsParser(new StringReader("date,description,value\r\n"
+                + "2019-03-05,Spesa,-12.5\r\n"
+                + "2019-03-04,\"Cena, \"\"Da Mario\"\"\",-45.00\r\n"
+                + "2019-03-01,Stipendio,1500\r\n"), LAST_DAY);
+
+        assertMovement(parser, EpochDays.of(5, 3, 2019), "Spesa", -1250);
+        assertMovement(parser, EpochDays.of(4, 3, 2019), "Cena, \"Da Mario\"", -4500);
+        assertMovement(parser, EpochDays.of(1, 3, 2019), "Stipendio", 150000);
+        assertFalse(parser.next());
+        assertEquals(0, parser.getSkipped());
+    }
+
+    @Test
+    public void readsBankStatementFormat() throws IOException {
+        MovementsParser parser = new MovementsParser(new StringReader("\uFEFFData;Descrizione;Importo;Saldo\n"
+                + "05/03/2019;Pagamento POS;-1.234,56;100,00\n"
+                + "6.3.19;\"Bonifico; affitto\";+ 12,5 €\n"
+                + "07-03-2019 10:30;Prelievo;- 50\n"), LAST_DAY);
+
+        assertMovement(parser, EpochDays.of(5, 3, 2019), "Pagamento POS", -123456);
+        assertMovement(parser, EpochDays.of(6, 3, 2019), "Bonifico; affitto", 1250);
+        assertMovement(parser, EpochDays.of(7, 3, 2019), "Prelievo", -5000);
+        assertFalse(parser.next());
+        assertEquals(0, parser.getSkipped());
+    }
+
+    @Test
+    public void skipsInvalidRows() throws IOException {
+        MovementsParser parser = new MovementsParser(new StringReader("date,description,value\n"
+                + "\n"
+                + "2019-02-31,Data inesistente,-1\n"
+                + "2019-03-05,Tre decimali,-1.234\n"
+                + "2019-03-05,Valore nullo,0.00\n"
+                + "2019-03-05,Separatore delle migliaia,\"-1,234.00\"\n"
+                + "05/03/19999,Anno troppo lungo,-1\n"
+                + "2020-01-01,Dopo l'ultimo giorno,-1\n"
+                + "2019-03-05,,-1\n"
+                + "\n"), LAST_DAY);
+
+        assertMovement(parser, EpochDays.of(5, 3, 2019), "", -100);
+        assertFalse(parser.next());
+        assertEquals(6, parser.getSkipped());
+    }
+
+    @Test
+    public void truncatesLongDescriptionsAndKeepsQuotedLineBreaks() throws IOException {
+        StringBuilder description = new StringBuilder();
+
+        for (int i = 0; i < 300; i++)
+            description.append((char) ('a' + i % 26));
+
+        MovementsParser parser = new MovementsParser(new StringReader("2019-03-05," + description + ",-1\n"
+                + "2019-03-06,\"Prima riga\nseconda riga\",2\n"), LAST_DAY);
+
+        assertMovement(parser, EpochDays.of(5, 3, 2019), description.substring(0, 128), -100);
+        assertMovement(parser, EpochDays.of(6, 3, 2019), "Prima riga\nseconda riga", 200);
+        assertFalse(parser.next());
+    }
+
+    /**
+     * Scrive ROUND_TRIP_ROWS movimenti casuali nel formato dei file esportati dall'app (si veda
+     * MovementsExporter.writeMovement(Writer, Cursor)) e verifica che vengano riletti tutti, con la stessa data, descrizione e
+     * valore. Il file supera la dimensione del buffer di lettura, per cui le righe attraversano più riempimenti del buffer.
+     */
+    @Test
+    public void readsBackExportedMovements() throws IOException {
+        Random random = new Random(24);
+        int[] epochDays = new int[ROUND_TRIP_ROWS];
+        String[] descriptions = new String[ROUND_TRIP_ROWS];
+        long[] values = new long[ROUND_TRIP_ROWS];
+        StringBuilder file = new StringBuilder("date,description,value\n");
+
+        for (int i = 0; i < ROUND_TRIP_ROWS; i++) {
+            epochDays[i] = LAST_DAY - random.nextInt(3 * 365);
+            descriptions[i] = randomDescription(random);
+            values[i] = (random.nextBoolean() ? -1 : 1) * (1 + (long) random.nextInt(10000000));
+
+            file.append(String.format("%04d-%02d-%02d,", EpochDays.getYear(epochDays[i]), EpochDays.getMonth(epochDays[i]),
+                    EpochDays.getDay(epochDays[i])));
+            appendField(file, descriptions[i]);
+            file.append(',').append(DataFormat.format(values[i])).append('\n');
+        }
+
+        MovementsParser parser = new MovementsParser(new StringReader(file.toString()), LAST_DAY);
+
+        for (int i = 0; i < ROUND_TRIP_ROWS; i++)
+            assertMovement(parser, epochDays[i], descriptions[i], values[i]);
+
+        assertFalse(parser.next());
+        assertEquals(0, parser.getSkipped());
+        assertEquals(file.length(), parser.getPosition());
+    }
+
+    @Test
+    public void parseBenchmark() throws IOException {
+        StringBuilder file = new StringBuilder("Data;Descrizione;Importo\n");
+        Random random = new Random(3);
+
+        for (int i = 0; i < BENCHMARK_ROWS; i++) {
+            int epochDay = LAST_DAY - random.nextInt(365);
+            file.append(DataFormat.format(EpochDays.getDay(epochDay), EpochDays.getMonth(epochDay), EpochDays.getYear(epochDay)))
+                    .append(";Pagamento POS ").append(i % 100).append(";-").append(1 + random.nextInt(100000)).append(',')
+                    .append(random.nextInt(10)).append(random.nextInt(10)).append('\n');
+        }
+
+        String text = file.toString();
+        long start = System.nanoTime();
+        MovementsParser parser = new MovementsParser(new StringReader(text), LAST_DAY);
+        int rows = 0;
+
+        while (parser.next())
+            rows++;
+
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Lettura di " + BENCHMARK_ROWS + " movimenti: " + elapsed / 1000000 + " ms");
+
+        assertEquals(BENCHMARK_ROWS, rows);
+        assertEquals(0, parser.getSkipped());
+    }
+
+    /**
+     * Verifica che il prossimo movimento letto dal MovementsParser fornito abbia data, descrizione e valore forniti.
+     *
+     * @param parser Il MovementsParser.
+     * @param epochDay La data attesa, in formato epoch day.
+     * @param description La descrizione attesa.
+     * @param value Il valore atteso, in centesimi.
+     */
+    private static void assertMovement(MovementsParser parser, int epochDay, String description, long value)
+            throws IOException {
+        assertTrue(parser.next());
+        assertEquals(epochDay, parser.getEpochDay());
+        assertEquals(description, parser.getDescription());
+        assertEquals(value, parser.getValue());
+    }
+
+    /**
+     * Ritorna una descrizione casuale, che contiene talvolta virgole, virgolette o un punto e virgola, ma non spazi iniziali
+     * o finali (che MovementsParser rimuove).
+     *
+     * @param random Il generatore di numeri casuali.
+     */
+    private static String randomDescription(Random random) {
+        String alphabet = "abcdefghijklmnopqrstuvwxyzàèéìòù,\";";
+        StringBuilder description = new StringBuilder().append((char) ('A' + random.nextInt(26)));
+        int length = random.nextInt(40);
+
+        for (int i = 0; i < length; i++)
+            description.append(random.nextInt(8) == 0 ? ' ' : alphabet.charAt(random.nextInt(alphabet.length())));
+
+        return description.append((char) ('a' + random.nextInt(26))).toString();
+    }
+
+    /**
+     * Aggiunge al file fornito il campo fornito, racchiudendolo tra virgolette (e raddoppiando quelle che contiene) soltanto
+     * se contiene virgole, virgolette o a capo, come MovementsExporter.writeField(Writer, String).
+     *
+     * @param file Il contenuto del file.
+     * @param field Il campo da aggiungere.
+     */
+    private static void appendField(StringBuilder file, String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            file.append(field);
+            return;
+        }
+
+        file.append('"').append(field.replace("\"", "\"\"")).append('"');
+    }
+
+}
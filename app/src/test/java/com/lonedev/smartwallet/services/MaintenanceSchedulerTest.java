@@ -0,0 +1,113 @@
+package com.lonedev.smartwallet.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import com.lonedev.smartwallet.data.DatabaseExecutor;
+import com.lonedev.smartwallet.data.DatabaseHandler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test della pianificazione della manutenzione del database (si veda la classe MaintenanceScheduler), in particolare
+ * dell'esecuzione tramite DatabaseExecutor quando JobScheduler non è disponibile.
+ *
+ * @author Marco Michelini
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MaintenanceSchedulerTest {
+
+    /**
+     * Il tempo massimo, in secondi, di attesa delle operazioni accodate al thread delle scritture.
+     */
+    private static final long TIMEOUT_SECONDS = 30;
+
+    /**
+     * Il contesto dell'applicazione.
+     */
+    private Context context;
+
+    /**
+     * Un contesto in cui JobScheduler non è disponibile.
+     */
+    private Context contextWithoutJobScheduler;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        contextWithoutJobScheduler = new ContextWrapper(context) {
+
+            @Override
+            public Object getSystemService(String name) {
+                return Context.JOB_SCHEDULER_SERVICE.equals(name) ? null : super.getSystemService(name);
+            }
+        };
+    }
+
+    @Test
+    public void scheduleUsesJobSchedulerWhenAvailable() {
+        MaintenanceScheduler.schedule(context);
+
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        JobInfo job = jobScheduler.getPendingJob(MaintenanceScheduler.MAINTENANCE_JOB_ID);
+        assertNotNull(job);
+        assertEquals(MaintenanceScheduler.MAINTENANCE_INTERVAL, job.getIntervalMillis());
+        assertEquals(0, MaintenanceScheduler.getLastRun(context));
+    }
+
+    /**
+     * Verifica entrambi i casi dell'esecuzione senza JobScheduler in un unico test, dato che DatabaseExecutor e
+     * DatabaseHandler sono singleton creati con il contesto del primo test che li usa.
+     */
+    @Test
+    public void fallbackRunsMaintenanceOnlyWhenDue() throws InterruptedException {
+        long before = System.currentTimeMillis();
+
+        MaintenanceScheduler.schedule(contextWithoutJobScheduler);
+        awaitWriter();
+
+        long lastRun = MaintenanceScheduler.getLastRun(context);
+        assertTrue("Ultima esecuzione: " + lastRun, lastRun >= before && lastRun <= System.currentTimeMillis());
+        assertFalse(MaintenanceScheduler.isDue(context, System.currentTimeMillis()));
+        assertTrue(MaintenanceScheduler.isDue(context, lastRun + MaintenanceScheduler.MAINTENANCE_INTERVAL));
+
+        MaintenanceScheduler.schedule(contextWithoutJobScheduler);
+        awaitWriter();
+
+        assertEquals(lastRun, MaintenanceScheduler.getLastRun(context));
+    }
+
+    /**
+     * Attende che il thread delle scritture di DatabaseExecutor abbia eseguito tutte le operazioni accodate finora, tra cui
+     * l'eventuale manutenzione: le scritture sono eseguite una alla volta, nell'ordine in cui sono state richieste.
+     */
+    private void awaitWriter() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        DatabaseExecutor.getInstance(context).write(new DatabaseExecutor.Operation<Void>() {
+
+            @Override
+            public Void run(DatabaseHandler databaseHandler) {
+                latch.countDown();
+                return null;
+            }
+        }, null);
+
+        assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+}
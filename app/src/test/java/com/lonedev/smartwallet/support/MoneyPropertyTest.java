@@ -0,0 +1,59 @@
+package com.lonedev.smartwallet.support;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test di proprietà della rappresentazione delle quantità di denaro come numero intero di centesimi (si veda la classe Money).
+ * Le quantità vengono generate casualmente, formattate e riconvertite con Money.parse(CharSequence), e confrontate con il
+ * risultato esatto calcolato con BigDecimal. Il saldo e il registro BALANCE_SNAPSHOTS sono verificati su un database reale
+ * (si veda la classe BalanceLedgerPropertyTest).
+ *
+ * @author Marco Michelini
+ */
+public class MoneyPropertyTest {
+
+    /**
+     * Il numero di quantità generate da ogni test.
+     */
+    private static final int OPERATIONS = 1000000;
+
+    /**
+     * Il massimo numero di unità di valuta di un movimento.
+     */
+    private static final int MAX_UNITS = 100000;
+
+    @Test
+    public void formattedAmountsParseBack() {
+        Random random = new Random(7);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            long cents = (long) random.nextInt(MAX_UNITS) * Money.CENTS_PER_UNIT + random.nextInt((int) Money.CENTS_PER_UNIT);
+            String text = DataFormat.format(cents);
+
+            assertEquals(text, cents, Money.parse(text));
+            assertEquals(new BigDecimal(cents).movePointLeft(Money.DECIMAL_DIGITS), new BigDecimal(text).setScale(Money.DECIMAL_DIGITS));
+            if (cents != 0)
+                assertEquals("-" + text, DataFormat.format(-cents));
+
+        }
+    }
+
+    @Test
+    public void percentRoundsHalfUp() {
+        Random random = new Random(11);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            long max = 1 + random.nextInt(MAX_UNITS * 100), value = random.nextInt(MAX_UNITS * 200);
+            int expected = new BigDecimal(value * 100).divide(new BigDecimal(max), 0, RoundingMode.HALF_UP).intValueExact();
+
+            assertEquals(value + "/" + max, expected, Money.percent(value, max));
+        }
+    }
+
+}